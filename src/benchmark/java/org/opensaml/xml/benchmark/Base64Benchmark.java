@@ -0,0 +1,78 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.opensaml.xml.util.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks {@link Base64#encodeBytes(byte[])} and {@link Base64#decode(String)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Base64Benchmark {
+
+    /** Size in bytes of the unencoded data, roughly a signature value, a certificate and a large CipherValue. */
+    @Param({ "256", "2048", "65536" })
+    private int size;
+
+    /** Unencoded data. */
+    private byte[] data;
+
+    /** Encoded data. */
+    private String encoded;
+
+    /** Prepares the data. */
+    @Setup
+    public void setUp() {
+        data = new byte[size];
+        new Random(size).nextBytes(data);
+        encoded = Base64.encodeBytes(data);
+    }
+
+    /**
+     * Encodes the data.
+     *
+     * @return the encoded data
+     */
+    @Benchmark
+    public String encodeBytes() {
+        return Base64.encodeBytes(data);
+    }
+
+    /**
+     * Decodes the data.
+     *
+     * @return the decoded data
+     */
+    @Benchmark
+    public byte[] decode() {
+        return Base64.decode(encoded);
+    }
+}
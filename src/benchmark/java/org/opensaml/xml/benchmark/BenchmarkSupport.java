@@ -0,0 +1,119 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.benchmark;
+
+import java.io.ByteArrayOutputStream;
+
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.ConfigurationException;
+import org.opensaml.xml.XMLConfigurator;
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.io.MarshallingException;
+import org.opensaml.xml.mock.SimpleXMLObject;
+import org.opensaml.xml.mock.SimpleXMLObjectBuilder;
+import org.opensaml.xml.parse.BasicParserPool;
+import org.opensaml.xml.parse.XMLParserException;
+import org.opensaml.xml.util.XMLHelper;
+import org.w3c.dom.Element;
+
+/**
+ * Shared setup for the JMH benchmarks.
+ *
+ * <p>Benchmark payloads are {@link SimpleXMLObject} trees with a configurable number of children, so that the
+ * cost of each code path can be observed as a function of document size.</p>
+ */
+public final class BenchmarkSupport {
+
+    /** ID of the root element of generated payloads. */
+    public static final String ROOT_ID = "root";
+
+    /** Library configuration files loaded at bootstrap, in order. */
+    private static final String[] CONFIG_FILES = { "/xmltooling-config.xml", "/schema-config.xml",
+            "/encryption-config.xml", "/encryption-validation-config.xml", "/signature-config.xml",
+            "/signature-validation-config.xml", };
+
+    /** Whether the library configuration has been loaded. */
+    private static boolean initialized;
+
+    /** Constructor. */
+    private BenchmarkSupport() {
+
+    }
+
+    /**
+     * Loads the library configuration and installs a parser pool, if not already done.
+     *
+     * @throws ConfigurationException thrown if the configuration can not be loaded
+     * @throws XMLParserException thrown if a configuration file can not be parsed
+     */
+    public static synchronized void bootstrap() throws ConfigurationException, XMLParserException {
+        if (initialized) {
+            return;
+        }
+
+        BasicParserPool parserPool = new BasicParserPool();
+        parserPool.setNamespaceAware(true);
+        parserPool.setMaxPoolSize(50);
+        Configuration.setParserPool(parserPool);
+
+        XMLConfigurator configurator = new XMLConfigurator();
+        for (String configFile : CONFIG_FILES) {
+            configurator.load(parserPool.parse(BenchmarkSupport.class.getResourceAsStream(configFile)));
+        }
+
+        initialized = true;
+    }
+
+    /**
+     * Builds a payload with the given number of child elements beneath a root with ID {@link #ROOT_ID}.
+     *
+     * @param childCount number of child elements
+     *
+     * @return the payload object
+     */
+    public static SimpleXMLObject buildPayload(int childCount) {
+        SimpleXMLObjectBuilder builder = new SimpleXMLObjectBuilder();
+        SimpleXMLObject root = builder.buildObject();
+        root.setId(ROOT_ID);
+
+        for (int i = 0; i < childCount; i++) {
+            SimpleXMLObject child = builder.buildObject();
+            child.setId("child" + i);
+            child.setValue("Benchmark payload value number " + i);
+            root.getSimpleXMLObjects().add(child);
+        }
+
+        return root;
+    }
+
+    /**
+     * Marshalls the given object and serializes the result.
+     *
+     * @param xmlObject the object to serialize
+     *
+     * @return the serialized form of the object
+     *
+     * @throws MarshallingException thrown if the object can not be marshalled
+     */
+    public static byte[] serialize(XMLObject xmlObject) throws MarshallingException {
+        Element element = Configuration.getMarshallerFactory().getMarshaller(xmlObject).marshall(xmlObject);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XMLHelper.writeNode(element, output);
+        return output.toByteArray();
+    }
+}
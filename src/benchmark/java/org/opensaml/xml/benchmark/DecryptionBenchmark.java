@@ -0,0 +1,86 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.encryption.Decrypter;
+import org.opensaml.xml.encryption.EncryptedData;
+import org.opensaml.xml.encryption.EncryptionConstants;
+import org.opensaml.xml.encryption.EncryptionParameters;
+import org.opensaml.xml.encryption.Encrypter;
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.security.keyinfo.StaticKeyInfoCredentialResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks {@link Decrypter#decryptData(EncryptedData)} using a known data encryption key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecryptionBenchmark {
+
+    /** Number of child elements in the encrypted document. */
+    @Param({ "10", "100", "1000" })
+    private int childCount;
+
+    /** Encrypted payload. */
+    private EncryptedData encryptedData;
+
+    /** Decrypter holding the data encryption key. */
+    private Decrypter decrypter;
+
+    /**
+     * Encrypts the payload.
+     *
+     * @throws Exception thrown if the payload can not be built
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.bootstrap();
+        Credential encCred = SecurityHelper.generateKeyAndCredential(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128);
+        EncryptionParameters encParams = new EncryptionParameters();
+        encParams.setAlgorithm(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128);
+        encParams.setEncryptionCredential(encCred);
+
+        encryptedData = new Encrypter().encryptElement(BenchmarkSupport.buildPayload(childCount), encParams);
+        decrypter = new Decrypter(new StaticKeyInfoCredentialResolver(encCred), null, null);
+    }
+
+    /**
+     * Decrypts the payload.
+     *
+     * @return the decrypted object
+     *
+     * @throws Exception thrown if the payload can not be decrypted
+     */
+    @Benchmark
+    public XMLObject decryptData() throws Exception {
+        return decrypter.decryptData(encryptedData);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.parse.ParserPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.w3c.dom.Document;
+
+/**
+ * Benchmarks {@link ParserPool#parse(java.io.InputStream)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserPoolBenchmark {
+
+    /** Number of child elements in the parsed document. */
+    @Param({ "10", "100", "1000" })
+    private int childCount;
+
+    /** Pool under test. */
+    private ParserPool parserPool;
+
+    /** Serialized document to parse. */
+    private byte[] payload;
+
+    /**
+     * Prepares the serialized payload.
+     *
+     * @throws Exception thrown if the payload can not be built
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.bootstrap();
+        parserPool = Configuration.getParserPool();
+        payload = BenchmarkSupport.serialize(BenchmarkSupport.buildPayload(childCount));
+    }
+
+    /**
+     * Parses the payload.
+     *
+     * @return the parsed document
+     *
+     * @throws Exception thrown if the payload can not be parsed
+     */
+    @Benchmark
+    public Document parse() throws Exception {
+        return parserPool.parse(new ByteArrayInputStream(payload));
+    }
+}
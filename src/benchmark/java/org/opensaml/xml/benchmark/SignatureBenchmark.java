@@ -0,0 +1,110 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.benchmark;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.mock.SimpleXMLObject;
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.signature.DocumentInternalIDContentReference;
+import org.opensaml.xml.signature.Signature;
+import org.opensaml.xml.signature.SignatureConstants;
+import org.opensaml.xml.signature.SignatureValidator;
+import org.opensaml.xml.signature.Signer;
+import org.opensaml.xml.signature.impl.SignatureBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks {@link Signer#signObject(Signature)} and {@link SignatureValidator#validate(Signature)} over an
+ * enveloped signature.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SignatureBenchmark {
+
+    /** Number of child elements in the signed document. */
+    @Param({ "10", "100", "1000" })
+    private int childCount;
+
+    /** Signature which is signed and validated. */
+    private Signature signature;
+
+    /** Validator holding the verification key. */
+    private SignatureValidator validator;
+
+    /**
+     * Builds, marshalls and signs the payload.
+     *
+     * @throws Exception thrown if the payload can not be built
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.bootstrap();
+        KeyPair keyPair = SecurityHelper.generateKeyPair("RSA", 2048, null);
+        Credential credential = SecurityHelper.getSimpleCredential(keyPair.getPublic(), keyPair.getPrivate());
+
+        signature = new SignatureBuilder().buildObject();
+        signature.setSigningCredential(credential);
+        signature.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        signature.setSignatureAlgorithm(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256);
+        DocumentInternalIDContentReference contentReference = new DocumentInternalIDContentReference(
+                BenchmarkSupport.ROOT_ID);
+        contentReference.getTransforms().add(SignatureConstants.TRANSFORM_ENVELOPED_SIGNATURE);
+        contentReference.getTransforms().add(SignatureConstants.TRANSFORM_C14N_EXCL_OMIT_COMMENTS);
+        contentReference.setDigestAlgorithm(SignatureConstants.ALGO_ID_DIGEST_SHA256);
+        signature.getContentReferences().add(contentReference);
+
+        SimpleXMLObject payload = BenchmarkSupport.buildPayload(childCount);
+        payload.setSignature(signature);
+        Configuration.getMarshallerFactory().getMarshaller(payload).marshall(payload);
+        Signer.signObject(signature);
+
+        validator = new SignatureValidator(credential);
+    }
+
+    /**
+     * Computes the signature.
+     *
+     * @throws Exception thrown if the signature can not be computed
+     */
+    @Benchmark
+    public void sign() throws Exception {
+        Signer.signObject(signature);
+    }
+
+    /**
+     * Validates the signature.
+     *
+     * @throws Exception thrown if the signature is not valid
+     */
+    @Benchmark
+    public void validate() throws Exception {
+        validator.validate(signature);
+    }
+}
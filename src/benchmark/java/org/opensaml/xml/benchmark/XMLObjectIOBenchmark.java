@@ -0,0 +1,106 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.io.Marshaller;
+import org.opensaml.xml.io.Unmarshaller;
+import org.opensaml.xml.mock.SimpleXMLObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.w3c.dom.Element;
+
+/**
+ * Benchmarks {@link org.opensaml.xml.io.AbstractXMLObjectUnmarshaller#unmarshall(Element)} and
+ * {@link org.opensaml.xml.io.AbstractXMLObjectMarshaller#marshall(XMLObject)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class XMLObjectIOBenchmark {
+
+    /** Number of child elements in the processed document. */
+    @Param({ "10", "100", "1000" })
+    private int childCount;
+
+    /** Parsed payload element to unmarshall. */
+    private Element payloadElement;
+
+    /** Payload object to marshall. */
+    private SimpleXMLObject payloadObject;
+
+    /** Unmarshaller for the payload. */
+    private Unmarshaller unmarshaller;
+
+    /** Marshaller for the payload. */
+    private Marshaller marshaller;
+
+    /**
+     * Prepares the payload in both DOM and XMLObject forms.
+     *
+     * @throws Exception thrown if the payload can not be built
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.bootstrap();
+        byte[] payload = BenchmarkSupport.serialize(BenchmarkSupport.buildPayload(childCount));
+        payloadElement = Configuration.getParserPool().parse(new ByteArrayInputStream(payload)).getDocumentElement();
+        unmarshaller = Configuration.getUnmarshallerFactory().getUnmarshaller(payloadElement);
+
+        payloadObject = BenchmarkSupport.buildPayload(childCount);
+        marshaller = Configuration.getMarshallerFactory().getMarshaller(payloadObject);
+    }
+
+    /**
+     * Unmarshalls the parsed payload.
+     *
+     * @return the unmarshalled object
+     *
+     * @throws Exception thrown if the payload can not be unmarshalled
+     */
+    @Benchmark
+    public XMLObject unmarshall() throws Exception {
+        return unmarshaller.unmarshall(payloadElement);
+    }
+
+    /**
+     * Marshalls the payload object into a new document.
+     *
+     * <p>The cached DOM of the tree is released first so that every invocation does the full work.</p>
+     *
+     * @return the marshalled element
+     *
+     * @throws Exception thrown if the payload can not be marshalled
+     */
+    @Benchmark
+    public Element marshall() throws Exception {
+        payloadObject.releaseDOM();
+        payloadObject.releaseChildrenDOM(true);
+        return marshaller.marshall(payloadObject);
+    }
+}
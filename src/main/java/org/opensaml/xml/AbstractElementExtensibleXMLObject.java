@@ -32,7 +32,7 @@ import org.opensaml.xml.validation.AbstractValidatingXMLObject;
 public abstract class AbstractElementExtensibleXMLObject extends AbstractValidatingXMLObject implements
         ElementExtensibleXMLObject {
 
-    /** xs:any {@link XMLObject} child elements. */
+    /** xs:any {@link XMLObject} child elements, created on first use. */
     private IndexedXMLObjectChildrenList<XMLObject> anyXMLObjects;
 
     /**
@@ -44,21 +44,27 @@ public abstract class AbstractElementExtensibleXMLObject extends AbstractValidat
      */
     public AbstractElementExtensibleXMLObject(String namespaceURI, String elementLocalName, String namespacePrefix) {
         super(namespaceURI, elementLocalName, namespacePrefix);
-        anyXMLObjects = new IndexedXMLObjectChildrenList<XMLObject>(this);
     }
 
     /** {@inheritDoc} */
     public List<XMLObject> getOrderedChildren() {
+        if (anyXMLObjects == null) {
+            return Collections.emptyList();
+        }
         return Collections.unmodifiableList(anyXMLObjects);
     }
 
     /** {@inheritDoc} */
     public List<XMLObject> getUnknownXMLObjects() {
+        if (anyXMLObjects == null) {
+            anyXMLObjects = new IndexedXMLObjectChildrenList<XMLObject>(this);
+        }
         return anyXMLObjects;
     }
 
     /** {@inheritDoc} */
     public List<XMLObject> getUnknownXMLObjects(QName typeOrName) {
+        getUnknownXMLObjects();
         return (List<XMLObject>) anyXMLObjects.subList(typeOrName);
     }
 }
\ No newline at end of file
@@ -26,7 +26,7 @@ import org.opensaml.xml.util.AttributeMap;
 public abstract class AbstractExtensibleXMLObject extends AbstractElementExtensibleXMLObject implements
         AttributeExtensibleXMLObject, ElementExtensibleXMLObject {
 
-    /** xs:anyAttribute for this element. */
+    /** xs:anyAttribute for this element, created on first use. */
     private AttributeMap anyAttributes;
 
     /**
@@ -38,11 +38,13 @@ public abstract class AbstractExtensibleXMLObject extends AbstractElementExtensi
      */
     public AbstractExtensibleXMLObject(String namespaceURI, String elementLocalName, String namespacePrefix) {
         super(namespaceURI, elementLocalName, namespacePrefix);
-        anyAttributes = new AttributeMap(this);
     }
 
     /** {@inheritDoc} */
     public AttributeMap getUnknownAttributes() {
+        if (anyAttributes == null) {
+            anyAttributes = new AttributeMap(this);
+        }
         return anyAttributes;
     }
 }
\ No newline at end of file
@@ -61,14 +61,14 @@ public abstract class AbstractXMLObject implements XMLObject {
     /** The value of the <code>xsi:nil</code> attribute. */
     private  XSBooleanValue nil;
     
-    /** The namespace manager for this XML object. */
+    /** The namespace manager for this XML object, created on first use. */
     private NamespaceManager nsManager;
 
     /**
-     * Mapping of ID attributes to XMLObjects in the subtree rooted at this object. This allows constant-time
-     * dereferencing of ID-typed attributes within the subtree.
+     * Mapping of ID attributes to XMLObjects in the subtree rooted at this object, created on first use. This allows
+     * constant-time dereferencing of ID-typed attributes within the subtree.
      */
-    private final IDIndex idIndex;
+    private IDIndex idIndex;
 
     /**
      * Constructor.
@@ -78,8 +78,6 @@ public abstract class AbstractXMLObject implements XMLObject {
      * @param namespacePrefix the prefix for the given namespace
      */
     protected AbstractXMLObject(String namespaceURI, String elementLocalName, String namespacePrefix) {
-        nsManager = new NamespaceManager(this);
-        idIndex = new IDIndex(this);
         elementQname = XMLHelper.constructQName(namespaceURI, elementLocalName, namespacePrefix);
         if(namespaceURI != null){
             setElementNamespacePrefix(namespacePrefix);
@@ -109,11 +107,24 @@ public abstract class AbstractXMLObject implements XMLObject {
 
     /** {@inheritDoc} */
     public IDIndex getIDIndex() {
+        if (idIndex == null) {
+            idIndex = new IDIndex(this);
+        }
         return idIndex;
     }
     
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The manager is created on first use, and takes the namespaces of the element name and schema type from this
+     * object when they are needed.
+     * </p>
+     */
     public NamespaceManager getNamespaceManager() {
+        if (nsManager == null) {
+            nsManager = new NamespaceManager(this);
+        }
         return nsManager;
     }
 
@@ -167,8 +178,8 @@ public abstract class AbstractXMLObject implements XMLObject {
     protected void manageQualifiedAttributeNamespace(QName attributeName, boolean hasValue) {
         if (hasValue) {
             getNamespaceManager().registerAttributeName(attributeName);
-        } else {
-            getNamespaceManager().deregisterAttributeName(attributeName);
+        } else if (nsManager != null) {
+            nsManager.deregisterAttributeName(attributeName);
         }
     }
 
@@ -374,7 +385,7 @@ public abstract class AbstractXMLObject implements XMLObject {
             if (newValue != null) {
                 releaseThisandParentDOM();
                 newValue.setParent(this);
-                idIndex.registerIDMappings(newValue.getIDIndex());
+                getIDIndex().registerIDMappings(newValue.getIDIndex());
                 return newValue;
 
             } else {
@@ -385,10 +396,10 @@ public abstract class AbstractXMLObject implements XMLObject {
         if (!oldValue.equals(newValue)) {
             oldValue.setParent(null);
             releaseThisandParentDOM();
-            idIndex.deregisterIDMappings(oldValue.getIDIndex());
+            getIDIndex().deregisterIDMappings(oldValue.getIDIndex());
             if (newValue != null) {
                 newValue.setParent(this);
-                idIndex.registerIDMappings(newValue.getIDIndex());
+                getIDIndex().registerIDMappings(newValue.getIDIndex());
             }
         }
 
@@ -408,11 +419,11 @@ public abstract class AbstractXMLObject implements XMLObject {
 
         if (!DatatypeHelper.safeEquals(oldID, newString)) {
             if (oldID != null) {
-                idIndex.deregisterIDMapping(oldID);
+                getIDIndex().deregisterIDMapping(oldID);
             }
 
             if (newString != null) {
-                idIndex.registerIDMapping(newString, this);
+                getIDIndex().registerIDMapping(newString, this);
             }
         }
     }
@@ -476,12 +487,14 @@ public abstract class AbstractXMLObject implements XMLObject {
 
     /** {@inheritDoc} */
     public void removeNamespace(Namespace namespace) {
-        getNamespaceManager().deregisterNamespace(namespace);
+        if (nsManager != null) {
+            nsManager.deregisterNamespace(namespace);
+        }
     }
 
     /** {@inheritDoc} */
     public XMLObject resolveID(String id) {
-        return idIndex.lookup(id);
+        return getIDIndex().lookup(id);
     }
 
     /** {@inheritDoc} */
@@ -509,7 +522,9 @@ public abstract class AbstractXMLObject implements XMLObject {
         } else {
             elementQname = new QName(elementQname.getNamespaceURI(), elementQname.getLocalPart(), prefix);
         }
-        getNamespaceManager().registerElementName(elementQname);
+        if (nsManager != null) {
+            nsManager.registerElementName(elementQname);
+        }
     }
 
     /**
@@ -520,7 +535,9 @@ public abstract class AbstractXMLObject implements XMLObject {
     protected void setElementQName(QName elementQName) {
         this.elementQname = XMLHelper.constructQName(elementQName.getNamespaceURI(), elementQName.getLocalPart(),
                 elementQName.getPrefix());
-        getNamespaceManager().registerElementName(this.elementQname);
+        if (nsManager != null) {
+            nsManager.registerElementName(this.elementQname);
+        }
     }
 
     /** {@inheritDoc} */
@@ -549,7 +566,9 @@ public abstract class AbstractXMLObject implements XMLObject {
      */
     protected void setSchemaType(QName type) {
         typeQname = type;
-        getNamespaceManager().registerElementType(typeQname);
+        if (nsManager != null) {
+            nsManager.registerElementType(typeQname);
+        }
         manageQualifiedAttributeNamespace(XMLConstants.XSI_TYPE_ATTRIB_NAME, typeQname != null);
     }
     
@@ -74,6 +74,9 @@ public class Configuration {
     /** Configured parser pool. */
     private static ParserPool parserPool;
 
+    /** Whether the ID indexes of newly built XMLObjects are lazily built by the root of their tree. */
+    private static volatile boolean lazyIDIndexing;
+
     /** Constructor. */
     protected Configuration() {
 
@@ -230,6 +233,27 @@ public class Configuration {
         return idAttributeNames.contains(attributeName);
     }
 
+    /**
+     * Get whether the ID indexes of newly built XMLObjects are lazily built by the root of their tree.
+     * 
+     * @return true if ID indexes are built lazily, false if ID mappings are copied to every ancestor eagerly
+     */
+    public static boolean isLazyIDIndexing() {
+        return lazyIDIndexing;
+    }
+
+    /**
+     * Set whether the ID indexes of newly built XMLObjects are lazily built by the root of their tree. See
+     * {@link org.opensaml.xml.util.IDIndex} for the trade-offs. The setting applies to XMLObjects built afterwards,
+     * and XMLObjects built with different settings must not be placed in the same tree, so it should only be changed
+     * during initialization.
+     * 
+     * @param lazy true to build ID indexes lazily, false to copy ID mappings to every ancestor eagerly
+     */
+    public static void setLazyIDIndexing(boolean lazy) {
+        lazyIDIndexing = lazy;
+    }
+
     /**
      * Get the global security configuration.
      * 
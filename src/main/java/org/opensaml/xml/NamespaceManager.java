@@ -18,7 +18,7 @@
 package org.opensaml.xml;
 
 import java.util.Collection;
-
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +38,11 @@ import org.opensaml.xml.util.XMLConstants;
  * Code which mutates the state of an XMLObject such that XML namespace-related data is also logically changed,
  * should call the appropriate method, based on the type of change being made.
  * </p>
+ * 
+ * <p>
+ * The collections holding registered namespaces are created when the first namespace is registered in them, so a
+ * manager whose owner only uses the namespaces of its element name and type holds no collections at all.
+ * </p>
  */
 public class NamespaceManager {
     
@@ -61,16 +66,16 @@ public class NamespaceManager {
     /** XMLObject type namespace. */
     private Namespace elementType;
     
-    /** Explicitly declared namespaces. */
+    /** Explicitly declared namespaces, the shared empty set until one is registered. */
     private Set<Namespace> decls;
     
-    /** Indeterminate namespace usage. */
+    /** Indeterminate namespace usage, the shared empty set until one is registered. */
     private Set<Namespace> usage;
     
-    /** Registered namespaces of attribute names. */
+    /** Registered namespaces of attribute names, the shared empty set until one is registered. */
     private Set<Namespace> attrNames;
     
-    /** Registered namespaces of attribute values. */
+    /** Registered namespaces of attribute values, the shared empty map until one is registered. */
     private Map<String, Namespace> attrValues;
     
     /** Registered namespaces of content values. */
@@ -84,10 +89,10 @@ public class NamespaceManager {
     public NamespaceManager(XMLObject owningObject) {
         owner = owningObject;
         
-        decls = new LazySet<Namespace>();
-        usage = new LazySet<Namespace>();
-        attrNames = new LazySet<Namespace>();
-        attrValues = new LazyMap<String, Namespace>();
+        decls = Collections.emptySet();
+        usage = Collections.emptySet();
+        attrNames = Collections.emptySet();
+        attrValues = Collections.emptyMap();
     }
     
     /**
@@ -136,6 +141,7 @@ public class NamespaceManager {
      * @param namespace namespace to register
      */
     public void registerNamespace(Namespace namespace) {
+        usage = toModifiableSet(usage);
         addNamespace(usage, namespace);
     }
     
@@ -160,6 +166,7 @@ public class NamespaceManager {
      */
     public void registerNamespaceDeclaration(Namespace namespace) {
         namespace.setAlwaysDeclare(true);
+        decls = toModifiableSet(decls);
         addNamespace(decls, namespace);
     }
     
@@ -179,6 +186,7 @@ public class NamespaceManager {
      */
     public void registerAttributeName(QName attributeName) {
         if (checkQName(attributeName)) {
+            attrNames = toModifiableSet(attrNames);
             addNamespace(attrNames, buildNamespace(attributeName));
         }
     }
@@ -202,6 +210,9 @@ public class NamespaceManager {
      */
     public void registerAttributeValue(String attributeID, QName attributeValue) {
         if (checkQName(attributeValue)) {
+            if (attrValues.isEmpty()) {
+                attrValues = new LazyMap<String, Namespace>();
+            }
             attrValues.put(attributeID, buildNamespace(attributeValue));
         }
     }
@@ -403,6 +414,19 @@ public class NamespaceManager {
         return new Namespace(uri, prefix);
     }
     
+    /**
+     * Get a set to which namespaces may be added in place of the given set of registered namespaces.
+     * 
+     * @param namespaces the set of registered namespaces
+     * @return the given set, or a new modifiable set if the given set is empty
+     */
+    private Set<Namespace> toModifiableSet(Set<Namespace> namespaces) {
+        if (namespaces.isEmpty()) {
+            return new LazySet<Namespace>();
+        }
+        return namespaces;
+    }
+    
     /**
      * Add a Namespace to a set of Namespaces.  Namespaces with identical URI and prefix will be treated as equivalent.
      * An <code>alwaysDeclare</code> property of true will take precedence over a value of false.
@@ -23,7 +23,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
-import org.opensaml.xml.util.XMLHelper;
+import org.opensaml.xml.util.ElementNameIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
@@ -31,7 +31,8 @@ import org.w3c.dom.Element;
 /**
  * A factory for {@link org.opensaml.xml.XMLObjectBuilder}s. XMLObjectBuilders are stored and retrieved by a
  * {@link javax.xml.namespace.QName} key. This key is either the XML Schema Type or element QName of the XML element the
- * built XMLObject object represents.
+ * built XMLObject object represents. Builders for DOM elements and for namespace URI and local name pairs are looked
+ * up without constructing a QName.
  */
 public class XMLObjectBuilderFactory {
 
@@ -41,9 +42,13 @@ public class XMLObjectBuilderFactory {
     /** Registered builders. */
     private Map<QName, XMLObjectBuilder> builders;
 
+    /** Registered builders indexed by the namespace URI and local name of their key. */
+    private ElementNameIndex<XMLObjectBuilder> builderIndex;
+
     /** Constructor. */
     public XMLObjectBuilderFactory() {
         builders = new ConcurrentHashMap<QName, XMLObjectBuilder>();
+        builderIndex = new ElementNameIndex<XMLObjectBuilder>();
     }
 
     /**
@@ -60,6 +65,18 @@ public class XMLObjectBuilderFactory {
         return builders.get(key);
     }
 
+    /**
+     * Retrieves the {@link XMLObjectBuilder} registered with the key with the given namespace URI and local name.
+     * 
+     * @param namespaceURI the namespace URI of the key used to register the builder, may be null
+     * @param localName the local name of the key used to register the builder
+     * 
+     * @return the builder
+     */
+    public XMLObjectBuilder getBuilder(String namespaceURI, String localName) {
+        return builderIndex.get(namespaceURI, localName);
+    }
+
     /**
      * Retrieves the XMLObject builder for the given element. The schema type, if present, is tried first as the key
      * with the element QName used if no schema type is present or does not have a builder registered under it.
@@ -69,15 +86,7 @@ public class XMLObjectBuilderFactory {
      * @return the builder for the XMLObject the given element can be unmarshalled into
      */
     public XMLObjectBuilder getBuilder(Element domElement) {
-        XMLObjectBuilder builder;
-
-        builder = getBuilder(XMLHelper.getXSIType(domElement));
-
-        if (builder == null) {
-            builder = getBuilder(XMLHelper.getNodeQName(domElement));
-        }
-
-        return builder;
+        return builderIndex.get(domElement);
     }
 
     /**
@@ -100,7 +109,10 @@ public class XMLObjectBuilderFactory {
         if(builderKey == null){
             throw new IllegalArgumentException("Builder key may not be null");
         }
-        builders.put(builderKey, builder);
+        synchronized (builders) {
+            builders.put(builderKey, builder);
+            builderIndex.put(builderKey, builder);
+        }
     }
 
     /**
@@ -113,7 +125,10 @@ public class XMLObjectBuilderFactory {
     public XMLObjectBuilder deregisterBuilder(QName builderKey) {
         log.debug("Deregistering builder for object type {}", builderKey);
         if(builderKey != null){
-            return builders.remove(builderKey);
+            synchronized (builders) {
+                builderIndex.remove(builderKey);
+                return builders.remove(builderKey);
+            }
         }
         
         return null;
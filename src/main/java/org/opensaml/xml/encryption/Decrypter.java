@@ -18,18 +18,37 @@
 package org.opensaml.xml.encryption;
 
 import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.security.KeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.spec.IvParameterSpec;
+import javax.security.auth.x500.X500Principal;
 import javax.xml.XMLConstants;
 
 import org.apache.xml.security.Init;
+import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.encryption.XMLCipher;
 import org.apache.xml.security.encryption.XMLEncryptionException;
 import org.opensaml.xml.Configuration;
@@ -54,8 +73,17 @@ import org.opensaml.xml.security.criteria.KeyLengthCriteria;
 import org.opensaml.xml.security.criteria.UsageCriteria;
 import org.opensaml.xml.security.keyinfo.KeyInfoCredentialResolver;
 import org.opensaml.xml.security.keyinfo.KeyInfoCriteria;
+import org.opensaml.xml.security.keyinfo.KeyInfoHelper;
+import org.opensaml.xml.security.x509.X509Credential;
+import org.opensaml.xml.security.x509.X509Util;
 import org.opensaml.xml.signature.DigestMethod;
+import org.opensaml.xml.signature.KeyInfo;
 import org.opensaml.xml.signature.SignatureConstants;
+import org.opensaml.xml.signature.X509Data;
+import org.opensaml.xml.signature.X509Digest;
+import org.opensaml.xml.signature.X509IssuerSerial;
+import org.opensaml.xml.signature.X509SKI;
+import org.opensaml.xml.util.Base64;
 import org.opensaml.xml.util.DatatypeHelper;
 import org.opensaml.xml.util.XMLHelper;
 import org.slf4j.Logger;
@@ -170,9 +198,39 @@ import org.w3c.dom.NodeList;
  * This should only be done where the caller's use case really requires it.
  * </p>
  * 
+ * <p>
+ * If streaming decryption is enabled via {@link #setStreamingDecryption(boolean)}, EncryptedData whose cipher text is
+ * carried inline in a CipherValue and which uses one of the CBC mode block ciphers is decrypted without buffering the
+ * cipher text or plain text octets: the CipherValue is Base64-decoded, decrypted and parsed as a single stream. Other
+ * EncryptedData is decrypted as usual.
+ * </p>
+ * 
+ * <p>
+ * If a decrypted key cache size greater than zero is set via {@link #setDecryptedKeyCacheSize(int)}, keys decrypted
+ * from EncryptedKeys using the KEK credential resolver are kept in a bounded cache, so that several EncryptedData
+ * which share an EncryptedKey, or messages which repeat one, pay for key transport only once. Cache entries are keyed
+ * by a digest of the EncryptedKey's CipherValue, its key transport parameters and the algorithm of the decrypted key,
+ * not by its Id, which is only unique within a single document. The cache is cleared whenever the KEK resolver, its
+ * criteria or the JCA provider are changed. The cache is disabled by default.
+ * </p>
+ * 
+ * <p>
+ * When decrypting via resolved EncryptedKeys, key transport is attempted in order of likelihood rather than for every
+ * combination of EncryptedKey and KEK credential. EncryptedKeys whose Recipient names one of the recipients of the
+ * {@link EncryptedKeyResolver} are tried first, and each EncryptedKey is at first only paired with the KEK credentials
+ * identified by its KeyInfo (by KeyName, key value, or X.509 certificate, issuer and serial number, subject key
+ * identifier or digest), see {@link #matchesKeyInfo(Credential, EncryptedKey)}. The remaining pairs are only tried if
+ * none of these succeeds. A KEK resolver backed by an indexed credential store, such as
+ * {@link org.opensaml.xml.security.credential.IndexedCollectionCredentialResolver}, thus allows a message addressed
+ * to several recipients to be decrypted with a single private key operation.
+ * </p>
+ * 
  */
 public class Decrypter {
 
+    /** Block cipher algorithms which may be decrypted via the streaming path. */
+    private static final Set<String> STREAMING_ALGORITHMS;
+
     /** ParserPool used in parsing decrypted data. */
     private final ParserPool parserPool;
 
@@ -206,6 +264,15 @@ public class Decrypter {
     /** Flag to determine whether by default the Element which backs the underlying decrypted SAMLObject will be the 
      * root of a new DOM document. */
     private boolean defaultRootInNewDocument;
+
+    /** Flag to determine whether inline cipher text is decrypted and parsed as a stream. */
+    private boolean streamingDecryption;
+
+    /** Cache of keys decrypted from EncryptedKeys, or null if caching is disabled. */
+    private volatile Map<String, Key> decryptedKeyCache;
+
+    /** Maximum number of entries in the decrypted key cache. */
+    private int decryptedKeyCacheSize;
     
 
     /**
@@ -231,6 +298,8 @@ public class Decrypter {
         unmarshallerFactory = Configuration.getUnmarshallerFactory();
         
         defaultRootInNewDocument = false;
+        streamingDecryption = false;
+        decryptedKeyCacheSize = 0;
     }
 
     /**
@@ -253,6 +322,73 @@ public class Decrypter {
        defaultRootInNewDocument = flag; 
     }
 
+    /**
+     * Get the flag which indicates whether inline cipher text encrypted with a CBC mode block cipher is decrypted and
+     * parsed as a stream, rather than being fully buffered in memory. Defaults to false.
+     * 
+     * @return the current value of the flag for this decrypter instance
+     */
+    public boolean isStreamingDecryption() {
+        return streamingDecryption;
+    }
+
+    /**
+     * Set the flag which indicates whether inline cipher text encrypted with a CBC mode block cipher is decrypted and
+     * parsed as a stream, rather than being fully buffered in memory. Defaults to false.
+     * 
+     * @param flag the new value of the flag for this decrypter instance
+     */
+    public void setStreamingDecryption(boolean flag) {
+        streamingDecryption = flag;
+    }
+
+    /**
+     * Get the maximum number of keys decrypted from EncryptedKeys which are cached by this decrypter. Defaults to 0,
+     * meaning that decrypted keys are not cached.
+     * 
+     * @return the maximum number of cached decrypted keys
+     */
+    public int getDecryptedKeyCacheSize() {
+        return decryptedKeyCacheSize;
+    }
+
+    /**
+     * Set the maximum number of keys decrypted from EncryptedKeys which are cached by this decrypter. A value of 0
+     * disables caching. Any currently cached keys are discarded.
+     * 
+     * @param cacheSize the maximum number of cached decrypted keys
+     */
+    public void setDecryptedKeyCacheSize(final int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Decrypted key cache size may not be negative");
+        }
+        decryptedKeyCacheSize = cacheSize;
+        if (cacheSize == 0) {
+            decryptedKeyCache = null;
+        } else {
+            decryptedKeyCache = Collections.synchronizedMap(new LinkedHashMap<String, Key>(16, 0.75f, true) {
+
+                /** Serial version UID. */
+                private static final long serialVersionUID = 5824153367452390613L;
+
+                /** {@inheritDoc} */
+                protected boolean removeEldestEntry(Map.Entry<String, Key> eldest) {
+                    return size() > cacheSize;
+                }
+            });
+        }
+    }
+
+    /**
+     * Discard all keys held in the decrypted key cache.
+     */
+    public void clearDecryptedKeyCache() {
+        Map<String, Key> cache = decryptedKeyCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
     /**
      * Get the Java Cryptography Architecture (JCA) security provider name that should be used to provide the decryption
      * support.
@@ -277,6 +413,7 @@ public class Decrypter {
      */
     public void setJCAProviderName(String providerName) {
         jcaProviderName = providerName;
+        clearDecryptedKeyCache();
     }
 
     /**
@@ -313,6 +450,7 @@ public class Decrypter {
      */
     public void setKEKResolver(KeyInfoCredentialResolver newKEKResolver) {
         kekResolver = newKEKResolver;
+        clearDecryptedKeyCache();
     }
 
     /**
@@ -382,6 +520,7 @@ public class Decrypter {
      */
     public void setKEKResolverCriteria(CriteriaSet newCriteria) {
         kekResolverCriteria = newCriteria;
+        clearDecryptedKeyCache();
     }
 
     /**
@@ -570,6 +709,10 @@ public class Decrypter {
             throw new IllegalArgumentException("Data decryption key may not be null");
         }
 
+        if (streamingDecryption && isStreamable(encryptedData)) {
+            return decryptDataToDOMStreaming(encryptedData, dataEncKey);
+        }
+
         try {
             checkAndMarshall(encryptedData);
         } catch (DecryptionException e) {
@@ -611,6 +754,87 @@ public class Decrypter {
         return docFragment;
     }
 
+    /**
+     * Decrypts the supplied EncryptedData using the specified key by streaming the Base64-decoded CipherValue through a
+     * {@link CipherInputStream} directly into the parser.
+     * 
+     * @param encryptedData encrypted data element containing the data to be decrypted
+     * @param dataEncKey Java Key with which to attempt decryption of the encrypted data
+     * @return the decrypted DOM {@link DocumentFragment}
+     * @throws DecryptionException exception indicating a decryption error
+     */
+    protected DocumentFragment decryptDataToDOMStreaming(EncryptedData encryptedData, Key dataEncKey)
+            throws DecryptionException {
+        String algorithm = encryptedData.getEncryptionMethod().getAlgorithm();
+        String jceAlgorithm = JCEMapper.translateURItoJCEID(algorithm);
+        if (jceAlgorithm == null) {
+            log.error("Could not determine JCA algorithm for EncryptionMethod algorithm URI '{}'", algorithm);
+            throw new DecryptionException("Unknown EncryptionMethod algorithm URI");
+        }
+
+        InputStream cipherText = new Base64.InputStream(new CharSequenceInputStream(encryptedData.getCipherData()
+                .getCipherValue().getValue()), Base64.DECODE);
+
+        Cipher cipher;
+        try {
+            if (getJCAProviderName() != null) {
+                cipher = Cipher.getInstance(jceAlgorithm, getJCAProviderName());
+            } else {
+                cipher = Cipher.getInstance(jceAlgorithm);
+            }
+
+            // The IV is carried as the first block of the cipher text
+            byte[] iv = new byte[cipher.getBlockSize()];
+            new DataInputStream(cipherText).readFully(iv);
+            cipher.init(Cipher.DECRYPT_MODE, dataEncKey, new IvParameterSpec(iv));
+        } catch (GeneralSecurityException e) {
+            log.error("Error initialzing cipher instance on data decryption", e);
+            throw new DecryptionException("Error initialzing cipher instance on data decryption", e);
+        } catch (IOException e) {
+            log.error("Error reading initialization vector from the encrypted data element", e);
+            throw new DecryptionException("Error decrypting the encrypted data element", e);
+        }
+
+        Document owningDocument = null;
+        if (encryptedData.getDOM() != null) {
+            owningDocument = encryptedData.getDOM().getOwnerDocument();
+        } else {
+            try {
+                owningDocument = parserPool.newDocument();
+            } catch (XMLParserException e) {
+                log.error("There was an error creating a new DOM Document", e);
+                throw new DecryptionException("Error creating new DOM Document", e);
+            }
+        }
+
+        try {
+            return parseInputStream(new CipherInputStream(cipherText, cipher), owningDocument);
+        } catch (DecryptionException e) {
+            throw e;
+        } catch (Exception e) {
+            // Catch anything else, esp. unchecked RuntimeException, and convert to our checked type.
+            throw new DecryptionException("Probable runtime exception on decryption:" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Check whether the supplied EncryptedData may be decrypted via the streaming path, that is whether its cipher
+     * text is carried inline in a CipherValue and it uses a supported CBC mode block cipher.
+     * 
+     * @param encryptedData the encrypted data to evaluate
+     * @return true if the EncryptedData may be decrypted via the streaming path, false otherwise
+     */
+    protected boolean isStreamable(EncryptedData encryptedData) {
+        if (encryptedData.getEncryptionMethod() == null
+                || !STREAMING_ALGORITHMS.contains(encryptedData.getEncryptionMethod().getAlgorithm())) {
+            return false;
+        }
+
+        CipherData cipherData = encryptedData.getCipherData();
+        return cipherData != null && cipherData.getCipherValue() != null
+                && cipherData.getCipherValue().getValue() != null;
+    }
+
     /**
      * Attempts to decrypt the supplied EncryptedKey and returns the resulting Java security Key object. The algorithm
      * of the decrypted key must be supplied by the caller based on knowledge of the associated EncryptedData
@@ -632,23 +856,23 @@ public class Decrypter {
             throw new DecryptionException("Algorithm of encrypted key not supplied, key decryption cannot proceed.");
         }
 
-        CriteriaSet criteriaSet = buildCredentialCriteria(encryptedKey, kekResolverCriteria);
+        String cacheKey = getDecryptedKeyCacheKey(encryptedKey, algorithm);
+        Key cachedKey = lookupDecryptedKey(cacheKey);
+        if (cachedKey != null) {
+            log.debug("Using cached key previously decrypted from identical EncryptedKey");
+            return cachedKey;
+        }
+
+        List<Credential> credentials = new ArrayList<Credential>();
+        List<Credential> unmatchedCredentials = new ArrayList<Credential>();
         try {
-            for (Credential cred : kekResolver.resolve(criteriaSet)) {
-                try {
-                    return decryptKey(encryptedKey, algorithm, SecurityHelper.extractDecryptionKey(cred));
-                } catch (DecryptionException e) {
-                    String msg = "Attempt to decrypt EncryptedKey using credential from KEK KeyInfo resolver failed: ";
-                    log.debug(msg, e);
-                    continue;
-                }
-            }
+            resolveKEKCredentials(encryptedKey, credentials, unmatchedCredentials);
         } catch (SecurityException e) {
             log.error("Error resolving credentials from EncryptedKey KeyInfo", e);
         }
+        credentials.addAll(unmatchedCredentials);
 
-        log.error("Failed to decrypt EncryptedKey, valid decryption key could not be resolved");
-        throw new DecryptionException("Valid decryption key for EncryptedKey could not be resolved");
+        return decryptKey(encryptedKey, algorithm, credentials, cacheKey);
     }
 
     /**
@@ -721,6 +945,52 @@ public class Decrypter {
         return key;
     }
 
+    /**
+     * Build the key under which a key decrypted from an EncryptedKey is cached. The cache key is a digest over the
+     * algorithm of the decrypted key, the key transport algorithm and parameters, and the CipherValue of the
+     * EncryptedKey.
+     * 
+     * @param encryptedKey the EncryptedKey
+     * @param algorithm the algorithm associated with the decrypted key
+     * @return the cache key, or null if the EncryptedKey carries no CipherValue
+     */
+    protected String buildDecryptedKeyCacheKey(EncryptedKey encryptedKey, String algorithm) {
+        if (encryptedKey.getCipherData() == null || encryptedKey.getCipherData().getCipherValue() == null) {
+            return null;
+        }
+        String cipherValue = DatatypeHelper.safeTrimOrNullString(
+                encryptedKey.getCipherData().getCipherValue().getValue());
+        if (cipherValue == null) {
+            return null;
+        }
+
+        StringBuilder material = new StringBuilder();
+        material.append(algorithm).append('\n');
+        EncryptionMethod encryptionMethod = encryptedKey.getEncryptionMethod();
+        if (encryptionMethod != null) {
+            material.append(encryptionMethod.getAlgorithm()).append('\n');
+            if (encryptionMethod.getOAEPparams() != null) {
+                material.append(encryptionMethod.getOAEPparams().getValue());
+            }
+            material.append('\n');
+            for (XMLObject digestMethod : encryptionMethod.getUnknownXMLObjects(DigestMethod.DEFAULT_ELEMENT_NAME)) {
+                material.append(((DigestMethod) digestMethod).getAlgorithm());
+            }
+        }
+        material.append('\n').append(cipherValue);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.encodeBytes(digest.digest(material.toString().getBytes("UTF-8")), Base64.DONT_BREAK_LINES);
+        } catch (NoSuchAlgorithmException e) {
+            log.warn("Unable to compute digest of EncryptedKey, decrypted key will not be cached", e);
+            return null;
+        } catch (IOException e) {
+            log.warn("Unable to compute digest of EncryptedKey, decrypted key will not be cached", e);
+            return null;
+        }
+    }
+
     /**
      * Preprocess the EncryptedKey. For example, check for supported algorithms.
      * 
@@ -783,26 +1053,317 @@ public class Decrypter {
      * Attempt to decrypt by resolving the decryption key by first resolving EncryptedKeys, and using the KEK credential
      * resolver to resolve the key decryption for each.
      * 
+     * <p>
+     * EncryptedKeys explicitly addressed to one of the recipients of the EncryptedKey resolver are tried first. Each
+     * EncryptedKey is first only tried with the KEK credentials which match its KeyInfo, see
+     * {@link #matchesKeyInfo(Credential, EncryptedKey)}. Only if none of these pairs succeeds are the remaining KEK
+     * credentials tried.
+     * </p>
+     * 
      * @param encryptedData the encrypted data to decrypt
      * @param algorithm the algorithm of the key to be decrypted
      * @return the decrypted document fragment, or null if decryption key could not be resolved or decryption failed
      */
     private DocumentFragment decryptUsingResolvedEncryptedKey(EncryptedData encryptedData, String algorithm) {
-        if (encKeyResolver != null) {
-            for (EncryptedKey encryptedKey : encKeyResolver.resolve(encryptedData)) {
+        if (encKeyResolver == null) {
+            return null;
+        }
+        if (kekResolver == null) {
+            log.warn("No KEK KeyInfo credential resolver is available, can not attempt EncryptedKey decryption");
+            return null;
+        }
+
+        List<EncryptedKey> encryptedKeys = orderEncryptedKeys(encKeyResolver.resolve(encryptedData));
+        List<List<Credential>> deferredCredentials = new ArrayList<List<Credential>>(encryptedKeys.size());
+        for (EncryptedKey encryptedKey : encryptedKeys) {
+            List<Credential> matchedCredentials = new ArrayList<Credential>();
+            List<Credential> unmatchedCredentials = new ArrayList<Credential>();
+            deferredCredentials.add(unmatchedCredentials);
+
+            String cacheKey = getDecryptedKeyCacheKey(encryptedKey, algorithm);
+            Key cachedKey = lookupDecryptedKey(cacheKey);
+            if (cachedKey != null) {
+                log.debug("Using cached key previously decrypted from identical EncryptedKey");
                 try {
-                    Key decryptedKey = decryptKey(encryptedKey, algorithm);
-                    return decryptDataToDOM(encryptedData, decryptedKey);
+                    return decryptDataToDOM(encryptedData, cachedKey);
                 } catch (DecryptionException e) {
-                    String msg = "Attempt to decrypt EncryptedData using key extracted from EncryptedKey failed: ";
-                    log.debug(msg, e);
-                    continue;
+                    log.debug("Attempt to decrypt EncryptedData using cached key failed: ", e);
                 }
             }
+
+            try {
+                resolveKEKCredentials(encryptedKey, matchedCredentials, unmatchedCredentials);
+            } catch (SecurityException e) {
+                log.error("Error resolving credentials from EncryptedKey KeyInfo", e);
+                continue;
+            }
+            DocumentFragment docFrag = decryptUsingCredentials(encryptedData, encryptedKey, algorithm,
+                    matchedCredentials, cacheKey);
+            if (docFrag != null) {
+                return docFrag;
+            }
+        }
+
+        for (int i = 0; i < encryptedKeys.size(); i++) {
+            List<Credential> unmatchedCredentials = deferredCredentials.get(i);
+            if (unmatchedCredentials.isEmpty()) {
+                continue;
+            }
+            log.debug("Attempting EncryptedKey decryption using KEK credentials which do not match its KeyInfo");
+            EncryptedKey encryptedKey = encryptedKeys.get(i);
+            DocumentFragment docFrag = decryptUsingCredentials(encryptedData, encryptedKey, algorithm,
+                    unmatchedCredentials, getDecryptedKeyCacheKey(encryptedKey, algorithm));
+            if (docFrag != null) {
+                return docFrag;
+            }
         }
         return null;
     }
 
+    /**
+     * Attempt to decrypt by decrypting the EncryptedKey with one of the supplied KEK credentials.
+     * 
+     * @param encryptedData the encrypted data to decrypt
+     * @param encryptedKey the EncryptedKey holding the data decryption key
+     * @param algorithm the algorithm of the key to be decrypted
+     * @param credentials the KEK credentials to try
+     * @param cacheKey the key under which the decrypted key is cached, may be null
+     * @return the decrypted document fragment, or null if decryption failed
+     */
+    private DocumentFragment decryptUsingCredentials(EncryptedData encryptedData, EncryptedKey encryptedKey,
+            String algorithm, List<Credential> credentials, String cacheKey) {
+        if (credentials.isEmpty()) {
+            return null;
+        }
+        try {
+            Key decryptedKey = decryptKey(encryptedKey, algorithm, credentials, cacheKey);
+            return decryptDataToDOM(encryptedData, decryptedKey);
+        } catch (DecryptionException e) {
+            String msg = "Attempt to decrypt EncryptedData using key extracted from EncryptedKey failed: ";
+            log.debug(msg, e);
+            return null;
+        }
+    }
+
+    /**
+     * Attempts to decrypt the supplied EncryptedKey with each of the supplied KEK credentials in turn.
+     * 
+     * @param encryptedKey encrypted key element containing the encrypted key to be decrypted
+     * @param algorithm the algorithm associated with the decrypted key
+     * @param credentials the KEK credentials to try
+     * @param cacheKey the key under which the decrypted key is cached, may be null
+     * @return the decrypted key
+     * @throws DecryptionException thrown if the key could not be decrypted with any of the credentials
+     */
+    private Key decryptKey(EncryptedKey encryptedKey, String algorithm, List<Credential> credentials,
+            String cacheKey) throws DecryptionException {
+        for (Credential cred : credentials) {
+            try {
+                Key key = decryptKey(encryptedKey, algorithm, SecurityHelper.extractDecryptionKey(cred));
+                Map<String, Key> cache = decryptedKeyCache;
+                if (cache != null && cacheKey != null) {
+                    cache.put(cacheKey, key);
+                }
+                return key;
+            } catch (DecryptionException e) {
+                String msg = "Attempt to decrypt EncryptedKey using credential from KEK KeyInfo resolver failed: ";
+                log.debug(msg, e);
+                continue;
+            }
+        }
+
+        log.error("Failed to decrypt EncryptedKey, valid decryption key could not be resolved");
+        throw new DecryptionException("Valid decryption key for EncryptedKey could not be resolved");
+    }
+
+    /**
+     * Gets the key under which a key decrypted from the EncryptedKey is cached.
+     * 
+     * @param encryptedKey the EncryptedKey
+     * @param algorithm the algorithm associated with the decrypted key
+     * @return the cache key, or null if the cache is disabled or the EncryptedKey can not be cached
+     */
+    private String getDecryptedKeyCacheKey(EncryptedKey encryptedKey, String algorithm) {
+        if (decryptedKeyCache == null) {
+            return null;
+        }
+        return buildDecryptedKeyCacheKey(encryptedKey, algorithm);
+    }
+
+    /**
+     * Looks up a key previously decrypted from an identical EncryptedKey.
+     * 
+     * @param cacheKey the key under which the decrypted key is cached, may be null
+     * @return the cached key, or null if the cache is disabled or holds no such key
+     */
+    private Key lookupDecryptedKey(String cacheKey) {
+        Map<String, Key> cache = decryptedKeyCache;
+        if (cache == null || cacheKey == null) {
+            return null;
+        }
+        return cache.get(cacheKey);
+    }
+
+    /**
+     * Resolves the KEK credentials for an EncryptedKey, separating those which match the EncryptedKey's KeyInfo from
+     * the others. The resolver's order is preserved within each list.
+     * 
+     * @param encryptedKey the EncryptedKey for which to resolve KEK credentials
+     * @param matchedCredentials list to which credentials matching the KeyInfo are added
+     * @param unmatchedCredentials list to which all other credentials are added
+     * @throws SecurityException thrown if there is an error resolving the credentials
+     */
+    private void resolveKEKCredentials(EncryptedKey encryptedKey, List<Credential> matchedCredentials,
+            List<Credential> unmatchedCredentials) throws SecurityException {
+        CriteriaSet criteriaSet = buildCredentialCriteria(encryptedKey, kekResolverCriteria);
+        for (Credential cred : kekResolver.resolve(criteriaSet)) {
+            if (matchesKeyInfo(cred, encryptedKey)) {
+                matchedCredentials.add(cred);
+            } else {
+                unmatchedCredentials.add(cred);
+            }
+        }
+    }
+
+    /**
+     * Orders resolved EncryptedKeys so that those whose Recipient attribute explicitly names one of the recipients of
+     * the EncryptedKey resolver come first. The resolver's order is otherwise preserved.
+     * 
+     * @param encryptedKeys the resolved EncryptedKeys
+     * @return the ordered EncryptedKeys
+     */
+    private List<EncryptedKey> orderEncryptedKeys(Iterable<EncryptedKey> encryptedKeys) {
+        List<String> recipients = encKeyResolver.getRecipients();
+        List<EncryptedKey> addressed = new ArrayList<EncryptedKey>();
+        List<EncryptedKey> others = new ArrayList<EncryptedKey>();
+        for (EncryptedKey encryptedKey : encryptedKeys) {
+            String recipient = DatatypeHelper.safeTrimOrNullString(encryptedKey.getRecipient());
+            if (recipient != null && recipients != null && recipients.contains(recipient)) {
+                addressed.add(encryptedKey);
+            } else {
+                others.add(encryptedKey);
+            }
+        }
+        addressed.addAll(others);
+        return addressed;
+    }
+
+    /**
+     * Evaluates whether a KEK credential matches the KeyInfo of an EncryptedKey, without performing any decryption.
+     * 
+     * <p>
+     * A credential matches if one of its key names is given by a KeyName, if its public key is given by a KeyValue
+     * or DEREncodedKeyValue, or, for an {@link X509Credential}, if its entity certificate is given by an
+     * X509Certificate, X509IssuerSerial, X509SKI or X509Digest of an X509Data element. An EncryptedKey without a
+     * KeyInfo matches no credential.
+     * </p>
+     * 
+     * @param credential the KEK credential
+     * @param encryptedKey the EncryptedKey
+     * @return true if the credential positively matches the KeyInfo, false otherwise
+     */
+    protected boolean matchesKeyInfo(Credential credential, EncryptedKey encryptedKey) {
+        KeyInfo keyInfo = encryptedKey.getKeyInfo();
+        if (credential == null || keyInfo == null) {
+            return false;
+        }
+
+        if (!Collections.disjoint(KeyInfoHelper.getKeyNames(keyInfo), credential.getKeyNames())) {
+            return true;
+        }
+
+        PublicKey publicKey = credential.getPublicKey();
+        if (publicKey != null) {
+            try {
+                if (KeyInfoHelper.getPublicKeys(keyInfo).contains(publicKey)) {
+                    return true;
+                }
+            } catch (KeyException e) {
+                log.debug("Unable to extract public keys from EncryptedKey KeyInfo", e);
+            }
+        }
+
+        if (!(credential instanceof X509Credential)) {
+            return false;
+        }
+        X509Certificate entityCert = ((X509Credential) credential).getEntityCertificate();
+        if (entityCert == null) {
+            return false;
+        }
+        for (X509Data x509Data : keyInfo.getX509Datas()) {
+            if (matchesX509Data(entityCert, x509Data)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates whether an X509Data element identifies the given certificate.
+     * 
+     * @param certificate the certificate
+     * @param x509Data the X509Data element
+     * @return true if the certificate is identified by the X509Data, false otherwise
+     */
+    private boolean matchesX509Data(X509Certificate certificate, X509Data x509Data) {
+        for (org.opensaml.xml.signature.X509Certificate xmlCert : x509Data.getX509Certificates()) {
+            try {
+                if (certificate.equals(KeyInfoHelper.getCertificate(xmlCert))) {
+                    return true;
+                }
+            } catch (CertificateException e) {
+                log.debug("Unable to decode certificate from EncryptedKey KeyInfo", e);
+            }
+        }
+
+        for (X509IssuerSerial issuerSerial : x509Data.getX509IssuerSerials()) {
+            if (issuerSerial.getX509IssuerName() == null || issuerSerial.getX509SerialNumber() == null) {
+                continue;
+            }
+            String issuerName = DatatypeHelper.safeTrimOrNullString(issuerSerial.getX509IssuerName().getValue());
+            BigInteger serialNumber = issuerSerial.getX509SerialNumber().getValue();
+            if (issuerName == null || serialNumber == null || !serialNumber.equals(certificate.getSerialNumber())) {
+                continue;
+            }
+            try {
+                if (certificate.getIssuerX500Principal().equals(new X500Principal(issuerName))) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                log.debug("Unable to parse X509IssuerName from EncryptedKey KeyInfo: {}", issuerName);
+            }
+        }
+
+        if (!x509Data.getX509SKIs().isEmpty()) {
+            byte[] certSKI = X509Util.getSubjectKeyIdentifier(certificate);
+            if (certSKI != null) {
+                for (X509SKI ski : x509Data.getX509SKIs()) {
+                    if (!DatatypeHelper.isEmpty(ski.getValue())
+                            && Arrays.equals(certSKI, Base64.decode(ski.getValue()))) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        for (XMLObject xmlObject : x509Data.getXMLObjects(X509Digest.DEFAULT_ELEMENT_NAME)) {
+            X509Digest digest = (X509Digest) xmlObject;
+            if (DatatypeHelper.isEmpty(digest.getValue()) || DatatypeHelper.isEmpty(digest.getAlgorithm())) {
+                continue;
+            }
+            try {
+                if (Arrays.equals(X509Util.getX509Digest(certificate, digest.getAlgorithm()),
+                        Base64.decode(digest.getValue()))) {
+                    return true;
+                }
+            } catch (SecurityException e) {
+                log.debug("Unable to compute digest of KEK credential certificate", e);
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Parse the specified input stream in a DOM DocumentFragment, owned by the specified Document.
      * 
@@ -1053,6 +1614,61 @@ public class Decrypter {
      * return domImplLS; }
      */
 
+    /**
+     * An input stream over the characters of a character sequence, each of which is read as a single octet.
+     * 
+     * <p>
+     * This is only suitable for character sequences which are known to contain solely US-ASCII characters, such as
+     * Base64-encoded data.
+     * </p>
+     */
+    private static class CharSequenceInputStream extends InputStream {
+
+        /** Characters to read. */
+        private final CharSequence chars;
+
+        /** Index of the next character to read. */
+        private int position;
+
+        /**
+         * Constructor.
+         * 
+         * @param source characters to read
+         */
+        public CharSequenceInputStream(CharSequence source) {
+            chars = source;
+        }
+
+        /** {@inheritDoc} */
+        public int read() {
+            if (position >= chars.length()) {
+                return -1;
+            }
+            return chars.charAt(position++) & 0xFF;
+        }
+
+        /** {@inheritDoc} */
+        public int read(byte[] b, int off, int len) {
+            int remaining = chars.length() - position;
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = Math.min(len, remaining);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = (byte) chars.charAt(position++);
+            }
+            return count;
+        }
+
+        /** {@inheritDoc} */
+        public int available() {
+            return chars.length() - position;
+        }
+    }
+
     /*
      * Initialize the Apache XML security library if it hasn't been already
      */
@@ -1060,6 +1676,13 @@ public class Decrypter {
         if (!Init.isInitialized()) {
             Init.init();
         }
+
+        Set<String> algorithms = new HashSet<String>();
+        algorithms.add(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128);
+        algorithms.add(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES192);
+        algorithms.add(EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES256);
+        algorithms.add(EncryptionConstants.ALGO_ID_BLOCKCIPHER_TRIPLEDES);
+        STREAMING_ALGORITHMS = Collections.unmodifiableSet(algorithms);
     }
 
 }
\ No newline at end of file
@@ -44,8 +44,14 @@ import org.w3c.dom.Element;
  * <li>Setting namespaces attributes declared for the element</li>
  * <li>Marshalling of child elements</li>
  * </ul>
+ * 
+ * <p>
+ * The same hooks are used to write XMLObjects directly to a stream, as a {@link StreamMarshaller}. The hooks then
+ * marshall into the scope element held by the {@link StreamMarshallingContext}, from which the start tag and content
+ * are written, while child elements are written by the context.
+ * </p>
  */
-public abstract class AbstractXMLObjectMarshaller implements Marshaller {
+public abstract class AbstractXMLObjectMarshaller implements StreamMarshaller {
 
     /** Class logger. */
     private final Logger log = LoggerFactory.getLogger(AbstractXMLObjectMarshaller.class);
@@ -181,6 +187,39 @@ public abstract class AbstractXMLObjectMarshaller implements Marshaller {
 
     }
 
+    /** {@inheritDoc} */
+    public void marshall(XMLObject xmlObject, StreamMarshallingContext context) throws MarshallingException {
+        log.trace("Starting to stream marshall {}", xmlObject.getElementQName());
+
+        checkXMLObjectIsTarget(xmlObject);
+
+        Element scope = context.getCurrentScope();
+        marshallNamespacePrefix(xmlObject, scope);
+
+        marshallSchemaInstanceAttributes(xmlObject, scope);
+
+        marshallNamespaces(xmlObject, scope);
+
+        marshallAttributes(xmlObject, scope);
+
+        context.writeStartElement();
+
+        List<XMLObject> childXMLObjects = xmlObject.getOrderedChildren();
+        if (childXMLObjects != null) {
+            for (XMLObject childXMLObject : childXMLObjects) {
+                if (childXMLObject != null) {
+                    log.trace("Writing child {} of {}", childXMLObject.getElementQName(), xmlObject.getElementQName());
+                    context.marshallElement(childXMLObject);
+                }
+            }
+        }
+
+        marshallElementContent(xmlObject, scope);
+        context.writeContent();
+
+        context.writeEndElement();
+    }
+
     /**
      * Sets the given element as the Document Element of the given Document. If the document already has a Document
      * Element it is replaced by the given element.
@@ -18,6 +18,8 @@
 package org.opensaml.xml.io;
 
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 
 import org.opensaml.xml.Configuration;
 import org.opensaml.xml.Namespace;
@@ -48,8 +50,15 @@ import org.w3c.dom.Text;
  * to retrieve the textual content. This is probably exceptable in almost all cases, if, however, you need to deal with
  * elements that contain multiple text node children you will need to override
  * {@link #unmarshallTextContent(XMLObject, Text)} and do "the right thing" for your implementation.
+ * 
+ * <p>
+ * When unmarshalling from a stream, the same hooks are invoked with the context's scope element standing in for the
+ * DOM element: attributes are those of the scope element, and all character data between two element boundaries is
+ * passed to {@link #unmarshallTextContent(XMLObject, Text)} as a single Text node appended to the scope element for
+ * the duration of the call. Whitespace-only character data is skipped.
+ * </p>
  */
-public abstract class AbstractXMLObjectUnmarshaller implements Unmarshaller {
+public abstract class AbstractXMLObjectUnmarshaller implements StreamUnmarshaller {
 
     /** Class logger. */
     private final Logger log = LoggerFactory.getLogger(AbstractXMLObjectUnmarshaller.class);
@@ -137,6 +146,48 @@ public abstract class AbstractXMLObjectUnmarshaller implements Unmarshaller {
         return xmlObject;
     }
 
+    /** {@inheritDoc} */
+    public XMLObject unmarshall(StreamUnmarshallingContext context) throws UnmarshallingException {
+        Element scopeElement = context.getCurrentScope();
+        if (log.isTraceEnabled()) {
+            log.trace("Starting to unmarshall streamed element {}", XMLHelper.getNodeQName(scopeElement));
+        }
+
+        checkElementIsTarget(scopeElement);
+
+        XMLObject xmlObject = buildXMLObject(scopeElement);
+
+        NamedNodeMap attributes = scopeElement.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            unmarshallAttribute(xmlObject, (Attr) attributes.item(i));
+        }
+
+        XMLStreamReader reader = context.getReader();
+        StringBuilder characters = null;
+        while (true) {
+            switch (context.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    unmarshallStreamTextContent(xmlObject, scopeElement, characters);
+                    processChildElement(xmlObject, context.unmarshallElement());
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (characters == null) {
+                        characters = new StringBuilder();
+                    }
+                    characters.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    unmarshallStreamTextContent(xmlObject, scopeElement, characters);
+                    return xmlObject;
+                default:
+                    // comments and processing instructions are not unmarshalled
+                    break;
+            }
+        }
+    }
+
     /**
      * Checks that the given DOM Element's XSI type or namespace qualified element name matches the target QName of this
      * unmarshaller.
@@ -146,15 +197,25 @@ public abstract class AbstractXMLObjectUnmarshaller implements Unmarshaller {
      * @throws UnmarshallingException thrown if the DOM Element does not match the target of this unmarshaller
      */
     protected void checkElementIsTarget(Element domElement) throws UnmarshallingException {
-        QName elementName = XMLHelper.getNodeQName(domElement);
-
         if (targetQName == null) {
-            log.trace(
-                    "Targeted QName checking is not available for this unmarshaller, DOM Element {} was not verified",
-                    elementName);
+            if (log.isTraceEnabled()) {
+                log.trace("Targeted QName checking is not available for this unmarshaller, "
+                        + "DOM Element {} was not verified", XMLHelper.getNodeQName(domElement));
+            }
+            return;
+        }
+
+        // The element name is checked first since, unlike the schema type, it can be compared without building a QName
+        String namespaceURI = domElement.getNamespaceURI();
+        if (targetQName.getLocalPart().equals(domElement.getLocalName())
+                && targetQName.getNamespaceURI().equals(namespaceURI == null ? "" : namespaceURI)) {
+            if (log.isTraceEnabled()) {
+                log.trace("{} element name matches target.", XMLHelper.getNodeQName(domElement));
+            }
             return;
         }
 
+        QName elementName = XMLHelper.getNodeQName(domElement);
         log.trace("Checking that {} meets target criteria.", elementName);
 
         QName type = XMLHelper.getXSIType(domElement);
@@ -163,14 +224,9 @@ public abstract class AbstractXMLObjectUnmarshaller implements Unmarshaller {
             log.trace("{} schema type matches target.", elementName);
             return;
         } else {
-            if (elementName.equals(targetQName)) {
-                log.trace("{} element name matches target.", elementName);
-                return;
-            } else {
-                String errorMsg = "This unmarshaller only operates on " + targetQName + " elements not " + elementName;
-                log.error(errorMsg);
-                throw new UnmarshallingException(errorMsg);
-            }
+            String errorMsg = "This unmarshaller only operates on " + targetQName + " elements not " + elementName;
+            log.error(errorMsg);
+            throw new UnmarshallingException(errorMsg);
         }
     }
 
@@ -372,6 +428,38 @@ public abstract class AbstractXMLObjectUnmarshaller implements Unmarshaller {
         }
     }
 
+    /**
+     * Passes the character data read from a stream since the last element boundary to
+     * {@link #unmarshallTextContent(XMLObject, Text)}, as a Text node temporarily appended to the scope element, and
+     * clears the buffer. Whitespace-only character data is skipped.
+     * 
+     * @param xmlObject the XMLObject recieving the element content
+     * @param scopeElement the scope element of the XMLObject
+     * @param characters the buffered character data, may be null
+     * 
+     * @throws UnmarshallingException thrown if there is a problem unmarshalling the text content
+     */
+    private void unmarshallStreamTextContent(XMLObject xmlObject, Element scopeElement, StringBuilder characters)
+            throws UnmarshallingException {
+        if (characters == null || characters.length() == 0) {
+            return;
+        }
+
+        String textContent = characters.toString();
+        characters.setLength(0);
+        if (DatatypeHelper.safeTrimOrNullString(textContent) == null) {
+            return;
+        }
+
+        Text text = scopeElement.getOwnerDocument().createTextNode(textContent);
+        scopeElement.appendChild(text);
+        try {
+            unmarshallTextContent(xmlObject, text);
+        } finally {
+            scopeElement.removeChild(text);
+        }
+    }
+
     /**
      * Called after a child element has been unmarshalled so that it can be added to the parent XMLObject.
      * 
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opensaml.xml.io;
+
+import org.opensaml.xml.XMLObject;
+
+/**
+ * Stream marshallers write a {@link org.opensaml.xml.XMLObject} directly to a
+ * {@link javax.xml.stream.XMLStreamWriter}, without first marshalling it into a W3C DOM.
+ * 
+ * <p>
+ * Stream marshallers are invoked by a {@link StreamMarshallerDriver}. Marshallers registered with the
+ * {@link MarshallerFactory} which do not implement this interface marshall the XMLObject into a DOM, which is then
+ * written to the stream. XMLObjects which already cache a DOM are always written from that DOM. XMLObjects written by
+ * a stream marshaller do not cache a DOM.
+ * </p>
+ */
+public interface StreamMarshaller extends Marshaller {
+
+    /**
+     * Writes the given XMLObject, and its children, to the context's writer.
+     * 
+     * <p>
+     * On entry the context's current scope is the scope element of the XMLObject. The marshaller must write the
+     * complete element: its start tag with {@link StreamMarshallingContext#writeStartElement()}, its children with
+     * {@link StreamMarshallingContext#marshallElement(XMLObject)}, any content added to the scope element with
+     * {@link StreamMarshallingContext#writeContent()}, and finally its end tag with
+     * {@link StreamMarshallingContext#writeEndElement()}.
+     * </p>
+     * 
+     * @param xmlObject the XMLObject to marshall
+     * @param context the context of the stream being written
+     * 
+     * @throws MarshallingException thrown if there is a problem marshalling or writing the given object
+     */
+    public void marshall(XMLObject xmlObject, StreamMarshallingContext context) throws MarshallingException;
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opensaml.xml.io;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.parse.DocumentFactory;
+import org.opensaml.xml.parse.XMLParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+/**
+ * Marshalls XMLObjects directly to a {@link javax.xml.stream} stream, without building a W3C DOM of the whole tree
+ * first.
+ * 
+ * <p>
+ * Each XMLObject is marshalled by the marshaller registered for it with the {@link MarshallerFactory}. Marshallers
+ * which implement {@link StreamMarshaller}, which includes all those derived from {@link AbstractXMLObjectMarshaller},
+ * write the XMLObject to the stream and leave it without a cached DOM. XMLObjects whose marshaller does not support
+ * streaming are marshalled into a DOM of their own, which is then written and remains cached.
+ * </p>
+ * 
+ * <p>
+ * XMLObjects which already cache a DOM, such as signed XMLObjects, are written from that DOM exactly as it is, so
+ * that signatures computed over it remain valid. Unsigned XMLObjects with signature children must not be written by
+ * this driver, since a signature can only be computed over a DOM; marshall and sign them first.
+ * </p>
+ * 
+ * <p>
+ * Instances of this class are thread-safe once configured.
+ * </p>
+ */
+public class StreamMarshallerDriver {
+
+    /** Encoding of the documents written to byte streams. */
+    public static final String DEFAULT_ENCODING = "UTF-8";
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(StreamMarshallerDriver.class);
+
+    /** Factory used to create stream writers. */
+    private final XMLOutputFactory outputFactory;
+
+    /** Factory used to create the documents holding scope elements and XMLObjects marshalled to DOM. */
+    private final DocumentFactory documentFactory;
+
+    /**
+     * Constructor.
+     * 
+     * @param factory factory used to create the documents holding XMLObjects marshalled to DOM, for example the parser
+     *            pool
+     */
+    public StreamMarshallerDriver(DocumentFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Document factory may not be null");
+        }
+        documentFactory = factory;
+
+        outputFactory = XMLOutputFactory.newInstance();
+        outputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, Boolean.FALSE);
+    }
+
+    /**
+     * Gets the factory used to create the documents holding XMLObjects marshalled to DOM.
+     * 
+     * @return the document factory
+     */
+    public DocumentFactory getDocumentFactory() {
+        return documentFactory;
+    }
+
+    /**
+     * Gets the factory used to create stream writers. Changes to its configuration must be made before the driver is
+     * used.
+     * 
+     * @return the stream writer factory
+     */
+    public XMLOutputFactory getOutputFactory() {
+        return outputFactory;
+    }
+
+    /**
+     * Writes an XMLObject as the document element of an XML document encoded in {@link #DEFAULT_ENCODING}.
+     * 
+     * @param xmlObject the XMLObject to write
+     * @param output the stream to write to, which is flushed but not closed
+     * 
+     * @throws MarshallingException thrown if the XMLObject can not be marshalled or written
+     */
+    public void marshall(XMLObject xmlObject, OutputStream output) throws MarshallingException {
+        XMLStreamWriter writer;
+        try {
+            writer = outputFactory.createXMLStreamWriter(output, DEFAULT_ENCODING);
+        } catch (XMLStreamException e) {
+            throw new MarshallingException("Unable to create XML stream writer", e);
+        }
+        marshallDocumentAndClose(xmlObject, writer);
+    }
+
+    /**
+     * Writes an XMLObject as the document element of an XML document. The XML declaration states
+     * {@link #DEFAULT_ENCODING}, as the DOM serializer does for character output.
+     * 
+     * @param xmlObject the XMLObject to write
+     * @param output the writer to write to, which is flushed but not closed
+     * 
+     * @throws MarshallingException thrown if the XMLObject can not be marshalled or written
+     */
+    public void marshall(XMLObject xmlObject, Writer output) throws MarshallingException {
+        XMLStreamWriter writer;
+        try {
+            writer = outputFactory.createXMLStreamWriter(output);
+        } catch (XMLStreamException e) {
+            throw new MarshallingException("Unable to create XML stream writer", e);
+        }
+        marshallDocumentAndClose(xmlObject, writer);
+    }
+
+    /**
+     * Writes an XMLObject as an element of a stream. The namespace declarations already written to the stream are not
+     * known to the driver, so every namespace the element uses is declared within it.
+     * 
+     * @param xmlObject the XMLObject to write
+     * @param writer the stream writer, which is neither flushed nor closed
+     * 
+     * @throws MarshallingException thrown if the XMLObject can not be marshalled or written
+     */
+    public void marshall(XMLObject xmlObject, XMLStreamWriter writer) throws MarshallingException {
+        if (xmlObject == null) {
+            throw new MarshallingException("XMLObject may not be null");
+        }
+
+        Document scopeDocument;
+        try {
+            scopeDocument = documentFactory.newDocument();
+        } catch (XMLParserException e) {
+            throw new MarshallingException("Unable to create document for scope elements", e);
+        }
+
+        new StreamMarshallingContext(this, writer, scopeDocument).marshallElement(xmlObject);
+    }
+
+    /**
+     * Gets the marshaller for an XMLObject, falling back to the marshaller of the default provider.
+     * 
+     * @param xmlObject the XMLObject
+     * 
+     * @return the marshaller
+     * 
+     * @throws MarshallingException thrown if there is no marshaller for the XMLObject
+     */
+    Marshaller getMarshaller(XMLObject xmlObject) throws MarshallingException {
+        MarshallerFactory marshallerFactory = Configuration.getMarshallerFactory();
+        Marshaller marshaller = marshallerFactory.getMarshaller(xmlObject);
+        if (marshaller == null) {
+            marshaller = marshallerFactory.getMarshaller(Configuration.getDefaultProviderQName());
+            if (marshaller == null) {
+                String errorMsg = "No marshaller available for " + xmlObject.getElementQName();
+                log.error(errorMsg);
+                throw new MarshallingException(errorMsg);
+            }
+            log.trace("No marshaller was registered for {}. Using default marshaller.", xmlObject.getElementQName());
+        }
+        return marshaller;
+    }
+
+    /**
+     * Writes an XMLObject as the document element of an XML document, and closes the stream writer.
+     * 
+     * @param xmlObject the XMLObject to write
+     * @param writer the stream writer
+     * 
+     * @throws MarshallingException thrown if the XMLObject can not be marshalled or written
+     */
+    private void marshallDocumentAndClose(XMLObject xmlObject, XMLStreamWriter writer) throws MarshallingException {
+        try {
+            writer.writeStartDocument(DEFAULT_ENCODING, "1.0");
+            marshall(xmlObject, writer);
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new MarshallingException("Unable to write to XML stream", e);
+        } finally {
+            try {
+                writer.close();
+            } catch (XMLStreamException e) {
+                log.debug("Unable to close XML stream writer", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,514 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opensaml.xml.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.parse.XMLParserException;
+import org.opensaml.xml.util.XMLConstants;
+import org.opensaml.xml.util.XMLHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The state of a single stream being written by a {@link StreamMarshallerDriver}.
+ * 
+ * <p>
+ * While an XMLObject is being marshalled the context holds a <em>scope element</em> for it: a DOM element carrying the
+ * XMLObject's name, into which the DOM-based hooks of existing marshallers, such as
+ * {@link AbstractXMLObjectMarshaller#marshallAttributes(XMLObject, Element)}, place the namespace declarations,
+ * attributes and content of the XMLObject as they would when building a DOM. Scope elements are attached beneath the
+ * scope elements of their ancestors, so that namespaces declared on an ancestor are not declared again. Only the
+ * scope elements of the current XMLObject and its ancestors are held, and each is discarded once its XMLObject has
+ * been written.
+ * </p>
+ * 
+ * <p>
+ * The context tracks the namespace bindings written to the stream. Any namespace used by an element or attribute name
+ * which is not bound where it is used is declared on the element, so the output is namespace well-formed even where
+ * the written DOM relied on declarations made outside of it.
+ * </p>
+ * 
+ * <p>
+ * Contexts are created by the driver and must only be used by a single thread.
+ * </p>
+ */
+public class StreamMarshallingContext {
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(StreamMarshallingContext.class);
+
+    /** Driver which created this context. */
+    private final StreamMarshallerDriver driver;
+
+    /** Writer of the stream being marshalled. */
+    private final XMLStreamWriter writer;
+
+    /** Document owning the scope elements. */
+    private final Document scopeDocument;
+
+    /** Scope element of the XMLObject currently being marshalled, or null if none. */
+    private Element currentScope;
+
+    /** Scope element whose start tag is still to be written, or null if none. */
+    private Element pendingStartTag;
+
+    /** Prefixes of the namespace bindings in scope on the stream, innermost last. The default namespace is "". */
+    private final List<String> boundPrefixes;
+
+    /** Namespace URIs of the namespace bindings in scope on the stream, innermost last. */
+    private final List<String> boundNamespaces;
+
+    /** Index of the first binding declared by each open element of the stream, innermost last. */
+    private final List<Integer> bindingFrames;
+
+    /**
+     * Constructor.
+     * 
+     * @param streamDriver driver which created this context
+     * @param streamWriter writer of the stream being marshalled
+     * @param document document owning the scope elements
+     */
+    StreamMarshallingContext(StreamMarshallerDriver streamDriver, XMLStreamWriter streamWriter, Document document) {
+        driver = streamDriver;
+        writer = streamWriter;
+        scopeDocument = document;
+        boundPrefixes = new ArrayList<String>();
+        boundNamespaces = new ArrayList<String>();
+        bindingFrames = new ArrayList<Integer>();
+    }
+
+    /**
+     * Gets the writer of the stream being marshalled.
+     * 
+     * @return the writer
+     */
+    public XMLStreamWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Gets the scope element of the XMLObject currently being marshalled.
+     * 
+     * @return the scope element, or null if no XMLObject is being marshalled
+     */
+    public Element getCurrentScope() {
+        return currentScope;
+    }
+
+    /**
+     * Writes an XMLObject, and its children, to the stream.
+     * 
+     * <p>
+     * If the XMLObject caches a DOM, that DOM is written. Otherwise, if its marshaller is a {@link StreamMarshaller}
+     * the XMLObject is marshalled directly to the stream, and if not it is marshalled into a new DOM document which is
+     * then written.
+     * </p>
+     * 
+     * @param xmlObject the XMLObject to write
+     * 
+     * @throws MarshallingException thrown if the XMLObject can not be marshalled or written
+     */
+    public void marshallElement(XMLObject xmlObject) throws MarshallingException {
+        writePendingStartTag(false);
+
+        Element domElement = xmlObject.getDOM();
+        if (domElement != null) {
+            log.trace("Writing cached DOM of XMLObject {}", xmlObject.getElementQName());
+            writeNode(domElement);
+            return;
+        }
+
+        Marshaller marshaller = driver.getMarshaller(xmlObject);
+        if (marshaller instanceof StreamMarshaller) {
+            Element scope = startScope(xmlObject);
+            try {
+                ((StreamMarshaller) marshaller).marshall(xmlObject, this);
+            } finally {
+                endScope(scope);
+            }
+            return;
+        }
+
+        if (log.isTraceEnabled()) {
+            log.trace("Marshalling XMLObject {} into a DOM for marshaller {}", xmlObject.getElementQName(),
+                    marshaller.getClass().getName());
+        }
+        Document document;
+        try {
+            document = driver.getDocumentFactory().newDocument();
+        } catch (XMLParserException e) {
+            throw new MarshallingException("Unable to create DOM document for XMLObject "
+                    + xmlObject.getElementQName(), e);
+        }
+        writeNode(marshaller.marshall(xmlObject, document));
+    }
+
+    /**
+     * Starts the element of the current scope element. Its start tag, with its namespace declarations and attributes
+     * and any further declarations its name and attributes require, is written once the element's first child or
+     * content is written, or as an empty element tag if it has neither. The scope element must therefore carry all
+     * of its attributes when this method is called.
+     * 
+     * @throws MarshallingException thrown if the start tag of an enclosing element can not be written
+     */
+    public void writeStartElement() throws MarshallingException {
+        writePendingStartTag(false);
+        pendingStartTag = currentScope;
+    }
+
+    /**
+     * Writes the child nodes of the current scope element, such as the text content added by
+     * {@link AbstractXMLObjectMarshaller#marshallElementContent(XMLObject, Element)}, and removes them from it.
+     * 
+     * @throws MarshallingException thrown if the content can not be written
+     */
+    public void writeContent() throws MarshallingException {
+        if (!currentScope.hasChildNodes()) {
+            return;
+        }
+        writePendingStartTag(false);
+
+        Node child = currentScope.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            writeNode(child);
+            currentScope.removeChild(child);
+            child = next;
+        }
+    }
+
+    /**
+     * Writes the end tag of the innermost open element.
+     * 
+     * @throws MarshallingException thrown if the end tag can not be written
+     */
+    public void writeEndElement() throws MarshallingException {
+        if (pendingStartTag != null) {
+            writePendingStartTag(true);
+        } else {
+            try {
+                writer.writeEndElement();
+            } catch (XMLStreamException e) {
+                throw new MarshallingException("Unable to write to XML stream", e);
+            }
+        }
+        popBindings();
+    }
+
+    /**
+     * Writes the start tag of the scope element started by {@link #writeStartElement()}, if it has not yet been
+     * written, and records the declarations added to it on the scope element, so descendants do not declare them
+     * again.
+     * 
+     * @param empty whether to write an empty element tag
+     * 
+     * @throws MarshallingException thrown if the start tag can not be written
+     */
+    private void writePendingStartTag(boolean empty) throws MarshallingException {
+        if (pendingStartTag == null) {
+            return;
+        }
+        Element scope = pendingStartTag;
+        pendingStartTag = null;
+
+        int firstBinding = boundPrefixes.size();
+        writeStartTag(scope, empty);
+        for (int i = firstBinding; i < boundPrefixes.size(); i++) {
+            String prefix = boundPrefixes.get(i);
+            String attributeName = prefix.length() == 0 ? XMLConstants.XMLNS_PREFIX : prefix;
+            if (!scope.hasAttributeNS(XMLConstants.XMLNS_NS, attributeName)) {
+                XMLHelper.appendNamespaceDeclaration(scope, boundNamespaces.get(i), prefix);
+            }
+        }
+    }
+
+    /**
+     * Discards the namespace bindings declared by the innermost open element.
+     */
+    private void popBindings() {
+        int firstBinding = bindingFrames.remove(bindingFrames.size() - 1);
+        for (int i = boundPrefixes.size() - 1; i >= firstBinding; i--) {
+            boundPrefixes.remove(i);
+            boundNamespaces.remove(i);
+        }
+    }
+
+    /**
+     * Creates the scope element of an XMLObject and makes it the current scope.
+     * 
+     * @param xmlObject the XMLObject about to be marshalled
+     * 
+     * @return the new scope element
+     */
+    private Element startScope(XMLObject xmlObject) {
+        Element scope = XMLHelper.constructElement(scopeDocument, xmlObject.getElementQName());
+        if (currentScope != null) {
+            currentScope.appendChild(scope);
+        }
+        currentScope = scope;
+        return scope;
+    }
+
+    /**
+     * Discards a scope element, making the scope of its parent XMLObject current.
+     * 
+     * @param scope the scope element to discard
+     */
+    private void endScope(Element scope) {
+        Node parent = scope.getParentNode();
+        if (parent != null) {
+            parent.removeChild(scope);
+            currentScope = (Element) parent;
+        } else {
+            currentScope = null;
+        }
+    }
+
+    /**
+     * Writes a DOM node, and its descendants, to the stream.
+     * 
+     * @param node the node to write
+     * 
+     * @throws MarshallingException thrown if the node can not be written
+     */
+    private void writeNode(Node node) throws MarshallingException {
+        try {
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    if (node.hasChildNodes()) {
+                        writeStartTag((Element) node, false);
+                        writeChildNodes(node);
+                        writer.writeEndElement();
+                    } else {
+                        writeStartTag((Element) node, true);
+                    }
+                    popBindings();
+                    break;
+                case Node.TEXT_NODE:
+                    writer.writeCharacters(node.getNodeValue());
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    writer.writeCData(node.getNodeValue());
+                    break;
+                case Node.COMMENT_NODE:
+                    writer.writeComment(node.getNodeValue());
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    writer.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+                    break;
+                case Node.ENTITY_REFERENCE_NODE:
+                    writeChildNodes(node);
+                    break;
+                default:
+                    break;
+            }
+        } catch (XMLStreamException e) {
+            throw new MarshallingException("Unable to write to XML stream", e);
+        }
+    }
+
+    /**
+     * Writes the child nodes of a DOM node to the stream.
+     * 
+     * @param node the node whose children are written
+     * 
+     * @throws MarshallingException thrown if a node can not be written
+     */
+    private void writeChildNodes(Node node) throws MarshallingException {
+        Node child = node.getFirstChild();
+        while (child != null) {
+            writeNode(child);
+            child = child.getNextSibling();
+        }
+    }
+
+    /**
+     * Writes the start tag of an element, with its namespace declarations and attributes, and any further
+     * declarations its name and attributes require, and opens a new frame of namespace bindings.
+     * 
+     * @param element the element
+     * @param empty whether to write an empty element tag
+     * 
+     * @throws MarshallingException thrown if the start tag can not be written or the element declares a prefix twice
+     */
+    private void writeStartTag(Element element, boolean empty) throws MarshallingException {
+        String prefix = emptyIfNull(element.getPrefix());
+        String namespaceURI = emptyIfNull(element.getNamespaceURI());
+        try {
+            if (empty) {
+                writer.writeEmptyElement(prefix, localName(element), namespaceURI);
+            } else {
+                writer.writeStartElement(prefix, localName(element), namespaceURI);
+            }
+            bindingFrames.add(boundPrefixes.size());
+
+            NamedNodeMap attributes = element.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Attr attribute = (Attr) attributes.item(i);
+                if (XMLConstants.XMLNS_NS.equals(attribute.getNamespaceURI())) {
+                    String declaredPrefix = XMLConstants.XMLNS_PREFIX.equals(attribute.getPrefix()) ? attribute
+                            .getLocalName() : "";
+                    declareNamespace(declaredPrefix, attribute.getValue());
+                }
+            }
+
+            ensureDeclared(prefix, namespaceURI);
+
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Attr attribute = (Attr) attributes.item(i);
+                String attributeNamespace = emptyIfNull(attribute.getNamespaceURI());
+                if (attributeNamespace.length() == 0) {
+                    writer.writeAttribute(localName(attribute), attribute.getValue());
+                } else if (!XMLConstants.XMLNS_NS.equals(attributeNamespace)) {
+                    String attributePrefix = emptyIfNull(attribute.getPrefix());
+                    if (attributePrefix.length() == 0) {
+                        attributePrefix = lookupPrefix(attributeNamespace);
+                    }
+                    ensureDeclared(attributePrefix, attributeNamespace);
+                    writer.writeAttribute(attributePrefix, attributeNamespace, localName(attribute), attribute
+                            .getValue());
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new MarshallingException("Unable to write to XML stream", e);
+        }
+    }
+
+    /**
+     * Declares a namespace on the element whose start tag is being written, unless the prefix is already bound to
+     * the namespace.
+     * 
+     * @param prefix the namespace prefix, "" for the default namespace
+     * @param namespaceURI the namespace URI, "" for no namespace
+     * 
+     * @throws XMLStreamException thrown if the declaration can not be written
+     * @throws MarshallingException thrown if the element already declares the prefix for another namespace
+     */
+    private void ensureDeclared(String prefix, String namespaceURI) throws XMLStreamException,
+            MarshallingException {
+        if (!XMLConstants.XML_PREFIX.equals(prefix) && !namespaceURI.equals(lookupNamespaceURI(prefix))) {
+            declareNamespace(prefix, namespaceURI);
+        }
+    }
+
+    /**
+     * Declares a namespace on the element whose start tag is being written.
+     * 
+     * @param prefix the namespace prefix, "" for the default namespace
+     * @param namespaceURI the namespace URI, "" for no namespace
+     * 
+     * @throws XMLStreamException thrown if the declaration can not be written
+     * @throws MarshallingException thrown if the element already declares the prefix for another namespace
+     */
+    private void declareNamespace(String prefix, String namespaceURI) throws XMLStreamException,
+            MarshallingException {
+        for (int i = bindingFrames.get(bindingFrames.size() - 1); i < boundPrefixes.size(); i++) {
+            if (boundPrefixes.get(i).equals(prefix)) {
+                if (boundNamespaces.get(i).equals(namespaceURI)) {
+                    return;
+                }
+                throw new MarshallingException("Namespace prefix '" + prefix + "' is declared for both "
+                        + boundNamespaces.get(i) + " and " + namespaceURI + " on the same element");
+            }
+        }
+
+        if (prefix.length() == 0) {
+            writer.writeDefaultNamespace(namespaceURI);
+        } else {
+            writer.writeNamespace(prefix, namespaceURI);
+        }
+        boundPrefixes.add(prefix);
+        boundNamespaces.add(namespaceURI);
+    }
+
+    /**
+     * Looks up the namespace URI bound to a prefix on the stream.
+     * 
+     * @param prefix the namespace prefix, "" for the default namespace
+     * 
+     * @return the bound namespace URI, "" if the prefix is that of the undeclared default namespace, or null if the
+     *         prefix is not bound
+     */
+    private String lookupNamespaceURI(String prefix) {
+        for (int i = boundPrefixes.size() - 1; i >= 0; i--) {
+            if (boundPrefixes.get(i).equals(prefix)) {
+                return boundNamespaces.get(i);
+            }
+        }
+        if (prefix.length() == 0) {
+            return "";
+        }
+        return null;
+    }
+
+    /**
+     * Gets a non-default prefix for a namespace: one bound to it on the stream, or otherwise a generated prefix which
+     * is not bound.
+     * 
+     * @param namespaceURI the namespace URI
+     * 
+     * @return the prefix
+     */
+    private String lookupPrefix(String namespaceURI) {
+        for (int i = boundPrefixes.size() - 1; i >= 0; i--) {
+            String prefix = boundPrefixes.get(i);
+            if (prefix.length() > 0 && namespaceURI.equals(lookupNamespaceURI(prefix))) {
+                return prefix;
+            }
+        }
+
+        int suffix = 1;
+        while (lookupNamespaceURI("ns" + suffix) != null) {
+            suffix++;
+        }
+        return "ns" + suffix;
+    }
+
+    /**
+     * Gets the local name of a DOM node, which for nodes created without namespace support is its node name.
+     * 
+     * @param node the node
+     * 
+     * @return the local name
+     */
+    private String localName(Node node) {
+        String localName = node.getLocalName();
+        return localName != null ? localName : node.getNodeName();
+    }
+
+    /**
+     * Normalizes a null string to the empty string.
+     * 
+     * @param value the string
+     * 
+     * @return the string, or "" if it is null
+     */
+    private String emptyIfNull(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.io;
+
+import org.opensaml.xml.XMLObject;
+
+/**
+ * Stream unmarshallers build a {@link org.opensaml.xml.XMLObject} directly from the events of a
+ * {@link javax.xml.stream.XMLStreamReader}, without first parsing the element into a W3C DOM.
+ * 
+ * <p>
+ * Stream unmarshallers are invoked by a {@link StreamUnmarshallerDriver}. Unmarshallers registered with the
+ * {@link UnmarshallerFactory} which do not implement this interface are given a DOM of the element's subtree instead.
+ * XMLObjects unmarshalled from a stream do not cache a DOM.
+ * </p>
+ */
+public interface StreamUnmarshaller extends Unmarshaller {
+
+    /**
+     * Unmarshalls the element at which the context's reader is positioned.
+     * 
+     * <p>
+     * On entry the current event of the reader is the START_ELEMENT of the element to be unmarshalled, and the
+     * context's current scope is the element's scope element. On return the current event of the reader must be the
+     * element's matching END_ELEMENT.
+     * </p>
+     * 
+     * @param context the context of the stream being unmarshalled
+     * 
+     * @return the unmarshalled XMLObject
+     * 
+     * @throws UnmarshallingException thrown if an error occurs reading or unmarshalling the element
+     */
+    public XMLObject unmarshall(StreamUnmarshallingContext context) throws UnmarshallingException;
+}
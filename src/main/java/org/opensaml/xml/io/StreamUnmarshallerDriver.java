@@ -0,0 +1,280 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.io;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.parse.DocumentFactory;
+import org.opensaml.xml.parse.XMLParserException;
+import org.opensaml.xml.util.ElementNameIndex;
+import org.opensaml.xml.util.XMLConstants;
+import org.opensaml.xml.util.XMLHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Unmarshalls XMLObjects directly from a {@link javax.xml.stream} stream, without parsing the whole document into a
+ * W3C DOM first.
+ * 
+ * <p>
+ * Each element is unmarshalled by the unmarshaller registered for it with the {@link UnmarshallerFactory}, chosen as
+ * for a DOM element. Unmarshallers which implement {@link StreamUnmarshaller}, which includes all those derived from
+ * {@link AbstractXMLObjectUnmarshaller}, read the element from the stream and the resulting XMLObject caches no DOM.
+ * Elements whose unmarshaller does not support streaming, and elements registered with
+ * {@link #registerDOMElementName(QName)}, are read into a DOM of their own and unmarshalled from it, so that the
+ * resulting XMLObject caches that DOM. By default ds:Signature and xenc:EncryptedData elements are kept as DOM, since
+ * signature validation and decryption operate on it.
+ * </p>
+ * 
+ * <p>
+ * A signature over its enveloping element, such as an enveloped signature, can only be validated if the signed
+ * element itself is kept as DOM. Callers which validate such signatures must register the names of the signed
+ * elements; only those subtrees are then held as DOM, while the rest of the document is unmarshalled from the stream.
+ * </p>
+ * 
+ * <p>
+ * Document type declarations are rejected. Comments are dropped, as they are by the default parser pool
+ * configuration.
+ * </p>
+ * 
+ * <p>
+ * Instances of this class are thread-safe once configured.
+ * </p>
+ */
+public class StreamUnmarshallerDriver {
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(StreamUnmarshallerDriver.class);
+
+    /** Factory used to create stream readers. */
+    private final XMLInputFactory inputFactory;
+
+    /** Factory used to create the documents holding scope elements and elements kept as DOM. */
+    private final DocumentFactory documentFactory;
+
+    /** Names of the elements which are kept as DOM. */
+    private final ElementNameIndex<QName> domElementNames;
+
+    /**
+     * Constructor.
+     * 
+     * @param factory factory used to create the documents holding elements kept as DOM, for example the parser pool
+     */
+    public StreamUnmarshallerDriver(DocumentFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Document factory may not be null");
+        }
+        documentFactory = factory;
+
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+        domElementNames = new ElementNameIndex<QName>();
+        registerDOMElementName(new QName(XMLConstants.XMLSIG_NS, "Signature"));
+        registerDOMElementName(new QName(XMLConstants.XMLENC_NS, "EncryptedData"));
+    }
+
+    /**
+     * Gets the factory used to create the documents holding elements kept as DOM.
+     * 
+     * @return the document factory
+     */
+    public DocumentFactory getDocumentFactory() {
+        return documentFactory;
+    }
+
+    /**
+     * Gets the factory used to create stream readers. Changes to its configuration must be made before the driver is
+     * used.
+     * 
+     * @return the stream reader factory
+     */
+    public XMLInputFactory getInputFactory() {
+        return inputFactory;
+    }
+
+    /**
+     * Registers the name of an element whose subtree is to be read into a DOM and unmarshalled from it.
+     * 
+     * @param elementName the element name
+     */
+    public void registerDOMElementName(QName elementName) {
+        if (elementName == null) {
+            throw new IllegalArgumentException("Element name may not be null");
+        }
+        domElementNames.put(elementName, elementName);
+    }
+
+    /**
+     * Deregisters the name of an element whose subtree is to be read into a DOM and unmarshalled from it.
+     * 
+     * @param elementName the element name
+     */
+    public void deregisterDOMElementName(QName elementName) {
+        if (elementName != null) {
+            domElementNames.remove(elementName);
+        }
+    }
+
+    /**
+     * Checks whether elements with the given name are read into a DOM and unmarshalled from it.
+     * 
+     * @param namespaceURI the namespace URI of the element, may be null
+     * @param localName the local name of the element
+     * 
+     * @return true if the element is kept as DOM, false otherwise
+     */
+    public boolean isDOMElement(String namespaceURI, String localName) {
+        return domElementNames.get(namespaceURI, localName) != null;
+    }
+
+    /**
+     * Unmarshalls the document element of an XML document.
+     * 
+     * @param input the document, which is not closed
+     * 
+     * @return the XMLObject unmarshalled from the document element
+     * 
+     * @throws UnmarshallingException thrown if the document can not be read or unmarshalled
+     */
+    public XMLObject unmarshall(InputStream input) throws UnmarshallingException {
+        XMLStreamReader reader;
+        try {
+            reader = inputFactory.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw new UnmarshallingException("Unable to create XML stream reader", e);
+        }
+        return unmarshallAndClose(reader);
+    }
+
+    /**
+     * Unmarshalls the document element of an XML document.
+     * 
+     * @param input the document, which is not closed
+     * 
+     * @return the XMLObject unmarshalled from the document element
+     * 
+     * @throws UnmarshallingException thrown if the document can not be read or unmarshalled
+     */
+    public XMLObject unmarshall(Reader input) throws UnmarshallingException {
+        XMLStreamReader reader;
+        try {
+            reader = inputFactory.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw new UnmarshallingException("Unable to create XML stream reader", e);
+        }
+        return unmarshallAndClose(reader);
+    }
+
+    /**
+     * Unmarshalls the next element of a stream. Unless it is already positioned at a START_ELEMENT event, the reader is
+     * advanced to the next one, and that element is unmarshalled. On return the reader is positioned at the element's
+     * END_ELEMENT event.
+     * 
+     * @param reader the stream reader
+     * 
+     * @return the XMLObject unmarshalled from the element
+     * 
+     * @throws UnmarshallingException thrown if the stream contains no further element or the element can not be read
+     *             or unmarshalled
+     */
+    public XMLObject unmarshall(XMLStreamReader reader) throws UnmarshallingException {
+        Document scopeDocument;
+        try {
+            scopeDocument = documentFactory.newDocument();
+        } catch (XMLParserException e) {
+            throw new UnmarshallingException("Unable to create document for scope elements", e);
+        }
+
+        StreamUnmarshallingContext context = new StreamUnmarshallingContext(this, reader, scopeDocument);
+        int event = reader.getEventType();
+        while (event != XMLStreamConstants.START_ELEMENT) {
+            if (event == XMLStreamConstants.END_DOCUMENT) {
+                throw new UnmarshallingException("XML stream contains no further element");
+            }
+            if (event == XMLStreamConstants.DTD) {
+                throw new UnmarshallingException("Document type declarations are not allowed");
+            }
+            event = context.next();
+        }
+
+        return context.unmarshallElement();
+    }
+
+    /**
+     * Gets the unmarshaller for an element, falling back to the unmarshaller of the default provider.
+     * 
+     * @param scope the scope element of the element
+     * 
+     * @return the unmarshaller
+     * 
+     * @throws UnmarshallingException thrown if there is no unmarshaller for the element
+     */
+    Unmarshaller getUnmarshaller(Element scope) throws UnmarshallingException {
+        UnmarshallerFactory unmarshallerFactory = Configuration.getUnmarshallerFactory();
+        Unmarshaller unmarshaller = unmarshallerFactory.getUnmarshaller(scope);
+        if (unmarshaller == null) {
+            unmarshaller = unmarshallerFactory.getUnmarshaller(Configuration.getDefaultProviderQName());
+            if (unmarshaller == null) {
+                String errorMsg = "No unmarshaller available for " + XMLHelper.getNodeQName(scope);
+                log.error(errorMsg);
+                throw new UnmarshallingException(errorMsg);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("No unmarshaller was registered for {}. Using default unmarshaller.", XMLHelper
+                        .getNodeQName(scope));
+            }
+        }
+        return unmarshaller;
+    }
+
+    /**
+     * Unmarshalls the document element of a stream and closes the reader.
+     * 
+     * @param reader the stream reader
+     * 
+     * @return the XMLObject unmarshalled from the document element
+     * 
+     * @throws UnmarshallingException thrown if the document can not be read or unmarshalled
+     */
+    private XMLObject unmarshallAndClose(XMLStreamReader reader) throws UnmarshallingException {
+        try {
+            return unmarshall(reader);
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                log.debug("Unable to close XML stream reader", e);
+            }
+        }
+    }
+}
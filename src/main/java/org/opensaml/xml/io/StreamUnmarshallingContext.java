@@ -0,0 +1,299 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.io;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.parse.XMLParserException;
+import org.opensaml.xml.util.DatatypeHelper;
+import org.opensaml.xml.util.XMLConstants;
+import org.opensaml.xml.util.XMLHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The state of a single stream being unmarshalled by a {@link StreamUnmarshallerDriver}.
+ * 
+ * <p>
+ * While an element is being unmarshalled the context holds a <em>scope element</em> for it: a DOM element carrying
+ * the element's name, namespace declarations and attributes, but none of its content, and attached beneath the scope
+ * elements of its ancestors. Scope elements let the DOM-based hooks of existing unmarshallers, such as
+ * {@link AbstractXMLObjectUnmarshaller#processAttribute(XMLObject, Attr)}, process attributes and resolve in-scope
+ * namespace prefixes as they would in a parsed document. Only the scope elements of the current element and its
+ * ancestors are held, and each is discarded once its element has been unmarshalled.
+ * </p>
+ * 
+ * <p>
+ * Contexts are created by the driver and must only be used by a single thread.
+ * </p>
+ */
+public class StreamUnmarshallingContext {
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(StreamUnmarshallingContext.class);
+
+    /** Driver which created this context. */
+    private final StreamUnmarshallerDriver driver;
+
+    /** Reader of the stream being unmarshalled. */
+    private final XMLStreamReader reader;
+
+    /** Document owning the scope elements. */
+    private final Document scopeDocument;
+
+    /** Scope element of the element currently being unmarshalled, or null if none. */
+    private Element currentScope;
+
+    /**
+     * Constructor.
+     * 
+     * @param streamDriver driver which created this context
+     * @param streamReader reader of the stream being unmarshalled
+     * @param document document owning the scope elements
+     */
+    StreamUnmarshallingContext(StreamUnmarshallerDriver streamDriver, XMLStreamReader streamReader,
+            Document document) {
+        driver = streamDriver;
+        reader = streamReader;
+        scopeDocument = document;
+    }
+
+    /**
+     * Gets the reader of the stream being unmarshalled.
+     * 
+     * @return the reader
+     */
+    public XMLStreamReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Gets the scope element of the element currently being unmarshalled.
+     * 
+     * @return the scope element, or null if no element is being unmarshalled
+     */
+    public Element getCurrentScope() {
+        return currentScope;
+    }
+
+    /**
+     * Advances the reader to its next event. Document type declarations are rejected.
+     * 
+     * @return the type of the next event
+     * 
+     * @throws UnmarshallingException thrown if the stream can not be read or contains a document type declaration
+     */
+    public int next() throws UnmarshallingException {
+        try {
+            int event = reader.next();
+            if (event == XMLStreamConstants.DTD) {
+                throw new UnmarshallingException("Document type declarations are not allowed");
+            }
+            return event;
+        } catch (XMLStreamException e) {
+            throw new UnmarshallingException("Unable to read XML stream", e);
+        }
+    }
+
+    /**
+     * Unmarshalls the element at whose START_ELEMENT event the reader is positioned. On return the reader is
+     * positioned at the element's END_ELEMENT.
+     * 
+     * <p>
+     * If the element's unmarshaller is a {@link StreamUnmarshaller} and the element is not one which the driver keeps
+     * as DOM, the element is unmarshalled from the stream. Otherwise the element's subtree is read into a new DOM
+     * document, carrying all namespace declarations in scope at the element, and unmarshalled from that DOM.
+     * </p>
+     * 
+     * @return the unmarshalled XMLObject
+     * 
+     * @throws UnmarshallingException thrown if the element can not be read or unmarshalled
+     */
+    public XMLObject unmarshallElement() throws UnmarshallingException {
+        Element scope = startScope();
+        try {
+            Unmarshaller unmarshaller = driver.getUnmarshaller(scope);
+            if (unmarshaller instanceof StreamUnmarshaller
+                    && !driver.isDOMElement(scope.getNamespaceURI(), scope.getLocalName())) {
+                return ((StreamUnmarshaller) unmarshaller).unmarshall(this);
+            }
+
+            if (log.isTraceEnabled()) {
+                log.trace("Reading element {} into a DOM for unmarshaller {}", XMLHelper.getNodeQName(scope),
+                        unmarshaller.getClass().getName());
+            }
+            return unmarshaller.unmarshall(buildDOM(scope));
+        } finally {
+            endScope(scope);
+        }
+    }
+
+    /**
+     * Creates the scope element of the element at whose START_ELEMENT event the reader is positioned, and makes it
+     * the current scope.
+     * 
+     * @return the new scope element
+     */
+    private Element startScope() {
+        Element scope = createElement(scopeDocument);
+        if (currentScope != null) {
+            currentScope.appendChild(scope);
+        }
+        currentScope = scope;
+        return scope;
+    }
+
+    /**
+     * Discards a scope element, making the scope of its parent element current.
+     * 
+     * @param scope the scope element to discard
+     */
+    private void endScope(Element scope) {
+        Node parent = scope.getParentNode();
+        if (parent != null) {
+            parent.removeChild(scope);
+            currentScope = (Element) parent;
+        } else {
+            currentScope = null;
+        }
+    }
+
+    /**
+     * Reads the subtree of the element whose scope element is given into a new DOM document.
+     * 
+     * @param scope the scope element of the element, whose START_ELEMENT event is the reader's current event
+     * 
+     * @return the document element of the new document
+     * 
+     * @throws UnmarshallingException thrown if the document can not be created or the stream can not be read
+     */
+    private Element buildDOM(Element scope) throws UnmarshallingException {
+        Document document;
+        try {
+            document = driver.getDocumentFactory().newDocument();
+        } catch (XMLParserException e) {
+            throw new UnmarshallingException("Unable to create DOM document for element "
+                    + XMLHelper.getNodeQName(scope), e);
+        }
+
+        Element root = (Element) document.importNode(scope, false);
+        declareInheritedNamespaces(root, scope);
+        document.appendChild(root);
+
+        Node parent = root;
+        while (parent != null) {
+            switch (next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    parent = parent.appendChild(createElement(document));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    parent.appendChild(document.createTextNode(reader.getText()));
+                    break;
+                case XMLStreamConstants.CDATA:
+                    parent.appendChild(document.createCDATASection(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    parent.appendChild(document.createProcessingInstruction(reader.getPITarget(), reader
+                            .getPIData()));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    parent = parent == root ? null : parent.getParentNode();
+                    break;
+                default:
+                    // comments are dropped, as they are by the default parser pool configuration
+                    break;
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * Declares on an element every namespace in scope at the ancestors of the given scope element which the element
+     * does not declare itself.
+     * 
+     * @param element the element receiving the declarations
+     * @param scope the scope element whose ancestors' declarations are copied
+     */
+    private void declareInheritedNamespaces(Element element, Element scope) {
+        Node ancestor = scope.getParentNode();
+        while (ancestor != null && ancestor.getNodeType() == Node.ELEMENT_NODE) {
+            NamedNodeMap attributes = ancestor.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Attr attribute = (Attr) attributes.item(i);
+                if (XMLConstants.XMLNS_NS.equals(attribute.getNamespaceURI())
+                        && !element.hasAttributeNS(XMLConstants.XMLNS_NS, attribute.getLocalName())) {
+                    element.setAttributeNS(XMLConstants.XMLNS_NS, attribute.getName(), attribute.getValue());
+                }
+            }
+            ancestor = ancestor.getParentNode();
+        }
+    }
+
+    /**
+     * Creates an element, with its namespace declarations and attributes, from the reader's current START_ELEMENT
+     * event.
+     * 
+     * @param document the document owning the new element
+     * 
+     * @return the new element
+     */
+    private Element createElement(Document document) {
+        Element element = document.createElementNS(DatatypeHelper.safeTrimOrNullString(reader.getNamespaceURI()),
+                qualifiedName(reader.getPrefix(), reader.getLocalName()));
+
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = DatatypeHelper.safeTrimOrNullString(reader.getNamespacePrefix(i));
+            String namespaceURI = reader.getNamespaceURI(i);
+            element.setAttributeNS(XMLConstants.XMLNS_NS, prefix == null ? XMLConstants.XMLNS_PREFIX
+                    : XMLConstants.XMLNS_PREFIX + ":" + prefix, namespaceURI == null ? "" : namespaceURI);
+        }
+
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttributeNS(DatatypeHelper.safeTrimOrNullString(reader.getAttributeNamespace(i)),
+                    qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader
+                            .getAttributeValue(i));
+        }
+
+        return element;
+    }
+
+    /**
+     * Builds the qualified name of a node.
+     * 
+     * @param prefix the node's namespace prefix, may be null or empty
+     * @param localName the node's local name
+     * 
+     * @return the qualified name
+     */
+    private String qualifiedName(String prefix, String localName) {
+        if (prefix == null || prefix.length() == 0) {
+            return localName;
+        }
+        return prefix + ":" + localName;
+    }
+}
@@ -23,7 +23,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
-import org.opensaml.xml.util.XMLHelper;
+import org.opensaml.xml.util.ElementNameIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
@@ -32,7 +32,8 @@ import org.w3c.dom.Element;
  * This thread-safe factory creates {@link org.opensaml.xml.io.Unmarshaller}s that can be used to convert W3C DOM
  * elements into {@link org.opensaml.xml.XMLObject}s. Unmarshallers are stored and retrieved by a
  * {@link javax.xml.namespace.QName} key. This key is either the XML Schema Type or element QName of the XML element
- * being unmarshalled.
+ * being unmarshalled. Unmarshallers for DOM elements and for namespace URI and local name pairs are looked up without
+ * constructing a QName.
  */
 public class UnmarshallerFactory {
 
@@ -42,11 +43,15 @@ public class UnmarshallerFactory {
     /** Map of unmarshallers to the elements they are for. */
     private Map<QName, Unmarshaller> unmarshallers;
 
+    /** Registered unmarshallers indexed by the namespace URI and local name of their key. */
+    private ElementNameIndex<Unmarshaller> unmarshallerIndex;
+
     /**
      * Constructor.
      */
     public UnmarshallerFactory() {
         unmarshallers = new ConcurrentHashMap<QName, Unmarshaller>();
+        unmarshallerIndex = new ElementNameIndex<Unmarshaller>();
     }
 
     /**
@@ -64,6 +69,19 @@ public class UnmarshallerFactory {
         return unmarshallers.get(key);
     }
 
+    /**
+     * Gets the Unmarshaller registered under the key with the given namespace URI and local name, or null if no
+     * unmarshaller is registered under such a key.
+     * 
+     * @param namespaceURI the namespace URI of the key the unmarshaller was registered under, may be null
+     * @param localName the local name of the key the unmarshaller was registered under
+     * 
+     * @return the Unmarshaller
+     */
+    public Unmarshaller getUnmarshaller(String namespaceURI, String localName) {
+        return unmarshallerIndex.get(namespaceURI, localName);
+    }
+
     /**
      * Retrieves the unmarshaller for the given element. The schema type, if present, is tried first as the key with the
      * element QName used if no schema type is present or does not have a unmarshaller registered under it.
@@ -73,15 +91,7 @@ public class UnmarshallerFactory {
      * @return the unmarshaller for the XMLObject the given element can be unmarshalled into
      */
     public Unmarshaller getUnmarshaller(Element domElement) {
-        Unmarshaller unmarshaller;
-
-        unmarshaller = getUnmarshaller(XMLHelper.getXSIType(domElement));
-
-        if (unmarshaller == null) {
-            unmarshaller = getUnmarshaller(XMLHelper.getNodeQName(domElement));
-        }
-
-        return unmarshaller;
+        return unmarshallerIndex.get(domElement);
     }
 
     /**
@@ -105,7 +115,10 @@ public class UnmarshallerFactory {
         if (key == null) {
             throw new IllegalArgumentException("Unmarshaller key may not be null");
         }
-        unmarshallers.put(key, unmarshaller);
+        synchronized (unmarshallers) {
+            unmarshallers.put(key, unmarshaller);
+            unmarshallerIndex.put(key, unmarshaller);
+        }
     }
 
     /**
@@ -118,7 +131,10 @@ public class UnmarshallerFactory {
     public Unmarshaller deregisterUnmarshaller(QName key) {
         log.debug("Deregistering marshaller for object type {}", key);
         if (key != null) {
-            return unmarshallers.remove(key);
+            synchronized (unmarshallers) {
+                unmarshallerIndex.remove(key);
+                return unmarshallers.remove(key);
+            }
         }
 
         return null;
@@ -69,13 +69,16 @@ public class BasicParserPool implements ParserPool {
     private final Logger log = LoggerFactory.getLogger(BasicParserPool.class);
 
     /** Current version of the pool. */
-    private long poolVersion;
+    private volatile long poolVersion;
 
     /** Whether a change has been made to the builder configuration but has not yet been applied. */
-    private boolean dirtyBuilderConfiguration;
+    private volatile boolean dirtyBuilderConfiguration;
 
     /** Factory used to create new builders. */
-    private DocumentBuilderFactory builderFactory;
+    private volatile DocumentBuilderFactory builderFactory;
+
+    /** Factory used to create new documents, backed by the DOM implementation of the builder factory. */
+    private volatile DocumentFactory documentFactory;
 
     /** Cache of document builders. */
     private Stack<SoftReference<DocumentBuilder>> builderPool;
@@ -205,13 +208,10 @@ public class BasicParserPool implements ParserPool {
 
     /** {@inheritDoc} */
     public Document newDocument() throws XMLParserException {
-        DocumentBuilder builder = getBuilder();
-        Document document = builder.newDocument();
-        returnBuilder(builder);
-        if (document == null) {
-            throw new XMLParserException("DocumentBuilder returned a null Document");
+        if (dirtyBuilderConfiguration) {
+            initializePool();
         }
-        return document;
+        return documentFactory.newDocument();
     }
 
     /** {@inheritDoc} */
@@ -491,6 +491,16 @@ public class BasicParserPool implements ParserPool {
         return poolVersion;
     }
     
+    /**
+     * Gets whether a change has been made to the builder configuration which has not yet been applied via
+     * {@link #initializePool()}.
+     * 
+     * @return true if the builder configuration has pending changes, false otherwise
+     */
+    protected boolean isDirtyBuilderConfiguration() {
+        return dirtyBuilderConfiguration;
+    }
+
     /**
      * Gets the size of the current pool storage.
      * 
@@ -523,9 +533,14 @@ public class BasicParserPool implements ParserPool {
         newFactory.setValidating(dtdValidating);
         newFactory.setXIncludeAware(xincludeAware);
 
+        DocumentFactory newDocumentFactory = new DOMImplementationDocumentFactory(newFactory);
+
+        // factory must be published before the version so that unsynchronized readers never pair
+        // a new version number with a builder from the old factory
+        builderFactory = newFactory;
+        documentFactory = newDocumentFactory;
         poolVersion++;
         dirtyBuilderConfiguration = false;
-        builderFactory = newFactory;
         builderPool.clear();
     }
     
@@ -595,7 +610,7 @@ public class BasicParserPool implements ParserPool {
      * 
      * @param builder the document builder to prepare
      */
-    private void prepareBuilder(DocumentBuilder builder) {
+    protected void prepareBuilder(DocumentBuilder builder) {
         if (entityResolver != null) {
             builder.setEntityResolver(entityResolver);
         }
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.parse;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+
+/**
+ * A {@link DocumentFactory} which creates documents directly from a cached {@link DOMImplementation}.
+ * 
+ * <p>Creating an empty document this way requires neither a JAXP factory lookup nor a {@link
+ * javax.xml.parsers.DocumentBuilder}, and yields the same document implementation as the builders of the factory
+ * from which the DOM implementation was obtained.</p>
+ * 
+ * <p>Instances of this class are thread-safe.</p>
+ */
+public class DOMImplementationDocumentFactory implements DocumentFactory {
+
+    /** DOM implementation used to create documents. */
+    private final DOMImplementation domImplementation;
+
+    /**
+     * Constructor.
+     * 
+     * The DOM implementation of the platform default, namespace aware, {@link DocumentBuilderFactory} is used.
+     * 
+     * @throws XMLParserException thrown if the DOM implementation can not be obtained
+     */
+    public DOMImplementationDocumentFactory() throws XMLParserException {
+        this(newNamespaceAwareFactory());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param builderFactory factory whose builders' DOM implementation is used to create documents
+     * 
+     * @throws XMLParserException thrown if the DOM implementation can not be obtained
+     */
+    public DOMImplementationDocumentFactory(DocumentBuilderFactory builderFactory) throws XMLParserException {
+        if (builderFactory == null) {
+            throw new IllegalArgumentException("DocumentBuilderFactory may not be null");
+        }
+        try {
+            domImplementation = builderFactory.newDocumentBuilder().getDOMImplementation();
+        } catch (ParserConfigurationException e) {
+            throw new XMLParserException("Unable to create document builder to obtain DOM implementation", e);
+        }
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param implementation DOM implementation used to create documents
+     */
+    public DOMImplementationDocumentFactory(DOMImplementation implementation) {
+        if (implementation == null) {
+            throw new IllegalArgumentException("DOMImplementation may not be null");
+        }
+        domImplementation = implementation;
+    }
+
+    /**
+     * Gets the DOM implementation used to create documents.
+     * 
+     * @return DOM implementation used to create documents
+     */
+    public DOMImplementation getDOMImplementation() {
+        return domImplementation;
+    }
+
+    /** {@inheritDoc} */
+    public Document newDocument() throws XMLParserException {
+        try {
+            Document document = domImplementation.createDocument(null, null, null);
+            if (document == null) {
+                throw new XMLParserException("DOMImplementation returned a null Document");
+            }
+            return document;
+        } catch (DOMException e) {
+            throw new XMLParserException("Unable to create new Document", e);
+        }
+    }
+
+    /**
+     * Creates a new namespace aware document builder factory.
+     * 
+     * @return the new factory
+     */
+    private static DocumentBuilderFactory newNamespaceAwareFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory;
+    }
+}
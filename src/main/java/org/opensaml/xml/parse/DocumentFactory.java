@@ -0,0 +1,35 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.parse;
+
+import org.w3c.dom.Document;
+
+/**
+ * A source of new, empty DOM documents.
+ */
+public interface DocumentFactory {
+
+    /**
+     * Creates a new, empty document.
+     * 
+     * @return created document
+     * 
+     * @throws XMLParserException thrown if the document can not be created
+     */
+    public Document newDocument() throws XMLParserException;
+}
@@ -28,7 +28,7 @@ import org.w3c.dom.Document;
 /**
  * A pool of XML parsers.
  */
-public interface ParserPool {
+public interface ParserPool extends DocumentFactory {
 
     /**
      * Gets a builder from the pool.
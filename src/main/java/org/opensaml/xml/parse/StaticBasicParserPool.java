@@ -72,6 +72,9 @@ public class StaticBasicParserPool implements ParserPool {
     /** Factory used to create new builders. */
     private DocumentBuilderFactory builderFactory;
 
+    /** Factory used to create new documents, backed by the DOM implementation of the builder factory. */
+    private DocumentFactory documentFactory;
+
     /** Cache of document builders. */
     private Stack<SoftReference<DocumentBuilder>> builderPool;
 
@@ -221,13 +224,10 @@ public class StaticBasicParserPool implements ParserPool {
 
     /** {@inheritDoc} */
     public Document newDocument() throws XMLParserException {
-        DocumentBuilder builder = getBuilder();
-        Document document = builder.newDocument();
-        returnBuilder(builder);
-        if (document == null) {
-            throw new XMLParserException("DocumentBuilder returned a null Document");
+        if (!initialized) {
+            throw new XMLParserException("Parser pool has not been initialized");
         }
-        return document;
+        return documentFactory.newDocument();
     }
 
     /** {@inheritDoc} */
@@ -510,6 +510,7 @@ public class StaticBasicParserPool implements ParserPool {
         newFactory.setValidating(dtdValidating);
         newFactory.setXIncludeAware(xincludeAware);
         builderFactory = newFactory;
+        documentFactory = new DOMImplementationDocumentFactory(newFactory);
     }
     
     /**
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.parse;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilder;
+
+/**
+ * A pool of JAXP 1.3 {@link DocumentBuilder}s which avoids a shared lock on checkout and return.
+ *
+ * <p>This implementation supports the same versioned properties as {@link BasicParserPool}, but rather than keeping
+ * idle builders on a single synchronized stack, each thread has its own slot holding at most one idle builder. A
+ * builder returned while the returning thread's slot is occupied is placed on a lock-free overflow queue, whose size
+ * is bounded by the value configured via {@link #setMaxPoolSize(int)}. Builders cached under a prior pool version
+ * are discarded when encountered.</p>
+ *
+ * <p>Checkout and return take no lock when an idle builder is available. New builders are created under the pool
+ * monitor, since the underlying {@link javax.xml.parsers.DocumentBuilderFactory} is not guaranteed to be
+ * thread-safe.</p>
+ *
+ * <p>Counters of slot hits, overflow queue hits, misses and builder creations are maintained in order to aid sizing
+ * of the pool.</p>
+ *
+ * <p>References to builders are kept by way of {@link SoftReference} so that the garbage collector may reap the
+ * builders if the system is running out of memory.</p>
+ */
+public class ThreadAffineParserPool extends BasicParserPool {
+
+    /** Idle builder held for the exclusive use of the current thread. */
+    private final ThreadLocal<SoftReference<VersionedBuilder>> threadSlot;
+
+    /** Idle builders which could not be placed in a thread slot. */
+    private final ConcurrentLinkedQueue<SoftReference<VersionedBuilder>> overflowPool;
+
+    /** Approximate number of entries in the overflow queue. */
+    private final AtomicInteger overflowSize;
+
+    /** Number of checkouts satisfied from the calling thread's slot. */
+    private final AtomicLong slotHits;
+
+    /** Number of checkouts satisfied from the overflow queue. */
+    private final AtomicLong overflowHits;
+
+    /** Number of checkouts for which no usable idle builder was available. */
+    private final AtomicLong misses;
+
+    /** Number of builders created by this pool. */
+    private final AtomicLong creates;
+
+    /** Constructor. */
+    public ThreadAffineParserPool() {
+        super();
+        threadSlot = new ThreadLocal<SoftReference<VersionedBuilder>>();
+        overflowPool = new ConcurrentLinkedQueue<SoftReference<VersionedBuilder>>();
+        overflowSize = new AtomicInteger();
+        slotHits = new AtomicLong();
+        overflowHits = new AtomicLong();
+        misses = new AtomicLong();
+        creates = new AtomicLong();
+    }
+
+    /** {@inheritDoc} */
+    public DocumentBuilder getBuilder() throws XMLParserException {
+        if (isDirtyBuilderConfiguration()) {
+            initializePool();
+        }
+
+        long version = getPoolVersion();
+        DocumentBuilder builder = null;
+
+        SoftReference<VersionedBuilder> slotReference = threadSlot.get();
+        if (slotReference != null) {
+            threadSlot.remove();
+            builder = unwrap(slotReference, version);
+            if (builder != null) {
+                slotHits.incrementAndGet();
+            }
+        }
+
+        while (builder == null) {
+            SoftReference<VersionedBuilder> overflowReference = overflowPool.poll();
+            if (overflowReference == null) {
+                break;
+            }
+            overflowSize.decrementAndGet();
+            builder = unwrap(overflowReference, version);
+            if (builder != null) {
+                overflowHits.incrementAndGet();
+            }
+        }
+
+        if (builder == null) {
+            misses.incrementAndGet();
+            // DocumentBuilderFactory is not guaranteed to be thread-safe, so builders are created under the pool
+            // monitor, as by BasicParserPool, along with the pool version of the factory creating them
+            synchronized (this) {
+                version = getPoolVersion();
+                builder = createBuilder();
+            }
+            creates.incrementAndGet();
+        }
+
+        if (builder != null) {
+            prepareBuilder(builder);
+            return new DocumentBuilderProxy(builder, this, version);
+        }
+
+        throw new XMLParserException("Unable to obtain a DocumentBuilder");
+    }
+
+    /** {@inheritDoc} */
+    public void returnBuilder(DocumentBuilder builder) {
+        if (!(builder instanceof DocumentBuilderProxy)) {
+            return;
+        }
+
+        DocumentBuilderProxy proxiedBuilder = (DocumentBuilderProxy) builder;
+        if (proxiedBuilder.getOwningPool() != this) {
+            return;
+        }
+
+        synchronized (proxiedBuilder) {
+            if (proxiedBuilder.isReturned()) {
+                return;
+            }
+
+            if (proxiedBuilder.getPoolVersion() != getPoolVersion()) {
+                return;
+            }
+
+            proxiedBuilder.setReturned(true);
+        }
+
+        DocumentBuilder unwrappedBuilder = proxiedBuilder.getProxiedBuilder();
+        unwrappedBuilder.reset();
+        SoftReference<VersionedBuilder> builderReference = new SoftReference<VersionedBuilder>(new VersionedBuilder(
+                unwrappedBuilder, proxiedBuilder.getPoolVersion()));
+
+        SoftReference<VersionedBuilder> slotReference = threadSlot.get();
+        if (slotReference == null || slotReference.get() == null) {
+            threadSlot.set(builderReference);
+            return;
+        }
+
+        if (overflowSize.incrementAndGet() <= getMaxPoolSize()) {
+            overflowPool.offer(builderReference);
+        } else {
+            overflowSize.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of checkouts satisfied by the idle builder held in the calling thread's slot.
+     *
+     * @return number of thread slot hits
+     */
+    public long getSlotHits() {
+        return slotHits.get();
+    }
+
+    /**
+     * Gets the number of checkouts satisfied by an idle builder from the shared overflow queue.
+     *
+     * @return number of overflow queue hits
+     */
+    public long getOverflowHits() {
+        return overflowHits.get();
+    }
+
+    /**
+     * Gets the number of checkouts for which no usable idle builder was available.
+     *
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of builders created by this pool.
+     *
+     * @return number of builders created
+     */
+    public long getCreates() {
+        return creates.get();
+    }
+
+    /**
+     * Gets the size of the current pool storage visible to the calling thread, that is the number of builders in the
+     * overflow queue plus the builder, if any, held in the calling thread's slot.
+     *
+     * @return current pool storage size
+     */
+    protected int getPoolSize() {
+        int size = overflowSize.get();
+        SoftReference<VersionedBuilder> slotReference = threadSlot.get();
+        if (slotReference != null && slotReference.get() != null) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Extracts the builder from a cache reference if it has not been garbage collected and was created under the
+     * given pool version.
+     *
+     * @param reference the cache reference
+     * @param version the current pool version
+     *
+     * @return the cached builder or null if it is not usable
+     */
+    private DocumentBuilder unwrap(SoftReference<VersionedBuilder> reference, long version) {
+        VersionedBuilder entry = reference.get();
+        if (entry == null || entry.getVersion() != version) {
+            return null;
+        }
+        return entry.getBuilder();
+    }
+
+    /**
+     * An idle builder along with the pool version under which it was created.
+     */
+    private static class VersionedBuilder {
+
+        /** The idle builder. */
+        private final DocumentBuilder builder;
+
+        /** Pool version under which the builder was created. */
+        private final long version;
+
+        /**
+         * Constructor.
+         *
+         * @param idleBuilder the idle builder
+         * @param poolVersion pool version under which the builder was created
+         */
+        public VersionedBuilder(DocumentBuilder idleBuilder, long poolVersion) {
+            builder = idleBuilder;
+            version = poolVersion;
+        }
+
+        /**
+         * Gets the idle builder.
+         *
+         * @return the idle builder
+         */
+        public DocumentBuilder getBuilder() {
+            return builder;
+        }
+
+        /**
+         * Gets the pool version under which the builder was created.
+         *
+         * @return the pool version
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
+}
@@ -33,10 +33,10 @@ import org.opensaml.xml.validation.AbstractValidatingXMLObject;
  */
 public class XSAnyImpl extends AbstractValidatingXMLObject implements XSAny {
 
-    /** Child XMLObjects. */
+    /** Child XMLObjects, created on first use. */
     private IndexedXMLObjectChildrenList<XMLObject> unknownXMLObjects;
 
-    /** Attributes for this element. */
+    /** Attributes for this element, created on first use. */
     private AttributeMap unknownAttributes;
 
     /** Text content of the element. */
@@ -51,9 +51,6 @@ public class XSAnyImpl extends AbstractValidatingXMLObject implements XSAny {
      */
     protected XSAnyImpl(String namespaceURI, String elementLocalName, String namespacePrefix) {
         super(namespaceURI, elementLocalName, namespacePrefix);
-
-        unknownXMLObjects = new IndexedXMLObjectChildrenList<XMLObject>(this);
-        unknownAttributes = new AttributeMap(this);
     }
 
     /** {@inheritDoc} */
@@ -68,21 +65,31 @@ public class XSAnyImpl extends AbstractValidatingXMLObject implements XSAny {
 
     /** {@inheritDoc} */
     public List<XMLObject> getUnknownXMLObjects() {
+        if (unknownXMLObjects == null) {
+            unknownXMLObjects = new IndexedXMLObjectChildrenList<XMLObject>(this);
+        }
         return unknownXMLObjects;
     }
     
     /** {@inheritDoc} */
     public List<XMLObject> getUnknownXMLObjects(QName typeOrName) {
+        getUnknownXMLObjects();
         return (List<XMLObject>) unknownXMLObjects.subList(typeOrName);
     }
 
     /** {@inheritDoc} */
     public List<XMLObject> getOrderedChildren() {
+        if (unknownXMLObjects == null) {
+            return Collections.emptyList();
+        }
         return Collections.unmodifiableList(unknownXMLObjects);
     }
 
     /** {@inheritDoc} */
     public AttributeMap getUnknownAttributes() {
+        if (unknownAttributes == null) {
+            unknownAttributes = new AttributeMap(this);
+        }
         return unknownAttributes;
     }
 }
\ No newline at end of file
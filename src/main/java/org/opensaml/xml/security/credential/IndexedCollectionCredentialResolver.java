@@ -0,0 +1,514 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.credential;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.opensaml.xml.security.CriteriaSet;
+import org.opensaml.xml.security.SecurityException;
+import org.opensaml.xml.security.criteria.EntityIDCriteria;
+import org.opensaml.xml.security.criteria.KeyNameCriteria;
+import org.opensaml.xml.security.criteria.PublicKeyCriteria;
+import org.opensaml.xml.security.x509.X509Credential;
+import org.opensaml.xml.security.x509.X509DigestCriteria;
+import org.opensaml.xml.security.x509.X509IssuerSerialCriteria;
+import org.opensaml.xml.security.x509.X509SubjectKeyIdentifierCriteria;
+import org.opensaml.xml.security.x509.X509Util;
+import org.opensaml.xml.util.DatatypeHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A variant of {@link CollectionCredentialResolver} which indexes its credentials so that large credential sets need
+ * not be scanned in full on each resolution.
+ *
+ * <p>
+ * Credentials are indexed by entity ID, key name, public key, issuer name and serial number, and subject key
+ * identifier of the entity certificate, and (built on first use for each digest algorithm) digest of the entity
+ * certificate. When all evaluable criteria must be met, the most selective of the {@link EntityIDCriteria},
+ * {@link KeyNameCriteria}, {@link PublicKeyCriteria}, {@link X509DigestCriteria}, {@link X509IssuerSerialCriteria}
+ * and {@link X509SubjectKeyIdentifierCriteria} present is used to narrow the candidate credentials, which are then
+ * filtered by all evaluable criteria exactly as by {@link CollectionCredentialResolver}. Credentials which an
+ * evaluable criteria would be unable to evaluate remain candidates if unevaluable criteria are treated as satisfied.
+ * Candidates are returned in the order of the original collection.
+ * </p>
+ *
+ * <p>
+ * Unlike {@link CollectionCredentialResolver}, the credential collection is not modifiable in place. A new set of
+ * credentials may be supplied via {@link #setCredentials(Collection)}, which rebuilds the indexes and replaces them
+ * atomically.
+ * </p>
+ */
+public class IndexedCollectionCredentialResolver extends AbstractCriteriaFilteringCredentialResolver {
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(IndexedCollectionCredentialResolver.class);
+
+    /** The current credentials and their indexes. */
+    private volatile CredentialIndex index;
+
+    /**
+     * Constructor.
+     *
+     * @param credentials the credentials to be held by the resolver
+     */
+    public IndexedCollectionCredentialResolver(Collection<Credential> credentials) {
+        super();
+        setCredentials(credentials);
+    }
+
+    /**
+     * Get the credentials held by the resolver.
+     *
+     * @return unmodifiable list of credentials
+     */
+    public List<Credential> getCredentials() {
+        return index.credentials;
+    }
+
+    /**
+     * Set the credentials held by the resolver, rebuilding the indexes.
+     *
+     * @param credentials the credentials to be held by the resolver
+     */
+    public void setCredentials(Collection<Credential> credentials) {
+        if (credentials == null) {
+            index = new CredentialIndex(Collections.<Credential> emptyList());
+        } else {
+            index = new CredentialIndex(credentials);
+        }
+    }
+
+    /** {@inheritDoc} */
+    protected Iterable<Credential> resolveFromSource(CriteriaSet criteriaSet) throws SecurityException {
+        CredentialIndex currentIndex = index;
+        if (criteriaSet == null || !isMeetAllCriteria()) {
+            return currentIndex.credentials;
+        }
+
+        int[] candidates = null;
+        for (int[] indexed : getIndexedCandidates(currentIndex, criteriaSet)) {
+            if (indexed != null && (candidates == null || indexed.length < candidates.length)) {
+                candidates = indexed;
+            }
+        }
+
+        if (candidates == null) {
+            log.trace("No indexed criteria present, all {} credentials are candidates",
+                    currentIndex.credentials.size());
+            return currentIndex.credentials;
+        }
+
+        log.trace("Narrowed {} credentials to {} candidates using indexes", currentIndex.credentials.size(),
+                candidates.length);
+        List<Credential> result = new ArrayList<Credential>(candidates.length);
+        for (int position : candidates) {
+            result.add(currentIndex.credentials.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the candidate positions obtained from each index for which the criteria set holds a criteria.
+     *
+     * @param currentIndex the index to consult
+     * @param criteriaSet the criteria set
+     *
+     * @return list of sorted candidate positions, one entry per indexed criteria; an entry is null if the criteria
+     *          could not be evaluated using an index
+     */
+    private List<int[]> getIndexedCandidates(CredentialIndex currentIndex, CriteriaSet criteriaSet) {
+        List<int[]> results = new ArrayList<int[]>(6);
+        boolean unevaluable = isUnevaluableSatisfies();
+
+        EntityIDCriteria entityCriteria = criteriaSet.get(EntityIDCriteria.class);
+        if (entityCriteria != null && entityCriteria.getEntityID() != null) {
+            results.add(merge(currentIndex.byEntityID.get(entityCriteria.getEntityID()),
+                    unevaluable ? currentIndex.noEntityID : null));
+        }
+
+        KeyNameCriteria keyNameCriteria = criteriaSet.get(KeyNameCriteria.class);
+        if (keyNameCriteria != null && keyNameCriteria.getKeyName() != null) {
+            results.add(merge(currentIndex.byKeyName.get(keyNameCriteria.getKeyName()),
+                    unevaluable ? currentIndex.noKeyNames : null));
+        }
+
+        PublicKeyCriteria keyCriteria = criteriaSet.get(PublicKeyCriteria.class);
+        if (keyCriteria != null && keyCriteria.getPublicKey() != null) {
+            results.add(merge(currentIndex.byPublicKey.get(keyCriteria.getPublicKey()), null));
+        }
+
+        X509IssuerSerialCriteria issuerSerialCriteria = criteriaSet.get(X509IssuerSerialCriteria.class);
+        if (issuerSerialCriteria != null && issuerSerialCriteria.getIssuerName() != null
+                && issuerSerialCriteria.getSerialNumber() != null) {
+            results.add(merge(currentIndex.byIssuerSerial.get(new IssuerSerialKey(
+                    issuerSerialCriteria.getIssuerName(), issuerSerialCriteria.getSerialNumber())), null));
+        }
+
+        X509SubjectKeyIdentifierCriteria skiCriteria = criteriaSet.get(X509SubjectKeyIdentifierCriteria.class);
+        if (skiCriteria != null && skiCriteria.getSubjectKeyIdentifier() != null) {
+            results.add(merge(currentIndex.bySKI.get(new BytesKey(skiCriteria.getSubjectKeyIdentifier())),
+                    unevaluable ? currentIndex.noSKI : null));
+        }
+
+        X509DigestCriteria digestCriteria = criteriaSet.get(X509DigestCriteria.class);
+        if (digestCriteria != null && digestCriteria.getAlgorithm() != null && digestCriteria.getDigest() != null) {
+            DigestIndex digestIndex = currentIndex.getDigestIndex(digestCriteria.getAlgorithm());
+            if (digestIndex != null) {
+                results.add(merge(digestIndex.byDigest.get(new BytesKey(digestCriteria.getDigest())),
+                        unevaluable ? digestIndex.undigested : null));
+            } else {
+                results.add(null);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Merges two sorted arrays of candidate positions.
+     *
+     * @param first first array, may be null
+     * @param second second array, may be null
+     *
+     * @return sorted array holding the positions of both arrays
+     */
+    private static int[] merge(int[] first, int[] second) {
+        if (first == null || first.length == 0) {
+            return second != null ? second : new int[0];
+        }
+        if (second == null || second.length == 0) {
+            return first;
+        }
+        int[] merged = new int[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < first.length && j < second.length) {
+            merged[k++] = first[i] <= second[j] ? first[i++] : second[j++];
+        }
+        while (i < first.length) {
+            merged[k++] = first[i++];
+        }
+        while (j < second.length) {
+            merged[k++] = second[j++];
+        }
+        return merged;
+    }
+
+    /**
+     * Converts a map of position lists into a map of position arrays.
+     *
+     * @param <K> type of the map key
+     * @param positions map of position lists
+     *
+     * @return map of position arrays
+     */
+    private static <K> Map<K, int[]> toArrays(Map<K, List<Integer>> positions) {
+        HashMap<K, int[]> arrays = new HashMap<K, int[]>((int) (positions.size() / 0.75f) + 1);
+        for (Map.Entry<K, List<Integer>> entry : positions.entrySet()) {
+            arrays.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return arrays;
+    }
+
+    /**
+     * Converts a list of positions into an array.
+     *
+     * @param positions list of positions
+     *
+     * @return array of positions
+     */
+    private static int[] toArray(List<Integer> positions) {
+        int[] array = new int[positions.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = positions.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Adds a position to the list held under the given key.
+     *
+     * @param <K> type of the map key
+     * @param positions map of position lists
+     * @param key the key
+     * @param position the position to add
+     */
+    private static <K> void addPosition(Map<K, List<Integer>> positions, K key, int position) {
+        List<Integer> list = positions.get(key);
+        if (list == null) {
+            list = new ArrayList<Integer>(1);
+            positions.put(key, list);
+        }
+        // a credential may carry the same key more than once, e.g. duplicate key names
+        if (list.isEmpty() || list.get(list.size() - 1) != position) {
+            list.add(position);
+        }
+    }
+
+    /**
+     * An immutable set of credentials along with their indexes.
+     */
+    private static final class CredentialIndex {
+
+        /** The indexed credentials, in the order of the original collection. */
+        private final List<Credential> credentials;
+
+        /** Positions of credentials by entity ID. */
+        private final Map<String, int[]> byEntityID;
+
+        /** Positions of credentials without an entity ID. */
+        private final int[] noEntityID;
+
+        /** Positions of credentials by key name. */
+        private final Map<String, int[]> byKeyName;
+
+        /** Positions of credentials without key names. */
+        private final int[] noKeyNames;
+
+        /** Positions of credentials by public key. */
+        private final Map<PublicKey, int[]> byPublicKey;
+
+        /** Positions of X.509 credentials by entity certificate issuer and serial number. */
+        private final Map<IssuerSerialKey, int[]> byIssuerSerial;
+
+        /** Positions of X.509 credentials by entity certificate subject key identifier. */
+        private final Map<BytesKey, int[]> bySKI;
+
+        /** Positions of X.509 credentials whose entity certificate has no subject key identifier. */
+        private final int[] noSKI;
+
+        /** Entity certificate digest indexes, by digest algorithm. */
+        private final ConcurrentHashMap<String, DigestIndex> digestIndexes;
+
+        /**
+         * Constructor.
+         *
+         * @param source the credentials to index
+         */
+        private CredentialIndex(Collection<Credential> source) {
+            credentials = Collections.unmodifiableList(new ArrayList<Credential>(source));
+            digestIndexes = new ConcurrentHashMap<String, DigestIndex>();
+
+            Map<String, List<Integer>> entityIDs = new HashMap<String, List<Integer>>();
+            List<Integer> missingEntityIDs = new ArrayList<Integer>();
+            Map<String, List<Integer>> keyNames = new HashMap<String, List<Integer>>();
+            List<Integer> missingKeyNames = new ArrayList<Integer>();
+            Map<PublicKey, List<Integer>> publicKeys = new HashMap<PublicKey, List<Integer>>();
+            Map<IssuerSerialKey, List<Integer>> issuerSerials = new HashMap<IssuerSerialKey, List<Integer>>();
+            Map<BytesKey, List<Integer>> skis = new HashMap<BytesKey, List<Integer>>();
+            List<Integer> missingSKIs = new ArrayList<Integer>();
+
+            for (int i = 0; i < credentials.size(); i++) {
+                Credential credential = credentials.get(i);
+                if (credential == null) {
+                    continue;
+                }
+
+                if (DatatypeHelper.isEmpty(credential.getEntityId())) {
+                    missingEntityIDs.add(i);
+                } else {
+                    addPosition(entityIDs, credential.getEntityId(), i);
+                }
+
+                if (credential.getKeyNames().isEmpty()) {
+                    missingKeyNames.add(i);
+                } else {
+                    for (String keyName : credential.getKeyNames()) {
+                        addPosition(keyNames, keyName, i);
+                    }
+                }
+
+                if (credential.getPublicKey() != null) {
+                    addPosition(publicKeys, credential.getPublicKey(), i);
+                }
+
+                if (credential instanceof X509Credential) {
+                    X509Certificate entityCert = ((X509Credential) credential).getEntityCertificate();
+                    if (entityCert != null) {
+                        addPosition(issuerSerials, new IssuerSerialKey(entityCert.getIssuerX500Principal(),
+                                entityCert.getSerialNumber()), i);
+                        byte[] ski = X509Util.getSubjectKeyIdentifier(entityCert);
+                        if (ski == null || ski.length == 0) {
+                            missingSKIs.add(i);
+                        } else {
+                            addPosition(skis, new BytesKey(ski), i);
+                        }
+                    }
+                }
+            }
+
+            byEntityID = toArrays(entityIDs);
+            noEntityID = toArray(missingEntityIDs);
+            byKeyName = toArrays(keyNames);
+            noKeyNames = toArray(missingKeyNames);
+            byPublicKey = toArrays(publicKeys);
+            byIssuerSerial = toArrays(issuerSerials);
+            bySKI = toArrays(skis);
+            noSKI = toArray(missingSKIs);
+        }
+
+        /**
+         * Gets the entity certificate digest index for the given algorithm, building it if necessary.
+         *
+         * @param algorithm the JCA digest algorithm name
+         *
+         * @return the digest index, or null if the algorithm is not supported
+         */
+        private DigestIndex getDigestIndex(String algorithm) {
+            DigestIndex digestIndex = digestIndexes.get(algorithm);
+            if (digestIndex == null) {
+                MessageDigest hasher;
+                try {
+                    hasher = MessageDigest.getInstance(algorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    return null;
+                }
+                digestIndex = new DigestIndex(credentials, hasher);
+                DigestIndex existing = digestIndexes.putIfAbsent(algorithm, digestIndex);
+                if (existing != null) {
+                    digestIndex = existing;
+                }
+            }
+            return digestIndex;
+        }
+    }
+
+    /**
+     * An index of X.509 credentials by the digest of their entity certificate.
+     */
+    private static final class DigestIndex {
+
+        /** Positions of X.509 credentials by entity certificate digest. */
+        private final Map<BytesKey, int[]> byDigest;
+
+        /** Positions of X.509 credentials whose entity certificate could not be digested. */
+        private final int[] undigested;
+
+        /**
+         * Constructor.
+         *
+         * @param credentials the credentials to index
+         * @param hasher the digest to use
+         */
+        private DigestIndex(List<Credential> credentials, MessageDigest hasher) {
+            Map<BytesKey, List<Integer>> digests = new HashMap<BytesKey, List<Integer>>();
+            List<Integer> failures = new ArrayList<Integer>();
+            for (int i = 0; i < credentials.size(); i++) {
+                Credential credential = credentials.get(i);
+                if (credential instanceof X509Credential) {
+                    X509Certificate entityCert = ((X509Credential) credential).getEntityCertificate();
+                    if (entityCert != null) {
+                        try {
+                            addPosition(digests, new BytesKey(hasher.digest(entityCert.getEncoded())), i);
+                        } catch (GeneralSecurityException e) {
+                            failures.add(i);
+                        }
+                    }
+                }
+            }
+            byDigest = toArrays(digests);
+            undigested = toArray(failures);
+        }
+    }
+
+    /**
+     * Index key wrapping a byte array.
+     */
+    private static final class BytesKey {
+
+        /** The wrapped bytes. */
+        private final byte[] bytes;
+
+        /** Precomputed hash code. */
+        private final int hashCode;
+
+        /**
+         * Constructor.
+         *
+         * @param data the bytes to wrap
+         */
+        private BytesKey(byte[] data) {
+            bytes = data;
+            hashCode = Arrays.hashCode(data);
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            return obj instanceof BytesKey && Arrays.equals(bytes, ((BytesKey) obj).bytes);
+        }
+    }
+
+    /**
+     * Index key combining a certificate issuer name and serial number.
+     */
+    private static final class IssuerSerialKey {
+
+        /** Issuer name. */
+        private final X500Principal issuer;
+
+        /** Serial number. */
+        private final BigInteger serialNumber;
+
+        /**
+         * Constructor.
+         *
+         * @param issuerName issuer name
+         * @param serial serial number
+         */
+        private IssuerSerialKey(X500Principal issuerName, BigInteger serial) {
+            issuer = issuerName;
+            serialNumber = serial;
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return 31 * issuer.hashCode() + serialNumber.hashCode();
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            if (!(obj instanceof IssuerSerialKey)) {
+                return false;
+            }
+            IssuerSerialKey other = (IssuerSerialKey) obj;
+            return issuer.equals(other.issuer) && serialNumber.equals(other.serialNumber);
+        }
+    }
+}
@@ -21,14 +21,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.opensaml.xml.Configuration;
 import org.opensaml.xml.security.Criteria;
 import org.opensaml.xml.security.SecurityException;
 import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.security.criteria.EntityIDCriteria;
+import org.opensaml.xml.security.criteria.KeyAlgorithmCriteria;
+import org.opensaml.xml.security.criteria.KeyLengthCriteria;
+import org.opensaml.xml.security.criteria.KeyNameCriteria;
+import org.opensaml.xml.security.criteria.PublicKeyCriteria;
+import org.opensaml.xml.security.criteria.UsageCriteria;
+import org.opensaml.xml.security.x509.X509DigestCriteria;
+import org.opensaml.xml.security.x509.X509IssuerSerialCriteria;
+import org.opensaml.xml.security.x509.X509SubjectKeyIdentifierCriteria;
+import org.opensaml.xml.security.x509.X509SubjectNameCriteria;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,7 +46,13 @@ import org.slf4j.LoggerFactory;
  * data against a {@link Credential} target. That latter class will be a subtype of {@link EvaluableCredentialCriteria}.
  * Each EvaluableCredentialCriteria implementation that is registered <strong>MUST</strong> implement a single-arg
  * constructor which takes an instance of the Criteria to be evaluated. The evaluable instance is instantiated
- * reflectively based on this requirement.
+ * reflectively based on this requirement, using a constructor which is resolved once at registration time.
+ * 
+ * <p>
+ * By default the mappings are loaded from {@link #DEFAULT_MAPPINGS_FILE}. If that file is not available, or for
+ * environments which do not wish to depend on it, the library's built-in mappings may be registered directly via
+ * {@link #registerBuiltinMappings()}.
+ * </p>
  */
 public final class EvaluableCredentialCriteriaRegistry {
 
@@ -47,8 +62,10 @@ public final class EvaluableCredentialCriteriaRegistry {
      */
     public static final String DEFAULT_MAPPINGS_FILE = "/credential-criteria-registry.properties";
 
-    /** Storage for the registry mappings. */
-    private static Map<Class<? extends Criteria>, Class<? extends EvaluableCredentialCriteria>> registry;
+    /** Storage for the registry mappings, from criteria class to the evaluator's single-arg constructor. */
+    private static final ConcurrentHashMap<Class<? extends Criteria>, 
+            Constructor<? extends EvaluableCredentialCriteria>> REGISTRY = 
+                new ConcurrentHashMap<Class<? extends Criteria>, Constructor<? extends EvaluableCredentialCriteria>>();
 
     /** Flag to track whether registry is initialized. */
     private static boolean initialized;
@@ -68,25 +85,18 @@ public final class EvaluableCredentialCriteriaRegistry {
      */
     public static EvaluableCredentialCriteria getEvaluator(Criteria criteria) throws SecurityException {
         Logger log = getLogger();
-        Class<? extends EvaluableCredentialCriteria> clazz = lookup(criteria.getClass());
+        Constructor<? extends EvaluableCredentialCriteria> constructor = REGISTRY.get(criteria.getClass());
 
-        if (clazz != null) {
-            log.debug("Registry located evaluable criteria class {} for criteria class {}", clazz.getName(), criteria
-                    .getClass().getName());
+        if (constructor != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Registry located evaluable criteria class {} for criteria class {}", constructor
+                        .getDeclaringClass().getName(), criteria.getClass().getName());
+            }
 
             try {
 
-                Constructor<? extends EvaluableCredentialCriteria> constructor = clazz
-                        .getConstructor(new Class[] { criteria.getClass() });
-
                 return constructor.newInstance(new Object[] { criteria });
 
-            } catch (java.lang.SecurityException e) {
-                log.error("Error instantiating new EvaluableCredentialCriteria instance", e);
-                throw new SecurityException("Could not create new EvaluableCredentialCriteria", e);
-            } catch (NoSuchMethodException e) {
-                log.error("Error instantiating new EvaluableCredentialCriteria instance", e);
-                throw new SecurityException("Could not create new EvaluableCredentialCriteria", e);
             } catch (IllegalArgumentException e) {
                 log.error("Error instantiating new EvaluableCredentialCriteria instance", e);
                 throw new SecurityException("Could not create new EvaluableCredentialCriteria", e);
@@ -114,8 +124,12 @@ public final class EvaluableCredentialCriteriaRegistry {
      * @param clazz the Criteria class subtype to lookup
      * @return the registered EvaluableCredentialCriteria class subtype
      */
-    public static synchronized Class<? extends EvaluableCredentialCriteria> lookup(Class<? extends Criteria> clazz) {
-        return registry.get(clazz);
+    public static Class<? extends EvaluableCredentialCriteria> lookup(Class<? extends Criteria> clazz) {
+        Constructor<? extends EvaluableCredentialCriteria> constructor = REGISTRY.get(clazz);
+        if (constructor != null) {
+            return constructor.getDeclaringClass();
+        }
+        return null;
     }
 
     /**
@@ -123,17 +137,53 @@ public final class EvaluableCredentialCriteriaRegistry {
      * 
      * @param criteriaClass class subtype of {@link Criteria}
      * @param evaluableClass class subtype of {@link EvaluableCredentialCriteria}
+     * @throws IllegalArgumentException thrown if the evaluator class does not have a public single-arg constructor
+     *             which takes an instance of the criteria class
      */
     public static synchronized void register(Class<? extends Criteria> criteriaClass,
-            Class<? extends EvaluableCredentialCriteria> evaluableClass) {
+            Class<? extends EvaluableCredentialCriteria> evaluableClass) throws IllegalArgumentException {
         Logger log = getLogger();
 
         log.debug("Registering class {} as evaluator for class {}", evaluableClass.getName(), criteriaClass.getName());
 
-        registry.put(criteriaClass, evaluableClass);
+        Constructor<? extends EvaluableCredentialCriteria> constructor;
+        try {
+            constructor = evaluableClass.getConstructor(new Class[] { criteriaClass });
+        } catch (NoSuchMethodException e) {
+            log.error("Evaluator class {} has no constructor taking criteria class {}", evaluableClass.getName(),
+                    criteriaClass.getName());
+            throw new IllegalArgumentException("Evaluator class " + evaluableClass.getName()
+                    + " has no public constructor taking an instance of " + criteriaClass.getName());
+        } catch (java.lang.SecurityException e) {
+            log.error("Could not access constructor of evaluator class " + evaluableClass.getName(), e);
+            throw new IllegalArgumentException("Could not access constructor of evaluator class "
+                    + evaluableClass.getName());
+        }
+
+        REGISTRY.put(criteriaClass, constructor);
 
     }
 
+    /**
+     * Register the library's built-in criteria-evaluator mappings, without reference to the default mappings
+     * properties file.
+     */
+    public static synchronized void registerBuiltinMappings() {
+        Logger log = getLogger();
+        log.debug("Registering built-in evaluable credential criteria mappings");
+
+        register(EntityIDCriteria.class, EvaluableEntityIDCredentialCriteria.class);
+        register(KeyAlgorithmCriteria.class, EvaluableKeyAlgorithmCredentialCriteria.class);
+        register(KeyLengthCriteria.class, EvaluableKeyLengthCredentialCriteria.class);
+        register(KeyNameCriteria.class, EvaluableKeyNameCredentialCriteria.class);
+        register(PublicKeyCriteria.class, EvaluablePublicKeyCredentialCriteria.class);
+        register(UsageCriteria.class, EvaluableUsageCredentialCriteria.class);
+        register(X509IssuerSerialCriteria.class, EvaluableX509IssuerSerialCredentialCriteria.class);
+        register(X509SubjectKeyIdentifierCriteria.class, EvaluableX509SubjectKeyIdentifierCredentialCriteria.class);
+        register(X509SubjectNameCriteria.class, EvaluableX509SubjectNameCredentialCriteria.class);
+        register(X509DigestCriteria.class, EvaluableX509DigestCredentialCriteria.class);
+    }
+
     /**
      * Deregister a criteria-evaluator mapping.
      * 
@@ -143,7 +193,7 @@ public final class EvaluableCredentialCriteriaRegistry {
         Logger log = getLogger();
 
         log.debug("Deregistering evaluator for class {}", criteriaClass.getName());
-        registry.remove(criteriaClass);
+        REGISTRY.remove(criteriaClass);
     }
 
     /**
@@ -153,7 +203,7 @@ public final class EvaluableCredentialCriteriaRegistry {
         Logger log = getLogger();
         log.debug("Clearing evaluable criteria registry");
 
-        registry.clear();
+        REGISTRY.clear();
     }
 
     /**
@@ -173,8 +223,6 @@ public final class EvaluableCredentialCriteriaRegistry {
             return;
         }
 
-        registry = new HashMap<Class<? extends Criteria>, Class<? extends EvaluableCredentialCriteria>>();
-
         loadDefaultMappings();
 
         initialized = true;
@@ -182,14 +230,17 @@ public final class EvaluableCredentialCriteriaRegistry {
 
     /**
      * Load the default set of criteria-evaluator mappings from the default mappings properties file.
+     * 
+     * If the file can not be read, the built-in mappings are registered instead.
      */
     public static synchronized void loadDefaultMappings() {
         Logger log = getLogger();
         log.debug("Loading default evaluable credential criteria mappings");
         InputStream inStream = EvaluableCredentialCriteriaRegistry.class.getResourceAsStream(DEFAULT_MAPPINGS_FILE);
         if (inStream == null) {
-            log.error(String.format("Could not open resource stream from default mappings file '%s'",
-                    DEFAULT_MAPPINGS_FILE));
+            log.error(String.format("Could not open resource stream from default mappings file '%s', "
+                    + "registering built-in mappings", DEFAULT_MAPPINGS_FILE));
+            registerBuiltinMappings();
             return;
         }
 
@@ -197,7 +248,8 @@ public final class EvaluableCredentialCriteriaRegistry {
         try {
             defaultMappings.load(inStream);
         } catch (IOException e) {
-            log.error("Error loading properties file from resource stream", e);
+            log.error("Error loading properties file from resource stream, registering built-in mappings", e);
+            registerBuiltinMappings();
             return;
         }
 
@@ -241,7 +293,12 @@ public final class EvaluableCredentialCriteriaRegistry {
                 return;
             }
 
-            register(criteriaClass, evaluableClass);
+            try {
+                register(criteriaClass, evaluableClass);
+            } catch (IllegalArgumentException e) {
+                log.error(String.format("Could not register evaluator class name '%s', skipping registration",
+                        evaluatorName), e);
+            }
         }
 
     }
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.keyinfo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.io.Marshaller;
+import org.opensaml.xml.io.MarshallingException;
+import org.opensaml.xml.io.Unmarshaller;
+import org.opensaml.xml.io.UnmarshallingException;
+import org.opensaml.xml.parse.XMLParserException;
+import org.opensaml.xml.security.SecurityException;
+import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.signature.KeyInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * A {@link KeyInfoGeneratorFactory} which wraps another factory and memoizes the KeyInfo generated for each
+ * credential.
+ *
+ * <p>
+ * The first time a credential is seen, the KeyInfo is generated by a generator of the wrapped factory, and its
+ * marshalled DOM is kept as a template. Later requests for the same credential unmarshall a new KeyInfo around a copy
+ * of the template, which is considerably cheaper than, for example, re-encoding an X.509 certificate chain. Each
+ * returned KeyInfo is a distinct object with its own cached DOM, so it may be added to a signature or encrypted
+ * structure like a freshly generated one.
+ * </p>
+ *
+ * <p>
+ * Credentials are compared as they are by their own equals method, which for the credential implementations of this
+ * library is object identity. The generation options are those of the wrapped factory; if they, or the keying
+ * material of a cached credential, are changed after KeyInfo has been cached, {@link #clearCache()} must be called.
+ * The cache holds at most a configurable number of credentials, evicting the least recently used.
+ * </p>
+ *
+ * <p>
+ * Instances may be registered with a {@link KeyInfoGeneratorManager} or {@link NamedKeyInfoGeneratorManager} in place
+ * of the wrapped factory, since they handle the same credential type.
+ * </p>
+ */
+public class CachingKeyInfoGeneratorFactory implements KeyInfoGeneratorFactory {
+
+    /** Default maximum number of cached credentials. */
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(CachingKeyInfoGeneratorFactory.class);
+
+    /** The wrapped factory. */
+    private final KeyInfoGeneratorFactory delegate;
+
+    /** Marshalled KeyInfo templates indexed by credential. */
+    private final Map<Credential, Element> templates;
+
+    /**
+     * Constructor.
+     *
+     * @param wrappedFactory the factory whose generated KeyInfo is cached
+     */
+    public CachingKeyInfoGeneratorFactory(KeyInfoGeneratorFactory wrappedFactory) {
+        this(wrappedFactory, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param wrappedFactory the factory whose generated KeyInfo is cached
+     * @param maxEntries maximum number of credentials for which KeyInfo is cached
+     */
+    public CachingKeyInfoGeneratorFactory(KeyInfoGeneratorFactory wrappedFactory, final int maxEntries) {
+        if (wrappedFactory == null) {
+            throw new IllegalArgumentException("Wrapped KeyInfo generator factory may not be null");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of cache entries must be greater than 0");
+        }
+        delegate = wrappedFactory;
+        templates = new LinkedHashMap<Credential, Element>(16, 0.75f, true) {
+
+            /** Serial version UID. */
+            private static final long serialVersionUID = -5437281694628304515L;
+
+            /** {@inheritDoc} */
+            protected boolean removeEldestEntry(Map.Entry<Credential, Element> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the wrapped factory.
+     *
+     * @return the wrapped factory
+     */
+    public KeyInfoGeneratorFactory getWrappedFactory() {
+        return delegate;
+    }
+
+    /** {@inheritDoc} */
+    public Class<? extends Credential> getCredentialType() {
+        return delegate.getCredentialType();
+    }
+
+    /** {@inheritDoc} */
+    public boolean handles(Credential credential) {
+        return delegate.handles(credential);
+    }
+
+    /** {@inheritDoc} */
+    public KeyInfoGenerator newInstance() {
+        return new CachingKeyInfoGenerator(delegate.newInstance());
+    }
+
+    /**
+     * Discards all cached KeyInfo.
+     */
+    public void clearCache() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+    /**
+     * Gets the number of credentials for which KeyInfo is cached.
+     *
+     * @return the number of cached credentials
+     */
+    public int getCacheSize() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    /**
+     * Gets the cached template for a credential.
+     *
+     * @param credential the credential
+     * @return the template, or null if none is cached
+     */
+    private Element getTemplate(Credential credential) {
+        synchronized (templates) {
+            return templates.get(credential);
+        }
+    }
+
+    /**
+     * Caches a copy of the marshalled KeyInfo as the template for a credential.
+     *
+     * @param credential the credential
+     * @param keyInfo the KeyInfo generated for the credential
+     * @throws SecurityException thrown if the KeyInfo can not be marshalled
+     */
+    private void putTemplate(Credential credential, KeyInfo keyInfo) throws SecurityException {
+        Element keyInfoDOM = keyInfo.getDOM();
+        if (keyInfoDOM == null) {
+            Marshaller marshaller = Configuration.getMarshallerFactory().getMarshaller(KeyInfo.DEFAULT_ELEMENT_NAME);
+            if (marshaller == null) {
+                throw new SecurityException("Could not obtain KeyInfo marshaller from the configuration");
+            }
+            try {
+                keyInfoDOM = marshaller.marshall(keyInfo);
+            } catch (MarshallingException e) {
+                throw new SecurityException("Error marshalling generated KeyInfo", e);
+            }
+        }
+
+        Element template = importElement(keyInfoDOM);
+        synchronized (templates) {
+            templates.put(credential, template);
+        }
+    }
+
+    /**
+     * Builds a new KeyInfo from a template.
+     *
+     * @param template the template
+     * @return the new KeyInfo, which caches a copy of the template as its DOM
+     * @throws SecurityException thrown if the KeyInfo can not be unmarshalled
+     */
+    private KeyInfo fromTemplate(Element template) throws SecurityException {
+        Element copy;
+        synchronized (template) {
+            copy = importElement(template);
+        }
+
+        Unmarshaller unmarshaller = Configuration.getUnmarshallerFactory().getUnmarshaller(
+                KeyInfo.DEFAULT_ELEMENT_NAME);
+        if (unmarshaller == null) {
+            throw new SecurityException("Could not obtain KeyInfo unmarshaller from the configuration");
+        }
+        try {
+            return (KeyInfo) unmarshaller.unmarshall(copy);
+        } catch (UnmarshallingException e) {
+            throw new SecurityException("Error unmarshalling KeyInfo from cached template", e);
+        }
+    }
+
+    /**
+     * Copies an element into a new document of its own.
+     *
+     * @param element the element to copy
+     * @return the copy, which is the document element of a new document
+     * @throws SecurityException thrown if a new document can not be created
+     */
+    private Element importElement(Element element) throws SecurityException {
+        Document document;
+        try {
+            document = Configuration.getParserPool().newDocument();
+        } catch (XMLParserException e) {
+            throw new SecurityException("Error creating document for KeyInfo template", e);
+        }
+        Element copy = (Element) document.importNode(element, true);
+        document.appendChild(copy);
+        return copy;
+    }
+
+    /**
+     * A generator which returns KeyInfo cached by the factory, generating and caching it with a generator of the
+     * wrapped factory if necessary.
+     */
+    public class CachingKeyInfoGenerator implements KeyInfoGenerator {
+
+        /** Generator of the wrapped factory. */
+        private final KeyInfoGenerator generator;
+
+        /**
+         * Constructor.
+         *
+         * @param wrappedGenerator generator of the wrapped factory
+         */
+        protected CachingKeyInfoGenerator(KeyInfoGenerator wrappedGenerator) {
+            generator = wrappedGenerator;
+        }
+
+        /** {@inheritDoc} */
+        public KeyInfo generate(Credential credential) throws SecurityException {
+            if (credential == null) {
+                return generator.generate(credential);
+            }
+
+            Element template = getTemplate(credential);
+            if (template != null) {
+                log.trace("Building KeyInfo from cached template");
+                return fromTemplate(template);
+            }
+
+            KeyInfo keyInfo = generator.generate(credential);
+            if (keyInfo != null) {
+                log.debug("Caching generated KeyInfo for credential");
+                putTemplate(credential, keyInfo);
+            }
+            return keyInfo;
+        }
+    }
+}
@@ -47,6 +47,7 @@ import org.opensaml.xml.Configuration;
 import org.opensaml.xml.XMLObject;
 import org.opensaml.xml.XMLObjectBuilderFactory;
 import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.x509.X509CertificateCache;
 import org.opensaml.xml.security.x509.X509Util;
 import org.opensaml.xml.signature.DEREncodedKeyValue;
 import org.opensaml.xml.signature.DSAKeyValue;
@@ -77,18 +78,42 @@ import org.slf4j.LoggerFactory;
  * 
  * Methods are provided for converting the representation stored in the XMLTooling KeyInfo to Java
  * java.security native types, and for storing these Java native types inside a KeyInfo.
+ * 
+ * Certificates are decoded through a shared {@link X509CertificateCache} unless another cache, or none, is
+ * given, so that certificates which are seen repeatedly are only parsed once.
  */
 public class KeyInfoHelper {
 
     /** Factory for {@link java.security.cert.X509Certificate} and
      * {@link java.security.cert.X509CRL} creation. */
     private static CertificateFactory x509CertFactory;
+
+    /** Cache of decoded certificates used by default when converting X509Certificate elements, may be null. */
+    private static volatile X509CertificateCache certificateCache = new X509CertificateCache();
     
     /** Constructor. */
     protected KeyInfoHelper(){
         
     }    
 
+    /**
+     * Gets the cache of decoded certificates used by default when converting X509Certificate elements.
+     * 
+     * @return the default certificate cache, or null if certificates are always decoded
+     */
+    public static X509CertificateCache getCertificateCache() {
+        return certificateCache;
+    }
+
+    /**
+     * Sets the cache of decoded certificates used by default when converting X509Certificate elements.
+     * 
+     * @param cache the new default certificate cache, or null if certificates should always be decoded
+     */
+    public static void setCertificateCache(X509CertificateCache cache) {
+        certificateCache = cache;
+    }
+
     /**
      * Get the set of key names inside the specified {@link KeyInfo} as a list of strings.
      * 
@@ -165,6 +190,23 @@ public class KeyInfoHelper {
      *          X509 data into {@link java.security.cert.X509Certificate}s.
      */
     public static List<X509Certificate> getCertificates(X509Data x509Data) throws CertificateException {
+        return getCertificates(x509Data, certificateCache);
+    }
+
+    /**
+     * Get a list of the Java {@link java.security.cert.X509Certificate} within the given {@link X509Data}, using the
+     * given cache of decoded certificates.
+     * 
+     * @param x509Data {@link X509Data} from which to extract the certificate
+     * @param cache cache of decoded certificates, or null if the certificates should always be decoded
+     * 
+     * @return a list of Java {@link java.security.cert.X509Certificate}s
+     * 
+     * @throws CertificateException thrown if there is a problem converting the 
+     *          X509 data into {@link java.security.cert.X509Certificate}s.
+     */
+    public static List<X509Certificate> getCertificates(X509Data x509Data, X509CertificateCache cache)
+            throws CertificateException {
         List<X509Certificate> certList = new LinkedList<X509Certificate>();
 
         if (x509Data == null) {
@@ -173,7 +215,7 @@ public class KeyInfoHelper {
 
         for (org.opensaml.xml.signature.X509Certificate xmlCert : x509Data.getX509Certificates()) {
             if (xmlCert != null && xmlCert.getValue() != null) {
-                X509Certificate newCert = getCertificate(xmlCert);
+                X509Certificate newCert = getCertificate(xmlCert, cache);
                 certList.add(newCert);
             }
         }
@@ -193,12 +235,34 @@ public class KeyInfoHelper {
      */
     public static X509Certificate getCertificate(org.opensaml.xml.signature.X509Certificate xmlCert)
             throws CertificateException {
+        return getCertificate(xmlCert, certificateCache);
+    }
+
+    /**
+     * Convert an {@link org.opensaml.xml.signature.X509Certificate} into a native Java representation, using the given
+     * cache of decoded certificates.
+     * 
+     * @param xmlCert an {@link org.opensaml.xml.signature.X509Certificate}
+     * @param cache cache of decoded certificates, or null if the certificate should always be decoded
+     * 
+     * @return a {@link java.security.cert.X509Certificate}
+     * 
+     * @throws CertificateException thrown if there is a problem converting the 
+     *           X509 data into {@link java.security.cert.X509Certificate}s.
+     */
+    public static X509Certificate getCertificate(org.opensaml.xml.signature.X509Certificate xmlCert,
+            X509CertificateCache cache) throws CertificateException {
 
         if (xmlCert == null || xmlCert.getValue() == null) {
             return null;
         }
 
-        Collection<X509Certificate> certs = X509Util.decodeCertificate(Base64.decode(xmlCert.getValue()));
+        byte[] encoded = Base64.decode(xmlCert.getValue());
+        if (cache != null && encoded != null) {
+            return cache.getCertificate(encoded);
+        }
+
+        Collection<X509Certificate> certs = X509Util.decodeCertificate(encoded);
         if (certs != null && certs.iterator().hasNext()) {
             return certs.iterator().next();
         } else {
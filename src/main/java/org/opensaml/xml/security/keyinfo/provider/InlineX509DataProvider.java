@@ -41,6 +41,7 @@ import org.opensaml.xml.security.keyinfo.KeyInfoResolutionContext;
 import org.opensaml.xml.security.x509.BasicX509Credential;
 import org.opensaml.xml.security.x509.InternalX500DNHandler;
 import org.opensaml.xml.security.x509.X500DNHandler;
+import org.opensaml.xml.security.x509.X509CertificateCache;
 import org.opensaml.xml.security.x509.X509Credential;
 import org.opensaml.xml.security.x509.X509Util;
 import org.opensaml.xml.signature.KeyValue;
@@ -77,12 +78,16 @@ public class InlineX509DataProvider extends AbstractKeyInfoProvider {
     
     /** Responsible for parsing and serializing X.500 names to/from {@link X500Principal} instances. */
     private X500DNHandler x500DNHandler;
+
+    /** Cache of decoded certificates, may be null. */
+    private X509CertificateCache certificateCache;
     
     /**
      * Constructor.
      */
     public InlineX509DataProvider() {
         x500DNHandler = new InternalX500DNHandler();
+        certificateCache = KeyInfoHelper.getCertificateCache();
     }
 
     /**
@@ -106,6 +111,25 @@ public class InlineX509DataProvider extends AbstractKeyInfoProvider {
         x500DNHandler = handler;
     }
 
+    /**
+     * Get the cache used to decode inline certificates. Defaults to the cache of {@link KeyInfoHelper} at the time
+     * this provider was constructed.
+     * 
+     * @return the certificate cache, or null if certificates are always decoded
+     */
+    public X509CertificateCache getCertificateCache() {
+        return certificateCache;
+    }
+
+    /**
+     * Set the cache used to decode inline certificates.
+     * 
+     * @param cache the new certificate cache, or null if certificates should always be decoded
+     */
+    public void setCertificateCache(X509CertificateCache cache) {
+        certificateCache = cache;
+    }
+
     /** {@inheritDoc} */
     public boolean handles(XMLObject keyInfoChild) {
         return keyInfoChild instanceof X509Data;
@@ -189,7 +213,7 @@ public class InlineX509DataProvider extends AbstractKeyInfoProvider {
     private List<X509Certificate> extractCertificates(X509Data x509Data) throws SecurityException {
         List<X509Certificate> certs = null;
         try {
-            certs = KeyInfoHelper.getCertificates(x509Data);
+            certs = KeyInfoHelper.getCertificates(x509Data, certificateCache);
         } catch (CertificateException e) {
             log.error("Error extracting certificates from X509Data", e);
             throw new SecurityException("Error extracting certificates from X509Data", e);
@@ -20,6 +20,7 @@ package org.opensaml.xml.security.trust;
 import java.security.Key;
 
 import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.security.credential.UsageType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +29,10 @@ import org.slf4j.LoggerFactory;
  * established if the untrusted key (or public key or symmetric key from the untrusted credential) is matches one of the
  * trusted keys supplied.
  * 
+ * <p>
+ * Trusted keys may be supplied either directly, as keys or credentials, or as a {@link TrustedKeyIndex}, in which case
+ * the untrusted key is compared by fingerprint without iterating over the trusted keys.
+ * </p>
  */
 public class ExplicitKeyTrustEvaluator {
 
@@ -120,4 +125,34 @@ public class ExplicitKeyTrustEvaluator {
         return false;
     }
 
-}
\ No newline at end of file
+    /**
+     * Evaluate trust.
+     * 
+     * @param untrustedCredential the untrusted credential to evaluate
+     * @param trustedKeys index of the trusted keys which serve as the basis for trust
+     * @param entityID the entity ID for which the key must be trusted, may be null
+     * @param usage the usage for which the key must be trusted, may be null
+     * @return true if trust can be established, false otherwise
+     */
+    public boolean validate(Credential untrustedCredential, TrustedKeyIndex trustedKeys, String entityID,
+            UsageType usage) {
+
+        Key untrustedKey = untrustedCredential.getPublicKey();
+        if (untrustedKey == null) {
+            untrustedKey = untrustedCredential.getSecretKey();
+        }
+        if (untrustedKey == null) {
+            log.debug("Untrusted credential contained no key, unable to evaluate");
+            return false;
+        }
+
+        if (trustedKeys.contains(entityID, usage, untrustedKey)) {
+            log.debug("Successfully validated untrusted credential against trusted key index");
+            return true;
+        }
+
+        log.debug("Failed to validate untrusted credential against trusted key index");
+        return false;
+    }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.trust;
+
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.security.credential.UsageType;
+import org.opensaml.xml.util.DatatypeHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An immutable index of trusted keys, held as SHA-256 fingerprints of their encoded form and keyed by the entity ID
+ * and usage of the credential from which each key was taken.
+ *
+ * <p>
+ * Membership follows the same rules as resolving trusted credentials by {@link UsageType} and entity ID criteria: a
+ * key indexed with usage {@link UsageType#UNSPECIFIED} (or with no usage) matches any requested usage, a request for
+ * usage {@link UsageType#UNSPECIFIED} matches keys of any usage, a key indexed without an entity ID matches any
+ * requested entity, and a request without an entity ID matches keys of any entity.
+ * </p>
+ *
+ * <p>
+ * Both the public key and, if present, the secret key of each credential are indexed. Keys which do not support
+ * encoding are not indexed.
+ * </p>
+ *
+ * <p>
+ * The index is a snapshot of the credentials it was built from and does not follow later changes to them. Whoever
+ * holds an index must replace it with a new one whenever the set of trusted credentials changes.
+ * </p>
+ */
+public class TrustedKeyIndex {
+
+    /** Digest algorithm used to fingerprint keys. */
+    public static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(TrustedKeyIndex.class);
+
+    /** Fingerprints by entity ID and usage. Keys without an entity ID are indexed under the null entity ID. */
+    private final Map<String, Map<UsageType, Set<Fingerprint>>> byEntity;
+
+    /** Fingerprints of all keys, regardless of entity ID, by usage. */
+    private final Map<UsageType, Set<Fingerprint>> anyEntity;
+
+    /** Number of indexed keys. */
+    private final int size;
+
+    /**
+     * Constructor.
+     *
+     * @param trustedCredentials the credentials whose keys are to be trusted
+     */
+    public TrustedKeyIndex(Iterable<Credential> trustedCredentials) {
+        byEntity = new HashMap<String, Map<UsageType, Set<Fingerprint>>>();
+        anyEntity = new EnumMap<UsageType, Set<Fingerprint>>(UsageType.class);
+
+        MessageDigest digest = newDigest();
+        int count = 0;
+        if (trustedCredentials != null) {
+            for (Credential credential : trustedCredentials) {
+                if (credential == null) {
+                    continue;
+                }
+                String entityID = DatatypeHelper.safeTrimOrNullString(credential.getEntityId());
+                UsageType usage = credential.getUsageType() != null ? credential.getUsageType()
+                        : UsageType.UNSPECIFIED;
+                for (Key key : new Key[] { credential.getPublicKey(), credential.getSecretKey() }) {
+                    Fingerprint fingerprint = fingerprint(digest, key);
+                    if (fingerprint != null) {
+                        add(entityID, usage, fingerprint);
+                        count++;
+                    }
+                }
+            }
+        }
+        size = count;
+        log.debug("Indexed {} trusted keys", size);
+    }
+
+    /**
+     * Gets the number of keys in the index.
+     *
+     * @return number of indexed keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the given key is trusted for the given entity and usage.
+     *
+     * @param entityID the entity ID for which the key must be trusted, or null if any entity is acceptable
+     * @param usage the usage for which the key must be trusted, or null if any usage is acceptable
+     * @param key the key to check
+     *
+     * @return true if the key is trusted, false otherwise
+     */
+    public boolean contains(String entityID, UsageType usage, Key key) {
+        Fingerprint fingerprint = fingerprint(newDigest(), key);
+        if (fingerprint == null) {
+            return false;
+        }
+
+        String requestedEntity = DatatypeHelper.safeTrimOrNullString(entityID);
+        if (requestedEntity == null) {
+            return contains(anyEntity, usage, fingerprint);
+        }
+        return contains(byEntity.get(requestedEntity), usage, fingerprint)
+                || contains(byEntity.get(null), usage, fingerprint);
+    }
+
+    /**
+     * Checks whether the fingerprint is held in the given usage map under a usage compatible with the requested usage.
+     *
+     * @param byUsage map of fingerprints by usage, may be null
+     * @param usage the requested usage, may be null
+     * @param fingerprint the fingerprint to look for
+     *
+     * @return true if the fingerprint is present under a compatible usage, false otherwise
+     */
+    private boolean contains(Map<UsageType, Set<Fingerprint>> byUsage, UsageType usage, Fingerprint fingerprint) {
+        if (byUsage == null) {
+            return false;
+        }
+        if (usage == null || usage == UsageType.UNSPECIFIED) {
+            for (Set<Fingerprint> fingerprints : byUsage.values()) {
+                if (fingerprints.contains(fingerprint)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return contains(byUsage.get(usage), fingerprint) || contains(byUsage.get(UsageType.UNSPECIFIED), fingerprint);
+    }
+
+    /**
+     * Null-safe set membership check.
+     *
+     * @param fingerprints set of fingerprints, may be null
+     * @param fingerprint the fingerprint to look for
+     *
+     * @return true if the set is present and contains the fingerprint
+     */
+    private boolean contains(Set<Fingerprint> fingerprints, Fingerprint fingerprint) {
+        return fingerprints != null && fingerprints.contains(fingerprint);
+    }
+
+    /**
+     * Adds a fingerprint to the index.
+     *
+     * @param entityID entity ID of the key, may be null
+     * @param usage usage of the key
+     * @param fingerprint fingerprint of the key
+     */
+    private void add(String entityID, UsageType usage, Fingerprint fingerprint) {
+        Map<UsageType, Set<Fingerprint>> byUsage = byEntity.get(entityID);
+        if (byUsage == null) {
+            byUsage = new EnumMap<UsageType, Set<Fingerprint>>(UsageType.class);
+            byEntity.put(entityID, byUsage);
+        }
+        add(byUsage, usage, fingerprint);
+        add(anyEntity, usage, fingerprint);
+    }
+
+    /**
+     * Adds a fingerprint to a usage map.
+     *
+     * @param byUsage map of fingerprints by usage
+     * @param usage usage of the key
+     * @param fingerprint fingerprint of the key
+     */
+    private void add(Map<UsageType, Set<Fingerprint>> byUsage, UsageType usage, Fingerprint fingerprint) {
+        Set<Fingerprint> fingerprints = byUsage.get(usage);
+        if (fingerprints == null) {
+            fingerprints = new HashSet<Fingerprint>();
+            byUsage.put(usage, fingerprints);
+        }
+        fingerprints.add(fingerprint);
+    }
+
+    /**
+     * Computes the fingerprint of a key.
+     *
+     * @param digest digest used to compute the fingerprint
+     * @param key the key, may be null
+     *
+     * @return the fingerprint, or null if the key is null or does not support encoding
+     */
+    private Fingerprint fingerprint(MessageDigest digest, Key key) {
+        if (key == null) {
+            return null;
+        }
+        byte[] encoded = key.getEncoded();
+        if (encoded == null) {
+            log.debug("Key of algorithm {} does not support encoding, it can not be fingerprinted", key
+                    .getAlgorithm());
+            return null;
+        }
+        return new Fingerprint(digest.digest(encoded));
+    }
+
+    /**
+     * Creates a new fingerprint digest.
+     *
+     * @return the digest
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is a mandatory JCA algorithm
+            throw new IllegalStateException("Digest algorithm " + FINGERPRINT_ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * A key fingerprint.
+     */
+    private static final class Fingerprint {
+
+        /** Fingerprint bytes. */
+        private final byte[] value;
+
+        /** Precomputed hash code. */
+        private final int hashCode;
+
+        /**
+         * Constructor.
+         *
+         * @param fingerprint fingerprint bytes
+         */
+        private Fingerprint(byte[] fingerprint) {
+            value = fingerprint;
+            hashCode = Arrays.hashCode(fingerprint);
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            return obj instanceof Fingerprint && Arrays.equals(value, ((Fingerprint) obj).value);
+        }
+    }
+}
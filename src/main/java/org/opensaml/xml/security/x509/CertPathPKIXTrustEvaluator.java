@@ -33,10 +33,13 @@ import java.security.cert.X509CertSelector;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.opensaml.xml.security.SecurityException;
 import org.slf4j.Logger;
@@ -59,6 +62,13 @@ public class CertPathPKIXTrustEvaluator implements PKIXTrustEvaluator {
     /** Options influencing processing behavior. */
     private PKIXValidationOptions options;
 
+    /** Optional cache of successful validation results. */
+    private PKIXValidationResultCache resultCache;
+
+    /** Trust anchors built by {@link #buildTrustAnchor(X509Certificate)} for each validation information snapshot. */
+    private final Map<PKIXValidationInformationSnapshot, Set<TrustAnchor>> snapshotTrustAnchors =
+        Collections.synchronizedMap(new WeakHashMap<PKIXValidationInformationSnapshot, Set<TrustAnchor>>());
+
     /** Constructor. */
     public CertPathPKIXTrustEvaluator() {
         options = new PKIXValidationOptions();
@@ -93,6 +103,33 @@ public class CertPathPKIXTrustEvaluator implements PKIXTrustEvaluator {
             throw new IllegalArgumentException("PKIXValidationOptions may not be null");
         }
         options = newOptions;
+        if (resultCache != null) {
+            resultCache.clear();
+        }
+    }
+
+    /**
+     * Get the cache of successful validation results.
+     * 
+     * Defaults to null, meaning that every credential is validated by building a new certification path.
+     * 
+     * @return the validation result cache, may be null
+     */
+    public PKIXValidationResultCache getValidationResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Set the cache of successful validation results.
+     * 
+     * Results are keyed by the identity of the {@link PKIXValidationInformation} instance, so a cache is only
+     * effective when the validation information is supplied by a resolver which returns the same instances across
+     * calls, such as {@link StaticPKIXValidationInformationResolver}.
+     * 
+     * @param cache the validation result cache, or null to disable caching
+     */
+    public void setValidationResultCache(PKIXValidationResultCache cache) {
+        resultCache = cache;
     }
 
     /**
@@ -129,6 +166,17 @@ public class CertPathPKIXTrustEvaluator implements PKIXTrustEvaluator {
                     X509Util.getIdentifiersToken(untrustedCredential, x500DNHandler));
         }        
         
+        PKIXValidationResultCache cache = resultCache;
+        PKIXValidationResultCache.ResultKey cacheKey = null;
+        if (cache != null) {
+            cacheKey = cache.buildKey(validationInfo, untrustedCredential, options.isProcessCredentialCRLs());
+            if (cacheKey != null && cache.isValidated(cacheKey)) {
+                log.debug("PKIX validation succeeded for untrusted credential based on cached result: {}",
+                        X509Util.getIdentifiersToken(untrustedCredential, x500DNHandler));
+                return true;
+            }
+        }
+        
         try {
             PKIXBuilderParameters params = getPKIXBuilderParameters(validationInfo, untrustedCredential);
 
@@ -141,6 +189,10 @@ public class CertPathPKIXTrustEvaluator implements PKIXTrustEvaluator {
                 log.debug("PKIX validation succeeded for untrusted credential: {}",
                         X509Util.getIdentifiersToken(untrustedCredential, x500DNHandler));
             }            
+            if (cacheKey != null) {
+                cache.recordValidated(cacheKey, validationInfo, untrustedCredential,
+                        options.isProcessCredentialCRLs());
+            }
             return true;
 
         } catch (CertPathBuilderException e) {
@@ -186,7 +238,15 @@ public class CertPathPKIXTrustEvaluator implements PKIXTrustEvaluator {
         log.trace("Setting max verification depth to: {} ", effectiveVerifyDepth);
         params.setMaxPathLength(effectiveVerifyDepth);
 
-        CertStore certStore = buildCertStore(validationInfo, untrustedCredential);
+        PKIXValidationInformationSnapshot snapshot = getUsableSnapshot(validationInfo);
+        CertStore certStore;
+        if (snapshot != null) {
+            log.trace("Using precomputed CRL store from PKIX validation information snapshot");
+            params.addCertStore(snapshot.getCRLStore());
+            certStore = buildCredentialCertStore(untrustedCredential);
+        } else {
+            certStore = buildCertStore(validationInfo, untrustedCredential);
+        }
         params.addCertStore(certStore);
 
         boolean isForceRevocationEnabled = false;
@@ -207,7 +267,7 @@ public class CertPathPKIXTrustEvaluator implements PKIXTrustEvaluator {
             log.trace("PKIXBuilderParameters#setRevocationEnabled is being forced to: {}", forcedRevocation);
             params.setRevocationEnabled(forcedRevocation);
         } else {
-            if (storeContainsCRLs(certStore)) {
+            if ((snapshot != null && snapshot.containsCRLs()) || storeContainsCRLs(certStore)) {
                 log.trace("At least one CRL was present in cert store, enabling revocation checking");
                 params.setRevocationEnabled(true);
             } else {
@@ -269,11 +329,39 @@ public class CertPathPKIXTrustEvaluator implements PKIXTrustEvaluator {
     /**
      * Creates the collection of trust anchors to use during validation.
      * 
+     * <p>
+     * The trust anchors of a {@link PKIXValidationInformationSnapshot} are built once by this evaluator and reused for
+     * later validations against the same snapshot.
+     * </p>
+     * 
      * @param validationInfo PKIX validation information
      * 
      * @return trust anchors to use during validation
      */
     protected Set<TrustAnchor> getTrustAnchors(PKIXValidationInformation validationInfo) {
+        if (validationInfo instanceof PKIXValidationInformationSnapshot) {
+            Set<TrustAnchor> trustAnchors = snapshotTrustAnchors.get(validationInfo);
+            if (trustAnchors == null) {
+                trustAnchors = Collections.unmodifiableSet(buildTrustAnchors(validationInfo));
+                snapshotTrustAnchors.put((PKIXValidationInformationSnapshot) validationInfo, trustAnchors);
+            } else {
+                log.trace("Using trust anchors previously built for PKIX validation information snapshot");
+            }
+            return trustAnchors;
+        }
+
+        return buildTrustAnchors(validationInfo);
+    }
+
+    /**
+     * Builds the trust anchors for the certificates of the given PKIX validation information, using
+     * {@link #buildTrustAnchor(X509Certificate)}.
+     * 
+     * @param validationInfo PKIX validation information
+     * 
+     * @return the trust anchors
+     */
+    private Set<TrustAnchor> buildTrustAnchors(PKIXValidationInformation validationInfo) {
         Collection<X509Certificate> validationCertificates = validationInfo.getCertificates();
 
         log.trace("Constructing trust anchors for PKIX validation");
@@ -294,7 +382,8 @@ public class CertPathPKIXTrustEvaluator implements PKIXTrustEvaluator {
     /**
      * Build a trust anchor from the given X509 certificate.
      * 
-     * This could for example be extended by subclasses to add custom name constraints, if desired.
+     * This could for example be extended by subclasses to add custom name constraints, if desired. The anchors built
+     * for a {@link PKIXValidationInformationSnapshot} are reused for the lifetime of the snapshot.
      * 
      * @param cert the certificate which serves as the trust anchor
      * @return the newly constructed TrustAnchor
@@ -347,6 +436,58 @@ public class CertPathPKIXTrustEvaluator implements PKIXTrustEvaluator {
         return CertStore.getInstance("Collection", new CollectionCertStoreParameters(storeMaterial));
     }
     
+    /**
+     * Creates the certificate store holding only the material supplied by the untrusted credential, for use alongside
+     * the precomputed CRL store of a {@link PKIXValidationInformationSnapshot}.
+     * 
+     * @param untrustedCredential credential to be validated
+     * 
+     * @return certificate store used during validation
+     * 
+     * @throws GeneralSecurityException thrown if the certificate store can not be created from the cert and CRL
+     *             material
+     */
+    protected CertStore buildCredentialCertStore(X509Credential untrustedCredential)
+            throws GeneralSecurityException {
+
+        log.trace("Creating cert store of untrusted credential material to use during path validation");
+        List<Object> storeMaterial = new ArrayList<Object>(untrustedCredential.getEntityCertificateChain());
+
+        if (untrustedCredential.getCRLs() != null && !untrustedCredential.getCRLs().isEmpty() 
+                && options.isProcessCredentialCRLs()) {
+            log.trace("Processing CRL's from untrusted credential");
+            addCRLsToStoreMaterial(storeMaterial, untrustedCredential.getCRLs(), new Date());
+        }
+
+        return CertStore.getInstance("Collection", new CollectionCertStoreParameters(storeMaterial));
+    }
+
+    /**
+     * Get the validation information as a snapshot whose precomputed CRL store may be used in place of building one.
+     * 
+     * The precomputed store holds all of the snapshot's CRLs, so it is only usable if the current options would not
+     * exclude any of them, i.e. if none are expired and either none are empty or empty CRLs are processed.
+     * 
+     * @param validationInfo PKIX validation information
+     * @return the usable snapshot, or null if the validation information is not a snapshot or its CRL store is not
+     *          usable
+     */
+    protected PKIXValidationInformationSnapshot getUsableSnapshot(PKIXValidationInformation validationInfo) {
+        if (!(validationInfo instanceof PKIXValidationInformationSnapshot)) {
+            return null;
+        }
+        PKIXValidationInformationSnapshot snapshot = (PKIXValidationInformationSnapshot) validationInfo;
+        if (snapshot.containsExpiredCRLs(new Date())) {
+            log.trace("PKIX validation information snapshot contains expired CRL's, building cert store");
+            return null;
+        }
+        if (snapshot.containsEmptyCRLs() && !options.isProcessEmptyCRLs()) {
+            log.trace("PKIX validation information snapshot contains empty CRL's, building cert store");
+            return null;
+        }
+        return snapshot;
+    }
+
     /**
      * Add CRL's from the specified collection to the list of certs and CRL's being collected
      * for the CertStore.
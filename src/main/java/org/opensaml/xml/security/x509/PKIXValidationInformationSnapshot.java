@@ -0,0 +1,162 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.x509;
+
+import java.security.GeneralSecurityException;
+import java.security.cert.CertStore;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * An immutable implementation of {@link PKIXValidationInformation} which precomputes the material that
+ * {@link CertPathPKIXTrustEvaluator} would otherwise rebuild on every validation.
+ *
+ * <p>
+ * The snapshot copies the certificates, CRLs and verification depth of the wrapped information at construction time
+ * and holds a {@link CertStore} of the CRLs. Since a snapshot never changes, evaluators may also build its trust
+ * anchors once and reuse them. Resolvers whose information changes over time should not use snapshots.
+ * </p>
+ *
+ * <p>
+ * Whether CRLs are used during validation depends on the evaluator's {@link PKIXValidationOptions} and the current
+ * time. The snapshot therefore records whether any of its CRLs are empty and when the earliest of them expires, so
+ * that an evaluator can tell whether the precomputed store matches what it would build itself.
+ * </p>
+ */
+public class PKIXValidationInformationSnapshot implements PKIXValidationInformation {
+
+    /** Certs used as the trust anchors. */
+    private final Collection<X509Certificate> certificates;
+
+    /** CRLs used during validation. */
+    private final Collection<X509CRL> crls;
+
+    /** Max verification depth during PKIX validation. */
+    private final Integer verificationDepth;
+
+    /** Certificate store holding the CRLs. */
+    private final CertStore crlStore;
+
+    /** Whether any of the CRLs are empty. */
+    private final boolean containsEmptyCRLs;
+
+    /** Earliest nextUpdate time of the CRLs, or null if no CRL has a nextUpdate time. */
+    private final Date earliestNextUpdate;
+
+    /**
+     * Constructor.
+     *
+     * @param info the PKIX validation information to snapshot
+     *
+     * @throws GeneralSecurityException thrown if the CRL store can not be created
+     */
+    public PKIXValidationInformationSnapshot(PKIXValidationInformation info) throws GeneralSecurityException {
+        if (info == null) {
+            throw new IllegalArgumentException("PKIX validation information may not be null");
+        }
+
+        if (info.getCertificates() != null) {
+            certificates = Collections.unmodifiableList(new ArrayList<X509Certificate>(info.getCertificates()));
+        } else {
+            certificates = Collections.emptyList();
+        }
+
+        if (info.getCRLs() != null) {
+            crls = Collections.unmodifiableList(new ArrayList<X509CRL>(info.getCRLs()));
+        } else {
+            crls = Collections.emptyList();
+        }
+
+        verificationDepth = info.getVerificationDepth();
+
+        boolean emptyCRLs = false;
+        Date nextUpdate = null;
+        for (X509CRL crl : crls) {
+            if (crl.getRevokedCertificates() == null || crl.getRevokedCertificates().isEmpty()) {
+                emptyCRLs = true;
+            }
+            // a CRL without a nextUpdate time never expires
+            Date crlNextUpdate = crl.getNextUpdate();
+            if (crlNextUpdate != null && (nextUpdate == null || crlNextUpdate.before(nextUpdate))) {
+                nextUpdate = crlNextUpdate;
+            }
+        }
+        containsEmptyCRLs = emptyCRLs;
+        earliestNextUpdate = nextUpdate;
+
+        crlStore = CertStore.getInstance("Collection", new CollectionCertStoreParameters(crls));
+    }
+
+    /** {@inheritDoc} */
+    public Collection<X509CRL> getCRLs() {
+        return crls;
+    }
+
+    /** {@inheritDoc} */
+    public Collection<X509Certificate> getCertificates() {
+        return certificates;
+    }
+
+    /** {@inheritDoc} */
+    public Integer getVerificationDepth() {
+        return verificationDepth;
+    }
+
+    /**
+     * Gets the certificate store holding the CRLs of this information.
+     *
+     * @return the CRL store
+     */
+    public CertStore getCRLStore() {
+        return crlStore;
+    }
+
+    /**
+     * Gets whether this information holds any CRLs.
+     *
+     * @return true if at least one CRL is present, false otherwise
+     */
+    public boolean containsCRLs() {
+        return !crls.isEmpty();
+    }
+
+    /**
+     * Gets whether any of the CRLs of this information are empty.
+     *
+     * @return true if at least one CRL has no revoked certificates, false otherwise
+     */
+    public boolean containsEmptyCRLs() {
+        return containsEmptyCRLs;
+    }
+
+    /**
+     * Gets whether any of the CRLs of this information have a nextUpdate time before the given time.
+     *
+     * @param now the time to evaluate against
+     *
+     * @return true if at least one CRL is expired, false otherwise
+     */
+    public boolean containsExpiredCRLs(Date now) {
+        return earliestNextUpdate != null && earliestNextUpdate.before(now);
+    }
+}
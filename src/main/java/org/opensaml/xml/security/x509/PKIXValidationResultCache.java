@@ -0,0 +1,289 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.x509;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of successful PKIX validation results.
+ *
+ * <p>
+ * Results are keyed by the identity of the {@link PKIXValidationInformation} instance against which validation was
+ * performed, together with a SHA-256 fingerprint of the untrusted credential's entity certificate, certificate chain
+ * and, if they are processed, CRLs. Callers which refresh their validation information are therefore expected to
+ * supply a new {@link PKIXValidationInformation} instance rather than mutating an existing one.
+ * </p>
+ *
+ * <p>
+ * Each result expires after the configured time-to-live, or earlier if any certificate of the untrusted credential's
+ * chain expires or any CRL which was available to validation reaches its nextUpdate time. Once the configured maximum
+ * number of results is held, the least recently used result is evicted.
+ * </p>
+ *
+ * <p>
+ * Only successful validations are cached; failed validations are always re-evaluated.
+ * </p>
+ */
+public class PKIXValidationResultCache {
+
+    /** Default maximum number of cached results: 1000. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /** Default maximum time-to-live of a cached result, in milliseconds: 10 minutes. */
+    public static final long DEFAULT_MAX_TTL = 10 * 60 * 1000;
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(PKIXValidationResultCache.class);
+
+    /** Cached results, indexed by key in access order. */
+    private final LinkedHashMap<ResultKey, Long> results;
+
+    /** Maximum number of cached results. */
+    private final int maxEntries;
+
+    /** Maximum time-to-live of a cached result, in milliseconds. */
+    private final long maxTTL;
+
+    /** Constructor. */
+    public PKIXValidationResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_TTL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maximumEntries maximum number of cached results
+     * @param maximumTTL maximum time-to-live of a cached result, in milliseconds
+     */
+    public PKIXValidationResultCache(int maximumEntries, long maximumTTL) {
+        if (maximumEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of entries must be greater than 0");
+        }
+        if (maximumTTL < 1) {
+            throw new IllegalArgumentException("Maximum time-to-live must be greater than 0");
+        }
+        maxEntries = maximumEntries;
+        maxTTL = maximumTTL;
+        results = new LinkedHashMap<ResultKey, Long>(16, 0.75f, true) {
+            /** Serial version UID. */
+            private static final long serialVersionUID = -5396374529427166232L;
+
+            /** {@inheritDoc} */
+            protected boolean removeEldestEntry(Map.Entry<ResultKey, Long> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the maximum number of cached results.
+     *
+     * @return maximum number of cached results
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Gets the maximum time-to-live of a cached result, in milliseconds.
+     *
+     * @return maximum time-to-live of a cached result
+     */
+    public long getMaxTTL() {
+        return maxTTL;
+    }
+
+    /**
+     * Builds the key under which the result of validating the credential against the validation information is
+     * cached.
+     *
+     * @param validationInfo the validation information against which the credential is validated
+     * @param untrustedCredential the credential being validated
+     * @param includeCredentialCRLs whether the CRLs of the credential are processed during validation
+     *
+     * @return the result key, or null if a key could not be computed
+     */
+    public ResultKey buildKey(PKIXValidationInformation validationInfo, X509Credential untrustedCredential,
+            boolean includeCredentialCRLs) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(untrustedCredential.getEntityCertificate().getEncoded());
+            if (untrustedCredential.getEntityCertificateChain() != null) {
+                for (X509Certificate cert : untrustedCredential.getEntityCertificateChain()) {
+                    digest.update(cert.getEncoded());
+                }
+            }
+            if (includeCredentialCRLs && untrustedCredential.getCRLs() != null) {
+                for (X509CRL crl : untrustedCredential.getCRLs()) {
+                    digest.update(crl.getEncoded());
+                }
+            }
+            return new ResultKey(validationInfo, digest.digest());
+        } catch (GeneralSecurityException e) {
+            log.warn("Unable to compute PKIX validation result cache key, result will not be cached", e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether an unexpired successful validation result is cached under the given key.
+     *
+     * @param key the result key
+     *
+     * @return true if the credential was successfully validated and the result has not expired, false otherwise
+     */
+    public synchronized boolean isValidated(ResultKey key) {
+        Long expiration = results.get(key);
+        if (expiration == null) {
+            return false;
+        }
+        if (expiration.longValue() <= System.currentTimeMillis()) {
+            results.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Caches a successful validation result under the given key.
+     *
+     * @param key the result key
+     * @param validationInfo the validation information against which the credential was validated
+     * @param untrustedCredential the credential which was validated
+     * @param includeCredentialCRLs whether the CRLs of the credential were processed during validation
+     */
+    public void recordValidated(ResultKey key, PKIXValidationInformation validationInfo,
+            X509Credential untrustedCredential, boolean includeCredentialCRLs) {
+        long now = System.currentTimeMillis();
+        long expiration = now + maxTTL;
+
+        expiration = Math.min(expiration, untrustedCredential.getEntityCertificate().getNotAfter().getTime());
+        if (untrustedCredential.getEntityCertificateChain() != null) {
+            for (X509Certificate cert : untrustedCredential.getEntityCertificateChain()) {
+                expiration = Math.min(expiration, cert.getNotAfter().getTime());
+            }
+        }
+        expiration = Math.min(expiration, getCRLExpiration(validationInfo.getCRLs(), now));
+        if (includeCredentialCRLs) {
+            expiration = Math.min(expiration, getCRLExpiration(untrustedCredential.getCRLs(), now));
+        }
+
+        if (expiration <= now) {
+            log.trace("PKIX validation result would expire immediately, not caching");
+            return;
+        }
+
+        synchronized (this) {
+            results.put(key, expiration);
+        }
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    /**
+     * Gets the number of cached results, including any which have expired but have not yet been removed.
+     *
+     * @return number of cached results
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Gets the earliest nextUpdate time, still in the future, of the given CRLs.
+     *
+     * <p>
+     * CRLs whose nextUpdate has already passed are ignored, since such CRLs will not be refreshed by waiting.
+     * </p>
+     *
+     * @param crls the CRLs to evaluate, may be null
+     * @param now the current time
+     *
+     * @return the earliest future nextUpdate time, or {@link Long#MAX_VALUE} if there is none
+     */
+    private long getCRLExpiration(Collection<X509CRL> crls, long now) {
+        long expiration = Long.MAX_VALUE;
+        if (crls != null) {
+            for (X509CRL crl : crls) {
+                if (crl.getNextUpdate() != null && crl.getNextUpdate().getTime() > now) {
+                    expiration = Math.min(expiration, crl.getNextUpdate().getTime());
+                }
+            }
+        }
+        return expiration;
+    }
+
+    /**
+     * Key of a cached PKIX validation result.
+     */
+    public static final class ResultKey {
+
+        /** Validation information against which the credential was validated. */
+        private final PKIXValidationInformation validationInfo;
+
+        /** Fingerprint of the validated credential. */
+        private final byte[] fingerprint;
+
+        /** Precomputed hash code. */
+        private final int hashCode;
+
+        /**
+         * Constructor.
+         *
+         * @param info validation information against which the credential was validated
+         * @param credentialFingerprint fingerprint of the validated credential
+         */
+        private ResultKey(PKIXValidationInformation info, byte[] credentialFingerprint) {
+            validationInfo = info;
+            fingerprint = credentialFingerprint;
+            hashCode = 31 * System.identityHashCode(info) + Arrays.hashCode(credentialFingerprint);
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof ResultKey)) {
+                return false;
+            }
+            ResultKey other = (ResultKey) obj;
+            return validationInfo == other.validationInfo && Arrays.equals(fingerprint, other.fingerprint);
+        }
+    }
+}
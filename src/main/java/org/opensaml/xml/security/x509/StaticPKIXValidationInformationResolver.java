@@ -17,6 +17,7 @@
 
 package org.opensaml.xml.security.x509;
 
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -26,13 +27,24 @@ import java.util.Set;
 import org.opensaml.xml.security.CriteriaSet;
 import org.opensaml.xml.security.SecurityException;
 import org.opensaml.xml.security.criteria.EntityIDCriteria;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * An implementation of {@link PKIXValidationInformationResolver} which always returns a static, fixed set of
  * information.
+ * 
+ * <p>
+ * Since the information never changes, each supplied {@link PKIXValidationInformation} is converted once into a
+ * {@link PKIXValidationInformationSnapshot}, allowing trust evaluators to reuse its precomputed CRL store, and the
+ * trust anchors they build from it, across validations.
+ * </p>
  */
 public class StaticPKIXValidationInformationResolver implements PKIXValidationInformationResolver {
 
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(StaticPKIXValidationInformationResolver.class);
+
     /** The PKIX validation information to return. */
     private List<PKIXValidationInformation> pkixInfo;
 
@@ -47,7 +59,10 @@ public class StaticPKIXValidationInformationResolver implements PKIXValidationIn
      */
     public StaticPKIXValidationInformationResolver(List<PKIXValidationInformation> info, Set<String> names) {
         if (info != null) {
-            pkixInfo = new ArrayList<PKIXValidationInformation>(info);
+            pkixInfo = new ArrayList<PKIXValidationInformation>(info.size());
+            for (PKIXValidationInformation infoEntry : info) {
+                pkixInfo.add(buildSnapshot(infoEntry));
+            }
         } else {
             pkixInfo = Collections.EMPTY_LIST;
         }
@@ -89,4 +104,23 @@ public class StaticPKIXValidationInformationResolver implements PKIXValidationIn
         return null;
     }
 
+    /**
+     * Converts the given validation information into a precomputed snapshot.
+     * 
+     * @param info the validation information to convert
+     * 
+     * @return the snapshot, or the original information if it is null, already a snapshot, or can not be converted
+     */
+    protected PKIXValidationInformation buildSnapshot(PKIXValidationInformation info) {
+        if (info == null || info instanceof PKIXValidationInformationSnapshot) {
+            return info;
+        }
+        try {
+            return new PKIXValidationInformationSnapshot(info);
+        } catch (GeneralSecurityException e) {
+            log.warn("Unable to precompute PKIX validation information, it will be processed on each use", e);
+            return info;
+        }
+    }
+
 }
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.x509;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of decoded X.509 certificates, keyed by their encoded form.
+ *
+ * <p>
+ * Peers tend to send the same few certificates in every message, so decoding the certificates carried inline in
+ * KeyInfo repeats the same ASN.1 parsing over and over. This cache returns the certificate previously decoded from
+ * identical bytes instead. Certificates are immutable, so the same instance may safely be shared by all callers.
+ * </p>
+ *
+ * <p>
+ * Once the configured maximum number of certificates is held, the least recently used certificate is evicted.
+ * Certificates whose encoding is larger than the configured maximum size are decoded but never cached. The number of
+ * cache hits, misses and evictions is recorded so that the effectiveness of the cache can be monitored.
+ * </p>
+ *
+ * <p>
+ * This class is thread-safe. Decoding happens outside of the cache lock, so concurrent misses for the same
+ * certificate may each decode it.
+ * </p>
+ */
+public class X509CertificateCache {
+
+    /** Default maximum number of cached certificates: 500. */
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+
+    /** Default maximum size of a cached certificate's encoding, in bytes: 16384. */
+    public static final int DEFAULT_MAX_CERTIFICATE_SIZE = 16384;
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(X509CertificateCache.class);
+
+    /** Cached certificates, indexed by encoding in access order. */
+    private final LinkedHashMap<EncodedCertificate, X509Certificate> certificates;
+
+    /** Maximum number of cached certificates. */
+    private final int maxEntries;
+
+    /** Maximum size of a cached certificate's encoding, in bytes. */
+    private final int maxCertificateSize;
+
+    /** Number of lookups answered from the cache. */
+    private final AtomicLong hits;
+
+    /** Number of lookups which required the certificate to be decoded. */
+    private final AtomicLong misses;
+
+    /** Number of certificates evicted to respect the maximum number of entries. */
+    private final AtomicLong evictions;
+
+    /** Constructor. */
+    public X509CertificateCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_CERTIFICATE_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maximumEntries maximum number of cached certificates
+     * @param maximumCertificateSize maximum size of a cached certificate's encoding, in bytes
+     */
+    public X509CertificateCache(int maximumEntries, int maximumCertificateSize) {
+        if (maximumEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of entries must be greater than 0");
+        }
+        if (maximumCertificateSize < 1) {
+            throw new IllegalArgumentException("Maximum certificate size must be greater than 0");
+        }
+        maxEntries = maximumEntries;
+        maxCertificateSize = maximumCertificateSize;
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        evictions = new AtomicLong();
+        certificates = new LinkedHashMap<EncodedCertificate, X509Certificate>(16, 0.75f, true) {
+            /** Serial version UID. */
+            private static final long serialVersionUID = 2818379542914834566L;
+
+            /** {@inheritDoc} */
+            protected boolean removeEldestEntry(Map.Entry<EncodedCertificate, X509Certificate> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the maximum number of cached certificates.
+     *
+     * @return maximum number of cached certificates
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Gets the maximum size of a cached certificate's encoding, in bytes.
+     *
+     * @return maximum size of a cached certificate's encoding
+     */
+    public int getMaxCertificateSize() {
+        return maxCertificateSize;
+    }
+
+    /**
+     * Gets the certificate with the given encoding, decoding and caching it if it is not already cached.
+     *
+     * <p>
+     * The encoding is decoded with {@link X509Util#decodeCertificate(byte[])}; if it holds more than one certificate,
+     * only the first is returned. The array is not retained by the cache and may be reused by the caller.
+     * </p>
+     *
+     * @param encoded the encoded certificate
+     *
+     * @return the certificate, or null if the encoding held no certificate
+     *
+     * @throws CertificateException thrown if the certificate can not be decoded
+     */
+    public X509Certificate getCertificate(byte[] encoded) throws CertificateException {
+        if (encoded == null) {
+            throw new CertificateException("Encoded certificate may not be null");
+        }
+
+        EncodedCertificate key = new EncodedCertificate(encoded);
+        X509Certificate certificate;
+        synchronized (this) {
+            certificate = certificates.get(key);
+        }
+        if (certificate != null) {
+            hits.incrementAndGet();
+            return certificate;
+        }
+
+        misses.incrementAndGet();
+        Collection<X509Certificate> decoded = X509Util.decodeCertificate(encoded);
+        if (decoded == null || decoded.isEmpty()) {
+            return null;
+        }
+        certificate = decoded.iterator().next();
+
+        if (encoded.length > maxCertificateSize) {
+            log.debug("Encoded certificate of {} bytes exceeds maximum cached size, not caching", encoded.length);
+            return certificate;
+        }
+        synchronized (this) {
+            certificates.put(new EncodedCertificate(encoded.clone(), key.hashCode), certificate);
+        }
+        return certificate;
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     *
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups which required the certificate to be decoded.
+     *
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of certificates evicted to respect the maximum number of entries.
+     *
+     * @return number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the fraction of lookups answered from the cache.
+     *
+     * @return the hit rate, between 0 and 1, or 0 if no lookups have been made
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) hitCount / total;
+    }
+
+    /**
+     * Removes all cached certificates and resets the hit, miss and eviction counts.
+     */
+    public synchronized void clear() {
+        certificates.clear();
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * Gets the number of cached certificates.
+     *
+     * @return number of cached certificates
+     */
+    public synchronized int size() {
+        return certificates.size();
+    }
+
+    /**
+     * The encoded form of a certificate, used as a cache key.
+     */
+    private static final class EncodedCertificate {
+
+        /** Encoded certificate. */
+        private final byte[] encoding;
+
+        /** Precomputed hash code. */
+        private final int hashCode;
+
+        /**
+         * Constructor.
+         *
+         * @param encodedCertificate encoded certificate
+         */
+        private EncodedCertificate(byte[] encodedCertificate) {
+            this(encodedCertificate, Arrays.hashCode(encodedCertificate));
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param encodedCertificate encoded certificate
+         * @param encodingHashCode hash code of the encoded certificate
+         */
+        private EncodedCertificate(byte[] encodedCertificate, int encodingHashCode) {
+            encoding = encodedCertificate;
+            hashCode = encodingHashCode;
+        }
+
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            return obj instanceof EncodedCertificate && Arrays.equals(encoding, ((EncodedCertificate) obj).encoding);
+        }
+    }
+}
@@ -19,6 +19,9 @@ package org.opensaml.xml.signature;
 
 import java.security.Key;
 
+import org.apache.xml.security.algorithms.SignatureAlgorithm;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.signature.SignedInfo;
 import org.apache.xml.security.signature.XMLSignature;
 import org.apache.xml.security.signature.XMLSignatureException;
 import org.opensaml.xml.security.SecurityHelper;
@@ -31,6 +34,20 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A validator that validates an XML Signature on its content.
+ * 
+ * <p>
+ * If {@link #isCacheVerificationState()} is true, the result of validating the signature's References is cached on
+ * the {@link SignatureImpl} the first time it is computed. Subsequent validations of the same signature, typically
+ * with other candidate credentials, then only perform the cryptographic check of the signature value. The cached
+ * result does not reflect later changes to the signed content, so the caller enabling it must discard it with
+ * {@link SignatureImpl#clearVerificationState()} once it has finished evaluating the signature.
+ * </p>
+ * 
+ * <p>
+ * If {@link #isStreamDigests()} is true, the digests of the signature's References are computed by streaming the
+ * canonicalized content directly into the digest, see {@link StreamingReferenceDigester}, where all References are
+ * supported. Otherwise they are computed by the Apache XML Security library as usual.
+ * </p>
  */
 public class SignatureValidator implements Validator<Signature> {
 
@@ -40,6 +57,12 @@ public class SignatureValidator implements Validator<Signature> {
     /** Credential used to validate signature. */
     private Credential validationCredential;
 
+    /** Whether the Reference validation result is cached on the signature. */
+    private boolean cacheVerificationState;
+
+    /** Whether Reference digests are computed by streaming where possible. */
+    private boolean streamDigests;
+
     /**
      * Constructor.
      * 
@@ -65,13 +88,20 @@ public class SignatureValidator implements Validator<Signature> {
         log.debug("Validation credential key algorithm '{}', key instance class '{}'", 
                 validationKey.getAlgorithm(), validationKey.getClass().getName());
 
-        try {
-            if (xmlSig.checkSignatureValue(validationKey)) {
-                log.debug("Signature validated with key from supplied credential");
-                return;
+        boolean valid;
+        if ((cacheVerificationState || streamDigests) && signature instanceof SignatureImpl) {
+            valid = checkSignatureValue((SignatureImpl) signature, xmlSig, validationKey);
+        } else {
+            try {
+                valid = xmlSig.checkSignatureValue(validationKey);
+            } catch (XMLSignatureException e) {
+                throw new ValidationException("Unable to evaluate key against signature", e);
             }
-        } catch (XMLSignatureException e) {
-            throw new ValidationException("Unable to evaluate key against signature", e);
+        }
+
+        if (valid) {
+            log.debug("Signature validated with key from supplied credential");
+            return;
         }
 
         log.debug("Signature cryptographic validation not successful");
@@ -79,6 +109,115 @@ public class SignatureValidator implements Validator<Signature> {
         throw new ValidationException("Signature cryptographic validation not successful");
     }
 
+    /**
+     * Gets whether the Reference validation result is cached on the signature.
+     * 
+     * @return true if verification state is cached, false otherwise
+     */
+    public boolean isCacheVerificationState() {
+        return cacheVerificationState;
+    }
+
+    /**
+     * Sets whether the Reference validation result is cached on the signature.
+     * 
+     * @param cacheState true if verification state should be cached, false otherwise
+     */
+    public void setCacheVerificationState(boolean cacheState) {
+        cacheVerificationState = cacheState;
+    }
+
+    /**
+     * Gets whether Reference digests are computed by streaming where possible.
+     * 
+     * @return true if Reference digests are streamed, false otherwise
+     */
+    public boolean isStreamDigests() {
+        return streamDigests;
+    }
+
+    /**
+     * Sets whether Reference digests are computed by streaming where possible.
+     * 
+     * @param stream true if Reference digests should be streamed, false otherwise
+     */
+    public void setStreamDigests(boolean stream) {
+        streamDigests = stream;
+    }
+
+    /**
+     * Checks the signature value using the supplied key and then validates the References. If
+     * {@link #isCacheVerificationState()} is true, the Reference validation result cached on the signature is reused
+     * where available.
+     * 
+     * <p>
+     * This is equivalent to {@link XMLSignature#checkSignatureValue(Key)}.
+     * </p>
+     * 
+     * @param signature the signature holding the cached verification state
+     * @param xmlSig the Apache XML Security signature object
+     * @param validationKey the candidate validation key
+     * 
+     * @return true if the signature value and the References are valid, otherwise false
+     * 
+     * @throws ValidationException thrown if there is an error evaluating the key against the signature
+     */
+    protected boolean checkSignatureValue(SignatureImpl signature, XMLSignature xmlSig, Key validationKey)
+            throws ValidationException {
+        try {
+            SignedInfo signedInfo = xmlSig.getSignedInfo();
+
+            SignatureAlgorithm sigAlgorithm = new SignatureAlgorithm(signedInfo.getSignatureMethodElement(),
+                    signedInfo.getBaseURI());
+            sigAlgorithm.initVerify(validationKey);
+            sigAlgorithm.update(signedInfo.getCanonicalizedOctetStream());
+            if (!sigAlgorithm.verify(xmlSig.getSignatureValue())) {
+                return false;
+            }
+
+            Boolean referencesValid = null;
+            if (cacheVerificationState) {
+                referencesValid = signature.getReferencesValid();
+            }
+            if (referencesValid == null) {
+                log.debug("Validating signature References");
+                referencesValid = Boolean.valueOf(validateReferences(xmlSig, signedInfo));
+                if (cacheVerificationState) {
+                    signature.setReferencesValid(referencesValid);
+                }
+            } else {
+                log.debug("Using cached result of signature Reference validation");
+            }
+            return referencesValid.booleanValue();
+        } catch (XMLSecurityException e) {
+            throw new ValidationException("Unable to evaluate key against signature", e);
+        }
+    }
+
+    /**
+     * Validates the References of the signature, streaming the Reference digests if {@link #isStreamDigests()} is
+     * true and all References are supported by {@link StreamingReferenceDigester}.
+     * 
+     * @param xmlSig the Apache XML Security signature object
+     * @param signedInfo the signature's SignedInfo
+     * 
+     * @return true if all References are valid, otherwise false
+     * 
+     * @throws XMLSecurityException thrown if there is an error validating the References
+     */
+    protected boolean validateReferences(XMLSignature xmlSig, SignedInfo signedInfo) throws XMLSecurityException {
+        if (streamDigests && StreamingReferenceDigester.isStreamable(xmlSig.getElement())) {
+            log.debug("Validating signature References with streamed digests");
+            try {
+                return StreamingReferenceDigester.verifyDigestValues(xmlSig.getElement());
+            } catch (SignatureException e) {
+                log.debug("Unable to compute streamed Reference digests", e);
+                return false;
+            }
+        }
+        return signedInfo.verify();
+    }
+
     /**
      * Constructs an {@link XMLSignature} from the given signature object.
      * 
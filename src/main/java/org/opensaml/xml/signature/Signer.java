@@ -17,15 +17,36 @@
 
 package org.opensaml.xml.signature;
 
+import java.security.Key;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.xml.security.Init;
+import org.apache.xml.security.algorithms.SignatureAlgorithm;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.signature.SignedInfo;
 import org.apache.xml.security.signature.XMLSignature;
+import org.opensaml.xml.XMLObject;
 import org.opensaml.xml.security.SecurityHelper;
 import org.opensaml.xml.signature.impl.SignatureImpl;
+import org.opensaml.xml.util.Base64;
+import org.opensaml.xml.util.XMLConstants;
+import org.opensaml.xml.util.XMLHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
 
 /**
  * This class is responsible for creating the digital signatures for the given signable XMLObjects.
@@ -57,6 +78,72 @@ public class Signer {
         }
     }
 
+    /**
+     * Signs the given signatures, in parallel where possible, using the supplied executor.
+     * 
+     * <p>
+     * Signatures whose DOM belongs to different documents are signed concurrently. Signatures within the same
+     * document are signed sequentially by a single task, since a DOM may not be modified by multiple threads. Within
+     * a document, a signature whose parent XMLObject is an ancestor of another signature's parent is signed after
+     * that (inner) signature. Signatures of the same parent are signed in the order provided.
+     * </p>
+     * 
+     * <p>
+     * A failure to compute one signature does not abort the batch. A signature which encloses a signature that could
+     * not be computed is not signed and is itself reported as failed.
+     * </p>
+     * 
+     * @param signatures the signatures to compute
+     * @param executor the executor used to run the signing tasks
+     * 
+     * @return the signatures which could not be computed, in the order provided, along with the reason for each
+     *         failure; empty if all signatures were computed
+     * 
+     * @throws SignatureException thrown if the batch can not be run to completion
+     */
+    public static Map<Signature, SignatureException> signObjects(List<Signature> signatures,
+            ExecutorService executor) throws SignatureException {
+        Map<Object, List<Signature>> documentGroups = new LinkedHashMap<Object, List<Signature>>();
+        for (Signature signature : signatures) {
+            Object groupKey = signature;
+            if (signature.getDOM() != null) {
+                groupKey = signature.getDOM().getOwnerDocument();
+            }
+            List<Signature> group = documentGroups.get(groupKey);
+            if (group == null) {
+                group = new ArrayList<Signature>();
+                documentGroups.put(groupKey, group);
+            }
+            group.add(signature);
+        }
+
+        List<Future<Map<Signature, SignatureException>>> results =
+            new ArrayList<Future<Map<Signature, SignatureException>>>(documentGroups.size());
+        for (List<Signature> group : documentGroups.values()) {
+            results.add(executor.submit(new SigningTask(orderForSigning(group))));
+        }
+
+        Map<Signature, SignatureException> groupFailures = new HashMap<Signature, SignatureException>();
+        try {
+            for (Future<Map<Signature, SignatureException>> result : results) {
+                groupFailures.putAll(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SignatureException("Interrupted while waiting for signatures to be computed", e);
+        } catch (ExecutionException e) {
+            throw new SignatureException("Signature computation error", e);
+        }
+
+        Map<Signature, SignatureException> failures = new LinkedHashMap<Signature, SignatureException>();
+        for (Signature signature : signatures) {
+            if (groupFailures.containsKey(signature)) {
+                failures.put(signature, groupFailures.get(signature));
+            }
+        }
+        return failures;
+    }
+
     /**
      * Signs a single XMLObject.
      * 
@@ -64,6 +151,24 @@ public class Signer {
      * @throws SignatureException thrown if there is an error computing the signature
      */
     public static void signObject(Signature signature) throws SignatureException {
+        signObject(signature, false);
+    }
+
+    /**
+     * Signs a single XMLObject, optionally computing the Reference digests by streaming.
+     * 
+     * <p>
+     * If <code>streamDigests</code> is true and all References of the signature are supported by
+     * {@link StreamingReferenceDigester}, the canonicalized content of each Reference is streamed directly into its
+     * digest rather than being buffered first, so that the memory required to sign does not grow with the size of
+     * the signed content. The signature is otherwise computed as usual.
+     * </p>
+     * 
+     * @param signature the signature to computer the signature on
+     * @param streamDigests whether the Reference digests should be computed by streaming where possible
+     * @throws SignatureException thrown if there is an error computing the signature
+     */
+    public static void signObject(Signature signature, boolean streamDigests) throws SignatureException {
         Logger log = getLogger();
         try {
             XMLSignature xmlSignature = ((SignatureImpl) signature).getXMLSignature();
@@ -73,14 +178,117 @@ public class Signer {
                         + "created during marshalling.");
                 throw new SignatureException("XMLObject does not have an XMLSignature instance, unable to compute signature");
             }
-            log.debug("Computing signature over XMLSignature object");
-            xmlSignature.sign(SecurityHelper.extractSigningKey(signature.getSigningCredential()));
+            ((SignatureImpl) signature).clearVerificationState();
+            Key signingKey = SecurityHelper.extractSigningKey(signature.getSigningCredential());
+            if (streamDigests && StreamingReferenceDigester.isStreamable(xmlSignature.getElement())) {
+                log.debug("Computing signature over XMLSignature object with streamed Reference digests");
+                signStreaming(xmlSignature, signingKey);
+            } else {
+                log.debug("Computing signature over XMLSignature object");
+                xmlSignature.sign(signingKey);
+            }
         } catch (XMLSecurityException e) {
             log.error("An error occured computing the digital signature", e);
             throw new SignatureException("Signature computation error", e);
         }
     }
+
+    /**
+     * Computes a signature whose Reference digests are computed by {@link StreamingReferenceDigester}. This is
+     * equivalent to {@link XMLSignature#sign(Key)}.
+     * 
+     * @param xmlSignature the signature to compute
+     * @param signingKey the signing key
+     * 
+     * @throws SignatureException thrown if the Reference digests can not be computed
+     * @throws XMLSecurityException thrown if there is an error computing the signature value
+     */
+    private static void signStreaming(XMLSignature xmlSignature, Key signingKey) throws SignatureException,
+            XMLSecurityException {
+        if (signingKey instanceof PublicKey) {
+            throw new SignatureException("A public key can not be used to compute a signature");
+        }
+
+        Element signatureElement = xmlSignature.getElement();
+        StreamingReferenceDigester.generateDigestValues(signatureElement);
+
+        SignedInfo signedInfo = xmlSignature.getSignedInfo();
+        SignatureAlgorithm sigAlgorithm = new SignatureAlgorithm(signedInfo.getSignatureMethodElement(),
+                signedInfo.getBaseURI());
+        sigAlgorithm.initSign(signingKey);
+        sigAlgorithm.update(signedInfo.getCanonicalizedOctetStream());
+
+        List<Element> signatureValues = XMLHelper.getChildElementsByTagNameNS(signatureElement,
+                XMLConstants.XMLSIG_NS, "SignatureValue");
+        if (signatureValues.isEmpty()) {
+            throw new SignatureException("Signature does not contain a SignatureValue element");
+        }
+        Element signatureValue = signatureValues.get(0);
+        while (signatureValue.getFirstChild() != null) {
+            signatureValue.removeChild(signatureValue.getFirstChild());
+        }
+        XMLHelper.appendTextContent(signatureValue, Base64.encodeBytes(sigAlgorithm.sign()));
+    }
     
+    /**
+     * Orders signatures such that each signature is preceded by all the signatures it encloses.
+     * 
+     * <p>
+     * A signature encloses another if its parent is an ancestor of the other signature's parent, or if both share a
+     * parent and it appears later in the supplied list. Each signature is ranked by the number of signatures which
+     * enclose it, since enclosure is transitive every signature is ranked strictly higher than those enclosing it.
+     * </p>
+     * 
+     * @param signatures the signatures to order
+     * 
+     * @return the signatures in signing order
+     */
+    private static List<Signature> orderForSigning(List<Signature> signatures) {
+        if (signatures.size() < 2) {
+            return signatures;
+        }
+
+        Map<XMLObject, Integer> parentCounts = new HashMap<XMLObject, Integer>();
+        for (Signature signature : signatures) {
+            if (signature.getParent() != null) {
+                Integer count = parentCounts.get(signature.getParent());
+                parentCounts.put(signature.getParent(), count == null ? 1 : count + 1);
+            }
+        }
+
+        final Map<Signature, Integer> enclosureCounts = new HashMap<Signature, Integer>();
+        Map<XMLObject, Integer> parentsSeen = new HashMap<XMLObject, Integer>();
+        for (Signature signature : signatures) {
+            int enclosures = 0;
+            XMLObject parent = signature.getParent();
+            if (parent != null) {
+                Integer seen = parentsSeen.get(parent);
+                seen = seen == null ? 1 : seen + 1;
+                parentsSeen.put(parent, seen);
+                enclosures += parentCounts.get(parent) - seen;
+
+                XMLObject ancestor = parent.getParent();
+                while (ancestor != null) {
+                    Integer count = parentCounts.get(ancestor);
+                    if (count != null) {
+                        enclosures += count;
+                    }
+                    ancestor = ancestor.getParent();
+                }
+            }
+            enclosureCounts.put(signature, enclosures);
+        }
+
+        List<Signature> ordered = new ArrayList<Signature>(signatures);
+        Collections.sort(ordered, new Comparator<Signature>() {
+            /** {@inheritDoc} */
+            public int compare(Signature sig1, Signature sig2) {
+                return enclosureCounts.get(sig2).compareTo(enclosureCounts.get(sig1));
+            }
+        });
+        return ordered;
+    }
+
     /**
      * Get an SLF4J Logger.
      * 
@@ -90,6 +298,55 @@ public class Signer {
         return LoggerFactory.getLogger(Signer.class);
     }
 
+    /**
+     * Task which sequentially computes a group of signatures which share a document.
+     */
+    private static class SigningTask implements Callable<Map<Signature, SignatureException>> {
+
+        /** Signatures to compute, in signing order. */
+        private List<Signature> signatures;
+
+        /**
+         * Constructor.
+         * 
+         * @param orderedSignatures signatures to compute, in signing order
+         */
+        public SigningTask(List<Signature> orderedSignatures) {
+            signatures = orderedSignatures;
+        }
+
+        /** {@inheritDoc} */
+        public Map<Signature, SignatureException> call() {
+            Map<Signature, SignatureException> failures = new HashMap<Signature, SignatureException>();
+            Set<XMLObject> failedScopes = new HashSet<XMLObject>();
+
+            for (Signature signature : signatures) {
+                if (signature.getParent() != null && failedScopes.contains(signature.getParent())) {
+                    failures.put(signature, new SignatureException(
+                            "Signature encloses another signature which could not be computed"));
+                } else {
+                    try {
+                        signObject(signature);
+                        continue;
+                    } catch (SignatureException e) {
+                        failures.put(signature, e);
+                    } catch (RuntimeException e) {
+                        getLogger().error("An error occured computing the digital signature", e);
+                        failures.put(signature, new SignatureException("Signature computation error", e));
+                    }
+                }
+
+                XMLObject scope = signature.getParent();
+                while (scope != null) {
+                    failedScopes.add(scope);
+                    scope = scope.getParent();
+                }
+            }
+
+            return failures;
+        }
+    }
+
     /*
      * Initialize the Apache XML security library if it hasn't been already
      */
@@ -0,0 +1,485 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.signature;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.xml.security.c14n.CanonicalizationException;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.c14n.InvalidCanonicalizerException;
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.util.Base64;
+import org.opensaml.xml.util.DatatypeHelper;
+import org.opensaml.xml.util.XMLConstants;
+import org.opensaml.xml.util.XMLHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Computes and verifies the digests of the References of an XML Signature by streaming the canonicalized referenced
+ * content directly into a {@link MessageDigest}, so that the canonical form of the content is never held in memory.
+ * 
+ * <p>
+ * Only References which can be processed exactly as the Apache XML Security library would process them are
+ * supported. These are same-document References, with an empty URI or a bare-name XPointer resolvable via
+ * {@link Document#getElementById(String)}, whose Transforms consist of an optional enveloped signature transform
+ * followed by at most one canonicalization transform which omits comments. In the absence of a canonicalization
+ * transform the content is canonicalized with inclusive canonicalization, as required by XML Signature. A Signature
+ * with any other Reference is not streamable, see {@link #isStreamable(Element)}, and callers should fall back to the
+ * library's own processing.
+ * </p>
+ * 
+ * <p>
+ * The enveloped signature transform is applied by detaching the Signature element from the DOM while the content is
+ * canonicalized, and reattaching it at its original position afterwards. The DOM must therefore not be accessed by
+ * other threads while digests are computed, which is in any case a requirement of signing and validation.
+ * </p>
+ */
+public final class StreamingReferenceDigester {
+
+    /** Size of the buffer between the canonicalizer and the digest. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Local name of the exclusive canonicalization InclusiveNamespaces element. */
+    private static final String INCLUSIVE_NAMESPACES = "InclusiveNamespaces";
+
+    /** Name of the InclusiveNamespaces PrefixList attribute. */
+    private static final String PREFIX_LIST = "PrefixList";
+
+    /** Constructor. */
+    private StreamingReferenceDigester() {
+
+    }
+
+    /**
+     * Checks whether the digests of all References of the given Signature can be computed by streaming.
+     * 
+     * @param signatureElement the ds:Signature element
+     * 
+     * @return true if all References are supported, false otherwise
+     */
+    public static boolean isStreamable(Element signatureElement) {
+        return parseReferences(signatureElement) != null;
+    }
+
+    /**
+     * Computes the digest of each Reference of the given Signature and stores it as the Reference's DigestValue.
+     * 
+     * @param signatureElement the ds:Signature element
+     * 
+     * @throws SignatureException thrown if the Signature is not streamable or a digest can not be computed
+     */
+    public static void generateDigestValues(Element signatureElement) throws SignatureException {
+        for (ReferenceInfo reference : getReferences(signatureElement)) {
+            byte[] digest = digest(reference, signatureElement);
+            Element digestValue = reference.getDigestValueElement();
+            while (digestValue.getFirstChild() != null) {
+                digestValue.removeChild(digestValue.getFirstChild());
+            }
+            XMLHelper.appendTextContent(digestValue, Base64.encodeBytes(digest));
+        }
+    }
+
+    /**
+     * Computes the digest of each Reference of the given Signature and compares it with the Reference's DigestValue.
+     * 
+     * @param signatureElement the ds:Signature element
+     * 
+     * @return true if the digests of all References match, false otherwise
+     * 
+     * @throws SignatureException thrown if the Signature is not streamable or a digest can not be computed
+     */
+    public static boolean verifyDigestValues(Element signatureElement) throws SignatureException {
+        Logger log = getLogger();
+        for (ReferenceInfo reference : getReferences(signatureElement)) {
+            String digestValue = DatatypeHelper.safeTrimOrNullString(reference.getDigestValueElement()
+                    .getTextContent());
+            if (digestValue == null) {
+                log.debug("Reference '{}' has no DigestValue", reference.getURI());
+                return false;
+            }
+            byte[] expected = Base64.decode(digestValue);
+            if (expected == null || !MessageDigest.isEqual(expected, digest(reference, signatureElement))) {
+                log.debug("Digest of Reference '{}' does not match its DigestValue", reference.getURI());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the References of the given Signature.
+     * 
+     * @param signatureElement the ds:Signature element
+     * 
+     * @return the References
+     * 
+     * @throws SignatureException thrown if the Signature is not streamable
+     */
+    private static List<ReferenceInfo> getReferences(Element signatureElement) throws SignatureException {
+        List<ReferenceInfo> references = parseReferences(signatureElement);
+        if (references == null) {
+            throw new SignatureException("Signature References can not be digested by streaming");
+        }
+        return references;
+    }
+
+    /**
+     * Streams the canonicalized content of a Reference into its digest.
+     * 
+     * @param reference the Reference
+     * @param signatureElement the ds:Signature element containing the Reference
+     * 
+     * @return the digest value
+     * 
+     * @throws SignatureException thrown if the content can not be canonicalized or digested
+     */
+    private static byte[] digest(ReferenceInfo reference, Element signatureElement) throws SignatureException {
+        MessageDigest digest;
+        Canonicalizer canonicalizer;
+        try {
+            digest = MessageDigest.getInstance(reference.getDigestAlgorithm());
+            canonicalizer = Canonicalizer.getInstance(reference.getCanonicalizationAlgorithm());
+        } catch (NoSuchAlgorithmException e) {
+            throw new SignatureException("Digest algorithm " + reference.getDigestAlgorithm() + " is unsupported", e);
+        } catch (InvalidCanonicalizerException e) {
+            throw new SignatureException("Canonicalization algorithm " + reference.getCanonicalizationAlgorithm()
+                    + " is unsupported", e);
+        }
+
+        Node target = reference.getTarget();
+        Node parent = null;
+        Node nextSibling = null;
+        if (reference.isEnveloped() && isAncestorOrSelf(target, signatureElement)) {
+            parent = signatureElement.getParentNode();
+            nextSibling = signatureElement.getNextSibling();
+            parent.removeChild(signatureElement);
+        }
+
+        try {
+            OutputStream sink = new BufferedOutputStream(new DigestOutputStream(new NullOutputStream(), digest),
+                    BUFFER_SIZE);
+            canonicalizer.setWriter(sink);
+            if (reference.getInclusiveNamespaces() != null) {
+                canonicalizer.canonicalizeSubtree(target, reference.getInclusiveNamespaces());
+            } else {
+                canonicalizer.canonicalizeSubtree(target);
+            }
+            sink.flush();
+            return digest.digest();
+        } catch (CanonicalizationException e) {
+            throw new SignatureException("Unable to canonicalize content of Reference '" + reference.getURI() + "'",
+                    e);
+        } catch (IOException e) {
+            throw new SignatureException("Unable to digest content of Reference '" + reference.getURI() + "'", e);
+        } finally {
+            if (parent != null) {
+                parent.insertBefore(signatureElement, nextSibling);
+            }
+        }
+    }
+
+    /**
+     * Parses the References of the given Signature.
+     * 
+     * @param signatureElement the ds:Signature element
+     * 
+     * @return the References, or null if any of them is not supported
+     */
+    private static List<ReferenceInfo> parseReferences(Element signatureElement) {
+        Logger log = getLogger();
+        if (signatureElement == null) {
+            return null;
+        }
+        Element signedInfo = XMLHelper.getFirstChildElement(signatureElement);
+        if (signedInfo == null || !XMLHelper.isElementNamed(signedInfo, XMLConstants.XMLSIG_NS, "SignedInfo")) {
+            return null;
+        }
+
+        List<ReferenceInfo> references = new ArrayList<ReferenceInfo>();
+        for (Element referenceElement : XMLHelper.getChildElementsByTagNameNS(signedInfo, XMLConstants.XMLSIG_NS,
+                "Reference")) {
+            ReferenceInfo reference = parseReference(referenceElement);
+            if (reference == null) {
+                log.debug("Reference '{}' can not be digested by streaming", referenceElement.getAttributeNS(null,
+                        "URI"));
+                return null;
+            }
+            references.add(reference);
+        }
+        return references;
+    }
+
+    /**
+     * Parses a Reference.
+     * 
+     * @param referenceElement the ds:Reference element
+     * 
+     * @return the Reference, or null if it is not supported
+     */
+    private static ReferenceInfo parseReference(Element referenceElement) {
+        if (!referenceElement.hasAttributeNS(null, "URI")) {
+            return null;
+        }
+        String uri = referenceElement.getAttributeNS(null, "URI");
+        Document document = referenceElement.getOwnerDocument();
+        Node target;
+        if (uri.length() == 0) {
+            target = document;
+        } else if (uri.charAt(0) == '#' && uri.indexOf('(') < 0 && uri.length() > 1) {
+            target = document.getElementById(uri.substring(1));
+        } else {
+            return null;
+        }
+        if (target == null) {
+            return null;
+        }
+
+        boolean enveloped = false;
+        String c14nAlgorithm = null;
+        String inclusiveNamespaces = null;
+        Element child = XMLHelper.getFirstChildElement(referenceElement);
+        if (child != null && XMLHelper.isElementNamed(child, XMLConstants.XMLSIG_NS, "Transforms")) {
+            for (Element transform : XMLHelper.getChildElementsByTagNameNS(child, XMLConstants.XMLSIG_NS,
+                    "Transform")) {
+                String algorithm = transform.getAttributeNS(null, "Algorithm");
+                if (c14nAlgorithm != null) {
+                    // no transform may follow canonicalization
+                    return null;
+                } else if (SignatureConstants.TRANSFORM_ENVELOPED_SIGNATURE.equals(algorithm) && !enveloped) {
+                    enveloped = true;
+                } else if (SignatureConstants.TRANSFORM_C14N_EXCL_OMIT_COMMENTS.equals(algorithm)) {
+                    c14nAlgorithm = algorithm;
+                    inclusiveNamespaces = getInclusiveNamespaces(transform);
+                } else if (SignatureConstants.TRANSFORM_C14N_OMIT_COMMENTS.equals(algorithm)
+                        || SignatureConstants.TRANSFORM_C14N11_OMIT_COMMENTS.equals(algorithm)) {
+                    c14nAlgorithm = algorithm;
+                } else {
+                    return null;
+                }
+            }
+            child = XMLHelper.getNextSiblingElement(child);
+        }
+        if (c14nAlgorithm == null) {
+            c14nAlgorithm = SignatureConstants.ALGO_ID_C14N_OMIT_COMMENTS;
+        }
+        try {
+            Canonicalizer.getInstance(c14nAlgorithm);
+        } catch (InvalidCanonicalizerException e) {
+            return null;
+        }
+
+        if (child == null || !XMLHelper.isElementNamed(child, XMLConstants.XMLSIG_NS, "DigestMethod")) {
+            return null;
+        }
+        String digestAlgorithm = SecurityHelper.getAlgorithmIDFromURI(child.getAttributeNS(null, "Algorithm"));
+        if (digestAlgorithm == null) {
+            return null;
+        }
+
+        Element digestValue = XMLHelper.getNextSiblingElement(child);
+        if (digestValue == null || !XMLHelper.isElementNamed(digestValue, XMLConstants.XMLSIG_NS, "DigestValue")) {
+            return null;
+        }
+
+        return new ReferenceInfo(uri, target, enveloped, c14nAlgorithm, inclusiveNamespaces, digestAlgorithm,
+                digestValue);
+    }
+
+    /**
+     * Gets the PrefixList of the InclusiveNamespaces of an exclusive canonicalization transform.
+     * 
+     * @param transform the ds:Transform element
+     * 
+     * @return the prefix list, or null if none is given
+     */
+    private static String getInclusiveNamespaces(Element transform) {
+        List<Element> inclusiveNamespaces = XMLHelper.getChildElementsByTagNameNS(transform,
+                SignatureConstants.TRANSFORM_C14N_EXCL_OMIT_COMMENTS, INCLUSIVE_NAMESPACES);
+        if (inclusiveNamespaces.isEmpty()) {
+            return null;
+        }
+        return DatatypeHelper.safeTrimOrNullString(inclusiveNamespaces.get(0).getAttributeNS(null, PREFIX_LIST));
+    }
+
+    /**
+     * Checks whether a node is an ancestor of, or the same as, another node.
+     * 
+     * @param ancestor the candidate ancestor
+     * @param node the node
+     * 
+     * @return true if the candidate is an ancestor of, or the same as, the node
+     */
+    private static boolean isAncestorOrSelf(Node ancestor, Node node) {
+        Node current = node;
+        while (current != null) {
+            if (current == ancestor) {
+                return true;
+            }
+            current = current.getParentNode();
+        }
+        return false;
+    }
+
+    /**
+     * Get an SLF4J Logger.
+     * 
+     * @return a Logger instance
+     */
+    private static Logger getLogger() {
+        return LoggerFactory.getLogger(StreamingReferenceDigester.class);
+    }
+
+    /**
+     * The processing details of a Reference.
+     */
+    private static final class ReferenceInfo {
+
+        /** Reference URI. */
+        private final String uri;
+
+        /** Node selected by the URI. */
+        private final Node target;
+
+        /** Whether the enveloped signature transform is applied. */
+        private final boolean enveloped;
+
+        /** Canonicalization algorithm URI. */
+        private final String canonicalizationAlgorithm;
+
+        /** Exclusive canonicalization inclusive namespace prefix list, may be null. */
+        private final String inclusiveNamespaces;
+
+        /** JCA digest algorithm ID. */
+        private final String digestAlgorithm;
+
+        /** The ds:DigestValue element. */
+        private final Element digestValueElement;
+
+        /**
+         * Constructor.
+         * 
+         * @param referenceURI Reference URI
+         * @param targetNode node selected by the URI
+         * @param envelopedSignature whether the enveloped signature transform is applied
+         * @param c14nAlgorithm canonicalization algorithm URI
+         * @param prefixList exclusive canonicalization inclusive namespace prefix list, may be null
+         * @param jcaDigestAlgorithm JCA digest algorithm ID
+         * @param digestValue the ds:DigestValue element
+         */
+        private ReferenceInfo(String referenceURI, Node targetNode, boolean envelopedSignature, String c14nAlgorithm,
+                String prefixList, String jcaDigestAlgorithm, Element digestValue) {
+            uri = referenceURI;
+            target = targetNode;
+            enveloped = envelopedSignature;
+            canonicalizationAlgorithm = c14nAlgorithm;
+            inclusiveNamespaces = prefixList;
+            digestAlgorithm = jcaDigestAlgorithm;
+            digestValueElement = digestValue;
+        }
+
+        /**
+         * Gets the Reference URI.
+         * 
+         * @return the Reference URI
+         */
+        public String getURI() {
+            return uri;
+        }
+
+        /**
+         * Gets the node selected by the URI.
+         * 
+         * @return the selected node
+         */
+        public Node getTarget() {
+            return target;
+        }
+
+        /**
+         * Gets whether the enveloped signature transform is applied.
+         * 
+         * @return true if the enveloped signature transform is applied
+         */
+        public boolean isEnveloped() {
+            return enveloped;
+        }
+
+        /**
+         * Gets the canonicalization algorithm URI.
+         * 
+         * @return the canonicalization algorithm URI
+         */
+        public String getCanonicalizationAlgorithm() {
+            return canonicalizationAlgorithm;
+        }
+
+        /**
+         * Gets the exclusive canonicalization inclusive namespace prefix list.
+         * 
+         * @return the prefix list, may be null
+         */
+        public String getInclusiveNamespaces() {
+            return inclusiveNamespaces;
+        }
+
+        /**
+         * Gets the JCA digest algorithm ID.
+         * 
+         * @return the digest algorithm ID
+         */
+        public String getDigestAlgorithm() {
+            return digestAlgorithm;
+        }
+
+        /**
+         * Gets the ds:DigestValue element.
+         * 
+         * @return the DigestValue element
+         */
+        public Element getDigestValueElement() {
+            return digestValueElement;
+        }
+    }
+
+    /**
+     * An output stream which discards everything written to it.
+     */
+    private static final class NullOutputStream extends OutputStream {
+
+        /** {@inheritDoc} */
+        public void write(int b) {
+            // discard
+        }
+
+        /** {@inheritDoc} */
+        public void write(byte[] b, int off, int len) {
+            // discard
+        }
+    }
+}
@@ -17,6 +17,8 @@
 
 package org.opensaml.xml.signature.impl;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.opensaml.xml.security.CriteriaSet;
 import org.opensaml.xml.security.SecurityException;
 import org.opensaml.xml.security.credential.Credential;
@@ -45,6 +47,24 @@ import org.slf4j.LoggerFactory;
  * trust model.
  * </p>
  * 
+ * <p>
+ * If {@link #isCacheVerificationState()} is true, the result of Reference validation is computed at most once per
+ * evaluation of a signature and reused for each candidate verification credential. See
+ * {@link SignatureValidator#setCacheVerificationState(boolean)}. The cached result is discarded when the evaluation
+ * completes, so a later evaluation of the same signature validates its References again.
+ * </p>
+ * 
+ * <p>
+ * By default each KeyInfo-derived credential is used to verify the signature before its trustworthiness is evaluated.
+ * If {@link #isEvaluateTrustFirst()} is true, the order is reversed: credentials which can not be established as
+ * trusted are discarded without verifying the signature, which is preferable when trust evaluation is cheaper than
+ * signature verification, as with explicit keys or cached PKIX validation results. Either order accepts a signature
+ * under exactly the same conditions, except that with trust evaluated first an error during trust processing of a
+ * credential which does not verify the signature is raised rather than ignored. The number of signature
+ * verifications performed, and the number avoided by evaluating trust first, are available from
+ * {@link #getSignatureVerifications()} and {@link #getVerificationsAvoided()}.
+ * </p>
+ * 
  * @param <TrustBasisType> the type of trusted information which has been resolved and which will serve as the basis for
  *            trust evaluation
  * 
@@ -57,6 +77,18 @@ public abstract class BaseSignatureTrustEngine<TrustBasisType> implements Signat
     /** KeyInfo credential resolver used to obtain the signing credential from a Signature's KeyInfo. */
     private KeyInfoCredentialResolver keyInfoCredentialResolver;
 
+    /** Whether signature verification state is reused across candidate credentials. Default value: false */
+    private boolean cacheVerificationState;
+
+    /** Whether trust of KeyInfo-derived credentials is evaluated before signature verification. Default: false */
+    private boolean evaluateTrustFirst;
+
+    /** Number of signature verifications attempted by this engine. */
+    private final AtomicLong signatureVerifications;
+
+    /** Number of signature verifications skipped because the candidate credential was not trusted. */
+    private final AtomicLong verificationsAvoided;
+
     /**
      * Constructor.
      * 
@@ -69,6 +101,8 @@ public abstract class BaseSignatureTrustEngine<TrustBasisType> implements Signat
         }
 
         keyInfoCredentialResolver = keyInfoResolver;
+        signatureVerifications = new AtomicLong();
+        verificationsAvoided = new AtomicLong();
     }
 
     /** {@inheritDoc} */
@@ -76,6 +110,65 @@ public abstract class BaseSignatureTrustEngine<TrustBasisType> implements Signat
         return keyInfoCredentialResolver;
     }
 
+    /**
+     * Gets whether the result of Reference validation is reused across the candidate credentials against which a
+     * signature is verified.
+     * 
+     * @return true if signature verification state is reused, false otherwise
+     */
+    public boolean isCacheVerificationState() {
+        return cacheVerificationState;
+    }
+
+    /**
+     * Sets whether the result of Reference validation is reused across the candidate credentials against which a
+     * signature is verified.
+     * 
+     * @param cacheState true if signature verification state should be reused, false otherwise
+     */
+    public void setCacheVerificationState(boolean cacheState) {
+        cacheVerificationState = cacheState;
+    }
+
+    /**
+     * Gets whether the trustworthiness of KeyInfo-derived credentials is evaluated before they are used to verify the
+     * signature.
+     * 
+     * @return true if trust is evaluated first, false if the signature is verified first
+     */
+    public boolean isEvaluateTrustFirst() {
+        return evaluateTrustFirst;
+    }
+
+    /**
+     * Sets whether the trustworthiness of KeyInfo-derived credentials is evaluated before they are used to verify the
+     * signature.
+     * 
+     * @param trustFirst true if trust should be evaluated first, false if the signature should be verified first
+     */
+    public void setEvaluateTrustFirst(boolean trustFirst) {
+        evaluateTrustFirst = trustFirst;
+    }
+
+    /**
+     * Gets the number of signature verifications attempted by this engine.
+     * 
+     * @return number of signature verifications
+     */
+    public long getSignatureVerifications() {
+        return signatureVerifications.get();
+    }
+
+    /**
+     * Gets the number of signature verifications skipped because a KeyInfo-derived credential was evaluated as
+     * untrusted before being used to verify the signature.
+     * 
+     * @return number of signature verifications avoided
+     */
+    public long getVerificationsAvoided() {
+        return verificationsAvoided.get();
+    }
+
     /**
      * Attempt to establish trust by resolving signature verification credentials from the Signature's KeyInfo. If any
      * credentials so resolved correctly verify the signature, attempt to establish trust using subclass-specific trust
@@ -88,6 +181,24 @@ public abstract class BaseSignatureTrustEngine<TrustBasisType> implements Signat
      * @throws SecurityException if an error occurs during signature verification or trust processing
      */
     protected boolean validate(Signature signature, TrustBasisType trustBasis) throws SecurityException {
+        try {
+            return validateWithKeyInfo(signature, trustBasis);
+        } finally {
+            clearVerificationState(signature);
+        }
+    }
+
+    /**
+     * Attempt to verify the signature and establish trust using the credentials resolved from the Signature's KeyInfo,
+     * as described in {@link #validate(Signature, Object)}.
+     * 
+     * @param signature the Signature to evaluate
+     * @param trustBasis the information which serves as the basis for trust evaluation
+     * @return true if the signature is verified by any KeyInfo-derived credential which can be established as trusted,
+     *         otherwise false
+     * @throws SecurityException if an error occurs during signature verification or trust processing
+     */
+    private boolean validateWithKeyInfo(Signature signature, TrustBasisType trustBasis) throws SecurityException {
 
         log.debug("Attempting to verify signature and establish trust using KeyInfo-derived credentials");
 
@@ -97,6 +208,12 @@ public abstract class BaseSignatureTrustEngine<TrustBasisType> implements Signat
             CriteriaSet keyInfoCriteriaSet = new CriteriaSet(keyInfoCriteria);
 
             for (Credential kiCred : getKeyInfoResolver().resolve(keyInfoCriteriaSet)) {
+                if (evaluateTrustFirst) {
+                    if (validateTrustFirst(signature, kiCred, trustBasis)) {
+                        return true;
+                    }
+                    continue;
+                }
                 if (verifySignature(signature, kiCred)) {
                     log.debug("Successfully verified signature using KeyInfo-derived credential");
                     log.debug("Attempting to establish trust of KeyInfo-derived credential");
@@ -116,6 +233,33 @@ public abstract class BaseSignatureTrustEngine<TrustBasisType> implements Signat
         return false;
     }
 
+    /**
+     * Attempt to establish trust of a KeyInfo-derived credential and, only if it is trusted, to verify the signature
+     * with it.
+     * 
+     * @param signature the Signature to evaluate
+     * @param kiCred the KeyInfo-derived credential
+     * @param trustBasis the information which serves as the basis for trust evaluation
+     * @return true if the credential is trusted and verifies the signature, otherwise false
+     * @throws SecurityException if an error occurs during trust processing
+     */
+    private boolean validateTrustFirst(Signature signature, Credential kiCred, TrustBasisType trustBasis)
+            throws SecurityException {
+        log.debug("Attempting to establish trust of KeyInfo-derived credential");
+        if (!evaluateTrust(kiCred, trustBasis)) {
+            log.debug("Failed to establish trust of KeyInfo-derived credential, skipping signature verification");
+            verificationsAvoided.incrementAndGet();
+            return false;
+        }
+
+        log.debug("Successfully established trust of KeyInfo-derived credential");
+        if (verifySignature(signature, kiCred)) {
+            log.debug("Successfully verified signature using trusted KeyInfo-derived credential");
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Evaluate the untrusted KeyInfo-derived credential with respect to the specified trusted information.
      * 
@@ -137,7 +281,9 @@ public abstract class BaseSignatureTrustEngine<TrustBasisType> implements Signat
      * @return true if the signature can be verified using the key from the credential, otherwise false
      */
     protected boolean verifySignature(Signature signature, Credential credential) {
+        signatureVerifications.incrementAndGet();
         SignatureValidator validator = new SignatureValidator(credential);
+        validator.setCacheVerificationState(cacheVerificationState);
         try {
             validator.validate(signature);
         } catch (ValidationException e) {
@@ -149,6 +295,19 @@ public abstract class BaseSignatureTrustEngine<TrustBasisType> implements Signat
         return true;
     }
 
+    /**
+     * Discard the signature verification state cached by {@link #verifySignature(Signature, Credential)}, if any.
+     * Subclasses which call {@link #verifySignature(Signature, Credential)} outside of
+     * {@link #validate(Signature, Object)} must call this once their evaluation of the signature is complete.
+     * 
+     * @param signature the signature whose cached verification state is discarded
+     */
+    protected void clearVerificationState(Signature signature) {
+        if (cacheVerificationState && signature instanceof SignatureImpl) {
+            ((SignatureImpl) signature).clearVerificationState();
+        }
+    }
+
     /**
      * Check the signature and credential criteria for required values.
      * 
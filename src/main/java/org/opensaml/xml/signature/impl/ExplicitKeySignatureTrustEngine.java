@@ -17,6 +17,9 @@
 
 package org.opensaml.xml.signature.impl;
 
+import java.security.Key;
+
+import org.opensaml.xml.security.Criteria;
 import org.opensaml.xml.security.CriteriaSet;
 import org.opensaml.xml.security.SecurityException;
 import org.opensaml.xml.security.SecurityHelper;
@@ -24,11 +27,14 @@ import org.opensaml.xml.security.SigningUtil;
 import org.opensaml.xml.security.credential.Credential;
 import org.opensaml.xml.security.credential.CredentialResolver;
 import org.opensaml.xml.security.credential.UsageType;
+import org.opensaml.xml.security.criteria.EntityIDCriteria;
 import org.opensaml.xml.security.criteria.KeyAlgorithmCriteria;
 import org.opensaml.xml.security.criteria.UsageCriteria;
 import org.opensaml.xml.security.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xml.security.keyinfo.KeyInfoCriteria;
 import org.opensaml.xml.security.trust.ExplicitKeyTrustEvaluator;
 import org.opensaml.xml.security.trust.TrustedCredentialTrustEngine;
+import org.opensaml.xml.security.trust.TrustedKeyIndex;
 import org.opensaml.xml.signature.Signature;
 import org.opensaml.xml.signature.SignatureTrustEngine;
 import org.opensaml.xml.util.DatatypeHelper;
@@ -45,6 +51,24 @@ import org.slf4j.LoggerFactory;
  * key, then all trusted credentials obtained by the trusted credential resolver will be used to attempt to validate the
  * signature.
  * </p>
+ * 
+ * <p>
+ * If a {@link TrustedKeyIndex} is configured, it is used to accept or reject the credentials obtained from the
+ * Signature's KeyInfo (or the candidate credential supplied for raw signatures) by key fingerprint before any signature
+ * verification is performed. Only indexed credentials are used to verify the signature, and if none of them verifies
+ * it the signature is not trusted, without resolving trusted credentials. The index is consulted only if the trust
+ * basis criteria consist of an {@link EntityIDCriteria} with an entity ID and, optionally, a {@link UsageCriteria},
+ * the usage defaulting to {@link UsageType#SIGNING}. Other trust basis criteria can not be evaluated against the index,
+ * so they, as well as signatures from which no key can be fingerprinted, such as a Signature without a KeyInfo or a raw
+ * signature without a candidate credential, are processed against the trusted credential resolver as described above.
+ * </p>
+ * 
+ * <p>
+ * The index must hold the keys of every credential which the trusted credential resolver would return for the entity
+ * IDs being evaluated, and is a snapshot of them. Whenever those credentials change, the index must be rebuilt with
+ * {@link #rebuildTrustedKeyIndex(CriteriaSet)} or replaced with {@link #setTrustedKeyIndex(TrustedKeyIndex)},
+ * otherwise keys which are no longer trusted remain trusted and new keys are not trusted.
+ * </p>
  */
 public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<Iterable<Credential>> implements
         TrustedCredentialTrustEngine<Signature> {
@@ -58,6 +82,9 @@ public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<It
     /** The external explicit key trust engine to use as a basis for trust in this implementation. */
     private ExplicitKeyTrustEvaluator keyTrust;
 
+    /** Optional index of trusted keys used to accept or reject candidate credentials before verification. */
+    private volatile TrustedKeyIndex trustedKeyIndex;
+
     /**
      * Constructor.
      * 
@@ -80,11 +107,80 @@ public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<It
         return credentialResolver;
     }
 
+    /**
+     * Gets the index of trusted keys used to accept or reject candidate credentials before verification.
+     * 
+     * @return the trusted key index, or null if none is configured
+     */
+    public TrustedKeyIndex getTrustedKeyIndex() {
+        return trustedKeyIndex;
+    }
+
+    /**
+     * Sets the index of trusted keys used to accept or reject candidate credentials before verification. The index
+     * must be replaced, or rebuilt with {@link #rebuildTrustedKeyIndex(CriteriaSet)}, whenever the trusted credentials
+     * change.
+     * 
+     * @param index the trusted key index, or null to resolve trusted credentials from the resolver
+     */
+    public void setTrustedKeyIndex(TrustedKeyIndex index) {
+        trustedKeyIndex = index;
+    }
+
+    /**
+     * Rebuilds the index of trusted keys from the credentials which the trusted credential resolver returns for the
+     * given criteria. The criteria must select every credential the resolver would return for the entity IDs being
+     * evaluated, so only resolvers which can enumerate their credentials in a single resolution, such as static or
+     * collection-based resolvers, are suitable. This must be called again whenever the credentials available from the
+     * resolver change.
+     * 
+     * @param criteriaSet the criteria used to resolve the credentials to index
+     * 
+     * @throws SecurityException thrown if the trusted credentials can not be resolved
+     */
+    public void rebuildTrustedKeyIndex(CriteriaSet criteriaSet) throws SecurityException {
+        if (criteriaSet == null) {
+            throw new IllegalArgumentException("Criteria set may not be null");
+        }
+        log.debug("Rebuilding trusted key index from trusted credential resolver");
+        TrustedKeyIndex index = new TrustedKeyIndex(getCredentialResolver().resolve(criteriaSet));
+        if (index.size() == 0) {
+            log.warn("Trusted credential resolver returned no keys to index, indexed credentials will be rejected");
+        }
+        trustedKeyIndex = index;
+    }
+
     /** {@inheritDoc} */
     public boolean validate(Signature signature, CriteriaSet trustBasisCriteria) throws SecurityException {
 
         checkParams(signature, trustBasisCriteria);
 
+        try {
+            return validateSignature(signature, trustBasisCriteria);
+        } finally {
+            clearVerificationState(signature);
+        }
+    }
+
+    /**
+     * Attempt to verify the signature and establish trust using the trusted key index, if it can be used, or else the
+     * KeyInfo-derived credentials and then the trusted credentials directly.
+     * 
+     * @param signature the Signature to evaluate
+     * @param trustBasisCriteria criteria used to resolve the trusted credentials
+     * @return true if the signature is verified by a trusted credential, otherwise false
+     * @throws SecurityException if an error occurs during signature verification or trust processing
+     */
+    private boolean validateSignature(Signature signature, CriteriaSet trustBasisCriteria) throws SecurityException {
+
+        TrustedKeyIndex index = trustedKeyIndex;
+        if (index != null && isIndexable(trustBasisCriteria)) {
+            Boolean indexed = validateWithIndex(signature, index, trustBasisCriteria);
+            if (indexed != null) {
+                return indexed.booleanValue();
+            }
+        }
+
         CriteriaSet criteriaSet = new CriteriaSet();
         criteriaSet.addAll(trustBasisCriteria);
         if (!criteriaSet.contains(UsageCriteria.class)) {
@@ -122,6 +218,13 @@ public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<It
 
         checkParamsRaw(signature, content, algorithmURI, trustBasisCriteria);
 
+        TrustedKeyIndex index = trustedKeyIndex;
+        if (index != null && candidateCredential != null && isIndexable(candidateCredential)
+                && isIndexable(trustBasisCriteria)) {
+            return validateWithIndex(signature, content, algorithmURI, index, trustBasisCriteria,
+                    candidateCredential);
+        }
+
         CriteriaSet criteriaSet = new CriteriaSet();
         criteriaSet.addAll(trustBasisCriteria);
         if (!criteriaSet.contains(UsageCriteria.class)) {
@@ -180,4 +283,145 @@ public class ExplicitKeySignatureTrustEngine extends BaseSignatureTrustEngine<It
 
         return keyTrust.validate(untrustedCredential, trustedCredentials);
     }
+
+    /**
+     * Attempt to verify the signature using those KeyInfo-derived credentials whose keys are present in the trusted
+     * key index.
+     * 
+     * @param signature the Signature to evaluate
+     * @param index the index of trusted keys
+     * @param trustBasisCriteria criteria which supply the entity ID and usage to check against the index
+     * @return true if the signature is verified by an indexed KeyInfo-derived credential, false if it is not, or null
+     *         if no key could be obtained from the Signature's KeyInfo to check against the index
+     * @throws SecurityException if an error occurs resolving the KeyInfo-derived credentials
+     */
+    protected Boolean validateWithIndex(Signature signature, TrustedKeyIndex index, CriteriaSet trustBasisCriteria)
+            throws SecurityException {
+
+        if (signature.getKeyInfo() == null) {
+            log.debug("Signature contained no KeyInfo element, no key could be checked against trusted key index");
+            return null;
+        }
+
+        log.debug("Attempting to verify signature using KeyInfo-derived credentials present in trusted key index");
+        boolean indexable = false;
+        CriteriaSet keyInfoCriteriaSet = new CriteriaSet(new KeyInfoCriteria(signature.getKeyInfo()));
+        for (Credential kiCred : getKeyInfoResolver().resolve(keyInfoCriteriaSet)) {
+            if (!isIndexable(kiCred)) {
+                continue;
+            }
+            indexable = true;
+            if (evaluateTrust(kiCred, index, trustBasisCriteria)) {
+                if (verifySignature(signature, kiCred)) {
+                    log.debug("Successfully verified signature using indexed KeyInfo-derived credential");
+                    return Boolean.TRUE;
+                }
+            }
+        }
+
+        if (!indexable) {
+            log.debug("No key could be obtained from KeyInfo to check against trusted key index");
+            return null;
+        }
+        log.debug("No KeyInfo-derived credential present in trusted key index verified the signature");
+        return Boolean.FALSE;
+    }
+
+    /**
+     * Attempt to verify the raw signature using the supplied candidate credential, if its key is present in the trusted
+     * key index.
+     * 
+     * @param signature the signature value
+     * @param content the data over which the signature was computed
+     * @param algorithmURI the signing algorithm URI which was used
+     * @param index the index of trusted keys
+     * @param trustBasisCriteria criteria which supply the entity ID and usage to check against the index
+     * @param candidateCredential the untrusted candidate credential
+     * @return true if the signature is verified by the indexed candidate credential, otherwise false
+     */
+    protected boolean validateWithIndex(byte[] signature, byte[] content, String algorithmURI, TrustedKeyIndex index,
+            CriteriaSet trustBasisCriteria, Credential candidateCredential) {
+
+        if (!evaluateTrust(candidateCredential, index, trustBasisCriteria)) {
+            log.debug("Supplied candidate credential is not present in trusted key index");
+            return false;
+        }
+
+        log.debug("Supplied candidate credential is present in trusted key index, attempting to verify signature");
+        try {
+            if (SigningUtil.verifyWithURI(candidateCredential, algorithmURI, signature, content)) {
+                log.debug("Successfully verified signature using indexed candidate credential");
+                return true;
+            }
+        } catch (SecurityException e) {
+            // Swallow this, it's logged by the verifyWithURI method already.
+        }
+        log.debug("Failed to verify signature using indexed candidate credential");
+        return false;
+    }
+
+    /**
+     * Checks whether the trust basis criteria can be evaluated against the trusted key index. This is the case only if
+     * they consist of an {@link EntityIDCriteria} with an entity ID and, optionally, a {@link UsageCriteria}. Without
+     * an entity ID the index would accept the key of any entity, and other criteria are not represented in the
+     * index.
+     * 
+     * @param trustBasisCriteria the trust basis criteria
+     * @return true if the index may be used for the criteria, false if trusted credentials must be resolved
+     */
+    protected boolean isIndexable(CriteriaSet trustBasisCriteria) {
+        EntityIDCriteria entityCriteria = trustBasisCriteria.get(EntityIDCriteria.class);
+        if (entityCriteria == null || DatatypeHelper.isEmpty(entityCriteria.getEntityID())) {
+            log.debug("Trust basis criteria contain no entity ID, trusted key index will not be used");
+            return false;
+        }
+        for (Criteria criteria : trustBasisCriteria) {
+            if (!(criteria instanceof EntityIDCriteria) && !(criteria instanceof UsageCriteria)) {
+                log.debug("Trust basis criteria of type {} can not be evaluated against trusted key index",
+                        criteria.getClass().getName());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a credential holds a key which can be checked against the trusted key index.
+     * 
+     * @param credential the credential
+     * @return true if the credential holds a key which supports encoding, otherwise false
+     */
+    protected boolean isIndexable(Credential credential) {
+        Key key = credential.getPublicKey();
+        if (key == null) {
+            key = credential.getSecretKey();
+        }
+        return key != null && key.getEncoded() != null;
+    }
+
+    /**
+     * Evaluate the untrusted credential against the trusted key index.
+     * 
+     * @param untrustedCredential the untrusted credential being evaluated
+     * @param index the index of trusted keys
+     * @param trustBasisCriteria criteria which supply the entity ID and usage to check against the index
+     * @return true if the credential's key is present in the index, otherwise false
+     */
+    protected boolean evaluateTrust(Credential untrustedCredential, TrustedKeyIndex index,
+            CriteriaSet trustBasisCriteria) {
+
+        String entityID = null;
+        EntityIDCriteria entityCriteria = trustBasisCriteria.get(EntityIDCriteria.class);
+        if (entityCriteria != null) {
+            entityID = entityCriteria.getEntityID();
+        }
+
+        UsageType usage = UsageType.SIGNING;
+        UsageCriteria usageCriteria = trustBasisCriteria.get(UsageCriteria.class);
+        if (usageCriteria != null && usageCriteria.getUsage() != null) {
+            usage = usageCriteria.getUsage();
+        }
+
+        return keyTrust.validate(untrustedCredential, index, entityID, usage);
+    }
 }
\ No newline at end of file
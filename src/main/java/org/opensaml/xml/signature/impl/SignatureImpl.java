@@ -55,6 +55,9 @@ public class SignatureImpl extends AbstractXMLObject implements Signature {
     /** Constructed Apache XML Security signature object. */
     private XMLSignature xmlSignature;
 
+    /** Cached result of Reference validation, null if validation has not yet been performed. */
+    private Boolean referencesValid;
+
     /**
      * Constructor.
      * 
@@ -133,6 +136,7 @@ public class SignatureImpl extends AbstractXMLObject implements Signature {
     public void releaseDOM() {
         super.releaseDOM();
         xmlSignature = null;
+        clearVerificationState();
         
         // Signature's does not treat its children as other XMLObjects do
         // they are more tightly bound to the Signature and can not exist
@@ -159,6 +163,35 @@ public class SignatureImpl extends AbstractXMLObject implements Signature {
      * @param signature an Apache XML Security signature object
      */
     public void setXMLSignature(XMLSignature signature) {
+        if (xmlSignature != signature) {
+            clearVerificationState();
+        }
         xmlSignature = prepareForAssignment(xmlSignature, signature);
     }
+
+    /**
+     * Get the cached result of validating the signature's References.
+     * 
+     * @return true or false if the References have been validated, or null if not yet validated
+     */
+    public Boolean getReferencesValid() {
+        return referencesValid;
+    }
+
+    /**
+     * Set the cached result of validating the signature's References.
+     * 
+     * @param valid the result of validating the References
+     */
+    public void setReferencesValid(Boolean valid) {
+        referencesValid = valid;
+    }
+
+    /**
+     * Discard any state cached during signature verification. This must be called once the evaluation which cached
+     * the state is complete, since the state does not reflect later changes to the signed content.
+     */
+    public void clearVerificationState() {
+        referencesValid = null;
+    }
 }
\ No newline at end of file
@@ -17,9 +17,6 @@
 
 package org.opensaml.xml.signature.impl;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.apache.xml.security.Init;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.signature.XMLSignature;
@@ -27,6 +24,7 @@ import org.opensaml.xml.Configuration;
 import org.opensaml.xml.XMLObject;
 import org.opensaml.xml.io.Marshaller;
 import org.opensaml.xml.io.MarshallingException;
+import org.opensaml.xml.parse.XMLParserException;
 import org.opensaml.xml.security.SecurityHelper;
 import org.opensaml.xml.signature.ContentReference;
 import org.opensaml.xml.signature.KeyInfo;
@@ -58,9 +56,9 @@ public class SignatureMarshaller implements Marshaller {
     /** {@inheritDoc} */
     public Element marshall(XMLObject xmlObject) throws MarshallingException {
         try {
-            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            Document document = Configuration.getParserPool().newDocument();
             return marshall(xmlObject, document);
-        } catch (ParserConfigurationException e) {
+        } catch (XMLParserException e) {
             throw new MarshallingException("Unable to create Document to place marshalled elements in", e);
         }
     }
@@ -36,6 +36,11 @@ import org.slf4j.LoggerFactory;
  * A map of attribute names and attribute values that invalidates the DOM of the attribute owning XMLObject when the
  * attributes change.
  * 
+ * <p>
+ * The map of attributes and the sets of registered attribute names are created when the first attribute is put or
+ * registered, so an empty attribute map holds no collections.
+ * </p>
+ * 
  * <strong>Note:</strong> 
  */
 @NotThreadSafe
@@ -47,15 +52,15 @@ public class AttributeMap implements Map<QName, String> {
     /** XMLObject owning the attributes. */
     private XMLObject attributeOwner;
 
-    /** Map of attributes. */
+    /** Map of attributes, the shared empty map until an attribute is put. */
     private Map<QName, String> attributes;
     
     /** Set of attribute QNames which have been locally registered as having an ID type within this 
-     * AttributeMap instance. */
+     * AttributeMap instance, the shared empty set until one is registered. */
     private Set<QName> idAttribNames;
     
     /** Set of attribute QNames which have been locally registered as having an QName value type within this 
-     * AttributeMap instance. */
+     * AttributeMap instance, the shared empty set until one is registered. */
     private Set<QName> qnameAttribNames;
     
     /** Flag indicating whether an attempt should be made to infer QName values, 
@@ -75,9 +80,9 @@ public class AttributeMap implements Map<QName, String> {
         }
 
         attributeOwner = newOwner;
-        attributes = new LazyMap<QName, String>();
-        idAttribNames = new LazySet<QName>();
-        qnameAttribNames = new LazySet<QName>();
+        attributes = Collections.emptyMap();
+        idAttribNames = Collections.emptySet();
+        qnameAttribNames = Collections.emptySet();
     }
 
     /** {@inheritDoc} */
@@ -85,7 +90,7 @@ public class AttributeMap implements Map<QName, String> {
         String oldValue = get(attributeName);
         if (!DatatypeHelper.safeEquals(value, oldValue)) {
             releaseDOM();
-            attributes.put(attributeName, value);
+            getModifiableAttributes().put(attributeName, value);
             if (isIDAttribute(attributeName) || Configuration.isIDAttribute(attributeName)) {
                 attributeOwner.getIDIndex().deregisterIDMapping(oldValue);
                 attributeOwner.getIDIndex().registerIDMapping(value, attributeOwner);
@@ -126,7 +131,7 @@ public class AttributeMap implements Map<QName, String> {
             if (value != null) {
                 // new value is not null, old value was either null or non-equal
                 String newStringValue = constructAttributeValue(value);
-                attributes.put(attributeName, newStringValue);
+                getModifiableAttributes().put(attributeName, newStringValue);
                 registerQNameValue(attributeName, value);
                 attributeOwner.getNamespaceManager().registerAttributeName(attributeName);
             } else {
@@ -191,7 +196,9 @@ public class AttributeMap implements Map<QName, String> {
             if (isIDAttribute(attributeName) || Configuration.isIDAttribute(attributeName)) {
                 attributeOwner.getIDIndex().deregisterIDMapping(removedValue);
             }
-            attributeOwner.getNamespaceManager().deregisterAttributeName(attributeName);
+            if (!DatatypeHelper.isEmpty(attributeName.getNamespaceURI())) {
+                attributeOwner.getNamespaceManager().deregisterAttributeName(attributeName);
+            }
             checkAndDeregisterQNameValue(attributeName, removedValue);
         }
 
@@ -232,6 +239,9 @@ public class AttributeMap implements Map<QName, String> {
      */
     public void registerID(QName attributeName) {
         if (! idAttribNames.contains(attributeName)) {
+            if (idAttribNames.isEmpty()) {
+                idAttribNames = new LazySet<QName>();
+            }
             idAttribNames.add(attributeName);
         }
         
@@ -276,6 +286,9 @@ public class AttributeMap implements Map<QName, String> {
      * @param attributeName the name of the QName-valued attribute to be registered
      */
     public void registerQNameAttribute(QName attributeName) {
+        if (qnameAttribNames.isEmpty()) {
+            qnameAttribNames = new LazySet<QName>();
+        }
         qnameAttribNames.add(attributeName);
     }
     
@@ -320,6 +333,18 @@ public class AttributeMap implements Map<QName, String> {
         inferQNameValues = flag;
     }
     
+    /**
+     * Gets the map of attributes for modification, replacing the shared empty map if no attribute has been put yet.
+     * 
+     * @return the modifiable map of attributes
+     */
+    private Map<QName, String> getModifiableAttributes() {
+        if (attributes.isEmpty()) {
+            attributes = new LazyMap<QName, String>();
+        }
+        return attributes;
+    }
+
     /**
      * Releases the DOM caching associated XMLObject and its ancestors.
      */
@@ -48,6 +48,12 @@ package org.opensaml.xml.util;
  * </ul>
  * 
  * <p>
+ * Encoding and decoding of byte arrays and strings, other than with GZIP compression, is performed by
+ * {@link Base64Codec}, which should be used directly to encode into or decode from caller-supplied arrays and
+ * buffers.
+ * </p>
+ * 
+ * <p>
  * I am placing this code in the Public Domain. Do with it as you will. This software comes with no guarantees or
  * warranties but with plenty of well-wishing instead! Please visit <a
  * href="http://iharder.net/base64">http://iharder.net/base64</a> periodically to check for updates or to contribute
@@ -155,8 +161,6 @@ public class Base64 {
     // private final static byte BAD_ENCODING = -9; // Indicates error in encoding
     private final static byte WHITE_SPACE_ENC = -5; // Indicates white space in encoding
 
-    private final static byte EQUALS_SIGN_ENC = -1; // Indicates equals sign in encoding
-
     /** Defeats instantiation. */
     private Base64() {
     }
@@ -459,41 +463,10 @@ public class Base64 {
 
         // Else, don't compress. Better not to use streams at all then.
         else {
-            // Convert option to boolean in way that code likes it.
             boolean breakLines = dontBreakLines == 0;
-
-            int len43 = len * 4 / 3;
-            byte[] outBuff = new byte[(len43) // Main 4:3
-                    + ((len % 3) > 0 ? 4 : 0) // Account for padding
-                    + (breakLines ? (len43 / MAX_LINE_LENGTH) : 0)]; // New lines
-            int d = 0;
-            int e = 0;
-            int len2 = len - 2;
-            int lineLength = 0;
-            for (; d < len2; d += 3, e += 4) {
-                encode3to4(source, d + off, 3, outBuff, e);
-
-                lineLength += 4;
-                if (breakLines && lineLength == MAX_LINE_LENGTH) {
-                    outBuff[e + 4] = NEW_LINE;
-                    e++;
-                    lineLength = 0;
-                } // end if: end of line
-            } // en dfor: each piece of array
-
-            if (d < len) {
-                encode3to4(source, d + off, len - d, outBuff, e);
-                e += 4;
-            } // end if: some padding needed
-
-            // Return value according to relevant encoding.
-            try {
-                return new String(outBuff, 0, e, PREFERRED_ENCODING);
-            } // end try
-            catch (java.io.UnsupportedEncodingException uue) {
-                return new String(outBuff, 0, e);
-            } // end catch
-
+            char[] outBuff = new char[Base64Codec.encodedLength(len, breakLines)];
+            Base64Codec.encode(source, off, len, outBuff, 0, breakLines);
+            return new String(outBuff);
         } // end else: don't compress
 
     } // end encodeBytes
@@ -583,44 +556,12 @@ public class Base64 {
      * @since 1.3
      */
     public static byte[] decode(byte[] source, int off, int len) {
-        int len34 = len * 3 / 4;
-        byte[] outBuff = new byte[len34]; // Upper limit on size of output
-        int outBuffPosn = 0;
-
-        byte[] b4 = new byte[4];
-        int b4Posn = 0;
-        int i = 0;
-        byte sbiCrop = 0;
-        byte sbiDecode = 0;
-        for (i = off; i < off + len; i++) {
-            sbiCrop = (byte) (source[i] & 0x7f); // Only the low seven bits
-            sbiDecode = DECODABET[sbiCrop];
-
-            if (sbiDecode >= WHITE_SPACE_ENC) // White space, Equals sign or better
-            {
-                if (sbiDecode >= EQUALS_SIGN_ENC) {
-                    b4[b4Posn++] = sbiCrop;
-                    if (b4Posn > 3) {
-                        outBuffPosn += decode4to3(b4, 0, outBuff, outBuffPosn);
-                        b4Posn = 0;
-
-                        // If that was the equals sign, break out of 'for' loop
-                        if (sbiCrop == EQUALS_SIGN)
-                            break;
-                    } // end if: quartet built
-
-                } // end if: equals sign or better
-
-            } // end if: white space, equals sign or better
-            else {
-                System.err.println("Bad Base64 input character at " + i + ": " + source[i] + "(decimal)");
-                return null;
-            } // end else:
-        } // each input character
-
-        byte[] out = new byte[outBuffPosn];
-        System.arraycopy(outBuff, 0, out, 0, outBuffPosn);
-        return out;
+        byte[] outBuff = new byte[Base64Codec.maxDecodedLength(len)]; // Upper limit on size of output
+        int outBuffPosn = Base64Codec.decode(source, off, len, outBuff, 0);
+        if (outBuffPosn < 0) {
+            return null;
+        }
+        return trim(outBuff, outBuffPosn);
     } // end decode
 
     /**
@@ -631,17 +572,13 @@ public class Base64 {
      * @since 1.4
      */
     public static byte[] decode(String s) {
-        byte[] bytes;
-        try {
-            bytes = s.getBytes(PREFERRED_ENCODING);
-        } // end try
-        catch (java.io.UnsupportedEncodingException uee) {
-            bytes = s.getBytes();
-        } // end catch
-        // </change>
-
         // Decode
-        bytes = decode(bytes, 0, bytes.length);
+        byte[] bytes = new byte[Base64Codec.maxDecodedLength(s.length())];
+        int decoded = Base64Codec.decode(s, 0, s.length(), bytes, 0);
+        if (decoded < 0) {
+            return null;
+        }
+        bytes = trim(bytes, decoded);
 
         // Check to see if it's gzip-compressed
         // GZIP Magic Two-Byte Number: 0x8b1f (35615)
@@ -692,6 +629,23 @@ public class Base64 {
         return bytes;
     } // end decode
 
+    /**
+     * Returns an array holding the first <var>length</var> bytes of <var>bytes</var>, which is <var>bytes</var>
+     * itself if it is of that length.
+     * 
+     * @param bytes the array
+     * @param length the number of bytes to keep
+     * @return the trimmed array
+     */
+    private static byte[] trim(byte[] bytes, int length) {
+        if (bytes.length == length) {
+            return bytes;
+        }
+        byte[] out = new byte[length];
+        System.arraycopy(bytes, 0, out, 0, length);
+        return out;
+    }
+
     /**
      * Attempts to decode Base64 data and deserialize a Java Object within. Returns <tt>null</tt> if there was an
      * error.
@@ -0,0 +1,830 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.util;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A Base64 codec which encodes and decodes directly between caller-supplied arrays and buffers, without allocating
+ * intermediate arrays or strings.
+ * 
+ * <p>
+ * Encoded output uses the standard Base64 alphabet with padding. If line breaks are requested, a newline character is
+ * written after every 76 characters of output which end on a complete group of 3 input bytes, exactly as
+ * {@link Base64#encodeBytes(byte[])} does.
+ * </p>
+ * 
+ * <p>
+ * Decoding skips whitespace and stops after the first group of 4 characters which ends with a padding character,
+ * ignoring any further input. A group whose third character is a padding character yields a single byte. A trailing
+ * group of fewer than 4 characters is ignored. Input containing any other character outside the Base64 alphabet,
+ * including any non-ASCII character, is rejected. This matches the behaviour of
+ * {@link Base64#decode(byte[], int, int)}, except that the legacy decoder ignored the high bit of each input byte.
+ * </p>
+ * 
+ * <p>
+ * The {@link EncoderOutputStream} and {@link DecoderInputStream} wrappers apply the same rules to streamed data.
+ * </p>
+ */
+public final class Base64Codec {
+
+    /** Maximum line length of encoded output. */
+    public static final int MAX_LINE_LENGTH = 76;
+
+    /** Number of input bytes encoded on each line of output. */
+    private static final int LINE_GROUP = MAX_LINE_LENGTH / 4 * 3;
+
+    /** Padding character. */
+    private static final int PAD = '=';
+
+    /** Line break character. */
+    private static final int NEW_LINE = '\n';
+
+    /** Decoding table marker for whitespace. */
+    private static final byte WHITESPACE = -2;
+
+    /** Decoding table marker for characters outside the alphabet. */
+    private static final byte INVALID = -3;
+
+    /** The 64 Base64 characters. */
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .toCharArray();
+
+    /** The 64 Base64 characters as ASCII bytes. */
+    private static final byte[] ALPHABET_BYTES = new byte[ALPHABET.length];
+
+    /**
+     * Decoding table indexed by ASCII character. Holds the 6 bit value of alphabet characters, -1 for the padding
+     * character, {@link #WHITESPACE} or {@link #INVALID}.
+     */
+    private static final byte[] DECODABET = new byte[128];
+
+    static {
+        java.util.Arrays.fill(DECODABET, INVALID);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            ALPHABET_BYTES[i] = (byte) ALPHABET[i];
+            DECODABET[ALPHABET[i]] = (byte) i;
+        }
+        DECODABET[PAD] = -1;
+        DECODABET['\t'] = WHITESPACE;
+        DECODABET['\n'] = WHITESPACE;
+        DECODABET['\r'] = WHITESPACE;
+        DECODABET[' '] = WHITESPACE;
+    }
+
+    /** Constructor. */
+    private Base64Codec() {
+
+    }
+
+    /**
+     * Gets the length of the encoded form of the given number of bytes.
+     * 
+     * @param length number of bytes to encode
+     * @param breakLines whether line breaks are written
+     * 
+     * @return number of encoded characters
+     */
+    public static int encodedLength(int length, boolean breakLines) {
+        int encoded = (length + 2) / 3 * 4;
+        if (breakLines) {
+            encoded += length / LINE_GROUP;
+        }
+        return encoded;
+    }
+
+    /**
+     * Gets the maximum length of the decoded form of the given number of encoded characters.
+     * 
+     * @param length number of encoded characters
+     * 
+     * @return the maximum number of decoded bytes
+     */
+    public static int maxDecodedLength(int length) {
+        return length / 4 * 3;
+    }
+
+    /**
+     * Encodes bytes into characters.
+     * 
+     * @param source the bytes to encode
+     * @param offset offset of the first byte to encode
+     * @param length number of bytes to encode
+     * @param destination array receiving the encoded characters, must have room for
+     *            {@link #encodedLength(int, boolean)} characters
+     * @param destinationOffset offset at which to write the first character
+     * @param breakLines whether line breaks are written
+     * 
+     * @return number of characters written
+     */
+    public static int encode(byte[] source, int offset, int length, char[] destination, int destinationOffset,
+            boolean breakLines) {
+        int d = destinationOffset;
+        int end = offset + length;
+        int fullEnd = offset + length / 3 * 3;
+        int lineGroup = 0;
+        for (int s = offset; s < fullEnd; s += 3) {
+            int bits = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8 | (source[s + 2] & 0xff);
+            destination[d++] = ALPHABET[bits >>> 18];
+            destination[d++] = ALPHABET[(bits >>> 12) & 0x3f];
+            destination[d++] = ALPHABET[(bits >>> 6) & 0x3f];
+            destination[d++] = ALPHABET[bits & 0x3f];
+            lineGroup += 3;
+            if (breakLines && lineGroup == LINE_GROUP) {
+                destination[d++] = NEW_LINE;
+                lineGroup = 0;
+            }
+        }
+        if (fullEnd < end) {
+            int bits = (source[fullEnd] & 0xff) << 16;
+            if (end - fullEnd > 1) {
+                bits |= (source[fullEnd + 1] & 0xff) << 8;
+            }
+            destination[d++] = ALPHABET[bits >>> 18];
+            destination[d++] = ALPHABET[(bits >>> 12) & 0x3f];
+            destination[d++] = end - fullEnd > 1 ? ALPHABET[(bits >>> 6) & 0x3f] : PAD;
+            destination[d++] = PAD;
+        }
+        return d - destinationOffset;
+    }
+
+    /**
+     * Encodes bytes into ASCII bytes.
+     * 
+     * @param source the bytes to encode
+     * @param offset offset of the first byte to encode
+     * @param length number of bytes to encode
+     * @param destination array receiving the encoded characters, must have room for
+     *            {@link #encodedLength(int, boolean)} bytes
+     * @param destinationOffset offset at which to write the first character
+     * @param breakLines whether line breaks are written
+     * 
+     * @return number of bytes written
+     */
+    public static int encode(byte[] source, int offset, int length, byte[] destination, int destinationOffset,
+            boolean breakLines) {
+        int d = destinationOffset;
+        int end = offset + length;
+        int fullEnd = offset + length / 3 * 3;
+        int lineGroup = 0;
+        for (int s = offset; s < fullEnd; s += 3) {
+            int bits = (source[s] & 0xff) << 16 | (source[s + 1] & 0xff) << 8 | (source[s + 2] & 0xff);
+            destination[d++] = ALPHABET_BYTES[bits >>> 18];
+            destination[d++] = ALPHABET_BYTES[(bits >>> 12) & 0x3f];
+            destination[d++] = ALPHABET_BYTES[(bits >>> 6) & 0x3f];
+            destination[d++] = ALPHABET_BYTES[bits & 0x3f];
+            lineGroup += 3;
+            if (breakLines && lineGroup == LINE_GROUP) {
+                destination[d++] = NEW_LINE;
+                lineGroup = 0;
+            }
+        }
+        if (fullEnd < end) {
+            int bits = (source[fullEnd] & 0xff) << 16;
+            if (end - fullEnd > 1) {
+                bits |= (source[fullEnd + 1] & 0xff) << 8;
+            }
+            destination[d++] = ALPHABET_BYTES[bits >>> 18];
+            destination[d++] = ALPHABET_BYTES[(bits >>> 12) & 0x3f];
+            destination[d++] = end - fullEnd > 1 ? ALPHABET_BYTES[(bits >>> 6) & 0x3f] : PAD;
+            destination[d++] = PAD;
+        }
+        return d - destinationOffset;
+    }
+
+    /**
+     * Encodes the remaining bytes of a buffer into ASCII bytes. The positions of both buffers are advanced past the
+     * bytes read and written.
+     * 
+     * @param source the bytes to encode
+     * @param destination buffer receiving the encoded characters, must have room for
+     *            {@link #encodedLength(int, boolean)} bytes
+     * @param breakLines whether line breaks are written
+     * 
+     * @return number of bytes written
+     */
+    public static int encode(ByteBuffer source, ByteBuffer destination, boolean breakLines) {
+        int length = source.remaining();
+        if (destination.remaining() < encodedLength(length, breakLines)) {
+            throw new IllegalArgumentException("Destination buffer is too small for the encoded data");
+        }
+
+        int written;
+        if (source.hasArray() && destination.hasArray()) {
+            written = encode(source.array(), source.arrayOffset() + source.position(), length, destination.array(),
+                    destination.arrayOffset() + destination.position(), breakLines);
+            source.position(source.limit());
+            destination.position(destination.position() + written);
+            return written;
+        }
+
+        int start = destination.position();
+        int lineGroup = 0;
+        while (source.remaining() >= 3) {
+            int bits = (source.get() & 0xff) << 16 | (source.get() & 0xff) << 8 | (source.get() & 0xff);
+            destination.put(ALPHABET_BYTES[bits >>> 18]);
+            destination.put(ALPHABET_BYTES[(bits >>> 12) & 0x3f]);
+            destination.put(ALPHABET_BYTES[(bits >>> 6) & 0x3f]);
+            destination.put(ALPHABET_BYTES[bits & 0x3f]);
+            lineGroup += 3;
+            if (breakLines && lineGroup == LINE_GROUP) {
+                destination.put((byte) NEW_LINE);
+                lineGroup = 0;
+            }
+        }
+        int remaining = source.remaining();
+        if (remaining > 0) {
+            int bits = (source.get() & 0xff) << 16;
+            if (remaining > 1) {
+                bits |= (source.get() & 0xff) << 8;
+            }
+            destination.put(ALPHABET_BYTES[bits >>> 18]);
+            destination.put(ALPHABET_BYTES[(bits >>> 12) & 0x3f]);
+            destination.put(remaining > 1 ? ALPHABET_BYTES[(bits >>> 6) & 0x3f] : (byte) PAD);
+            destination.put((byte) PAD);
+        }
+        return destination.position() - start;
+    }
+
+    /**
+     * Decodes characters into bytes.
+     * 
+     * @param source the characters to decode
+     * @param offset offset of the first character to decode
+     * @param length number of characters to decode
+     * @param destination array receiving the decoded bytes, must have room for {@link #maxDecodedLength(int)} bytes
+     * @param destinationOffset offset at which to write the first byte
+     * 
+     * @return number of bytes written, or -1 if the input contains an invalid character
+     */
+    public static int decode(CharSequence source, int offset, int length, byte[] destination,
+            int destinationOffset) {
+        int position = destinationOffset;
+        int quartet = 0;
+        int count = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int c = source.charAt(i);
+            int value = c < DECODABET.length ? DECODABET[c] : INVALID;
+            if (value == WHITESPACE) {
+                continue;
+            } else if (value == INVALID) {
+                return -1;
+            }
+            quartet = quartet << 8 | c;
+            if (++count == 4) {
+                position += writeDecoded(quartet, decodeQuartet(quartet), destination, position);
+                if ((quartet & 0xff) == PAD) {
+                    break;
+                }
+                quartet = 0;
+                count = 0;
+            }
+        }
+        return position - destinationOffset;
+    }
+
+    /**
+     * Decodes characters into bytes.
+     * 
+     * @param source the characters to decode
+     * @param offset offset of the first character to decode
+     * @param length number of characters to decode
+     * @param destination array receiving the decoded bytes, must have room for {@link #maxDecodedLength(int)} bytes
+     * @param destinationOffset offset at which to write the first byte
+     * 
+     * @return number of bytes written, or -1 if the input contains an invalid character
+     */
+    public static int decode(char[] source, int offset, int length, byte[] destination, int destinationOffset) {
+        int position = destinationOffset;
+        int quartet = 0;
+        int count = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int c = source[i];
+            int value = c < DECODABET.length ? DECODABET[c] : INVALID;
+            if (value == WHITESPACE) {
+                continue;
+            } else if (value == INVALID) {
+                return -1;
+            }
+            quartet = quartet << 8 | c;
+            if (++count == 4) {
+                position += writeDecoded(quartet, decodeQuartet(quartet), destination, position);
+                if ((quartet & 0xff) == PAD) {
+                    break;
+                }
+                quartet = 0;
+                count = 0;
+            }
+        }
+        return position - destinationOffset;
+    }
+
+    /**
+     * Decodes ASCII bytes into bytes. The source and destination may be the same array, provided the destination
+     * offset is not greater than the source offset.
+     * 
+     * @param source the characters to decode
+     * @param offset offset of the first character to decode
+     * @param length number of characters to decode
+     * @param destination array receiving the decoded bytes, must have room for {@link #maxDecodedLength(int)} bytes
+     * @param destinationOffset offset at which to write the first byte
+     * 
+     * @return number of bytes written, or -1 if the input contains an invalid character
+     */
+    public static int decode(byte[] source, int offset, int length, byte[] destination, int destinationOffset) {
+        int position = destinationOffset;
+        int quartet = 0;
+        int count = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int c = source[i] & 0xff;
+            int value = c < DECODABET.length ? DECODABET[c] : INVALID;
+            if (value == WHITESPACE) {
+                continue;
+            } else if (value == INVALID) {
+                return -1;
+            }
+            quartet = quartet << 8 | c;
+            if (++count == 4) {
+                position += writeDecoded(quartet, decodeQuartet(quartet), destination, position);
+                if ((quartet & 0xff) == PAD) {
+                    break;
+                }
+                quartet = 0;
+                count = 0;
+            }
+        }
+        return position - destinationOffset;
+    }
+
+    /**
+     * Decodes the remaining ASCII bytes of a buffer into bytes. If decoding succeeds, the positions of both buffers
+     * are advanced past the bytes read and written. The source buffer is considered read in full even if decoding
+     * stopped at a padding character.
+     * 
+     * @param source the characters to decode
+     * @param destination buffer receiving the decoded bytes, must have room for {@link #maxDecodedLength(int)} bytes
+     * 
+     * @return number of bytes written, or -1 if the input contains an invalid character
+     */
+    public static int decode(ByteBuffer source, ByteBuffer destination) {
+        int length = source.remaining();
+        if (destination.remaining() < maxDecodedLength(length)) {
+            throw new IllegalArgumentException("Destination buffer is too small for the decoded data");
+        }
+
+        int written;
+        if (source.hasArray() && destination.hasArray()) {
+            written = decode(source.array(), source.arrayOffset() + source.position(), length, destination.array(),
+                    destination.arrayOffset() + destination.position());
+        } else {
+            written = 0;
+            int quartet = 0;
+            int count = 0;
+            int position = destination.position();
+            for (int i = source.position(); i < source.limit(); i++) {
+                int c = source.get(i) & 0xff;
+                int value = c < DECODABET.length ? DECODABET[c] : INVALID;
+                if (value == WHITESPACE) {
+                    continue;
+                } else if (value == INVALID) {
+                    return -1;
+                }
+                quartet = quartet << 8 | c;
+                if (++count == 4) {
+                    int decoded = decodeQuartet(quartet);
+                    destination.put(position + written++, (byte) (decoded >>> 16));
+                    if ((quartet >>> 8 & 0xff) != PAD) {
+                        destination.put(position + written++, (byte) (decoded >>> 8));
+                        if ((quartet & 0xff) != PAD) {
+                            destination.put(position + written++, (byte) decoded);
+                        }
+                    }
+                    if ((quartet & 0xff) == PAD) {
+                        break;
+                    }
+                    quartet = 0;
+                    count = 0;
+                }
+            }
+        }
+        if (written >= 0) {
+            source.position(source.limit());
+            destination.position(destination.position() + written);
+        }
+        return written;
+    }
+
+    /**
+     * Decodes a group of 4 characters, packed into an int with the first character in the most significant byte,
+     * into up to 3 bytes packed into the low 24 bits of the result.
+     * 
+     * @param quartet the packed characters
+     * 
+     * @return the packed bytes
+     */
+    private static int decodeQuartet(int quartet) {
+        return (DECODABET[quartet >>> 24] & 0xff) << 18 | (DECODABET[quartet >>> 16 & 0xff] & 0xff) << 12
+                | (DECODABET[quartet >>> 8 & 0xff] & 0xff) << 6 | (DECODABET[quartet & 0xff] & 0xff);
+    }
+
+    /**
+     * Writes the bytes decoded from a group of 4 characters. A group whose third character is the padding character
+     * yields 1 byte, otherwise a group whose fourth character is the padding character yields 2 bytes, otherwise the
+     * group yields 3 bytes.
+     * 
+     * @param quartet the packed characters
+     * @param decoded the packed decoded bytes
+     * @param destination array receiving the decoded bytes
+     * @param offset offset at which to write the first byte
+     * 
+     * @return number of bytes written
+     */
+    private static int writeDecoded(int quartet, int decoded, byte[] destination, int offset) {
+        destination[offset] = (byte) (decoded >>> 16);
+        if ((quartet >>> 8 & 0xff) == PAD) {
+            return 1;
+        }
+        destination[offset + 1] = (byte) (decoded >>> 8);
+        if ((quartet & 0xff) == PAD) {
+            return 2;
+        }
+        destination[offset + 2] = (byte) decoded;
+        return 3;
+    }
+
+    /**
+     * Decoding state which may be carried across several input buffers.
+     */
+    private static final class Decoder {
+
+        /** Destination array. */
+        private final byte[] destination;
+
+        /** Offset of the first byte written. */
+        private int start;
+
+        /** Offset of the next byte written. */
+        private int position;
+
+        /** Characters of the current group. */
+        private int quartet;
+
+        /** Number of characters in the current group. */
+        private int count;
+
+        /** Whether a padded group has been decoded. */
+        private boolean finished;
+
+        /**
+         * Constructor.
+         * 
+         * @param dest destination array
+         * @param offset offset at which to write the first byte
+         */
+        private Decoder(byte[] dest, int offset) {
+            destination = dest;
+            start = offset;
+            position = offset;
+        }
+
+        /**
+         * Decodes a character.
+         * 
+         * @param c the character
+         * 
+         * @return false if the character is not valid, true otherwise
+         */
+        private boolean decode(int c) {
+            int value = c < DECODABET.length ? DECODABET[c] : INVALID;
+            if (value == WHITESPACE) {
+                return true;
+            } else if (value == INVALID) {
+                return false;
+            }
+
+            quartet = quartet << 8 | c;
+            if (++count == 4) {
+                position += writeDecoded(quartet, decodeQuartet(quartet), destination, position);
+                if ((quartet & 0xff) == PAD) {
+                    finished = true;
+                    return true;
+                }
+                quartet = 0;
+                count = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Gets whether a padded group has been decoded, after which no further input is decoded.
+         * 
+         * @return true if decoding is finished
+         */
+        private boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Gets whether a partial group of characters is pending.
+         * 
+         * @return true if a partial group is pending
+         */
+        private boolean hasPartialGroup() {
+            return count > 0;
+        }
+
+        /**
+         * Restarts writing at the beginning of the destination array, keeping any partial group of characters.
+         */
+        private void rewind() {
+            start = 0;
+            position = 0;
+        }
+
+        /**
+         * Gets the number of bytes written.
+         * 
+         * @return number of bytes written
+         */
+        private int getWritten() {
+            return position - start;
+        }
+    }
+
+    /**
+     * An output stream which Base64-encodes the bytes written to it onto an underlying stream. The final partial group
+     * of bytes is encoded, with padding, when the stream is closed or {@link #finish()} is called.
+     */
+    public static class EncoderOutputStream extends FilterOutputStream {
+
+        /** Size of the encoding buffer, in input bytes. A whole number of lines. */
+        private static final int BUFFER_INPUT_SIZE = LINE_GROUP * 64;
+
+        /** Whether line breaks are written. */
+        private final boolean breakLines;
+
+        /** Pending input bytes. */
+        private final byte[] input;
+
+        /** Encoded output. */
+        private final byte[] output;
+
+        /** Number of pending input bytes. */
+        private int pending;
+
+        /** Whether the final group has been written. */
+        private boolean finished;
+
+        /**
+         * Constructor.
+         * 
+         * @param out the underlying stream receiving the encoded characters
+         * @param lineBreaks whether line breaks are written
+         */
+        public EncoderOutputStream(OutputStream out, boolean lineBreaks) {
+            super(out);
+            breakLines = lineBreaks;
+            input = new byte[BUFFER_INPUT_SIZE];
+            output = new byte[encodedLength(BUFFER_INPUT_SIZE, true)];
+        }
+
+        /** {@inheritDoc} */
+        public void write(int b) throws IOException {
+            checkNotFinished();
+            input[pending++] = (byte) b;
+            if (pending == input.length) {
+                encodePending();
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkNotFinished();
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                int chunk = Math.min(remaining, input.length - pending);
+                System.arraycopy(b, offset, input, pending, chunk);
+                pending += chunk;
+                offset += chunk;
+                remaining -= chunk;
+                if (pending == input.length) {
+                    encodePending();
+                }
+            }
+        }
+
+        /**
+         * Writes all complete groups of pending input to the underlying stream and flushes it. A final partial group
+         * is held back until the stream is finished.
+         * 
+         * @throws IOException thrown if the underlying stream can not be written
+         */
+        public void flush() throws IOException {
+            if (!finished) {
+                int full = pending / LINE_GROUP * LINE_GROUP;
+                if (full > 0) {
+                    out.write(output, 0, encode(input, 0, full, output, 0, breakLines));
+                    System.arraycopy(input, full, input, 0, pending - full);
+                    pending -= full;
+                }
+            }
+            out.flush();
+        }
+
+        /**
+         * Writes the remaining input, with padding, to the underlying stream without closing it. No further bytes may
+         * be written.
+         * 
+         * @throws IOException thrown if the underlying stream can not be written
+         */
+        public void finish() throws IOException {
+            if (!finished) {
+                encodePending();
+                finished = true;
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void close() throws IOException {
+            finish();
+            super.close();
+        }
+
+        /**
+         * Encodes all pending input.
+         * 
+         * @throws IOException thrown if the underlying stream can not be written
+         */
+        private void encodePending() throws IOException {
+            if (pending > 0) {
+                out.write(output, 0, encode(input, 0, pending, output, 0, breakLines));
+                pending = 0;
+            }
+        }
+
+        /**
+         * Checks that the stream has not been finished.
+         * 
+         * @throws IOException thrown if the stream has been finished
+         */
+        private void checkNotFinished() throws IOException {
+            if (finished) {
+                throw new IOException("Base64 encoding has been finished");
+            }
+        }
+    }
+
+    /**
+     * An input stream which Base64-decodes the characters read from an underlying stream. Whitespace, including line
+     * breaks, is skipped. The end of the decoded data is reached at the end of the underlying stream or after a group
+     * ending with a padding character, whichever comes first. Unlike the static decoding methods, a trailing group of
+     * fewer than 4 characters is reported as an error.
+     */
+    public static class DecoderInputStream extends FilterInputStream {
+
+        /** Size of the encoded input buffer. */
+        private static final int BUFFER_SIZE = 4096;
+
+        /** Encoded input. */
+        private final byte[] input;
+
+        /** Decoded output. Has room for a group continued from the previous input buffer. */
+        private final byte[] output;
+
+        /** Decoder, which holds groups of characters continued across input buffers. */
+        private final Decoder decoder;
+
+        /** Position of the next decoded byte to return. */
+        private int outputPosition;
+
+        /** Number of decoded bytes available. */
+        private int outputLength;
+
+        /** Whether the end of the encoded data has been reached. */
+        private boolean eof;
+
+        /**
+         * Constructor.
+         * 
+         * @param in the underlying stream supplying the encoded characters
+         */
+        public DecoderInputStream(InputStream in) {
+            super(in);
+            input = new byte[BUFFER_SIZE];
+            output = new byte[maxDecodedLength(BUFFER_SIZE + 3)];
+            decoder = new Decoder(output, 0);
+        }
+
+        /** {@inheritDoc} */
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return output[outputPosition++] & 0xff;
+        }
+
+        /** {@inheritDoc} */
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int chunk = Math.min(len, outputLength - outputPosition);
+            System.arraycopy(output, outputPosition, b, off, chunk);
+            outputPosition += chunk;
+            return chunk;
+        }
+
+        /** {@inheritDoc} */
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && fill()) {
+                int chunk = (int) Math.min(n - skipped, outputLength - outputPosition);
+                outputPosition += chunk;
+                skipped += chunk;
+            }
+            return skipped;
+        }
+
+        /** {@inheritDoc} */
+        public int available() throws IOException {
+            return outputLength - outputPosition;
+        }
+
+        /** {@inheritDoc} */
+        public boolean markSupported() {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        public void mark(int readlimit) {
+            // not supported
+        }
+
+        /** {@inheritDoc} */
+        public void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        /**
+         * Ensures that decoded bytes are available.
+         * 
+         * @return true if decoded bytes are available, false at the end of the decoded data
+         * 
+         * @throws IOException thrown if the underlying stream can not be read or contains invalid data
+         */
+        private boolean fill() throws IOException {
+            while (outputPosition == outputLength) {
+                if (eof) {
+                    return false;
+                }
+
+                int read = in.read(input, 0, input.length);
+                if (read < 0) {
+                    eof = true;
+                    if (decoder.hasPartialGroup()) {
+                        throw new IOException("Base64 input ended within a group of characters");
+                    }
+                    return false;
+                }
+
+                decoder.rewind();
+                for (int i = 0; i < read && !decoder.isFinished(); i++) {
+                    if (!decoder.decode(input[i] & 0xff)) {
+                        throw new IOException("Invalid Base64 input character");
+                    }
+                }
+                eof = decoder.isFinished();
+                outputPosition = 0;
+                outputLength = decoder.getWritten();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.util;
+
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+
+/**
+ * A thread-safe index of values by the namespace URI and local name of a {@link QName}, which can be queried with the
+ * namespace URI and local name strings of a DOM node without constructing a QName.
+ * 
+ * <p>
+ * As with QName equality, prefixes are not significant, and a null namespace URI is equivalent to the empty string.
+ * </p>
+ * 
+ * @param <V> type of the indexed values
+ */
+public class ElementNameIndex<V> {
+
+    /** Values indexed by namespace URI and then local name. */
+    private final Map<String, Map<String, V>> index;
+
+    /** Constructor. */
+    public ElementNameIndex() {
+        index = new ConcurrentHashMap<String, Map<String, V>>();
+    }
+
+    /**
+     * Gets the value indexed under the given name.
+     * 
+     * @param namespaceURI the namespace URI, may be null
+     * @param localName the local name
+     * 
+     * @return the value or null if none is indexed under the name
+     */
+    public V get(String namespaceURI, String localName) {
+        if (localName == null) {
+            return null;
+        }
+        Map<String, V> localNames = index.get(namespaceURI == null ? "" : namespaceURI);
+        if (localNames == null) {
+            return null;
+        }
+        return localNames.get(localName);
+    }
+
+    /**
+     * Gets the value for the given element. The schema type of the element, if present, is tried first as the key with
+     * the element name used if no schema type is present or no value is indexed under it. This is equivalent to looking
+     * up the QNames returned by {@link XMLHelper#getXSIType(Element)} and
+     * {@link XMLHelper#getNodeQName(org.w3c.dom.Node)}, but does not construct them.
+     * 
+     * @param domElement the element
+     * 
+     * @return the value or null if none is indexed under the element's schema type or name
+     */
+    public V get(Element domElement) {
+        if (domElement.hasAttributes()) {
+            Attr typeAttribute = domElement.getAttributeNodeNS(XMLConstants.XSI_NS, "type");
+            if (typeAttribute != null) {
+                V value = getBySchemaType(domElement, typeAttribute.getValue());
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+
+        return get(domElement.getNamespaceURI(), domElement.getLocalName());
+    }
+
+    /**
+     * Indexes a value under the given name, replacing any value already indexed under it.
+     * 
+     * @param name the name
+     * @param value the value
+     */
+    public void put(QName name, V value) {
+        synchronized (index) {
+            Map<String, V> localNames = index.get(name.getNamespaceURI());
+            if (localNames == null) {
+                localNames = new ConcurrentHashMap<String, V>();
+                index.put(name.getNamespaceURI(), localNames);
+            }
+            localNames.put(name.getLocalPart(), value);
+        }
+    }
+
+    /**
+     * Removes the value indexed under the given name.
+     * 
+     * @param name the name
+     * 
+     * @return the value previously indexed under the name or null
+     */
+    public V remove(QName name) {
+        synchronized (index) {
+            Map<String, V> localNames = index.get(name.getNamespaceURI());
+            if (localNames == null) {
+                return null;
+            }
+            V value = localNames.remove(name.getLocalPart());
+            if (localNames.isEmpty()) {
+                index.remove(name.getNamespaceURI());
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Gets the value indexed under an element's schema type.
+     * 
+     * @param domElement the element
+     * @param schemaType the value of the element's xsi:type attribute
+     * 
+     * @return the value or null if none is indexed under the schema type
+     */
+    private V getBySchemaType(Element domElement, String schemaType) {
+        String type = DatatypeHelper.safeTrimOrNullString(schemaType);
+        if (type == null) {
+            return null;
+        }
+
+        // Same interpretation of the lexical value as XMLHelper.getXSIType(Element)
+        StringTokenizer tokenizer = new StringTokenizer(type, ":");
+        String prefix = null;
+        String localName;
+        int tokens = tokenizer.countTokens();
+        if (tokens == 0) {
+            return null;
+        } else if (tokens > 1) {
+            prefix = tokenizer.nextToken();
+            localName = tokenizer.nextToken();
+        } else {
+            localName = tokenizer.nextToken();
+        }
+
+        return get(domElement.lookupNamespaceURI(prefix), localName);
+    }
+}
@@ -18,15 +18,39 @@
 package org.opensaml.xml.util;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import net.jcip.annotations.NotThreadSafe;
 
+import org.opensaml.xml.Configuration;
 import org.opensaml.xml.XMLObject;
 
 /**
  * Class which provides storage for the ID-to-XMLObject index mapping on an owning {@link org.opensaml.xml.XMLObject}.
+ * 
+ * <p>
+ * An index either holds the mappings of the whole subtree rooted at its owner, copying every mapping registered within
+ * the subtree into the index of each ancestor, or is <em>lazy</em>. A lazy index holds only the mappings registered
+ * for its owner itself. The mappings of a tree are then collected by the index of the tree's root when an ID is first
+ * resolved, and discarded whenever a mapping is registered or deregistered, or an XMLObject is added to or removed
+ * from the tree. Lazy indexes avoid the time and memory taken by copying mappings into every ancestor, which grows
+ * with both the number of IDs and the depth of the tree, at the cost of collecting the mappings anew after each
+ * change. They suit trees which are built or unmarshalled once and then resolved, such as large metadata aggregates.
+ * </p>
+ * 
+ * <p>
+ * Both kinds of index resolve an ID to the XMLObject registered for it within the owner's subtree. The subtree of a
+ * lazy index is made up of the XMLObjects reachable through {@link XMLObject#getOrderedChildren()}. Lazy and eager
+ * indexes must not be mixed within one tree.
+ * </p>
+ * 
+ * <p>
+ * The collected mappings are built completely before they are published, so once a tree is no longer modified its
+ * lazy indexes may be used to resolve IDs from several threads at once.
+ * </p>
  */
 @NotThreadSafe
 public class IDIndex {
@@ -34,26 +58,59 @@ public class IDIndex {
     /** The XMLObject which owns this ID index. */
     private XMLObject owner;
     
-    /** Mapping of ID attributes to XMLObjects in the subtree rooted at this object's owner.
-     * This allows constant-time dereferencing of ID-typed attributes within the subtree.  */
+    /** Whether this index is lazy. */
+    private final boolean lazy;
+    
+    /** Mapping of ID attributes to XMLObjects in the subtree rooted at this object's owner, or for a lazy index to
+     * the owner itself, the shared empty map until a mapping is registered. This allows constant-time dereferencing
+     * of ID-typed attributes within the subtree.  */
     private Map<String, XMLObject> idMappings;
+    
+    /** Mappings of the subtree rooted at the owner of a lazy index, collected while the owner is the root of its tree,
+     * or null if they have not been collected since the tree last changed. */
+    private volatile Map<String, XMLObject> subtreeMappings;
+    
+    /** Mappings of the subtree rooted at the owner of a lazy index, collected while the owner is not the root of its
+     * tree, or null if they have not been collected. */
+    private volatile CollectedMappings collectedMappings;
 
     /**
-     * Constructor.
+     * Constructor. The index is lazy if {@link Configuration#isLazyIDIndexing()} is set.
      *
      * @param newOwner the XMLObject which owns this ID-to-XMLObject index
      * 
      * @throws NullPointerException thrown if the given XMLObject is null
      */
     public IDIndex(XMLObject newOwner) throws NullPointerException {
+        this(newOwner, Configuration.isLazyIDIndexing());
+    }
+    
+    /**
+     * Constructor.
+     *
+     * @param newOwner the XMLObject which owns this ID-to-XMLObject index
+     * @param lazyIndex whether the index is lazy
+     * 
+     * @throws NullPointerException thrown if the given XMLObject is null
+     */
+    public IDIndex(XMLObject newOwner, boolean lazyIndex) throws NullPointerException {
         if (newOwner == null) {
             throw new NullPointerException("Attribute owner XMLObject may not be null");
         }
         
         owner = newOwner;
-        idMappings = new LazyMap<String, XMLObject>();
+        lazy = lazyIndex;
+        idMappings = Collections.emptyMap();
     }
     
+    /**
+     * Get whether this index is lazy.
+     * 
+     * @return true if the index only holds the mappings of its owner and collects those of its subtree when needed
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
 
     /**
      * Register an ID-to-XMLObject mapping for one of this object's owner's children.
@@ -66,8 +123,10 @@ public class IDIndex {
             return;
         }
         
-        idMappings.put(id, referent);
-        if (owner.hasParent()) {
+        getModifiableIDMappings().put(id, referent);
+        if (lazy) {
+            releaseRootMappings();
+        } else if (owner.hasParent()) {
             owner.getParent().getIDIndex().registerIDMapping(id, referent);
         }
     }
@@ -78,11 +137,20 @@ public class IDIndex {
      * @param idIndex the ID-to-XMLObject mapping to register
      */
     public void registerIDMappings(IDIndex idIndex) {
+        if (lazy) {
+            if (idIndex != null) {
+                // the owner of the given index is no longer the root of its tree
+                idIndex.subtreeMappings = null;
+                releaseRootMappings();
+            }
+            return;
+        }
+        
         if (idIndex == null || idIndex.isEmpty()) {
             return;
         }
         
-        idMappings.putAll(idIndex.getIDMappings());
+        getModifiableIDMappings().putAll(idIndex.getIDMappings());
         if (owner.hasParent()) {
             owner.getParent().getIDIndex().registerIDMappings(idIndex);
         }
@@ -99,7 +167,9 @@ public class IDIndex {
         }
         
         idMappings.remove(id);
-        if (owner.hasParent()) {
+        if (lazy) {
+            releaseRootMappings();
+        } else if (owner.hasParent()) {
             owner.getParent().getIDIndex().deregisterIDMapping(id);
         }
     }
@@ -110,6 +180,14 @@ public class IDIndex {
      * @param idIndex the ID-to-XMLObject mappings to deregister
      */
     public void deregisterIDMappings(IDIndex idIndex) {
+        if (lazy) {
+            if (idIndex != null) {
+                idIndex.subtreeMappings = null;
+                releaseRootMappings();
+            }
+            return;
+        }
+        
         if (idIndex == null || idIndex.isEmpty()) {
             return;
         }
@@ -129,7 +207,22 @@ public class IDIndex {
      * @return the XMLObject identified by the ID attribute value
      */
     public XMLObject lookup(String id) {
-        return idMappings.get(id);
+        if (!lazy) {
+            return idMappings.get(id);
+        }
+        
+        XMLObject root = getRoot();
+        XMLObject referent = root.getIDIndex().getSubtreeMappings().get(id);
+        if (referent == null || root == owner) {
+            return referent;
+        }
+        for (XMLObject ancestor = referent; ancestor != null; ancestor = ancestor.getParent()) {
+            if (ancestor == owner) {
+                return referent;
+            }
+        }
+        // the ID is also registered outside of the owner's subtree
+        return getSubtreeMappings().get(id);
     }
     
     /**
@@ -138,6 +231,9 @@ public class IDIndex {
      * @return true if the index is currently empty
      */
     public boolean isEmpty() {
+        if (lazy) {
+            return getSubtreeMappings().isEmpty();
+        }
         return idMappings.isEmpty();
     }
     
@@ -147,7 +243,7 @@ public class IDIndex {
      * @return the set of ID strings which are keys to the index
      */
     public Set<String> getIDs() {
-        return Collections.unmodifiableSet(idMappings.keySet());
+        return Collections.unmodifiableSet(getIDMappings().keySet());
     }
     
     /**
@@ -156,7 +252,124 @@ public class IDIndex {
      * @return the ID-to-XMLObject mapping
      */
     protected Map<String, XMLObject> getIDMappings() {
+        if (lazy) {
+            return getSubtreeMappings();
+        }
         return Collections.unmodifiableMap(idMappings);
     }
     
+    /**
+     * Gets the ID-to-XMLObject mappings held by this index for modification, replacing the shared empty map if no
+     * mapping has been registered yet.
+     * 
+     * @return the modifiable mappings
+     */
+    private Map<String, XMLObject> getModifiableIDMappings() {
+        if (idMappings.isEmpty()) {
+            idMappings = new LazyMap<String, XMLObject>();
+        }
+        return idMappings;
+    }
+    
+    /**
+     * Gets the mappings of the subtree rooted at the owner of a lazy index. Mappings collected while the owner is the
+     * root of its tree are kept until the tree changes. Those collected while the owner is not the root are kept for as
+     * long as the root's mappings from which they were derived remain current, since those are discarded whenever the
+     * tree changes.
+     * 
+     * @return the unmodifiable subtree mappings
+     */
+    private Map<String, XMLObject> getSubtreeMappings() {
+        if (!owner.hasParent()) {
+            Map<String, XMLObject> mappings = subtreeMappings;
+            if (mappings == null) {
+                mappings = collectMappings();
+                subtreeMappings = mappings;
+            }
+            return mappings;
+        }
+        
+        Map<String, XMLObject> rootMappings = getRoot().getIDIndex().getSubtreeMappings();
+        CollectedMappings collected = collectedMappings;
+        if (collected == null || collected.rootMappings != rootMappings) {
+            collected = new CollectedMappings(collectMappings(), rootMappings);
+            collectedMappings = collected;
+        }
+        return collected.mappings;
+    }
+    
+    /**
+     * Collects the mappings of the subtree rooted at the owner.
+     * 
+     * @return the unmodifiable subtree mappings
+     */
+    private Map<String, XMLObject> collectMappings() {
+        Map<String, XMLObject> mappings = new HashMap<String, XMLObject>();
+        collectMappings(owner, mappings);
+        return Collections.unmodifiableMap(mappings);
+    }
+    
+    /**
+     * Adds the mappings registered for an XMLObject, and those of its descendants, to a map.
+     * 
+     * @param xmlObject the XMLObject
+     * @param mappings the map receiving the mappings
+     */
+    private void collectMappings(XMLObject xmlObject, Map<String, XMLObject> mappings) {
+        IDIndex index = xmlObject.getIDIndex();
+        if (index != null && !index.idMappings.isEmpty()) {
+            mappings.putAll(index.idMappings);
+        }
+        
+        List<XMLObject> children = xmlObject.getOrderedChildren();
+        if (children != null) {
+            for (XMLObject child : children) {
+                if (child != null) {
+                    collectMappings(child, mappings);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Discards the mappings collected by the lazy index of the root of the owner's tree.
+     */
+    private void releaseRootMappings() {
+        getRoot().getIDIndex().subtreeMappings = null;
+    }
+    
+    /**
+     * Gets the root of the owner's tree.
+     * 
+     * @return the root XMLObject
+     */
+    private XMLObject getRoot() {
+        XMLObject root = owner;
+        while (root.hasParent()) {
+            root = root.getParent();
+        }
+        return root;
+    }
+    
+    /** Mappings of a subtree collected while its root was not the root of the whole tree. */
+    private static final class CollectedMappings {
+        
+        /** The unmodifiable subtree mappings. */
+        private final Map<String, XMLObject> mappings;
+        
+        /** The mappings of the whole tree which were current when the subtree mappings were collected. */
+        private final Map<String, XMLObject> rootMappings;
+        
+        /**
+         * Constructor.
+         * 
+         * @param subtree the unmodifiable subtree mappings
+         * @param root the mappings of the whole tree which were current when the subtree mappings were collected
+         */
+        private CollectedMappings(Map<String, XMLObject> subtree, Map<String, XMLObject> root) {
+            mappings = subtree;
+            rootMappings = root;
+        }
+    }
+    
 }
@@ -19,6 +19,7 @@ package org.opensaml.xml.util;
 
 import java.util.AbstractList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -36,7 +37,7 @@ import org.opensaml.xml.XMLObject;
 @NotThreadSafe
 public class IndexedXMLObjectChildrenList<ElementType extends XMLObject> extends XMLObjectChildrenList<ElementType> {
 
-    /** Index of objects by type and name. */
+    /** Index of objects by type and name, the shared empty map until an index is created. */
     private Map<QName, List<ElementType>> objectIndex;
 
     /**
@@ -46,7 +47,7 @@ public class IndexedXMLObjectChildrenList<ElementType extends XMLObject> extends
      */
     public IndexedXMLObjectChildrenList(XMLObject parent) {
         super(parent);
-        objectIndex = new LazyMap<QName, List<ElementType>>();
+        objectIndex = Collections.emptyMap();
     }
 
     /**
@@ -57,7 +58,7 @@ public class IndexedXMLObjectChildrenList<ElementType extends XMLObject> extends
      */
     public IndexedXMLObjectChildrenList(XMLObject parent, Collection<ElementType> col) {
         super(parent);
-        objectIndex = new LazyMap<QName, List<ElementType>>();
+        objectIndex = Collections.emptyMap();
         addAll(col);
     }
 
@@ -100,6 +101,9 @@ public class IndexedXMLObjectChildrenList<ElementType extends XMLObject> extends
      */
     protected void checkAndCreateIndex(QName index) {
         if (!objectIndex.containsKey(index)) {
+            if (objectIndex.isEmpty()) {
+                objectIndex = new LazyMap<QName, List<ElementType>>();
+            }
             objectIndex.put(index, new LazyList<ElementType>());
         }
     }
@@ -14,199 +14,204 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.opensaml.xml.util;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.AbstractList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.RandomAccess;
 
 import net.jcip.annotations.NotThreadSafe;
 
 /**
- * A list that is lazy initialized. This list takes very little memory when storing zero or one item.
+ * A list that is lazy initialized. This list takes very little memory when storing zero, one or two items.
+ * 
+ * <p>
+ * Up to two items are held in fields of the list itself. Larger lists hold their items in an array which grows as
+ * needed. Reading, searching and iterating the list never copy the items.
+ * </p>
  * 
  * @param <ElementType> type of elements within the list
  */
 @NotThreadSafe
-public class LazyList<ElementType> implements List<ElementType>, Serializable {
+public class LazyList<ElementType> extends AbstractList<ElementType> implements List<ElementType>, RandomAccess,
+        Serializable {
 
     /** Serial version UID. */
-    private static final long serialVersionUID = -7741904523916701817L;
+    private static final long serialVersionUID = 4329583014212427856L;
 
-    /** Delegate list. */
-    private List<ElementType> delegate = Collections.emptyList();
+    /** Initial capacity of the array holding the items once there are more than two. */
+    private static final int INITIAL_CAPACITY = 4;
 
-    /** {@inheritDoc} */
-    public boolean add(ElementType item) {
-        if (delegate.isEmpty()) {
-            delegate = Collections.singletonList(item);
-            return true;
-        } else {
-            delegate = buildList();
-            return delegate.add(item);
-        }
-    }
+    /** First item, if the items are not held in an array. */
+    private ElementType first;
 
-    /** {@inheritDoc} */
-    public void add(int index, ElementType element) {
-        delegate = buildList();
-        delegate.add(index, element);
-    }
+    /** Second item, if the items are not held in an array. */
+    private ElementType second;
 
-    /** {@inheritDoc} */
-    public boolean addAll(Collection<? extends ElementType> collection) {
-        delegate = buildList();
-        return delegate.addAll(collection);
-    }
+    /** Items, or null while there have been no more than two. */
+    private Object[] elements;
+
+    /** Number of items. */
+    private int size;
 
     /** {@inheritDoc} */
-    public boolean addAll(int index, Collection<? extends ElementType> collection) {
-        delegate = buildList();
-        return delegate.addAll(index, collection);
+    public void add(int index, ElementType element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        if (elements == null && size < 2) {
+            if (index == 0) {
+                second = first;
+                first = element;
+            } else {
+                second = element;
+            }
+        } else {
+            ensureCapacity(size + 1);
+            System.arraycopy(elements, index, elements, index + 1, size - index);
+            elements[index] = element;
+        }
+        size++;
+        modCount++;
     }
 
     /** {@inheritDoc} */
     public void clear() {
-        delegate = Collections.emptyList();
+        first = null;
+        second = null;
+        elements = null;
+        size = 0;
+        modCount++;
     }
 
     /** {@inheritDoc} */
     public boolean contains(Object element) {
-        return delegate.contains(element);
-    }
-
-    /** {@inheritDoc} */
-    public boolean containsAll(Collection<?> collections) {
-        return delegate.containsAll(collections);
+        return indexOf(element) >= 0;
     }
 
     /** {@inheritDoc} */
     public ElementType get(int index) {
-        return delegate.get(index);
+        checkIndex(index);
+        return elementAt(index);
     }
 
     /** {@inheritDoc} */
     public int indexOf(Object element) {
-        return delegate.indexOf(element);
+        for (int i = 0; i < size; i++) {
+            if (DatatypeHelper.safeEquals(element, elementAt(i))) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /** {@inheritDoc} */
     public boolean isEmpty() {
-        return delegate.isEmpty();
-    }
-
-    /** {@inheritDoc} */
-    public Iterator<ElementType> iterator() {
-        delegate = buildList();
-        return delegate.iterator();
+        return size == 0;
     }
 
     /** {@inheritDoc} */
     public int lastIndexOf(Object element) {
-        return delegate.lastIndexOf(element);
-    }
-
-    /** {@inheritDoc} */
-    public ListIterator<ElementType> listIterator() {
-        delegate = buildList();
-        return delegate.listIterator();
-    }
-
-    /** {@inheritDoc} */
-    public ListIterator<ElementType> listIterator(int index) {
-        delegate = buildList();
-        return delegate.listIterator(index);
+        for (int i = size - 1; i >= 0; i--) {
+            if (DatatypeHelper.safeEquals(element, elementAt(i))) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /** {@inheritDoc} */
     public boolean remove(Object element) {
-        delegate = buildList();
-        return delegate.remove(element);
+        int index = indexOf(element);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
     }
 
     /** {@inheritDoc} */
     public ElementType remove(int index) {
-        delegate = buildList();
-        return delegate.remove(index);
-    }
-
-    /** {@inheritDoc} */
-    public boolean removeAll(Collection<?> collection) {
-        delegate = buildList();
-        return delegate.removeAll(collection);
-    }
-
-    /** {@inheritDoc} */
-    public boolean retainAll(Collection<?> collection) {
-        delegate = buildList();
-        return delegate.retainAll(collection);
+        checkIndex(index);
+        ElementType element = elementAt(index);
+        if (elements != null) {
+            System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+            elements[size - 1] = null;
+        } else {
+            if (index == 0) {
+                first = second;
+            }
+            second = null;
+        }
+        size--;
+        modCount++;
+        return element;
     }
 
     /** {@inheritDoc} */
     public ElementType set(int index, ElementType element) {
-        delegate = buildList();
-        return delegate.set(index, element);
+        checkIndex(index);
+        ElementType oldElement = elementAt(index);
+        if (elements != null) {
+            elements[index] = element;
+        } else if (index == 0) {
+            first = element;
+        } else {
+            second = element;
+        }
+        return oldElement;
     }
 
     /** {@inheritDoc} */
     public int size() {
-        return delegate.size();
-    }
-
-    /** {@inheritDoc} */
-    public List<ElementType> subList(int fromIndex, int toIndex) {
-        delegate = buildList();
-        return delegate.subList(fromIndex, toIndex);
-    }
-
-    /** {@inheritDoc} */
-    public Object[] toArray() {
-        return delegate.toArray();
-    }
-
-    /** {@inheritDoc} */
-    public <T> T[] toArray(T[] type) {
-        return delegate.toArray(type);
+        return size;
     }
 
     /**
-     * Builds an appropriate delegate for this list.
+     * Gets the item at the given index, which must be valid.
+     * 
+     * @param index index of the item
      * 
-     * @return delegate for this list
+     * @return the item
      */
-    protected List<ElementType> buildList() {
-        if (delegate instanceof ArrayList) {
-            return delegate;
+    @SuppressWarnings("unchecked")
+    private ElementType elementAt(int index) {
+        if (elements != null) {
+            return (ElementType) elements[index];
         }
-
-        return new ArrayList<ElementType>(delegate);
+        return index == 0 ? first : second;
     }
 
-    /** {@inheritDoc} */
-    public String toString() {
-        return delegate.toString();
-    }
-
-    /** {@inheritDoc} */
-    public int hashCode() {
-        return delegate.hashCode();
-    }
-
-    /** {@inheritDoc} */
-    public boolean equals(Object obj) {
-        if (this == obj) {
-            return true;
+    /**
+     * Checks that an index refers to an item of the list.
+     * 
+     * @param index the index to check
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
         }
+    }
 
-        if (obj == null || this.getClass() != obj.getClass()) {
-            return false;
+    /**
+     * Ensures the items are held in an array with at least the given capacity, moving them out of the fields of the
+     * list if needed.
+     * 
+     * @param capacity the required capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (elements == null) {
+            elements = new Object[Math.max(INITIAL_CAPACITY, capacity)];
+            elements[0] = first;
+            elements[1] = second;
+            first = null;
+            second = null;
+        } else if (elements.length < capacity) {
+            Object[] newElements = new Object[Math.max(elements.length + (elements.length >> 1), capacity)];
+            System.arraycopy(elements, 0, newElements, 0, size);
+            elements = newElements;
         }
-
-        return delegate.equals(((LazyList<?>) obj).delegate);
     }
-}
\ No newline at end of file
+}
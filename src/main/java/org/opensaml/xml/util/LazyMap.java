@@ -14,137 +14,382 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.opensaml.xml.util;
 
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import net.jcip.annotations.NotThreadSafe;
 
 /**
- * A map that is lazy initialized. This map takes very little memory when storing zero or one item.
+ * A map that is lazy initialized. This map takes very little memory when storing zero, one or two items.
+ * 
+ * <p>
+ * Up to two entries are held in fields of the map itself, and up to eight entries in an array which is searched
+ * linearly. Larger maps hold their entries in a {@link HashMap}. Reading, searching and iterating the map never copy
+ * the entries.
+ * </p>
  * 
  * @param <KeyType> the type of the map keys
  * @param <ValueType> the type of the map values
  */
 @NotThreadSafe
-public class LazyMap<KeyType, ValueType> implements Map<KeyType, ValueType>, Serializable {
+public class LazyMap<KeyType, ValueType> extends AbstractMap<KeyType, ValueType> implements Map<KeyType, ValueType>,
+        Serializable {
 
     /** Serial version UID. */
-    private static final long serialVersionUID = 121425595164176639L;
+    private static final long serialVersionUID = -2891406232843395361L;
+
+    /** Largest number of entries held without hashing. */
+    private static final int MAX_ARRAY_SIZE = 8;
+
+    /** Initial capacity of the array holding the entries once there are more than two. */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** First entry, if the entries are not held in an array or hash map. */
+    private SmallEntry<KeyType, ValueType> first;
+
+    /** Second entry, if the entries are not held in an array or hash map. */
+    private SmallEntry<KeyType, ValueType> second;
 
-    /** The delegate map. */
-    private Map<KeyType, ValueType> delegate = Collections.emptyMap();
+    /** Entries, or null while there have been no more than two or once they are held in a hash map. */
+    private Object[] entries;
+
+    /** Number of entries, if they are not held in a hash map. */
+    private int size;
+
+    /** Entries, or null until there have been more than {@link #MAX_ARRAY_SIZE}. */
+    private HashMap<KeyType, ValueType> hashedEntries;
+
+    /** Number of structural modifications, used to detect modification during iteration. */
+    private transient int modCount;
+
+    /** View of the entries of the map. */
+    private transient Set<Entry<KeyType, ValueType>> entrySet;
 
     /** {@inheritDoc} */
     public void clear() {
-        delegate = Collections.emptyMap();
+        first = null;
+        second = null;
+        entries = null;
+        size = 0;
+        hashedEntries = null;
+        modCount++;
     }
 
     /** {@inheritDoc} */
     public boolean containsKey(Object key) {
-        return delegate.containsKey(key);
+        if (hashedEntries != null) {
+            return hashedEntries.containsKey(key);
+        }
+        return indexOf(key) >= 0;
     }
 
     /** {@inheritDoc} */
     public boolean containsValue(Object value) {
-        return delegate.containsValue(value);
+        if (hashedEntries != null) {
+            return hashedEntries.containsValue(value);
+        }
+        for (int i = 0; i < size; i++) {
+            if (DatatypeHelper.safeEquals(value, entryAt(i).getValue())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /** {@inheritDoc} */
     public Set<Entry<KeyType, ValueType>> entrySet() {
-        delegate = buildMap();
-        return delegate.entrySet();
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
     }
 
     /** {@inheritDoc} */
     public ValueType get(Object key) {
-        return delegate.get(key);
+        if (hashedEntries != null) {
+            return hashedEntries.get(key);
+        }
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        return entryAt(index).getValue();
     }
 
     /** {@inheritDoc} */
     public boolean isEmpty() {
-        return delegate.isEmpty();
-    }
-
-    /** {@inheritDoc} */
-    public Set<KeyType> keySet() {
-        delegate = buildMap();
-        return delegate.keySet();
+        return size() == 0;
     }
 
     /** {@inheritDoc} */
     public ValueType put(KeyType key, ValueType value) {
-        if (delegate.isEmpty()) {
-            delegate = Collections.singletonMap(key, value);
-            return null;
-        } else {
-            delegate = buildMap();
-            return delegate.put(key, value);
+        if (hashedEntries != null) {
+            return hashedEntries.put(key, value);
         }
-    }
 
-    /** {@inheritDoc} */
-    public void putAll(Map<? extends KeyType, ? extends ValueType> t) {
-        delegate = buildMap();
-        delegate.putAll(t);
+        int index = indexOf(key);
+        if (index >= 0) {
+            return entryAt(index).setValue(value);
+        }
+
+        if (size == MAX_ARRAY_SIZE) {
+            hashedEntries = new HashMap<KeyType, ValueType>();
+            for (int i = 0; i < size; i++) {
+                SmallEntry<KeyType, ValueType> entry = entryAt(i);
+                hashedEntries.put(entry.getKey(), entry.getValue());
+            }
+            hashedEntries.put(key, value);
+            first = null;
+            second = null;
+            entries = null;
+            size = 0;
+        } else {
+            SmallEntry<KeyType, ValueType> entry = new SmallEntry<KeyType, ValueType>(key, value);
+            if (entries == null && size < 2) {
+                if (size == 0) {
+                    first = entry;
+                } else {
+                    second = entry;
+                }
+                size++;
+            } else {
+                if (entries == null) {
+                    entries = new Object[INITIAL_CAPACITY];
+                    entries[0] = first;
+                    entries[1] = second;
+                    first = null;
+                    second = null;
+                } else if (entries.length == size) {
+                    Object[] newEntries = new Object[MAX_ARRAY_SIZE];
+                    System.arraycopy(entries, 0, newEntries, 0, size);
+                    entries = newEntries;
+                }
+                entries[size++] = entry;
+            }
+        }
+        modCount++;
+        return null;
     }
 
     /** {@inheritDoc} */
     public ValueType remove(Object key) {
-        delegate = buildMap();
-        return delegate.remove(key);
+        if (hashedEntries != null) {
+            return hashedEntries.remove(key);
+        }
+
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        ValueType value = entryAt(index).getValue();
+        removeAt(index);
+        return value;
     }
 
     /** {@inheritDoc} */
     public int size() {
-        return delegate.size();
+        if (hashedEntries != null) {
+            return hashedEntries.size();
+        }
+        return size;
     }
 
-    /** {@inheritDoc} */
-    public Collection<ValueType> values() {
-        delegate = buildMap();
-        return delegate.values();
+    /**
+     * Gets the index of the entry held without hashing for the given key.
+     * 
+     * @param key the key
+     * 
+     * @return the index of the entry, or -1 if the key is not in the map
+     */
+    private int indexOf(Object key) {
+        for (int i = 0; i < size; i++) {
+            if (DatatypeHelper.safeEquals(key, entryAt(i).getKey())) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
-     * Builds an appropriate delegate map.
+     * Gets the entry held without hashing at the given index, which must be valid.
+     * 
+     * @param index index of the entry
      * 
-     * @return the delegate map
+     * @return the entry
      */
-    protected Map<KeyType, ValueType> buildMap() {
-        if (delegate instanceof HashMap) {
-            return delegate;
+    @SuppressWarnings("unchecked")
+    private SmallEntry<KeyType, ValueType> entryAt(int index) {
+        if (entries != null) {
+            return (SmallEntry<KeyType, ValueType>) entries[index];
         }
+        return index == 0 ? first : second;
+    }
 
-        return new HashMap<KeyType, ValueType>(delegate);
+    /**
+     * Removes the entry held without hashing at the given index, which must be valid.
+     * 
+     * @param index index of the entry
+     */
+    private void removeAt(int index) {
+        if (entries != null) {
+            System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+            entries[size - 1] = null;
+        } else {
+            if (index == 0) {
+                first = second;
+            }
+            second = null;
+        }
+        size--;
+        modCount++;
     }
 
-    /** {@inheritDoc} */
-    public String toString() {
-        return delegate.toString();
+    /**
+     * View of the entries of the map.
+     */
+    private class EntrySet extends AbstractSet<Entry<KeyType, ValueType>> {
+
+        /** {@inheritDoc} */
+        public void clear() {
+            LazyMap.this.clear();
+        }
+
+        /** {@inheritDoc} */
+        public Iterator<Entry<KeyType, ValueType>> iterator() {
+            if (hashedEntries != null) {
+                return hashedEntries.entrySet().iterator();
+            }
+            return new EntryIterator();
+        }
+
+        /** {@inheritDoc} */
+        public int size() {
+            return LazyMap.this.size();
+        }
     }
 
-    /** {@inheritDoc} */
-    public int hashCode() {
-        return delegate.hashCode();
+    /**
+     * Iterator over the entries of the map while they are held without hashing.
+     */
+    private class EntryIterator implements Iterator<Entry<KeyType, ValueType>> {
+
+        /** Index of the next entry. */
+        private int next;
+
+        /** Index of the entry last returned, or -1 if there is none or it has been removed. */
+        private int last = -1;
+
+        /** Modification count of the map the iterator expects. */
+        private int expectedModCount = modCount;
+
+        /** {@inheritDoc} */
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        /** {@inheritDoc} */
+        public Entry<KeyType, ValueType> next() {
+            checkForModification();
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return entryAt(last);
+        }
+
+        /** {@inheritDoc} */
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            checkForModification();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Checks that the map has not been modified other than through this iterator.
+         */
+        private void checkForModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
     }
 
-    /** {@inheritDoc} */
-    public boolean equals(Object obj) {
-        if (this == obj) {
-            return true;
+    /**
+     * An entry of the map held without hashing.
+     * 
+     * @param <K> the type of the key
+     * @param <V> the type of the value
+     */
+    private static final class SmallEntry<K, V> implements Entry<K, V>, Serializable {
+
+        /** Serial version UID. */
+        private static final long serialVersionUID = 5617404305440213474L;
+
+        /** The key. */
+        private final K key;
+
+        /** The value. */
+        private V value;
+
+        /**
+         * Constructor.
+         * 
+         * @param entryKey the key
+         * @param entryValue the value
+         */
+        private SmallEntry(K entryKey, V entryValue) {
+            key = entryKey;
+            value = entryValue;
+        }
+
+        /** {@inheritDoc} */
+        public K getKey() {
+            return key;
+        }
+
+        /** {@inheritDoc} */
+        public V getValue() {
+            return value;
         }
 
-        if (obj == null || this.getClass() != obj.getClass()) {
-            return false;
+        /** {@inheritDoc} */
+        public V setValue(V newValue) {
+            V oldValue = value;
+            value = newValue;
+            return oldValue;
         }
 
-        return delegate.equals(((LazyMap<?, ?>) obj).delegate);
+        /** {@inheritDoc} */
+        public int hashCode() {
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        /** {@inheritDoc} */
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) obj;
+            return DatatypeHelper.safeEquals(key, entry.getKey()) && DatatypeHelper.safeEquals(value, entry.getValue());
+        }
+
+        /** {@inheritDoc} */
+        public String toString() {
+            return key + "=" + value;
+        }
     }
-}
\ No newline at end of file
+}
@@ -14,141 +14,254 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.opensaml.xml.util;
 
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import net.jcip.annotations.NotThreadSafe;
 
 /**
- * A set that is lazy initialized. This set takes very little memory when storing zero or one item.
+ * A set that is lazy initialized. This set takes very little memory when storing zero, one or two items.
+ * 
+ * <p>
+ * Up to two items are held in fields of the set itself, and up to eight items in an array which is searched linearly.
+ * Larger sets hold their items in a {@link HashSet}. Reading, searching and iterating the set never copy the items.
+ * </p>
  * 
- * @param <ElementType> type of the elements within the set
+ * @param <ElementType> type of elements within the set
  */
 @NotThreadSafe
-public class LazySet<ElementType> implements Set<ElementType>, Serializable {
+public class LazySet<ElementType> extends AbstractSet<ElementType> implements Set<ElementType>, Serializable {
 
     /** Serial version UID. */
-    private static final long serialVersionUID = -1596445680460115174L;
+    private static final long serialVersionUID = -6264187418478318224L;
+
+    /** Largest number of items held without hashing. */
+    private static final int MAX_ARRAY_SIZE = 8;
+
+    /** Initial capacity of the array holding the items once there are more than two. */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** First item, if the items are not held in an array or hash set. */
+    private ElementType first;
+
+    /** Second item, if the items are not held in an array or hash set. */
+    private ElementType second;
+
+    /** Items, or null while there have been no more than two or once they are held in a hash set. */
+    private Object[] elements;
+
+    /** Number of items, if they are not held in a hash set. */
+    private int size;
 
-    /** The delegate set. */
-    private Set<ElementType> delegate = Collections.emptySet();
+    /** Items, or null until there have been more than {@link #MAX_ARRAY_SIZE}. */
+    private HashSet<ElementType> hashedElements;
+
+    /** Number of structural modifications, used to detect modification during iteration. */
+    private transient int modCount;
 
     /** {@inheritDoc} */
     public boolean add(ElementType element) {
-        if (delegate.isEmpty()) {
-            delegate = Collections.singleton(element);
-            return true;
-        } else {
-            delegate = createImplementation();
-            return delegate.add(element);
+        if (hashedElements != null) {
+            return hashedElements.add(element);
         }
-    }
 
-    /** {@inheritDoc} */
-    public boolean addAll(Collection<? extends ElementType> collection) {
-        delegate = createImplementation();
-        return delegate.addAll(collection);
+        if (indexOf(element) >= 0) {
+            return false;
+        }
+
+        if (size == MAX_ARRAY_SIZE) {
+            hashedElements = new HashSet<ElementType>();
+            for (int i = 0; i < size; i++) {
+                hashedElements.add(elementAt(i));
+            }
+            hashedElements.add(element);
+            first = null;
+            second = null;
+            elements = null;
+            size = 0;
+        } else if (elements == null && size < 2) {
+            if (size == 0) {
+                first = element;
+            } else {
+                second = element;
+            }
+            size++;
+        } else {
+            if (elements == null) {
+                elements = new Object[INITIAL_CAPACITY];
+                elements[0] = first;
+                elements[1] = second;
+                first = null;
+                second = null;
+            } else if (elements.length == size) {
+                Object[] newElements = new Object[MAX_ARRAY_SIZE];
+                System.arraycopy(elements, 0, newElements, 0, size);
+                elements = newElements;
+            }
+            elements[size++] = element;
+        }
+        modCount++;
+        return true;
     }
 
     /** {@inheritDoc} */
     public void clear() {
-        delegate = Collections.emptySet();
+        first = null;
+        second = null;
+        elements = null;
+        size = 0;
+        hashedElements = null;
+        modCount++;
     }
 
     /** {@inheritDoc} */
     public boolean contains(Object element) {
-        return delegate.contains(element);
-    }
-
-    /** {@inheritDoc} */
-    public boolean containsAll(Collection<?> collection) {
-        return delegate.containsAll(collection);
+        if (hashedElements != null) {
+            return hashedElements.contains(element);
+        }
+        return indexOf(element) >= 0;
     }
 
     /** {@inheritDoc} */
     public boolean isEmpty() {
-        return delegate.isEmpty();
+        return size() == 0;
     }
 
     /** {@inheritDoc} */
     public Iterator<ElementType> iterator() {
-        delegate = createImplementation();
-        return delegate.iterator();
+        if (hashedElements != null) {
+            return hashedElements.iterator();
+        }
+        return new ElementIterator();
     }
 
     /** {@inheritDoc} */
     public boolean remove(Object element) {
-        delegate = createImplementation();
-        return delegate.remove(element);
-    }
-
-    /** {@inheritDoc} */
-    public boolean removeAll(Collection<?> collection) {
-        delegate = createImplementation();
-        return delegate.removeAll(collection);
-    }
+        if (hashedElements != null) {
+            return hashedElements.remove(element);
+        }
 
-    /** {@inheritDoc} */
-    public boolean retainAll(Collection<?> collection) {
-        delegate = createImplementation();
-        return delegate.retainAll(collection);
+        int index = indexOf(element);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
     }
 
     /** {@inheritDoc} */
     public int size() {
-        return delegate.size();
+        if (hashedElements != null) {
+            return hashedElements.size();
+        }
+        return size;
     }
 
-    /** {@inheritDoc} */
-    public Object[] toArray() {
-        return delegate.toArray();
+    /**
+     * Gets the index of an item held without hashing.
+     * 
+     * @param element the item
+     * 
+     * @return the index of the item, or -1 if it is not in the set
+     */
+    private int indexOf(Object element) {
+        for (int i = 0; i < size; i++) {
+            if (DatatypeHelper.safeEquals(element, elementAt(i))) {
+                return i;
+            }
+        }
+        return -1;
     }
 
-    /** {@inheritDoc} */
-    public <T> T[] toArray(T[] type) {
-        return delegate.toArray(type);
+    /**
+     * Gets the item held without hashing at the given index, which must be valid.
+     * 
+     * @param index index of the item
+     * 
+     * @return the item
+     */
+    @SuppressWarnings("unchecked")
+    private ElementType elementAt(int index) {
+        if (elements != null) {
+            return (ElementType) elements[index];
+        }
+        return index == 0 ? first : second;
     }
 
     /**
-     * Builds an appropriate delegate set.
+     * Removes the item held without hashing at the given index, which must be valid.
      * 
-     * @return the delegate set
+     * @param index index of the item
      */
-    private Set<ElementType> createImplementation() {
-        if (delegate instanceof HashSet) {
-            return delegate;
+    private void removeAt(int index) {
+        if (elements != null) {
+            System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+            elements[size - 1] = null;
+        } else {
+            if (index == 0) {
+                first = second;
+            }
+            second = null;
         }
-
-        return new HashSet<ElementType>(delegate);
+        size--;
+        modCount++;
     }
 
-    /** {@inheritDoc} */
-    public String toString() {
-        return delegate.toString();
-    }
+    /**
+     * Iterator over the items of the set while they are held without hashing.
+     */
+    private class ElementIterator implements Iterator<ElementType> {
 
-    /** {@inheritDoc} */
-    public int hashCode() {
-        return delegate.hashCode();
-    }
+        /** Index of the next item. */
+        private int next;
 
-    /** {@inheritDoc} */
-    public boolean equals(Object obj) {
-        if (this == obj) {
-            return true;
+        /** Index of the item last returned, or -1 if there is none or it has been removed. */
+        private int last = -1;
+
+        /** Modification count of the set the iterator expects. */
+        private int expectedModCount = modCount;
+
+        /** {@inheritDoc} */
+        public boolean hasNext() {
+            return next < size;
         }
 
-        if (obj == null || this.getClass() != obj.getClass()) {
-            return false;
+        /** {@inheritDoc} */
+        public ElementType next() {
+            checkForModification();
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return elementAt(last);
         }
 
-        return delegate.equals(((LazySet<?>) obj).delegate);
+        /** {@inheritDoc} */
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            checkForModification();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Checks that the set has not been modified other than through this iterator.
+         */
+        private void checkForModification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
     }
-}
\ No newline at end of file
+}
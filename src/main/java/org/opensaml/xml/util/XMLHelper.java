@@ -1006,106 +1006,87 @@ public final class XMLHelper {
      * Ensures that all the visibly used namespaces referenced by the given Element or its descendants are declared by
      * the given Element or one of its descendants.
      * 
-     * <strong>NOTE:</strong> This is a very costly operation.
+     * <p>
+     * The subtree is traversed once, tracking the namespaces declared within it as the traversal descends. Namespaces
+     * declared outside the subtree are resolved at most once per prefix.
+     * </p>
      * 
      * @param domElement the element to act as the root of the namespace declarations
      * 
      * @throws XMLParserException thrown if a namespace prefix is encountered that can't be resolved to a namespace URI
      */
     public static void rootNamespaces(Element domElement) throws XMLParserException {
-        rootNamespaces(domElement, domElement);
+        rootNamespaces(domElement, new NamespaceScope(getElementAncestor(domElement)));
     }
 
     /**
      * Recursively called function that ensures all the visibly used namespaces referenced by the given Element or its
-     * descendants are declared if they don't appear in the list of already resolved namespaces.
+     * descendants are declared within the subtree rooted at the element where the traversal started.
      * 
      * @param domElement the Element
-     * @param upperNamespaceSearchBound the "root" element of the fragment where namespaces may be rooted
+     * @param scope the namespaces declared on the given Element's ancestors within the subtree, and the lazily
+     *            resolved namespaces declared outside of it
      * 
      * @throws XMLParserException thrown if a namespace prefix is encountered that can't be resolved to a namespace URI
      */
-    private static void rootNamespaces(Element domElement, Element upperNamespaceSearchBound) throws XMLParserException {
-        String namespaceURI = null;
-        String namespacePrefix = domElement.getPrefix();
+    private static void rootNamespaces(Element domElement, NamespaceScope scope) throws XMLParserException {
+        scope.pushElement(domElement);
 
-        // Check if the namespace for this element is already declared on this element
-        boolean nsDeclaredOnElement = false;
-        if (namespacePrefix == null) {
-            nsDeclaredOnElement = domElement.hasAttributeNS(null, XMLConstants.XMLNS_PREFIX);
-        } else {
-            nsDeclaredOnElement = domElement.hasAttributeNS(XMLConstants.XMLNS_NS, namespacePrefix);
-        }
-
-        if (!nsDeclaredOnElement) {
-            // Namspace for element was not declared on the element itself, see if the namespace is declared on
-            // an ancestral element within the subtree where namespaces much be rooted
-            namespaceURI = lookupNamespaceURI(domElement, upperNamespaceSearchBound, namespacePrefix);
-
-            if (namespaceURI == null) {
-                // Namespace for the element is not declared on any ancestral nodes within the subtree where namespaces
-                // must be rooted. Resolve the namespace from ancestors outside that subtree.
-                namespaceURI = lookupNamespaceURI(upperNamespaceSearchBound, null, namespacePrefix);
-                if (namespaceURI != null) {
-                    // Namespace resolved outside the subtree where namespaces must be declared so declare the namespace
-                    // on this element (within the subtree).
-                    appendNamespaceDeclaration(domElement, namespaceURI, namespacePrefix);
-                } else {
-                    // Namespace couldn't be resolved from any ancestor. If the namespace prefix is null then the
-                    // element is simply in the undeclared default document namespace, which is fine. If it isn't null
-                    // then a namespace prefix, that hasn't properly been declared, is being used.
-                    if (namespacePrefix != null) {
-                        throw new XMLParserException("Unable to resolve namespace prefix " + namespacePrefix
-                                + " found on element " + getNodeQName(domElement));
-                    }
-                }
+        // Make sure the namespace of the element is declared on the element or an ancestor within the subtree
+        String namespacePrefix = domElement.getPrefix();
+        boolean nsDeclaredOnElement = namespacePrefix == null
+                && domElement.hasAttributeNS(null, XMLConstants.XMLNS_PREFIX);
+        if (!nsDeclaredOnElement && !scope.isDeclared(namespacePrefix)) {
+            String namespaceURI = scope.lookupOutside(namespacePrefix);
+            if (namespaceURI != null) {
+                // Namespace resolved outside the subtree where namespaces must be declared so declare the namespace
+                // on this element (within the subtree).
+                scope.declare(domElement, namespaceURI, namespacePrefix);
+            } else if (namespacePrefix != null) {
+                // If the namespace prefix is null then the element is simply in the undeclared default document
+                // namespace, which is fine. If it isn't null then a namespace prefix, that hasn't properly been
+                // declared, is being used.
+                throw new XMLParserException("Unable to resolve namespace prefix " + namespacePrefix
+                        + " found on element " + getNodeQName(domElement));
             }
         }
 
-        // Make sure all the attribute URIs are rooted here or have been rooted in an ancestor
+        // Make sure all the attribute URIs are rooted here or have been rooted in an ancestor. Declarations are
+        // appended only after the attributes have been examined, since appending reorders the attribute map.
+        List<String> undeclaredPrefixes = null;
         NamedNodeMap attributes = domElement.getAttributes();
-        Node attributeNode;
         for (int i = 0; i < attributes.getLength(); i++) {
-            namespacePrefix = null;
-            namespaceURI = null;
-            attributeNode = attributes.item(i);
-
-            // Shouldn't need this check, but just to be safe, we have it
-            if (attributeNode.getNodeType() != Node.ATTRIBUTE_NODE) {
+            Node attributeNode = attributes.item(i);
+            namespacePrefix = attributeNode.getPrefix();
+            if (DatatypeHelper.isEmpty(namespacePrefix) || namespacePrefix.equals(XMLConstants.XMLNS_PREFIX)
+                    || namespacePrefix.equals(XMLConstants.XML_PREFIX) || scope.isDeclared(namespacePrefix)) {
                 continue;
             }
-
-            namespacePrefix = attributeNode.getPrefix();
-            if (!DatatypeHelper.isEmpty(namespacePrefix)) {
-                // If it's the "xmlns" prefix then it is the namespace declaration,
-                // don't try to look it up and redeclare it
-                if (namespacePrefix.equals(XMLConstants.XMLNS_PREFIX)
-                        || namespacePrefix.equals(XMLConstants.XML_PREFIX)) {
-                    continue;
-                }
-
-                // check to see if the namespace for the prefix has already been defined within the XML fragment
-                namespaceURI = lookupNamespaceURI(domElement, upperNamespaceSearchBound, namespacePrefix);
-                if (namespaceURI == null) {
-                    namespaceURI = lookupNamespaceURI(upperNamespaceSearchBound, null, namespacePrefix);
-                    if (namespaceURI == null) {
-                        throw new XMLParserException("Unable to resolve namespace prefix " + namespacePrefix
-                                + " found on attribute " + getNodeQName(attributeNode) + " found on element "
-                                + getNodeQName(domElement));
-                    }
-
-                    appendNamespaceDeclaration(domElement, namespaceURI, namespacePrefix);
+            if (undeclaredPrefixes == null) {
+                undeclaredPrefixes = new ArrayList<String>(2);
+            }
+            if (!undeclaredPrefixes.contains(namespacePrefix)) {
+                if (scope.lookupOutside(namespacePrefix) == null) {
+                    throw new XMLParserException("Unable to resolve namespace prefix " + namespacePrefix
+                            + " found on attribute " + getNodeQName(attributeNode) + " found on element "
+                            + getNodeQName(domElement));
                 }
+                undeclaredPrefixes.add(namespacePrefix);
+            }
+        }
+        if (undeclaredPrefixes != null) {
+            for (String prefix : undeclaredPrefixes) {
+                scope.declare(domElement, scope.lookupOutside(prefix), prefix);
             }
         }
 
-        // Now for the child elements, we pass a copy of the resolved namespace list in order to
-        // maintain proper scoping of namespaces.
         Element childNode = getFirstChildElement(domElement);
         while (childNode != null) {
-            rootNamespaces(childNode, upperNamespaceSearchBound);
+            rootNamespaces(childNode, scope);
             childNode = getNextSiblingElement(childNode);
         }
+
+        scope.popElement();
     }
 
     /**
@@ -1183,4 +1164,134 @@ public final class XMLHelper {
         return xmlDuration.toString();
     }
 
-}
\ No newline at end of file
+    /**
+     * Namespace declarations in scope during a traversal of a DOM subtree by {@link #rootNamespaces(Element)}.
+     */
+    private static final class NamespaceScope {
+
+        /** Key used for the default namespace. */
+        private static final String DEFAULT_PREFIX_KEY = "";
+
+        /** Nearest ancestor of the subtree, or null if the subtree has none. */
+        private final Element outerElement;
+
+        /** Namespace URIs declared within the subtree, indexed by prefix, for the current element. */
+        private final Map<String, String> declared;
+
+        /** Previous bindings of the prefixes declared on each element being traversed, null for unbound. */
+        private final List<List<String[]>> shadowed;
+
+        /** Namespace URIs resolved outside the subtree, indexed by prefix, null for unresolved prefixes. */
+        private final Map<String, String> outside;
+
+        /**
+         * Constructor.
+         * 
+         * @param ancestor nearest ancestor of the subtree, may be null
+         */
+        private NamespaceScope(Element ancestor) {
+            outerElement = ancestor;
+            declared = new HashMap<String, String>();
+            shadowed = new ArrayList<List<String[]>>();
+            outside = new HashMap<String, String>();
+        }
+
+        /**
+         * Enters an element, bringing the namespaces it declares into scope.
+         * 
+         * @param element the element being entered
+         */
+        private void pushElement(Element element) {
+            List<String[]> previous = null;
+            if (element.hasAttributes()) {
+                NamedNodeMap attributes = element.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Node attr = attributes.item(i);
+                    if (!XMLConstants.XMLNS_NS.equals(attr.getNamespaceURI())) {
+                        continue;
+                    }
+                    String key;
+                    if (attr.getNodeName().equals(XMLConstants.XMLNS_PREFIX)) {
+                        key = DEFAULT_PREFIX_KEY;
+                    } else if (XMLConstants.XMLNS_PREFIX.equals(attr.getPrefix())) {
+                        key = attr.getLocalName();
+                    } else {
+                        continue;
+                    }
+                    if (previous == null) {
+                        previous = new ArrayList<String[]>(attributes.getLength());
+                    }
+                    previous.add(new String[] {key, declared.put(key, attr.getNodeValue())});
+                }
+            }
+            shadowed.add(previous);
+        }
+
+        /**
+         * Leaves the most recently entered element, restoring the namespaces which were in scope before it.
+         */
+        private void popElement() {
+            List<String[]> previous = shadowed.remove(shadowed.size() - 1);
+            if (previous == null) {
+                return;
+            }
+            for (int i = previous.size() - 1; i >= 0; i--) {
+                String[] binding = previous.get(i);
+                if (binding[1] == null) {
+                    declared.remove(binding[0]);
+                } else {
+                    declared.put(binding[0], binding[1]);
+                }
+            }
+        }
+
+        /**
+         * Gets whether a prefix is declared on the current element or one of its ancestors within the subtree.
+         * 
+         * @param prefix the prefix, or null for the default namespace
+         * @return true if the prefix is declared within the subtree
+         */
+        private boolean isDeclared(String prefix) {
+            return declared.containsKey(prefix == null ? DEFAULT_PREFIX_KEY : prefix);
+        }
+
+        /**
+         * Resolves a prefix against the namespaces declared outside the subtree.
+         * 
+         * @param prefix the prefix, or null for the default namespace
+         * @return the namespace URI, or null if the prefix is not declared outside the subtree
+         */
+        private String lookupOutside(String prefix) {
+            String key = prefix == null ? DEFAULT_PREFIX_KEY : prefix;
+            if (outside.containsKey(key)) {
+                return outside.get(key);
+            }
+
+            String namespaceURI = null;
+            if (outerElement != null) {
+                namespaceURI = lookupNamespaceURI(outerElement, null, prefix);
+            }
+            outside.put(key, namespaceURI);
+            return namespaceURI;
+        }
+
+        /**
+         * Declares a namespace on the current element and brings it into scope.
+         * 
+         * @param element the current element
+         * @param namespaceURI the namespace URI
+         * @param prefix the prefix, or null for the default namespace
+         */
+        private void declare(Element element, String namespaceURI, String prefix) {
+            appendNamespaceDeclaration(element, namespaceURI, prefix);
+
+            String key = prefix == null ? DEFAULT_PREFIX_KEY : prefix;
+            List<String[]> previous = shadowed.get(shadowed.size() - 1);
+            if (previous == null) {
+                previous = new ArrayList<String[]>(2);
+                shadowed.set(shadowed.size() - 1, previous);
+            }
+            previous.add(new String[] {key, declared.put(key, namespaceURI)});
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.List;
 
 import org.opensaml.xml.Configuration;
 import org.opensaml.xml.Namespace;
@@ -28,10 +29,12 @@ import org.opensaml.xml.XMLObject;
 import org.opensaml.xml.XMLRuntimeException;
 import org.opensaml.xml.io.Marshaller;
 import org.opensaml.xml.io.MarshallingException;
+import org.opensaml.xml.io.StreamMarshallerDriver;
 import org.opensaml.xml.io.Unmarshaller;
 import org.opensaml.xml.io.UnmarshallingException;
 import org.opensaml.xml.parse.ParserPool;
 import org.opensaml.xml.parse.XMLParserException;
+import org.opensaml.xml.signature.Signature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -43,6 +46,9 @@ import org.w3c.dom.Element;
  */
 public final class XMLObjectHelper {
     
+    /** Driver used to write XMLObjects which have no cached DOM to streams. */
+    private static volatile StreamMarshallerDriver streamMarshallerDriver;
+    
     /** Constructor. */
     private XMLObjectHelper() { }
     
@@ -259,6 +265,96 @@ public final class XMLObjectHelper {
         XMLHelper.writeNode(element, writer);
     }
     
+    /**
+     * Write an XMLObject to an OutputStream without building a DOM where possible.  An XMLObject which has no cached
+     * DOM via {@link XMLObject#getDOM()} is written directly to the stream by a {@link StreamMarshallerDriver}, and
+     * caches no DOM afterwards.  An XMLObject which has a cached DOM, or contains a {@link Signature} which has not
+     * yet been marshalled, is marshalled and serialized as by
+     * {@link #marshallToOutputStream(XMLObject, OutputStream)}.
+     * 
+     * @param xmlObject the XMLObject to write
+     * @param outputStream the OutputStream to which to write
+     * @throws MarshallingException if there is a problem marshalling the object
+     */
+    public static void streamToOutputStream(XMLObject xmlObject, OutputStream outputStream)
+            throws MarshallingException {
+        if (isStreamable(xmlObject)) {
+            getStreamMarshallerDriver().marshall(xmlObject, outputStream);
+        } else {
+            marshallToOutputStream(xmlObject, outputStream);
+        }
+    }
+    
+    /**
+     * Write an XMLObject to a Writer without building a DOM where possible.  An XMLObject which has no cached DOM via
+     * {@link XMLObject#getDOM()} is written directly to the writer by a {@link StreamMarshallerDriver}, and caches no
+     * DOM afterwards.  An XMLObject which has a cached DOM, or contains a {@link Signature} which has not yet been
+     * marshalled, is marshalled and serialized as by {@link #marshallToWriter(XMLObject, Writer)}.
+     * 
+     * @param xmlObject the XMLObject to write
+     * @param writer the Writer to which to write
+     * @throws MarshallingException if there is a problem marshalling the object
+     */
+    public static void streamToWriter(XMLObject xmlObject, Writer writer) throws MarshallingException {
+        if (isStreamable(xmlObject)) {
+            getStreamMarshallerDriver().marshall(xmlObject, writer);
+        } else {
+            marshallToWriter(xmlObject, writer);
+        }
+    }
+    
+    /**
+     * Checks whether an XMLObject may be written by a {@link StreamMarshallerDriver}, that is whether it has no cached
+     * DOM and contains no {@link Signature} without a cached DOM.
+     * 
+     * @param xmlObject the XMLObject to check
+     * @return true if the XMLObject may be streamed, false if it must be marshalled to a DOM
+     */
+    private static boolean isStreamable(XMLObject xmlObject) {
+        return xmlObject.getDOM() == null && !containsUnmarshalledSignature(xmlObject);
+    }
+    
+    /**
+     * Checks whether an XMLObject, or any of its descendants which have no cached DOM, is a {@link Signature} which
+     * has no cached DOM.
+     * 
+     * @param xmlObject the XMLObject to check
+     * @return true if an unmarshalled Signature was found
+     */
+    private static boolean containsUnmarshalledSignature(XMLObject xmlObject) {
+        if (xmlObject.getDOM() != null) {
+            return false;
+        }
+        if (xmlObject instanceof Signature) {
+            return true;
+        }
+        List<XMLObject> children = xmlObject.getOrderedChildren();
+        if (children != null) {
+            for (XMLObject child : children) {
+                if (child != null && containsUnmarshalledSignature(child)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Gets the driver used to write XMLObjects to streams, creating a new one if the configured parser pool
+     * has changed since the driver was created.
+     * 
+     * @return the stream marshaller driver
+     */
+    private static StreamMarshallerDriver getStreamMarshallerDriver() {
+        ParserPool parserPool = Configuration.getParserPool();
+        StreamMarshallerDriver driver = streamMarshallerDriver;
+        if (driver == null || driver.getDocumentFactory() != parserPool) {
+            driver = new StreamMarshallerDriver(parserPool);
+            streamMarshallerDriver = driver;
+        }
+        return driver;
+    }
+    
     /**
      * Get the namespace URI bound to the specified prefix within the scope of the specified
      * XMLObject.
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opensaml.xml;
+
+import org.opensaml.xml.mock.SimpleXMLObject;
+
+/**
+ * Runs the ID attribute tests with lazily built ID indexes.
+ */
+public class LazyIDAttributeTest extends IDAttributeTest {
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+        Configuration.setLazyIDIndexing(true);
+    }
+
+    /** {@inheritDoc} */
+    protected void tearDown() throws Exception {
+        Configuration.setLazyIDIndexing(false);
+        super.tearDown();
+    }
+
+    /**
+     * Tests that indexes are lazy and resolve IDs after a subtree is moved between trees.
+     */
+    public void testReparenting() {
+        SimpleXMLObject sxObject =
+            (SimpleXMLObject) unmarshallElement("/data/org/opensaml/xml/IDAttributeWithChildrenList.xml");
+        assertTrue("Index was not lazy", sxObject.getIDIndex().isLazy());
+
+        SimpleXMLObject subtree = sxObject.getSimpleXMLObjects().get(0);
+        SimpleXMLObject grandChild = subtree.getSimpleXMLObjects().get(0).getSimpleXMLObjects().get(0);
+        assertEquals("ID lookup failed", grandChild, sxObject.resolveID("IDLevel4A"));
+        assertEquals("ID lookup failed", grandChild, subtree.resolveID("IDLevel4A"));
+
+        SimpleXMLObject newParent = (SimpleXMLObject) buildXMLObject(SimpleXMLObject.ELEMENT_NAME);
+        newParent.setId("NewParent");
+        assertNull("Lookup of non-existent ID didn't return null", newParent.resolveID("IDLevel4A"));
+
+        sxObject.getSimpleXMLObjects().remove(subtree);
+        assertNull("Lookup of moved ID didn't return null", sxObject.resolveID("IDLevel4A"));
+        assertEquals("ID lookup failed", grandChild, subtree.resolveID("IDLevel4A"));
+
+        newParent.getSimpleXMLObjects().add(subtree);
+        assertEquals("ID lookup failed", grandChild, newParent.resolveID("IDLevel4A"));
+        assertEquals("ID lookup failed", newParent, grandChild.resolveIDFromRoot("NewParent"));
+        assertNull("Lookup of non-existent ID didn't return null", subtree.resolveID("NewParent"));
+
+        grandChild.setId("NewIDLevel4A");
+        assertNull("Lookup of removed ID didn't return null", newParent.resolveID("IDLevel4A"));
+        assertEquals("ID lookup failed", grandChild, newParent.resolveID("NewIDLevel4A"));
+        assertEquals("ID lookup failed", grandChild, subtree.resolveID("NewIDLevel4A"));
+    }
+
+    /**
+     * Tests resolving an ID within a subtree when the same ID is also registered outside of it.
+     */
+    public void testDuplicateIDOutsideSubtree() {
+        SimpleXMLObject sxObject =
+            (SimpleXMLObject) unmarshallElement("/data/org/opensaml/xml/IDAttributeWithChildrenList.xml");
+
+        SimpleXMLObject subtree = sxObject.getSimpleXMLObjects().get(0);
+        SimpleXMLObject child = subtree.getSimpleXMLObjects().get(0);
+        SimpleXMLObject duplicate = sxObject.getSimpleXMLObjects().get(1);
+        duplicate.setId("IDLevel3A");
+        assertEquals("ID lookup failed", duplicate, sxObject.resolveID("IDLevel3A"));
+        assertEquals("ID lookup failed", child, subtree.resolveID("IDLevel3A"));
+        assertEquals("ID lookup failed", child, subtree.resolveID("IDLevel3A"));
+
+        child.setId("NewIDLevel3A");
+        assertNull("Lookup of removed ID didn't return null", subtree.resolveID("IDLevel3A"));
+        assertEquals("ID lookup failed", child, subtree.resolveID("NewIDLevel3A"));
+
+        subtree.getSimpleXMLObjects().get(2).setId("IDLevel3A");
+        assertEquals("ID lookup failed", subtree.getSimpleXMLObjects().get(2), subtree.resolveID("IDLevel3A"));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.opensaml.xml.io.Unmarshaller;
+import org.opensaml.xml.mock.SimpleXMLObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+
+/**
+ * Heap footprint regression test for unmarshalled XMLObject trees.
+ * 
+ * <p>
+ * Trees of the generated document retain somewhat over 500 bytes per XMLObject on a 64-bit VM with compressed
+ * references and somewhat under 800 bytes without, against over 850 bytes with compressed references when the
+ * namespace manager, ID index and attribute maps of every XMLObject are allocated eagerly. The bound checked is
+ * generous and scaled by the reference size. The measurement relies on {@link System#gc()}, so the bound is not
+ * checked if explicit garbage collection is disabled.
+ * </p>
+ */
+public class XMLObjectFootprintTest extends XMLObjectBaseTestCase {
+
+    /** Number of entries in the generated document. */
+    private static final int ENTRY_COUNT = 500;
+
+    /** Number of copies of the document held while measuring. */
+    private static final int TREE_COUNT = 10;
+
+    /** Upper bound on the average retained heap per XMLObject with compressed or 32-bit references. */
+    private static final long MAX_BYTES_PER_OBJECT_COMPRESSED = 800;
+
+    /** Upper bound on the average retained heap per XMLObject with uncompressed 64-bit references. */
+    private static final long MAX_BYTES_PER_OBJECT_UNCOMPRESSED = 1200;
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(XMLObjectFootprintTest.class);
+
+    /**
+     * Tests the retained heap per XMLObject of a representative document, an aggregate of entries carrying ID
+     * attributes, text content and extension content of unknown type.
+     * 
+     * @throws Exception if the document can not be parsed or unmarshalled
+     */
+    public void testFootprint() throws Exception {
+        byte[] document = buildDocument(ENTRY_COUNT).getBytes("UTF-8");
+
+        // warm up class loading and the parser before measuring
+        unmarshall(document);
+
+        List<XMLObject> trees = new ArrayList<XMLObject>();
+        long before = usedMemory();
+        for (int i = 0; i < TREE_COUNT; i++) {
+            trees.add(unmarshall(document));
+        }
+        long after = usedMemory();
+
+        long objectCount = 0;
+        for (XMLObject tree : trees) {
+            objectCount += countObjects(tree);
+        }
+        long bytesPerObject = (after - before) / objectCount;
+        log.info("{} XMLObjects retained {} bytes, {} bytes per XMLObject", new Object[] { objectCount,
+                after - before, bytesPerObject, });
+
+        assertEquals((long) TREE_COUNT * (1 + ENTRY_COUNT * 6), objectCount);
+        if (isExplicitGCDisabled()) {
+            log.info("Explicit garbage collection is disabled, retained heap per XMLObject is not checked");
+        } else {
+            long maxBytesPerObject = isCompressedReferences() ? MAX_BYTES_PER_OBJECT_COMPRESSED
+                    : MAX_BYTES_PER_OBJECT_UNCOMPRESSED;
+            assertTrue("Retained " + bytesPerObject + " bytes per XMLObject, more than " + maxBytesPerObject,
+                    bytesPerObject <= maxBytesPerObject);
+        }
+        assertNotNull(trees.get(0).resolveID("entry-" + (ENTRY_COUNT - 1)));
+    }
+
+    /**
+     * Builds a document holding the given number of entries, each of which unmarshalls to six XMLObjects.
+     * 
+     * @param entries the number of entries
+     * 
+     * @return the document
+     */
+    private String buildDocument(int entries) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<test:SimpleElement xmlns:test=\"").append(SimpleXMLObject.NAMESPACE).append("\">");
+        for (int i = 0; i < entries; i++) {
+            builder.append("<test:SimpleElement Id=\"entry-").append(i).append("\">");
+            builder.append("<product xmlns=\"http://example.com/product-info\" id=\"").append(i).append("\">");
+            builder.append("<name xml:lang=\"en\">Product ").append(i).append("</name>");
+            builder.append("<description>Description of product ").append(i);
+            builder.append("<code>").append(i).append("</code></description>");
+            builder.append("<price currency=\"EUR\">").append(i % 100).append("</price>");
+            builder.append("</product></test:SimpleElement>");
+        }
+        builder.append("</test:SimpleElement>");
+        return builder.toString();
+    }
+
+    /**
+     * Parses and unmarshalls a document, and releases the DOM of the resulting tree.
+     * 
+     * @param document the document
+     * 
+     * @return the unmarshalled tree
+     * 
+     * @throws Exception if the document can not be parsed or unmarshalled
+     */
+    private XMLObject unmarshall(byte[] document) throws Exception {
+        Document domDocument = parserPool.parse(new ByteArrayInputStream(document));
+        Unmarshaller unmarshaller = unmarshallerFactory.getUnmarshaller(domDocument.getDocumentElement());
+        XMLObject xmlObject = unmarshaller.unmarshall(domDocument.getDocumentElement());
+        xmlObject.releaseDOM();
+        xmlObject.releaseChildrenDOM(true);
+        return xmlObject;
+    }
+
+    /**
+     * Counts the XMLObjects in a tree.
+     * 
+     * @param xmlObject the root of the tree
+     * 
+     * @return the number of XMLObjects in the tree
+     */
+    private long countObjects(XMLObject xmlObject) {
+        long count = 1;
+        List<XMLObject> children = xmlObject.getOrderedChildren();
+        if (children != null) {
+            for (XMLObject child : children) {
+                if (child != null) {
+                    count += countObjects(child);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets whether the VM references objects by 32-bit values, either because it is a 32-bit VM or because it
+     * compresses references. If this can not be determined, uncompressed references are assumed.
+     * 
+     * @return true if references are 32 bits wide
+     */
+    private boolean isCompressedReferences() {
+        if ("32".equals(System.getProperty("sun.arch.data.model"))) {
+            return true;
+        }
+        try {
+            Object option = ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=HotSpotDiagnostic"), "getVMOption",
+                    new Object[] { "UseCompressedOops" }, new String[] { String.class.getName() });
+            return "true".equals(((CompositeData) option).get("value"));
+        } catch (Exception e) {
+            log.debug("Unable to determine whether references are compressed", e);
+            return false;
+        }
+    }
+
+    /**
+     * Gets whether the VM ignores requests for explicit garbage collection.
+     * 
+     * @return true if explicit garbage collection is disabled
+     */
+    private boolean isExplicitGCDisabled() {
+        return ManagementFactory.getRuntimeMXBean().getInputArguments().contains("-XX:+DisableExplicitGC");
+    }
+
+    /**
+     * Gets the heap currently in use after collecting garbage.
+     * 
+     * @return the heap in use, in bytes
+     * 
+     * @throws InterruptedException if interrupted while waiting for garbage collection
+     */
+    private long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
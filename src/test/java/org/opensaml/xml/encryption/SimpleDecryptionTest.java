@@ -21,16 +21,21 @@ import java.security.Key;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.crypto.SecretKey;
 
 import org.opensaml.xml.XMLObject;
 import org.opensaml.xml.XMLObjectBaseTestCase;
 import org.opensaml.xml.mock.SimpleXMLObject;
+import org.opensaml.xml.security.CriteriaSet;
+import org.opensaml.xml.security.SecurityException;
 import org.opensaml.xml.security.SecurityHelper;
 import org.opensaml.xml.security.credential.BasicCredential;
 import org.opensaml.xml.security.credential.Credential;
 import org.opensaml.xml.security.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xml.security.keyinfo.KeyInfoHelper;
 import org.opensaml.xml.security.keyinfo.StaticKeyInfoCredentialResolver;
 import org.opensaml.xml.signature.KeyInfo;
 import org.w3c.dom.Document;
@@ -120,6 +125,122 @@ public class SimpleDecryptionTest extends XMLObjectBaseTestCase {
         
     }
     
+    /**
+     * Test that keys decrypted from EncryptedKeys are reused when the decrypted key cache is enabled.
+     * 
+     * @throws SecurityException
+     */
+    public void testEncryptedKeyCache() throws SecurityException {
+        final Credential kekCred = kekResolver.resolve(null).iterator().next();
+        final int[] resolutions = new int[1];
+        KeyInfoCredentialResolver countingResolver = new StaticKeyInfoCredentialResolver(kekCred) {
+            public Iterable<Credential> resolve(CriteriaSet criteria) throws SecurityException {
+                resolutions[0]++;
+                return super.resolve(criteria);
+            }
+        };
+        
+        Decrypter decrypter = new Decrypter(null, countingResolver, null);
+        decrypter.setDecryptedKeyCacheSize(1);
+        
+        try {
+            assertEquals("Decrypted EncryptedKey", encKey, decrypter.decryptKey(encryptedKey, encURI));
+            assertEquals("Decrypted EncryptedKey", encKey, decrypter.decryptKey(encryptedKey, encURI));
+            assertEquals("KEK credentials should only have been resolved once", 1, resolutions[0]);
+            
+            try {
+                decrypter.decryptKey(encryptedKey, EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES256);
+            } catch (DecryptionException e) {
+                // the outcome is irrelevant, only whether the cache was consulted
+            }
+            assertEquals("Different key algorithm should not use the cached key", 2, resolutions[0]);
+            
+            decrypter.clearDecryptedKeyCache();
+            assertEquals("Decrypted EncryptedKey", encKey, decrypter.decryptKey(encryptedKey, encURI));
+            assertEquals("Cleared cache should not be used", 3, resolutions[0]);
+            
+            decrypter.setDecryptedKeyCacheSize(0);
+            assertEquals("Decrypted EncryptedKey", encKey, decrypter.decryptKey(encryptedKey, encURI));
+            assertEquals("Disabled cache should not be used", 4, resolutions[0]);
+        } catch (DecryptionException e) {
+            fail("Error on decryption of EncryptedKey: " + e);
+        }
+    }
+    
+    /**
+     * Test that an EncryptedKey whose KeyInfo identifies a local KEK credential is decrypted with that credential only,
+     * without first attempting the other EncryptedKeys and credentials.
+     * 
+     * @throws Exception
+     */
+    public void testEncryptedKeyKeyInfoMatching() throws Exception {
+        KeyInfo keyInfo = (KeyInfo) buildXMLObject(KeyInfo.DEFAULT_ELEMENT_NAME);
+        List<Credential> localCredentials = new ArrayList<Credential>();
+        for (int i = 0; i < 3; i++) {
+            BasicCredential kekCred = (BasicCredential) SecurityHelper.generateKeyPairAndCredential(kekURI, 1024, true);
+            kekCred.getKeyNames().add("kek" + i);
+            EncryptedKey multiEncryptedKey = buildEncryptedKey(kekCred, null);
+            KeyInfo ekKeyInfo = (KeyInfo) buildXMLObject(KeyInfo.DEFAULT_ELEMENT_NAME);
+            KeyInfoHelper.addKeyName(ekKeyInfo, "kek" + i);
+            multiEncryptedKey.setKeyInfo(ekKeyInfo);
+            keyInfo.getEncryptedKeys().add(multiEncryptedKey);
+            
+            BasicCredential decoyCred = (BasicCredential) SecurityHelper.generateKeyPairAndCredential(kekURI, 1024,
+                    true);
+            decoyCred.getKeyNames().add("decoy" + i);
+            localCredentials.add(decoyCred);
+            if (i == 2) {
+                localCredentials.add(kekCred);
+            }
+        }
+        encryptedData.setKeyInfo(keyInfo);
+        
+        final int[] attempts = new int[1];
+        Decrypter decrypter = new Decrypter(null, new StaticKeyInfoCredentialResolver(localCredentials),
+                new InlineEncryptedKeyResolver()) {
+            protected void preProcessEncryptedKey(EncryptedKey encKey, String algorithm, Key kek)
+                    throws DecryptionException {
+                attempts[0]++;
+                super.preProcessEncryptedKey(encKey, algorithm, kek);
+            }
+        };
+        
+        assertEquals(targetDOM, decrypter.decryptData(encryptedData));
+        assertEquals("Only the matching credential should have been tried", 1, attempts[0]);
+    }
+    
+    /**
+     * Test that EncryptedKeys addressed to a recipient of the EncryptedKeyResolver are tried before those without a
+     * Recipient, and that credentials which do not match an EncryptedKey's KeyInfo are still tried as a fallback.
+     * 
+     * @throws Exception
+     */
+    public void testEncryptedKeyRecipientOrdering() throws Exception {
+        Credential kekCred = kekResolver.resolve(null).iterator().next();
+        KeyInfo keyInfo = (KeyInfo) buildXMLObject(KeyInfo.DEFAULT_ELEMENT_NAME);
+        for (int i = 0; i < 2; i++) {
+            Credential otherCred = SecurityHelper.generateKeyPairAndCredential(kekURI, 1024, false);
+            keyInfo.getEncryptedKeys().add(buildEncryptedKey(otherCred, null));
+        }
+        keyInfo.getEncryptedKeys().add(buildEncryptedKey(kekCred, "foo"));
+        encryptedData.setKeyInfo(keyInfo);
+        
+        InlineEncryptedKeyResolver ekr = new InlineEncryptedKeyResolver();
+        ekr.getRecipients().add("foo");
+        
+        final int[] attempts = new int[1];
+        Decrypter decrypter = new Decrypter(null, kekResolver, ekr) {
+            protected void preProcessEncryptedKey(EncryptedKey encKey, String algorithm, Key kek)
+                    throws DecryptionException {
+                attempts[0]++;
+                super.preProcessEncryptedKey(encKey, algorithm, kek);
+            }
+        };
+        
+        assertEquals(targetDOM, decrypter.decryptData(encryptedData));
+        assertEquals("Only the addressed EncryptedKey should have been tried", 1, attempts[0]);
+    }
+    
     /**
      *  Test simple decryption of an EncryptedData object which is of type Element.
      */
@@ -137,6 +258,45 @@ public class SimpleDecryptionTest extends XMLObjectBaseTestCase {
         
     }
     
+    /**
+     *  Test streaming decryption of an EncryptedData object which is of type Element.
+     */
+    public void testEncryptedElementStreaming() {
+        Decrypter decrypter = new Decrypter(keyResolver, null, null);
+        decrypter.setStreamingDecryption(true);
+        assertTrue(decrypter.isStreamable(encryptedData));
+        
+        XMLObject decryptedXMLObject = null;
+        try {
+            decryptedXMLObject = decrypter.decryptData(encryptedData);
+        } catch (DecryptionException e) {
+            fail("Error on streaming decryption of EncryptedData to element: " + e);
+        }
+        
+        assertEquals(targetDOM, decryptedXMLObject);
+    }
+    
+    /**
+     *  Test error condition of invalid data decryption key with streaming decryption.
+     *  
+     * @throws NoSuchProviderException 
+     * @throws NoSuchAlgorithmException 
+     */
+    public void testErrorInvalidDataDecryptionKeyStreaming() throws NoSuchAlgorithmException,
+            NoSuchProviderException {
+        Key badKey = SecurityHelper.generateKeyFromURI(encURI);
+        
+        Decrypter decrypter = new Decrypter(null, null, null);
+        decrypter.setStreamingDecryption(true);
+        
+        try {
+            decrypter.decryptDataToDOM(encryptedData, badKey);
+            fail("Decryption should have failed, invalid data decryption key");
+        } catch (DecryptionException e) {
+            // do nothing, should fail
+        }
+    }
+    
     /**
      *  Test decryption of an EncryptedData object which is of type Element, where the decryption
      *  key is found as an inline EncryptedKey within EncryptedData/KeyInfo.
@@ -239,5 +399,20 @@ public class SimpleDecryptionTest extends XMLObjectBaseTestCase {
         }
         
     }
- 
+
+    /**
+     * Encrypt the data encryption key for the given key encryption credential.
+     * 
+     * @param kekCred the key encryption credential
+     * @param recipient the recipient of the EncryptedKey, may be null
+     * @return the EncryptedKey
+     * @throws EncryptionException
+     */
+    private EncryptedKey buildEncryptedKey(Credential kekCred, String recipient) throws EncryptionException {
+        KeyEncryptionParameters params = new KeyEncryptionParameters();
+        params.setAlgorithm(kekURI);
+        params.setEncryptionCredential(kekCred);
+        params.setRecipient(recipient);
+        return new Encrypter().encryptKey(encKey, params, parserPool.newDocument());
+    }
 }
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opensaml.xml.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.security.KeyPair;
+
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.Namespace;
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.XMLObjectBaseTestCase;
+import org.opensaml.xml.mock.SimpleXMLObject;
+import org.opensaml.xml.mock.SimpleXMLObjectBuilder;
+import org.opensaml.xml.schema.XSAny;
+import org.opensaml.xml.schema.impl.XSAnyBuilder;
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.signature.DocumentInternalIDContentReference;
+import org.opensaml.xml.signature.Signature;
+import org.opensaml.xml.signature.SignatureConstants;
+import org.opensaml.xml.signature.SignatureValidator;
+import org.opensaml.xml.signature.Signer;
+import org.opensaml.xml.signature.impl.SignatureBuilder;
+import org.opensaml.xml.util.XMLConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Tests for {@link StreamMarshallerDriver}.
+ */
+public class StreamMarshallerDriverTest extends XMLObjectBaseTestCase {
+
+    /** The driver under test. */
+    private StreamMarshallerDriver driver;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+        driver = new StreamMarshallerDriver(parserPool);
+    }
+
+    /**
+     * Tests writing elements with child elements and content.
+     * 
+     * @throws Exception
+     */
+    public void testMarshallWithElementContent() throws Exception {
+        assertStreamedEquals("SimpleXMLObjectWithContent.xml");
+    }
+
+    /**
+     * Tests writing elements with attributes and schema instance attributes.
+     * 
+     * @throws Exception
+     */
+    public void testMarshallWithAttributes() throws Exception {
+        assertStreamedEquals("SimpleXMLObjectWithAttribute.xml");
+        assertStreamedEquals("SimpleXMLObjectSchemaLocation.xml");
+        assertStreamedEquals("SimpleXMLObjectNil.xml");
+    }
+
+    /**
+     * Tests writing unknown content, including CDATA sections and mixed namespaces.
+     * 
+     * @throws Exception
+     */
+    public void testMarshallUnknownContent() throws Exception {
+        assertStreamedEquals("UnknownContent.xml");
+        assertStreamedEquals("SOAPMessageWithContent.xml");
+    }
+
+    /**
+     * Tests that an element without a namespace undeclares the default namespace of its parent.
+     * 
+     * @throws Exception
+     */
+    public void testNoNamespaceChild() throws Exception {
+        XSAnyBuilder builder = new XSAnyBuilder();
+        XSAny parent = builder.buildObject("urn:example:parent", "Parent", null);
+        XSAny child = builder.buildObject(null, "Child", null);
+        child.setTextContent("Content");
+        parent.getUnknownXMLObjects().add(child);
+
+        Element root = parse(marshall(parent));
+        assertEquals("Unexpected parent namespace", "urn:example:parent", root.getNamespaceURI());
+        Element childElement = (Element) root.getFirstChild();
+        assertNull("Child was placed in the parent's default namespace", childElement.getNamespaceURI());
+        assertEquals("Unexpected child content", "Content", childElement.getTextContent());
+    }
+
+    /**
+     * Tests that cached DOMs are written as they are, declaring namespaces which were declared outside of them.
+     * 
+     * @throws Exception
+     */
+    public void testCachedDOM() throws Exception {
+        String xml = "<root xmlns:foo=\"urn:foo\"><foo:child foo:attr=\"value\">Content</foo:child></root>";
+        Document document = parserPool.parse(new StringReader(xml));
+        XMLObject root = unmarshallerFactory.getUnmarshaller(Configuration.getDefaultProviderQName()).unmarshall(
+                document.getDocumentElement());
+        XMLObject child = root.getOrderedChildren().get(0);
+        root.releaseDOM();
+        root.getNamespaceManager().deregisterNamespaceDeclaration(new Namespace("urn:foo", "foo"));
+        assertNotNull("Child DOM was released", child.getDOM());
+
+        Element childElement = (Element) parse(marshall(root)).getFirstChild();
+        assertEquals("Unexpected child namespace", "urn:foo", childElement.getNamespaceURI());
+        assertEquals("Unexpected child attribute", "value", childElement.getAttributeNS("urn:foo", "attr"));
+        assertEquals("Unexpected child content", "Content", childElement.getTextContent());
+
+        assertNull("DOM was cached after writing to a stream", root.getDOM());
+        assertSame("Cached DOM of child was replaced", document, child.getDOM().getOwnerDocument());
+        assertFalse("Cached DOM of child was modified", child.getDOM().hasAttributeNS(XMLConstants.XMLNS_NS, "foo"));
+    }
+
+    /**
+     * Tests that a signed element is written from its cached DOM, so that its signature remains valid.
+     * 
+     * @throws Exception
+     */
+    public void testSignedElement() throws Exception {
+        KeyPair keyPair = SecurityHelper.generateKeyPair("RSA", 1024, null);
+        Credential credential = SecurityHelper.getSimpleCredential(keyPair.getPublic(), keyPair.getPrivate());
+
+        SimpleXMLObject sxObject = new SimpleXMLObjectBuilder().buildObject();
+        sxObject.setId("FOO");
+        Signature signature = new SignatureBuilder().buildObject();
+        signature.setSigningCredential(credential);
+        signature.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        signature.setSignatureAlgorithm(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA1);
+        DocumentInternalIDContentReference contentReference = new DocumentInternalIDContentReference("FOO");
+        contentReference.getTransforms().add(SignatureConstants.TRANSFORM_ENVELOPED_SIGNATURE);
+        contentReference.getTransforms().add(SignatureConstants.TRANSFORM_C14N_EXCL_OMIT_COMMENTS);
+        contentReference.setDigestAlgorithm(SignatureConstants.ALGO_ID_DIGEST_SHA1);
+        signature.getContentReferences().add(contentReference);
+        sxObject.setSignature(signature);
+        marshallerFactory.getMarshaller(sxObject).marshall(sxObject);
+        Signer.signObject(signature);
+
+        XSAny envelope = new XSAnyBuilder().buildObject("urn:example:envelope", "Envelope", "env");
+        envelope.getUnknownXMLObjects().add(sxObject);
+
+        Element root = parse(marshall(envelope));
+        SimpleXMLObject written = (SimpleXMLObject) unmarshallerFactory.getUnmarshaller(
+                Configuration.getDefaultProviderQName()).unmarshall(root).getOrderedChildren().get(0);
+        new SignatureValidator(credential).validate(written.getSignature());
+    }
+
+    /**
+     * Tests writing through a character stream.
+     * 
+     * @throws Exception
+     */
+    public void testMarshallToWriter() throws Exception {
+        XMLObject xmlObject = unmarshall("SimpleXMLObjectWithContent.xml");
+        StringWriter writer = new StringWriter();
+        driver.marshall(xmlObject, writer);
+
+        Document expected = parserPool.parse(getResource("SimpleXMLObjectWithContent.xml"));
+        assertXMLEqual(expected, parserPool.parse(new StringReader(writer.toString())));
+    }
+
+    /**
+     * Asserts that writing the XMLObject unmarshalled from a test resource, without its DOM, yields a document equal
+     * to the resource.
+     * 
+     * @param name name of the resource
+     * 
+     * @throws Exception thrown if the resource can not be read or written
+     */
+    private void assertStreamedEquals(String name) throws Exception {
+        XMLObject xmlObject = unmarshall(name);
+        Document expected = parserPool.parse(getResource(name));
+
+        byte[] output = marshall(xmlObject);
+        assertXMLEqual("Streamed output of " + name + " differs", expected, parse(output).getOwnerDocument());
+        assertNull("DOM was cached after writing to a stream", xmlObject.getDOM());
+    }
+
+    /**
+     * Unmarshalls a test resource and releases the DOM of the resulting XMLObject tree.
+     * 
+     * @param name name of the resource
+     * 
+     * @return the XMLObject
+     * 
+     * @throws Exception thrown if the resource can not be read or unmarshalled
+     */
+    private XMLObject unmarshall(String name) throws Exception {
+        Element element = parserPool.parse(getResource(name)).getDocumentElement();
+        Unmarshaller unmarshaller = unmarshallerFactory.getUnmarshaller(element);
+        if (unmarshaller == null) {
+            unmarshaller = unmarshallerFactory.getUnmarshaller(Configuration.getDefaultProviderQName());
+        }
+        XMLObject xmlObject = unmarshaller.unmarshall(element);
+        xmlObject.releaseDOM();
+        xmlObject.releaseChildrenDOM(true);
+        return xmlObject;
+    }
+
+    /**
+     * Writes an XMLObject to a byte array.
+     * 
+     * @param xmlObject the XMLObject
+     * 
+     * @return the written document
+     * 
+     * @throws MarshallingException thrown if the XMLObject can not be written
+     */
+    private byte[] marshall(XMLObject xmlObject) throws MarshallingException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        driver.marshall(xmlObject, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Parses a written document.
+     * 
+     * @param output the written document
+     * 
+     * @return the document element
+     * 
+     * @throws Exception thrown if the document can not be parsed
+     */
+    private Element parse(byte[] output) throws Exception {
+        return parserPool.parse(new ByteArrayInputStream(output)).getDocumentElement();
+    }
+
+    /**
+     * Gets a test resource.
+     * 
+     * @param name name of the resource, relative to the test data directory of this package's parent
+     * 
+     * @return the resource stream
+     */
+    private InputStream getResource(String name) {
+        return StreamMarshallerDriverTest.class.getResourceAsStream("/data/org/opensaml/xml/" + name);
+    }
+}
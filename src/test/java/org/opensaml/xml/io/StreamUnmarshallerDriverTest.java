@@ -0,0 +1,224 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.io;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.security.KeyPair;
+import java.util.List;
+
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.XMLObject;
+import org.opensaml.xml.XMLObjectBaseTestCase;
+import org.opensaml.xml.mock.SimpleXMLObject;
+import org.opensaml.xml.mock.SimpleXMLObjectBuilder;
+import org.opensaml.xml.schema.XSAny;
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.signature.DocumentInternalIDContentReference;
+import org.opensaml.xml.signature.Signature;
+import org.opensaml.xml.signature.SignatureConstants;
+import org.opensaml.xml.signature.SignatureValidator;
+import org.opensaml.xml.signature.Signer;
+import org.opensaml.xml.signature.impl.SignatureBuilder;
+import org.opensaml.xml.util.XMLHelper;
+import org.opensaml.xml.validation.ValidationException;
+import org.w3c.dom.Document;
+
+/**
+ * Tests for {@link StreamUnmarshallerDriver}.
+ */
+public class StreamUnmarshallerDriverTest extends XMLObjectBaseTestCase {
+
+    /** The driver under test. */
+    private StreamUnmarshallerDriver driver;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+        driver = new StreamUnmarshallerDriver(parserPool);
+    }
+
+    /**
+     * Tests unmarshalling elements with child elements and content.
+     * 
+     * @throws UnmarshallingException
+     */
+    public void testUnmarshallWithElementContent() throws UnmarshallingException {
+        SimpleXMLObject sxObject = (SimpleXMLObject) driver.unmarshall(getResource("SimpleXMLObjectWithContent.xml"));
+
+        assertNull("DOM was cached after unmarshalling from a stream", sxObject.getDOM());
+
+        List<SimpleXMLObject> children = sxObject.getSimpleXMLObjects();
+        assertEquals("Unexpected number of children", 3, children.size());
+        assertEquals("Unexpected value (text content) for child 1", "Content1", children.get(0).getValue());
+        assertEquals("Unexpected value (text content) for child 2", "Content2", children.get(1).getValue());
+        assertNull("Child had text content when it should not", children.get(2).getValue());
+        assertSame("Unexpected parent of child 1", sxObject, children.get(0).getParent());
+
+        List<SimpleXMLObject> grandChildren = children.get(2).getSimpleXMLObjects();
+        assertEquals("Unexpected number of grandchildren", 1, grandChildren.size());
+        assertEquals("Unexpected value (text content) for grandchild 1", "Content3", grandChildren.get(0).getValue());
+    }
+
+    /**
+     * Tests unmarshalling an element with an ID attribute.
+     * 
+     * @throws UnmarshallingException
+     */
+    public void testUnmarshallWithAttributes() throws UnmarshallingException {
+        SimpleXMLObject sxObject = (SimpleXMLObject) driver.unmarshall(getResource("SimpleXMLObjectWithAttribute.xml"));
+
+        assertEquals("ID was not expected value", "Firefly", sxObject.getId());
+        assertSame("ID was not resolvable", sxObject, sxObject.resolveID("Firefly"));
+    }
+
+    /**
+     * Tests that unmarshalling unknown content from a stream yields the same objects as unmarshalling it from a DOM.
+     * 
+     * @throws Exception
+     */
+    public void testUnmarshallUnknownContent() throws Exception {
+        XMLObject xmlObject = driver.unmarshall(getResource("UnknownContent.xml"));
+
+        assertEquals("Unexpected root element name", "products", xmlObject.getElementQName().getLocalPart());
+        assertEquals("Unexpected number of children", 2, xmlObject.getOrderedChildren().size());
+        assertEquals("Unexpected CDATA content", "<strong>XSLT Perfect IDE</strong>",
+                ((XSAny) xmlObject.getOrderedChildren().get(1).getOrderedChildren().get(0)).getTextContent());
+
+        Document expected = parserPool.parse(getResource("UnknownContent.xml"));
+        XMLObject domObject = unmarshallerFactory.getUnmarshaller(Configuration.getDefaultProviderQName()).unmarshall(
+                expected.getDocumentElement());
+        domObject.releaseDOM();
+        domObject.releaseChildrenDOM(true);
+
+        Marshaller marshaller = marshallerFactory.getMarshaller(Configuration.getDefaultProviderQName());
+        assertEquals("Streamed and DOM unmarshalled objects differ", XMLHelper.nodeToString(marshaller
+                .marshall(domObject)), XMLHelper.nodeToString(marshaller.marshall(xmlObject)));
+    }
+
+    /**
+     * Tests that schema types are resolved against namespaces declared on ancestors.
+     * 
+     * @throws UnmarshallingException
+     */
+    public void testSchemaType() throws UnmarshallingException {
+        XMLObject xmlObject = driver.unmarshall(new StringReader("<root xmlns:xs=\"http://www.w3.org/2001/XMLSchema\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"><value xsi:type=\"xs:string\">foo</value>"
+                + "</root>"));
+
+        XMLObject value = xmlObject.getOrderedChildren().get(0);
+        assertEquals("Unexpected schema type", "string", value.getSchemaType().getLocalPart());
+        assertEquals("Unexpected schema type namespace", "http://www.w3.org/2001/XMLSchema", value.getSchemaType()
+                .getNamespaceURI());
+    }
+
+    /**
+     * Tests that elements registered as DOM elements are unmarshalled from a DOM carrying the inherited namespaces.
+     * 
+     * @throws UnmarshallingException
+     */
+    public void testDOMElements() throws UnmarshallingException {
+        String xml = "<root xmlns:foo=\"urn:foo\">"
+                + "<test:SimpleElement xmlns:test=\"http://www.example.org/testObjects\">"
+                + "<test:SimpleElement>Content</test:SimpleElement></test:SimpleElement></root>";
+
+        XMLObject root = driver.unmarshall(new StringReader(xml));
+        SimpleXMLObject sxObject = (SimpleXMLObject) root.getOrderedChildren().get(0);
+        assertNull("DOM was cached after unmarshalling from a stream", sxObject.getDOM());
+
+        driver.registerDOMElementName(simpleXMLObjectQName);
+        assertTrue(driver.isDOMElement(simpleXMLObjectQName.getNamespaceURI(), simpleXMLObjectQName.getLocalPart()));
+        root = driver.unmarshall(new StringReader(xml));
+        sxObject = (SimpleXMLObject) root.getOrderedChildren().get(0);
+        assertNull("DOM was cached for a streamed element", root.getDOM());
+        assertNotNull("DOM was not cached for a DOM element", sxObject.getDOM());
+        assertEquals("Inherited namespace was not declared", "urn:foo", sxObject.getDOM().lookupNamespaceURI("foo"));
+        assertEquals("Unexpected value (text content) for child", "Content", sxObject.getSimpleXMLObjects().get(0)
+                .getValue());
+
+        driver.deregisterDOMElementName(simpleXMLObjectQName);
+        assertFalse(driver.isDOMElement(simpleXMLObjectQName.getNamespaceURI(), simpleXMLObjectQName.getLocalPart()));
+    }
+
+    /**
+     * Tests that an enveloped signature can be validated once its signed element is kept as DOM.
+     * 
+     * @throws Exception
+     */
+    public void testEnvelopedSignature() throws Exception {
+        KeyPair keyPair = SecurityHelper.generateKeyPair("RSA", 1024, null);
+        Credential credential = SecurityHelper.getSimpleCredential(keyPair.getPublic(), keyPair.getPrivate());
+
+        SimpleXMLObject sxObject = new SimpleXMLObjectBuilder().buildObject();
+        sxObject.setId("FOO");
+        Signature signature = new SignatureBuilder().buildObject();
+        signature.setSigningCredential(credential);
+        signature.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        signature.setSignatureAlgorithm(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA1);
+        DocumentInternalIDContentReference contentReference = new DocumentInternalIDContentReference("FOO");
+        contentReference.getTransforms().add(SignatureConstants.TRANSFORM_ENVELOPED_SIGNATURE);
+        contentReference.getTransforms().add(SignatureConstants.TRANSFORM_C14N_EXCL_OMIT_COMMENTS);
+        contentReference.setDigestAlgorithm(SignatureConstants.ALGO_ID_DIGEST_SHA1);
+        signature.getContentReferences().add(contentReference);
+        sxObject.setSignature(signature);
+        marshallerFactory.getMarshaller(sxObject).marshall(sxObject);
+        Signer.signObject(signature);
+        String signedXML = XMLHelper.nodeToString(sxObject.getDOM());
+
+        SignatureValidator validator = new SignatureValidator(credential);
+
+        SimpleXMLObject streamed = (SimpleXMLObject) driver.unmarshall(new StringReader(signedXML));
+        assertNull("DOM was cached for a streamed element", streamed.getDOM());
+        assertNotNull("DOM was not cached for the signature", streamed.getSignature().getDOM());
+        try {
+            validator.validate(streamed.getSignature());
+            fail("Validated an enveloped signature without the DOM of the signed element");
+        } catch (ValidationException e) {
+            // expected
+        }
+
+        driver.registerDOMElementName(simpleXMLObjectQName);
+        streamed = (SimpleXMLObject) driver.unmarshall(new StringReader(signedXML));
+        assertNotNull("DOM was not cached for the signed element", streamed.getDOM());
+        validator.validate(streamed.getSignature());
+    }
+
+    /**
+     * Tests that document type declarations are rejected.
+     */
+    public void testDocumentTypeDeclaration() {
+        try {
+            driver.unmarshall(new StringReader("<!DOCTYPE root [<!ENTITY foo \"bar\">]><root>&foo;</root>"));
+            fail("Unmarshalled a document with a document type declaration");
+        } catch (UnmarshallingException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Gets a test resource.
+     * 
+     * @param name name of the resource, relative to the test data directory of this package's parent
+     * 
+     * @return the resource stream
+     */
+    private InputStream getResource(String name) {
+        return StreamUnmarshallerDriverTest.class.getResourceAsStream("/data/org/opensaml/xml/" + name);
+    }
+}
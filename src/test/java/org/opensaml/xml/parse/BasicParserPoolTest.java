@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import javax.xml.parsers.DocumentBuilder;
 
 import org.opensaml.xml.parse.BasicParserPool.DocumentBuilderProxy;
+import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
@@ -282,8 +283,21 @@ public class BasicParserPoolTest extends TestCase {
         assertEquals(1, pool.getPoolSize());
         
     }
-    
-    
 
+    /**
+     * Test that new documents are created without checking out a builder, and that they follow the pool version.
+     * 
+     * @throws XMLParserException
+     */
+    public void testNewDocument() throws XMLParserException {
+        Document document = pool.newDocument();
+        assertNotNull(document);
+        assertNull(document.getDocumentElement());
+        assertEquals(0, pool.getPoolSize());
 
+        long version = pool.getPoolVersion();
+        pool.setNamespaceAware(!pool.isNamespaceAware());
+        assertNotNull(pool.newDocument());
+        assertEquals(version + 1, pool.getPoolVersion());
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.parse;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import junit.framework.TestCase;
+
+import org.opensaml.xml.parse.BasicParserPool.DocumentBuilderProxy;
+import org.w3c.dom.Document;
+
+/**
+ * Test the thread-affine parser pool implementation.
+ */
+public class ThreadAffineParserPoolTest extends TestCase {
+
+    /** Pool instance to test. */
+    private ThreadAffineParserPool pool;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        pool = new ThreadAffineParserPool();
+    }
+
+    /**
+     * Test that a returned builder is reused by the same thread via its slot.
+     *
+     * @throws XMLParserException
+     */
+    public void testThreadSlotReuse() throws XMLParserException {
+        assertEquals(0, pool.getPoolSize());
+
+        DocumentBuilderProxy builder = (DocumentBuilderProxy) pool.getBuilder();
+        DocumentBuilder unwrapped = builder.getProxiedBuilder();
+        pool.returnBuilder(builder);
+        assertEquals(1, pool.getPoolSize());
+
+        DocumentBuilderProxy builder2 = (DocumentBuilderProxy) pool.getBuilder();
+        assertSame(unwrapped, builder2.getProxiedBuilder());
+        assertEquals(0, pool.getPoolSize());
+
+        assertEquals(1, pool.getSlotHits());
+        assertEquals(0, pool.getOverflowHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getCreates());
+    }
+
+    /**
+     * Test for caller (illegally) returning a builder multiple times to pool.
+     *
+     * @throws XMLParserException
+     */
+    public void testExplicitMultipleReturn() throws XMLParserException {
+        DocumentBuilder builder = pool.getBuilder();
+
+        pool.returnBuilder(builder);
+        assertEquals(1, pool.getPoolSize());
+
+        // This isn't legal to do, but should be silently detected and ignored
+        pool.returnBuilder(builder);
+        assertEquals(1, pool.getPoolSize());
+
+        DocumentBuilder builder1 = ((DocumentBuilderProxy) pool.getBuilder()).getProxiedBuilder();
+        DocumentBuilder builder2 = ((DocumentBuilderProxy) pool.getBuilder()).getProxiedBuilder();
+        assertFalse(builder1.equals(builder2));
+
+        try {
+            builder.newDocument();
+            fail("Parser proxy was in an illegal state");
+        } catch (IllegalStateException e) {
+            // do nothing, expected
+        }
+    }
+
+    /**
+     * Test that only maxPoolSize parsers are cached in the overflow queue.
+     *
+     * @throws XMLParserException
+     */
+    public void testMaxPoolSize() throws XMLParserException {
+        int poolSize = 5;
+
+        pool.setMaxPoolSize(poolSize);
+
+        ArrayList<DocumentBuilder> list = new ArrayList<DocumentBuilder>();
+        for (int i = 0; i < 3 * poolSize; i++) {
+            list.add(pool.getBuilder());
+        }
+        assertEquals(3 * poolSize, pool.getCreates());
+
+        for (DocumentBuilder b : list) {
+            pool.returnBuilder(b);
+        }
+
+        // One builder in this thread's slot, maxPoolSize in the overflow queue
+        assertEquals(poolSize + 1, pool.getPoolSize());
+
+        pool.getBuilder();
+        pool.getBuilder();
+        assertEquals(1, pool.getSlotHits());
+        assertEquals(1, pool.getOverflowHits());
+    }
+
+    /**
+     * Test that builders from a prior pool version are neither accepted nor reused.
+     *
+     * @throws XMLParserException
+     */
+    public void testPoolVersioning() throws XMLParserException {
+        DocumentBuilderProxy builderV1 = (DocumentBuilderProxy) pool.getBuilder();
+        DocumentBuilderProxy cachedV1 = (DocumentBuilderProxy) pool.getBuilder();
+        long firstVersion = pool.getPoolVersion();
+        assertEquals(firstVersion, builderV1.getPoolVersion());
+        pool.returnBuilder(cachedV1);
+        assertEquals(1, pool.getPoolSize());
+
+        // Cause the pool to be dirty, increment the version number
+        pool.setNamespaceAware(!pool.isNamespaceAware());
+        DocumentBuilderProxy builderV2 = (DocumentBuilderProxy) pool.getBuilder();
+        assertEquals(firstVersion + 1, pool.getPoolVersion());
+        assertEquals(pool.getPoolVersion(), builderV2.getPoolVersion());
+        assertNotSame(cachedV1.getProxiedBuilder(), builderV2.getProxiedBuilder());
+        assertEquals(0, pool.getSlotHits());
+
+        // The V1 builder should be rejected
+        pool.returnBuilder(builderV1);
+        assertEquals(0, pool.getPoolSize());
+
+        pool.returnBuilder(builderV2);
+        assertEquals(1, pool.getPoolSize());
+    }
+
+    /**
+     * Test parsing through the pool.
+     *
+     * @throws XMLParserException
+     */
+    public void testParse() throws XMLParserException {
+        InputStream is = ThreadAffineParserPoolTest.class.getResourceAsStream("/data/org/opensaml/xml/parse/foo.xml");
+        Document document = pool.parse(is);
+        assertNotNull(document.getDocumentElement());
+
+        assertEquals(1, pool.getPoolSize());
+    }
+}
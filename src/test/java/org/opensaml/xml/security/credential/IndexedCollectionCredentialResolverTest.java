@@ -0,0 +1,280 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.credential;
+
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.opensaml.xml.security.CriteriaSet;
+import org.opensaml.xml.security.SecurityException;
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.criteria.EntityIDCriteria;
+import org.opensaml.xml.security.criteria.KeyNameCriteria;
+import org.opensaml.xml.security.criteria.PublicKeyCriteria;
+import org.opensaml.xml.security.x509.BasicX509Credential;
+import org.opensaml.xml.security.x509.X509DigestCriteria;
+import org.opensaml.xml.security.x509.X509IssuerSerialCriteria;
+import org.opensaml.xml.security.x509.X509SubjectKeyIdentifierCriteria;
+import org.opensaml.xml.security.x509.X509Util;
+
+/**
+ * Testing the indexed collection credential resolver.
+ */
+public class IndexedCollectionCredentialResolverTest extends TestCase {
+
+    /** Number of plain credentials with an entity ID and key name. */
+    private static final int CRED_COUNT = 500;
+
+    private String entityCertBase64 =
+        "MIIDzjCCAragAwIBAgIBMTANBgkqhkiG9w0BAQUFADAtMRIwEAYDVQQKEwlJbnRl" +
+        "cm5ldDIxFzAVBgNVBAMTDmNhLmV4YW1wbGUub3JnMB4XDTA3MDUyMTE4MjM0MFoX" +
+        "DTE3MDUxODE4MjM0MFowMTESMBAGA1UEChMJSW50ZXJuZXQyMRswGQYDVQQDExJm" +
+        "b29iYXIuZXhhbXBsZS5vcmcwggEiMA0GCSqGSIb3DQEBAQUAA4IBDwAwggEKAoIB" +
+        "AQDNWnkFmhy1vYa6gN/xBRKkZxFy3sUq2V0LsYb6Q3pe9Qlb6+BzaM5DrN8uIqqr" +
+        "oBE3Wp0LtrgKuQTpDpNFBdS2p5afiUtOYLWBDtizTOzs3Z36MGMjIPUYQ4s03IP3" +
+        "yPh2ud6EKpDPiYqzNbkRaiIwmYSit5r+RMYvd6fuKvTOn6h7PZI5AD7Rda7VWh5O" +
+        "VSoZXlRx3qxFho+mZhW0q4fUfTi5lWwf4EhkfBlzgw/k5gf4cOi6rrGpRS1zxmbt" +
+        "X1RAg+I20z6d04g0N2WsK5stszgYKoIROJCiXwjraa8/SoFcILolWQpttVHBIUYl" +
+        "yDlm8mIFleZf4ReFpfm+nUYxAgMBAAGjgfQwgfEwCQYDVR0TBAIwADAsBglghkgB" +
+        "hvhCAQ0EHxYdT3BlblNTTCBHZW5lcmF0ZWQgQ2VydGlmaWNhdGUwHQYDVR0OBBYE" +
+        "FDgRgTkjaKoK6DoZfUZ4g9LDJUWuMFUGA1UdIwROMEyAFNXuZVPeUdqHrULqQW7y" +
+        "r9buRpQLoTGkLzAtMRIwEAYDVQQKEwlJbnRlcm5ldDIxFzAVBgNVBAMTDmNhLmV4" +
+        "YW1wbGUub3JnggEBMEAGA1UdEQQ5MDeCEmFzaW1vdi5leGFtcGxlLm9yZ4YbaHR0" +
+        "cDovL2hlaW5sZWluLmV4YW1wbGUub3JnhwQKAQIDMA0GCSqGSIb3DQEBBQUAA4IB" +
+        "AQBLiDMyQ60ldIytVO1GCpp1S1sKJyTF56GVxHh/82hiRFbyPu+2eSl7UcJfH4ZN" +
+        "bAfHL1vDKTRJ9zoD8WRzpOCUtT0IPIA/Ex+8lFzZmujO10j3TMpp8Ii6+auYwi/T" +
+        "osrfw1YCxF+GI5KO49CfDRr6yxUbMhbTN+ssK4UzFf36UbkeJ3EfDwB0WU70jnlk" +
+        "yO8f97X6mLd5QvRcwlkDMftP4+MB+inTlxDZ/w8NLXQoDW6p/8r91bupXe0xwuyE" +
+        "vow2xjxlzVcux2BZsUZYjBa07ZmNNBtF7WaQqH7l2OBCAdnBhvme5i/e0LK3Ivys" +
+        "+hcVyvCXs5XtFTFWDAVYvzQ6";
+
+    private String entityCertNoSKIBase64 =
+        "MIIBwjCCASugAwIBAgIJAMrW6QSeKNBJMA0GCSqGSIb3DQEBBAUAMCMxITAfBgNV" +
+        "BAMTGG5vZXh0ZW5zaW9ucy5leGFtcGxlLm9yZzAeFw0wNzA1MTkxNzU2NTVaFw0w" +
+        "NzA2MTgxNzU2NTVaMCMxITAfBgNVBAMTGG5vZXh0ZW5zaW9ucy5leGFtcGxlLm9y" +
+        "ZzCBnzANBgkqhkiG9w0BAQEFAAOBjQAwgYkCgYEAw8xxu6TLqEdmnyXVZjiUoRHN" +
+        "6yHyobZaRK+tBEmWkD4nTlOVmTKWBCO/F4OnugaJbSTH+7Jk37l8/XYYBSIkW0+L" +
+        "2BglzQ2JCux/uoRu146QDIk9f5PIFs+Fxy7VRVUUZiOsonB/PNVqA7OVbPxzr1SK" +
+        "PSE0s9CHaDjCaEs2BnMCAwEAATANBgkqhkiG9w0BAQQFAAOBgQAuI/l80wb8K6RT" +
+        "1EKrAcfr9JAlJR4jmVnCK7j3Ulx++U98ze2G6/cluLxrbnqwXmxJNC3nt6xkQVJU" +
+        "X1UFg+zkmRrst2Nv8TTrR7S30az068BHfrZLRSUConG9jXXj+hJq+w/ojmrq8Mzv" +
+        "JSczkA2BvsEUBARYo53na7RMgk+xWg==";
+
+    private List<Credential> credentials;
+
+    private BasicCredential noEntityCred;
+
+    private BasicCredential keyCred;
+
+    private BasicX509Credential x509Cred;
+
+    private BasicX509Credential x509NoSKICred;
+
+    private X509Certificate entityCert;
+
+    private IndexedCollectionCredentialResolver resolver;
+
+    private CriteriaSet criteriaSet;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        credentials = new ArrayList<Credential>();
+        for (int i = 0; i < CRED_COUNT; i++) {
+            BasicCredential cred = new BasicCredential();
+            cred.setEntityId("entity-" + i);
+            cred.getKeyNames().add("key-" + i);
+            cred.getKeyNames().add("shared-" + (i % 10));
+            credentials.add(cred);
+        }
+
+        noEntityCred = new BasicCredential();
+        noEntityCred.getKeyNames().add("key-42");
+        credentials.add(10, noEntityCred);
+
+        KeyPair keyPair = SecurityHelper.generateKeyPair("RSA", 1024, null);
+        keyCred = new BasicCredential();
+        keyCred.setEntityId("entity-42");
+        keyCred.setPublicKey(keyPair.getPublic());
+        credentials.add(keyCred);
+
+        entityCert = SecurityHelper.buildJavaX509Cert(entityCertBase64);
+        x509Cred = new BasicX509Credential();
+        x509Cred.setEntityId("x509-entity");
+        x509Cred.setEntityCertificate(entityCert);
+        credentials.add(x509Cred);
+
+        x509NoSKICred = new BasicX509Credential();
+        x509NoSKICred.setEntityId("x509-entity");
+        x509NoSKICred.setEntityCertificate(SecurityHelper.buildJavaX509Cert(entityCertNoSKIBase64));
+        credentials.add(x509NoSKICred);
+
+        resolver = new IndexedCollectionCredentialResolver(credentials);
+        criteriaSet = new CriteriaSet();
+    }
+
+    /**
+     * Test resolution by entity ID, including credentials without an entity ID.
+     *
+     * @throws SecurityException
+     */
+    public void testEntityID() throws SecurityException {
+        criteriaSet.add(new EntityIDCriteria("entity-42"));
+        List<Credential> resolved = getResolved(resolver.resolve(criteriaSet));
+        assertEquals(3, resolved.size());
+        assertSame(noEntityCred, resolved.get(0));
+        assertEquals("entity-42", resolved.get(1).getEntityId());
+        assertSame(keyCred, resolved.get(2));
+        checkEquivalent(criteriaSet);
+
+        resolver.setUnevaluableSatisfies(false);
+        resolved = getResolved(resolver.resolve(criteriaSet));
+        assertEquals(2, resolved.size());
+        checkEquivalent(criteriaSet);
+    }
+
+    /**
+     * Test resolution by key name combined with entity ID.
+     *
+     * @throws SecurityException
+     */
+    public void testKeyName() throws SecurityException {
+        criteriaSet.add(new KeyNameCriteria("shared-3"));
+        checkEquivalent(criteriaSet);
+
+        criteriaSet.add(new EntityIDCriteria("entity-13"));
+        List<Credential> resolved = getResolved(resolver.resolve(criteriaSet));
+        assertEquals(1, resolved.size());
+        assertEquals("entity-13", resolved.get(0).getEntityId());
+        checkEquivalent(criteriaSet);
+
+        criteriaSet.add(new KeyNameCriteria("key-42"), true);
+        assertEquals(0, getResolved(resolver.resolve(criteriaSet)).size());
+        checkEquivalent(criteriaSet);
+    }
+
+    /**
+     * Test resolution by public key.
+     *
+     * @throws SecurityException
+     */
+    public void testPublicKey() throws SecurityException {
+        criteriaSet.add(new PublicKeyCriteria(keyCred.getPublicKey()));
+        List<Credential> resolved = getResolved(resolver.resolve(criteriaSet));
+        assertEquals(1, resolved.size());
+        assertSame(keyCred, resolved.get(0));
+        checkEquivalent(criteriaSet);
+    }
+
+    /**
+     * Test resolution by X.509 entity certificate identifiers.
+     *
+     * @throws Exception
+     */
+    public void testX509Identifiers() throws Exception {
+        criteriaSet.add(new X509IssuerSerialCriteria(entityCert.getIssuerX500Principal(),
+                entityCert.getSerialNumber()));
+        List<Credential> resolved = getResolved(resolver.resolve(criteriaSet));
+        assertEquals(1, resolved.size());
+        assertSame(x509Cred, resolved.get(0));
+        checkEquivalent(criteriaSet);
+
+        criteriaSet.clear();
+        criteriaSet.add(new X509SubjectKeyIdentifierCriteria(X509Util.getSubjectKeyIdentifier(entityCert)));
+        resolved = getResolved(resolver.resolve(criteriaSet));
+        assertEquals(2, resolved.size());
+        assertSame(x509Cred, resolved.get(0));
+        assertSame(x509NoSKICred, resolved.get(1));
+        checkEquivalent(criteriaSet);
+
+        criteriaSet.clear();
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(entityCert.getEncoded());
+        criteriaSet.add(new X509DigestCriteria("SHA-1", digest));
+        resolved = getResolved(resolver.resolve(criteriaSet));
+        assertEquals(1, resolved.size());
+        assertSame(x509Cred, resolved.get(0));
+        checkEquivalent(criteriaSet);
+    }
+
+    /**
+     * Test that indexes are not used to narrow candidates when only one criteria need be met.
+     *
+     * @throws SecurityException
+     */
+    public void testMeetAnyCriteria() throws SecurityException {
+        resolver.setMeetAllCriteria(false);
+        criteriaSet.add(new EntityIDCriteria("entity-1"));
+        criteriaSet.add(new KeyNameCriteria("key-2"));
+        List<Credential> resolved = getResolved(resolver.resolve(criteriaSet));
+        assertTrue(resolved.contains(credentials.get(1)));
+        assertTrue(resolved.contains(credentials.get(2)));
+        checkEquivalent(criteriaSet);
+    }
+
+    /**
+     * Test replacing the set of credentials.
+     *
+     * @throws SecurityException
+     */
+    public void testSetCredentials() throws SecurityException {
+        criteriaSet.add(new EntityIDCriteria("x509-entity"));
+        assertEquals(2, getResolved(resolver.resolve(criteriaSet)).size());
+
+        List<Credential> replacement = new ArrayList<Credential>();
+        replacement.add(x509Cred);
+        resolver.setCredentials(replacement);
+        assertEquals(1, resolver.getCredentials().size());
+        assertEquals(1, getResolved(resolver.resolve(criteriaSet)).size());
+
+        resolver.setCredentials(null);
+        assertEquals(0, getResolved(resolver.resolve(criteriaSet)).size());
+    }
+
+    /**
+     * Check that the indexed resolver returns the same credentials, in the same order, as the collection resolver.
+     *
+     * @param criteria the criteria set to resolve
+     * @throws SecurityException
+     */
+    private void checkEquivalent(CriteriaSet criteria) throws SecurityException {
+        CollectionCredentialResolver collectionResolver = new CollectionCredentialResolver(credentials);
+        collectionResolver.setMeetAllCriteria(resolver.isMeetAllCriteria());
+        collectionResolver.setUnevaluableSatisfies(resolver.isUnevaluableSatisfies());
+        assertEquals(getResolved(collectionResolver.resolve(criteria)), getResolved(resolver.resolve(criteria)));
+    }
+
+    /**
+     * Get a list of the resolved credentials.
+     *
+     * @param iter the iterable of resolved credentials
+     * @return a list of the resolved credentials
+     */
+    private List<Credential> getResolved(Iterable<Credential> iter) {
+        ArrayList<Credential> resolved = new ArrayList<Credential>();
+        for (Credential cred : iter) {
+            resolved.add(cred);
+        }
+        return resolved;
+    }
+}
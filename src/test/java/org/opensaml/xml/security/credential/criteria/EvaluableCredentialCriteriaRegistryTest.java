@@ -0,0 +1,91 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.credential.criteria;
+
+import junit.framework.TestCase;
+
+import org.opensaml.xml.security.SecurityException;
+import org.opensaml.xml.security.criteria.EntityIDCriteria;
+import org.opensaml.xml.security.criteria.KeyNameCriteria;
+
+/**
+ * Testing the evaluable credential criteria registry.
+ */
+public class EvaluableCredentialCriteriaRegistryTest extends TestCase {
+
+    /** {@inheritDoc} */
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        EvaluableCredentialCriteriaRegistry.clearRegistry();
+        EvaluableCredentialCriteriaRegistry.loadDefaultMappings();
+    }
+
+    /**
+     * Test that the default mappings are loaded.
+     *
+     * @throws SecurityException
+     */
+    public void testDefaultMappings() throws SecurityException {
+        assertTrue(EvaluableCredentialCriteriaRegistry.isInitialized());
+        assertEquals(EvaluableEntityIDCredentialCriteria.class,
+                EvaluableCredentialCriteriaRegistry.lookup(EntityIDCriteria.class));
+
+        EvaluableCredentialCriteria evaluator =
+            EvaluableCredentialCriteriaRegistry.getEvaluator(new EntityIDCriteria("foo"));
+        assertTrue(evaluator instanceof EvaluableEntityIDCredentialCriteria);
+    }
+
+    /**
+     * Test registering the built-in mappings programmatically.
+     *
+     * @throws SecurityException
+     */
+    public void testBuiltinMappings() throws SecurityException {
+        EvaluableCredentialCriteriaRegistry.clearRegistry();
+        assertNull(EvaluableCredentialCriteriaRegistry.lookup(KeyNameCriteria.class));
+        assertNull(EvaluableCredentialCriteriaRegistry.getEvaluator(new KeyNameCriteria("foo")));
+
+        EvaluableCredentialCriteriaRegistry.registerBuiltinMappings();
+        assertEquals(EvaluableKeyNameCredentialCriteria.class,
+                EvaluableCredentialCriteriaRegistry.lookup(KeyNameCriteria.class));
+        assertTrue(EvaluableCredentialCriteriaRegistry.getEvaluator(new KeyNameCriteria("foo"))
+                instanceof EvaluableKeyNameCredentialCriteria);
+    }
+
+    /**
+     * Test registering and deregistering a mapping.
+     */
+    public void testRegistration() {
+        EvaluableCredentialCriteriaRegistry.deregister(EntityIDCriteria.class);
+        assertNull(EvaluableCredentialCriteriaRegistry.lookup(EntityIDCriteria.class));
+
+        try {
+            EvaluableCredentialCriteriaRegistry.register(EntityIDCriteria.class,
+                    EvaluableKeyNameCredentialCriteria.class);
+            fail("Registered evaluator without a constructor taking the criteria");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertNull(EvaluableCredentialCriteriaRegistry.lookup(EntityIDCriteria.class));
+
+        EvaluableCredentialCriteriaRegistry.register(EntityIDCriteria.class,
+                EvaluableEntityIDCredentialCriteria.class);
+        assertEquals(EvaluableEntityIDCredentialCriteria.class,
+                EvaluableCredentialCriteriaRegistry.lookup(EntityIDCriteria.class));
+    }
+}
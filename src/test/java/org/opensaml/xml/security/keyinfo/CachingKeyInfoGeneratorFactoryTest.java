@@ -0,0 +1,128 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.keyinfo;
+
+import java.security.KeyException;
+import java.security.PublicKey;
+
+import org.opensaml.xml.XMLObjectBaseTestCase;
+import org.opensaml.xml.security.SecurityException;
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.credential.BasicCredential;
+import org.opensaml.xml.security.credential.BasicKeyInfoGeneratorFactory;
+import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.signature.KeyInfo;
+
+/**
+ * Test the caching KeyInfo generator factory.
+ */
+public class CachingKeyInfoGeneratorFactoryTest extends XMLObjectBaseTestCase {
+
+    private CachingKeyInfoGeneratorFactory factory;
+
+    private BasicCredential credential;
+
+    private PublicKey publicKey;
+
+    private String keyName;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        keyName = "Foo";
+        publicKey = SecurityHelper.generateKeyPair("RSA", 1024, null).getPublic();
+
+        credential = SecurityHelper.getSimpleCredential(publicKey, null);
+        credential.getKeyNames().add(keyName);
+
+        BasicKeyInfoGeneratorFactory basicFactory = new BasicKeyInfoGeneratorFactory();
+        basicFactory.setEmitKeyNames(true);
+        basicFactory.setEmitPublicKeyValue(true);
+
+        factory = new CachingKeyInfoGeneratorFactory(basicFactory, 2);
+    }
+
+    /**
+     * Test that KeyInfo is generated once and then built from the cached template.
+     *
+     * @throws SecurityException
+     * @throws KeyException
+     */
+    public void testCaching() throws SecurityException, KeyException {
+        assertEquals(0, factory.getCacheSize());
+
+        KeyInfo first = factory.newInstance().generate(credential);
+        checkKeyInfo(first);
+        assertEquals(1, factory.getCacheSize());
+
+        KeyInfo second = factory.newInstance().generate(credential);
+        checkKeyInfo(second);
+        assertEquals(1, factory.getCacheSize());
+        assertFalse("KeyInfo instances should differ", first == second);
+        assertNotNull("Cached KeyInfo should have a cached DOM", second.getDOM());
+        assertFalse("KeyInfo instances should not share DOM", first.getDOM() == second.getDOM());
+        assertFalse("KeyInfo instances should not share DOM document", 
+                first.getDOM().getOwnerDocument() == second.getDOM().getOwnerDocument());
+
+        KeyInfo third = factory.newInstance().generate(credential);
+        checkKeyInfo(third);
+        assertFalse("KeyInfo instances should not share DOM", second.getDOM() == third.getDOM());
+    }
+
+    /**
+     * Test that the number of cached credentials is bounded, and that the cache may be cleared.
+     *
+     * @throws SecurityException
+     */
+    public void testEviction() throws SecurityException {
+        KeyInfoGenerator generator = factory.newInstance();
+        for (int i = 0; i < 3; i++) {
+            Credential cred = SecurityHelper.getSimpleCredential(publicKey, null);
+            assertNotNull(generator.generate(cred));
+        }
+        assertEquals(2, factory.getCacheSize());
+
+        factory.clearCache();
+        assertEquals(0, factory.getCacheSize());
+    }
+
+    /** Test that the factory handles the same credentials as the wrapped factory. */
+    public void testDelegation() {
+        assertEquals(factory.getWrappedFactory().getCredentialType(), factory.getCredentialType());
+        assertTrue(factory.handles(credential));
+
+        KeyInfoGeneratorManager manager = new KeyInfoGeneratorManager();
+        manager.registerFactory(factory);
+        assertTrue(manager.getFactory(credential) == factory);
+    }
+
+    /**
+     * Check the contents of a generated KeyInfo.
+     *
+     * @param keyInfo the KeyInfo to check
+     * @throws KeyException
+     */
+    private void checkKeyInfo(KeyInfo keyInfo) throws KeyException {
+        assertNotNull("KeyInfo was null", keyInfo);
+        assertEquals("Number of KeyNames", 1, keyInfo.getKeyNames().size());
+        assertEquals("KeyName value", keyName, keyInfo.getKeyNames().get(0).getValue());
+        assertEquals("Number of KeyValues", 1, keyInfo.getKeyValues().size());
+        assertEquals("KeyValue public key", publicKey, KeyInfoHelper.getKey(keyInfo.getKeyValues().get(0)));
+    }
+}
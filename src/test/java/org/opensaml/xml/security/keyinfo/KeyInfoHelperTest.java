@@ -35,6 +35,7 @@ import javax.security.auth.x500.X500Principal;
 
 import org.opensaml.xml.XMLObjectBaseTestCase;
 import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.x509.X509CertificateCache;
 import org.opensaml.xml.signature.DEREncodedKeyValue;
 import org.opensaml.xml.signature.DSAKeyValue;
 import org.opensaml.xml.signature.Exponent;
@@ -312,6 +313,31 @@ public class KeyInfoHelperTest extends XMLObjectBaseTestCase {
                 javaCertList.get(1).getSubjectX500Principal().getName(X500Principal.RFC2253));
     }
     
+    /** Test that certificate conversion uses the configured certificate cache. 
+     * @throws CertificateException */
+    public void testCertConversionCache() throws CertificateException {
+        X509CertificateCache defaultCache = KeyInfoHelper.getCertificateCache();
+        assertNotNull("Default certificate cache was null", defaultCache);
+        
+        X509CertificateCache cache = new X509CertificateCache();
+        KeyInfoHelper.setCertificateCache(cache);
+        try {
+            java.security.cert.X509Certificate javaCert = KeyInfoHelper.getCertificate(xmlCert1);
+            assertSame("Cached cert was not returned", javaCert, KeyInfoHelper.getCertificate(xmlCert1));
+            
+            List<java.security.cert.X509Certificate> javaCertList = KeyInfoHelper.getCertificates(keyInfo);
+            assertSame("Cached cert was not returned", javaCert, javaCertList.get(0));
+            assertEquals("# of cache misses", numExpectedCerts, cache.getMisses());
+            assertEquals("# of cache hits", 2, cache.getHits());
+            
+            assertNotSame("Uncached cert was returned from cache", javaCert,
+                    KeyInfoHelper.getCertificate(xmlCert1, null));
+            assertEquals("# of cache hits", 2, cache.getHits());
+        } finally {
+            KeyInfoHelper.setCertificateCache(defaultCache);
+        }
+    }
+    
     /** Test converting XML X509CRL to java.security.cert.X509CRL. 
      * @throws CRLException 
      * @throws CertificateException */
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.trust;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+import junit.framework.TestCase;
+
+import org.opensaml.xml.security.SecurityHelper;
+import org.opensaml.xml.security.credential.BasicCredential;
+import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.security.credential.UsageType;
+
+/**
+ * Test the trusted key index.
+ */
+public class TrustedKeyIndexTest extends TestCase {
+
+    private KeyPair signingKeyPair;
+
+    private KeyPair encryptionKeyPair;
+
+    private KeyPair unscopedKeyPair;
+
+    private KeyPair otherKeyPair;
+
+    private SecretKey secretKey;
+
+    private List<Credential> trustedCredentials;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        signingKeyPair = SecurityHelper.generateKeyPair("RSA", 1024, null);
+        encryptionKeyPair = SecurityHelper.generateKeyPair("RSA", 1024, null);
+        unscopedKeyPair = SecurityHelper.generateKeyPair("RSA", 1024, null);
+        otherKeyPair = SecurityHelper.generateKeyPair("RSA", 1024, null);
+        secretKey = SecurityHelper.generateKey("AES", 128, null);
+
+        trustedCredentials = new ArrayList<Credential>();
+
+        BasicCredential signingCred = SecurityHelper.getSimpleCredential(signingKeyPair.getPublic(), null);
+        signingCred.setEntityId("entity-1");
+        signingCred.setUsageType(UsageType.SIGNING);
+        trustedCredentials.add(signingCred);
+
+        BasicCredential encryptionCred = SecurityHelper.getSimpleCredential(encryptionKeyPair.getPublic(), null);
+        encryptionCred.setEntityId("entity-1");
+        encryptionCred.setUsageType(UsageType.ENCRYPTION);
+        trustedCredentials.add(encryptionCred);
+
+        BasicCredential unscopedCred = SecurityHelper.getSimpleCredential(unscopedKeyPair.getPublic(), null);
+        trustedCredentials.add(unscopedCred);
+
+        BasicCredential secretCred = SecurityHelper.getSimpleCredential(secretKey);
+        secretCred.setEntityId("entity-2");
+        trustedCredentials.add(secretCred);
+    }
+
+    /** Test lookups by entity ID. */
+    public void testEntityID() {
+        TrustedKeyIndex index = new TrustedKeyIndex(trustedCredentials);
+        assertEquals(4, index.size());
+
+        assertTrue(index.contains("entity-1", UsageType.SIGNING, signingKeyPair.getPublic()));
+        assertFalse(index.contains("entity-2", UsageType.SIGNING, signingKeyPair.getPublic()));
+        assertTrue(index.contains(null, UsageType.SIGNING, signingKeyPair.getPublic()));
+
+        assertTrue(index.contains("entity-2", null, secretKey));
+        assertFalse(index.contains("entity-1", null, secretKey));
+
+        assertTrue("Key without entity ID matches any entity",
+                index.contains("entity-3", UsageType.SIGNING, unscopedKeyPair.getPublic()));
+    }
+
+    /** Test lookups by usage. */
+    public void testUsage() {
+        TrustedKeyIndex index = new TrustedKeyIndex(trustedCredentials);
+
+        assertFalse(index.contains("entity-1", UsageType.ENCRYPTION, signingKeyPair.getPublic()));
+        assertFalse(index.contains("entity-1", UsageType.SIGNING, encryptionKeyPair.getPublic()));
+        assertTrue(index.contains("entity-1", UsageType.ENCRYPTION, encryptionKeyPair.getPublic()));
+
+        assertTrue(index.contains("entity-1", UsageType.UNSPECIFIED, signingKeyPair.getPublic()));
+        assertTrue(index.contains("entity-1", null, encryptionKeyPair.getPublic()));
+
+        assertTrue("Key without usage matches any usage",
+                index.contains(null, UsageType.ENCRYPTION, unscopedKeyPair.getPublic()));
+    }
+
+    /** Test keys which are not trusted. */
+    public void testUntrusted() {
+        TrustedKeyIndex index = new TrustedKeyIndex(trustedCredentials);
+
+        assertFalse(index.contains(null, null, otherKeyPair.getPublic()));
+        assertFalse(index.contains("entity-1", UsageType.SIGNING, signingKeyPair.getPrivate()));
+        assertFalse(index.contains(null, null, null));
+
+        TrustedKeyIndex empty = new TrustedKeyIndex(new ArrayList<Credential>());
+        assertEquals(0, empty.size());
+        assertFalse(empty.contains(null, null, signingKeyPair.getPublic()));
+    }
+
+    /** Test the explicit key trust evaluator with an index. */
+    public void testEvaluator() {
+        TrustedKeyIndex index = new TrustedKeyIndex(trustedCredentials);
+        ExplicitKeyTrustEvaluator evaluator = new ExplicitKeyTrustEvaluator();
+
+        assertTrue(evaluator.validate(SecurityHelper.getSimpleCredential(signingKeyPair.getPublic(), null), index,
+                "entity-1", UsageType.SIGNING));
+        assertFalse(evaluator.validate(SecurityHelper.getSimpleCredential(otherKeyPair.getPublic(), null), index,
+                "entity-1", UsageType.SIGNING));
+        assertFalse(evaluator.validate(new BasicCredential(), index, null, null));
+    }
+}
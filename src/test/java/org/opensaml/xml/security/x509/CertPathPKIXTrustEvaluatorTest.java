@@ -18,10 +18,24 @@
 package org.opensaml.xml.security.x509;
 
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Principal;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.security.cert.CRLException;
+import java.security.cert.Certificate;
+import java.security.cert.TrustAnchor;
 import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -344,6 +358,158 @@ public class CertPathPKIXTrustEvaluatorTest extends XMLObjectBaseTestCase {
     }
     
     
+    public void testSnapshotGood() throws GeneralSecurityException {
+        cred = getCredential("foo-1A1-good.crt");
+        PKIXValidationInformationSnapshot snapshot = new PKIXValidationInformationSnapshot(getPKIXInfoSet(
+                getCertificates("root1-ca.crt", "inter1A-ca.crt", "inter1A1-ca.crt"),
+                EMPTY_CRLS,
+                MAX_DEPTH ));
+        assertFalse(snapshot.containsCRLs());
+        
+        testValidateSuccess("Valid path was specified", snapshot, cred);
+        testValidateSuccess("Valid path was specified, snapshot was reused", snapshot, cred);
+    }
+    
+    public void testSnapshotTrustAnchorHook() throws GeneralSecurityException {
+        final int[] anchorsBuilt = new int[1];
+        CertPathPKIXTrustEvaluator evaluator = new CertPathPKIXTrustEvaluator() {
+            protected TrustAnchor buildTrustAnchor(X509Certificate cert) {
+                anchorsBuilt[0]++;
+                return super.buildTrustAnchor(cert);
+            }
+        };
+        PKIXValidationInformationSnapshot snapshot = new PKIXValidationInformationSnapshot(getPKIXInfoSet(
+                getCertificates("root1-ca.crt", "inter1A-ca.crt", "inter1A1-ca.crt"),
+                EMPTY_CRLS,
+                MAX_DEPTH ));
+        
+        Set<TrustAnchor> anchors = evaluator.getTrustAnchors(snapshot);
+        assertEquals(3, anchors.size());
+        assertEquals(3, anchorsBuilt[0]);
+        assertSame(anchors, evaluator.getTrustAnchors(snapshot));
+        assertEquals(3, anchorsBuilt[0]);
+    }
+    
+    public void testSnapshotRevoked() throws GeneralSecurityException {
+        PKIXValidationInformationSnapshot snapshot = new PKIXValidationInformationSnapshot(getPKIXInfoSet(
+                getCertificates("root1-ca.crt", "inter1A-ca.crt", "inter1A1-ca.crt"),
+                getCRLS("inter1A1-v1.crl"),
+                MAX_DEPTH ));
+        assertTrue(snapshot.containsCRLs());
+        
+        cred = getCredential("foo-1A1-revoked.crt");
+        testValidateFailure("Specified certificate was revoked, V1 CRL was processed", snapshot, cred);
+        
+        cred = getCredential("foo-1A1-good.crt");
+        testValidateSuccess("Certificate was valid, V1 CRL containing other revolcations was processed",
+                snapshot, cred);
+    }
+    
+    public void testSnapshotEmptyCRL() throws GeneralSecurityException {
+        cred = getCredential("foo-1A1-good.crt");
+        PKIXValidationInformationSnapshot snapshot = new PKIXValidationInformationSnapshot(getPKIXInfoSet(
+                getCertificates("inter1A1-ca.crt"),
+                getCRLS("inter1A1-v1-empty.crl"),
+                MAX_DEPTH ));
+        assertTrue(snapshot.containsEmptyCRLs());
+        
+        testValidateSuccess("Certificate was valid, empty V1 CRL was processed", snapshot, cred);
+    }
+    
+    public void testSnapshotExpiredCRL() throws GeneralSecurityException {
+        cred = getCredential("foo-1A1-good.crt");
+        PKIXValidationInformationSnapshot snapshot = new PKIXValidationInformationSnapshot(getPKIXInfoSet(
+                getCertificates("root1-ca.crt", "inter1A-ca.crt", "inter1A1-ca.crt"),
+                getCRLS("inter1A1-v1-expired.crl"),
+                MAX_DEPTH ));
+        assertTrue(snapshot.containsExpiredCRLs(new Date()));
+        
+        testValidateFailure("Certificate was valid, expired V1 CRL was processed", snapshot, cred);
+    }
+    
+    public void testSnapshotCRLWithoutNextUpdate() throws GeneralSecurityException {
+        X509CRL expired = getCRL("inter1A1-v1-expired.crl");
+        X509CRL unbounded = new NoNextUpdateCRL(getCRL("inter1A1-v1.crl"));
+        Collection<X509Certificate> certs = getCertificates("root1-ca.crt", "inter1A-ca.crt", "inter1A1-ca.crt");
+        
+        PKIXValidationInformationSnapshot snapshot = new PKIXValidationInformationSnapshot(getPKIXInfoSet(
+                certs, Arrays.asList(unbounded), MAX_DEPTH));
+        assertTrue(snapshot.containsCRLs());
+        assertFalse(snapshot.containsExpiredCRLs(new Date()));
+        
+        snapshot = new PKIXValidationInformationSnapshot(getPKIXInfoSet(
+                certs, Arrays.asList(expired, unbounded), MAX_DEPTH));
+        assertTrue(snapshot.containsExpiredCRLs(new Date()));
+        
+        snapshot = new PKIXValidationInformationSnapshot(getPKIXInfoSet(
+                certs, Arrays.asList(unbounded, expired), MAX_DEPTH));
+        assertTrue(snapshot.containsExpiredCRLs(new Date()));
+    }
+    
+    public void testResultCache() {
+        PKIXValidationResultCache cache = new PKIXValidationResultCache();
+        ((CertPathPKIXTrustEvaluator) pkixEvaluator).setValidationResultCache(cache);
+        
+        cred = getCredential("foo-1A1-good.crt");
+        info = getPKIXInfoSet(
+                getCertificates("root1-ca.crt", "inter1A-ca.crt", "inter1A1-ca.crt"),
+                EMPTY_CRLS,
+                MAX_DEPTH );
+        
+        testValidateSuccess("Valid path was specified", info, cred);
+        assertEquals(1, cache.size());
+        assertTrue(cache.isValidated(cache.buildKey(info, cred, true)));
+        
+        testValidateSuccess("Valid path was specified, result was cached", info, cred);
+        assertEquals(1, cache.size());
+        
+        // A different validation information instance must not share the cached result
+        PKIXValidationInformation otherInfo = getPKIXInfoSet(
+                getCertificates("root1-ca.crt", "inter1A-ca.crt"),
+                EMPTY_CRLS,
+                MAX_DEPTH );
+        testValidateFailure("Incomplete path was specified, missing issuing CA certificate", otherInfo, cred);
+        assertEquals(1, cache.size());
+        
+        ((CertPathPKIXTrustEvaluator) pkixEvaluator).setPKIXValidationOptions(new PKIXValidationOptions());
+        assertEquals(0, cache.size());
+    }
+    
+    public void testResultCacheFailureNotCached() {
+        PKIXValidationResultCache cache = new PKIXValidationResultCache();
+        ((CertPathPKIXTrustEvaluator) pkixEvaluator).setValidationResultCache(cache);
+        
+        cred = getCredential("foo-1A1-revoked.crt");
+        info = getPKIXInfoSet(
+                getCertificates("root1-ca.crt", "inter1A-ca.crt", "inter1A1-ca.crt"),
+                getCRLS("inter1A1-v1.crl"),
+                MAX_DEPTH );
+        
+        testValidateFailure("Specified certificate was revoked, V1 CRL was processed", info, cred);
+        assertEquals(0, cache.size());
+    }
+    
+    public void testResultCacheEviction() {
+        PKIXValidationResultCache cache = new PKIXValidationResultCache(1, PKIXValidationResultCache.DEFAULT_MAX_TTL);
+        ((CertPathPKIXTrustEvaluator) pkixEvaluator).setValidationResultCache(cache);
+        
+        cred = getCredential("foo-1A1-good.crt");
+        info = getPKIXInfoSet(
+                getCertificates("root1-ca.crt", "inter1A-ca.crt", "inter1A1-ca.crt"),
+                EMPTY_CRLS,
+                MAX_DEPTH );
+        PKIXValidationInformation otherInfo = getPKIXInfoSet(
+                getCertificates("inter1A1-ca.crt"),
+                EMPTY_CRLS,
+                MAX_DEPTH );
+        
+        testValidateSuccess("Valid path was specified", info, cred);
+        testValidateSuccess("Valid path was specified", otherInfo, cred);
+        assertEquals(1, cache.size());
+        assertFalse(cache.isValidated(cache.buildKey(info, cred, true)));
+        assertTrue(cache.isValidated(cache.buildKey(otherInfo, cred, true)));
+    }
+    
     /********************
      * Helper methods.  *
      ********************/
@@ -481,5 +647,98 @@ public class CertPathPKIXTrustEvaluatorTest extends XMLObjectBaseTestCase {
     private InputStream getInputStream(String fileName) {
         return  CertPathPKIXTrustEvaluatorTest.class.getResourceAsStream(DATA_PATH + fileName);
     }
+    
+    /** A CRL which has no nextUpdate time, delegating everything else to another CRL. */
+    private static class NoNextUpdateCRL extends X509CRL {
+        
+        /** The CRL delegated to. */
+        private final X509CRL crl;
+        
+        private NoNextUpdateCRL(X509CRL delegate) {
+            crl = delegate;
+        }
+        
+        public Date getNextUpdate() {
+            return null;
+        }
+        
+        public byte[] getEncoded() throws CRLException {
+            return crl.getEncoded();
+        }
+        
+        public void verify(PublicKey key) throws CRLException, NoSuchAlgorithmException, InvalidKeyException,
+                NoSuchProviderException, SignatureException {
+            crl.verify(key);
+        }
+        
+        public void verify(PublicKey key, String sigProvider) throws CRLException, NoSuchAlgorithmException,
+                InvalidKeyException, NoSuchProviderException, SignatureException {
+            crl.verify(key, sigProvider);
+        }
+        
+        public int getVersion() {
+            return crl.getVersion();
+        }
+        
+        public Principal getIssuerDN() {
+            return crl.getIssuerDN();
+        }
+        
+        public Date getThisUpdate() {
+            return crl.getThisUpdate();
+        }
+        
+        public X509CRLEntry getRevokedCertificate(BigInteger serialNumber) {
+            return crl.getRevokedCertificate(serialNumber);
+        }
+        
+        public Set<? extends X509CRLEntry> getRevokedCertificates() {
+            return crl.getRevokedCertificates();
+        }
+        
+        public byte[] getTBSCertList() throws CRLException {
+            return crl.getTBSCertList();
+        }
+        
+        public byte[] getSignature() {
+            return crl.getSignature();
+        }
+        
+        public String getSigAlgName() {
+            return crl.getSigAlgName();
+        }
+        
+        public String getSigAlgOID() {
+            return crl.getSigAlgOID();
+        }
+        
+        public byte[] getSigAlgParams() {
+            return crl.getSigAlgParams();
+        }
+        
+        public String toString() {
+            return crl.toString();
+        }
+        
+        public boolean isRevoked(Certificate cert) {
+            return crl.isRevoked(cert);
+        }
+        
+        public boolean hasUnsupportedCriticalExtension() {
+            return crl.hasUnsupportedCriticalExtension();
+        }
+        
+        public Set<String> getCriticalExtensionOIDs() {
+            return crl.getCriticalExtensionOIDs();
+        }
+        
+        public Set<String> getNonCriticalExtensionOIDs() {
+            return crl.getNonCriticalExtensionOIDs();
+        }
+        
+        public byte[] getExtensionValue(String oid) {
+            return crl.getExtensionValue(oid);
+        }
+    }
 
 }
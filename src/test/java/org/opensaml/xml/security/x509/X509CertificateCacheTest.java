@@ -0,0 +1,139 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.security.x509;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import junit.framework.TestCase;
+
+import org.opensaml.xml.util.Base64;
+
+/**
+ * Tests for {@link X509CertificateCache}.
+ */
+public class X509CertificateCacheTest extends TestCase {
+
+    /** Cert which contains no X.509 v3 extensions. */
+    private final String certNoExtensions =
+        "MIIBwjCCASugAwIBAgIJAMrW6QSeKNBJMA0GCSqGSIb3DQEBBAUAMCMxITAfBgNV" +
+        "BAMTGG5vZXh0ZW5zaW9ucy5leGFtcGxlLm9yZzAeFw0wNzA1MTkxNzU2NTVaFw0w" +
+        "NzA2MTgxNzU2NTVaMCMxITAfBgNVBAMTGG5vZXh0ZW5zaW9ucy5leGFtcGxlLm9y" +
+        "ZzCBnzANBgkqhkiG9w0BAQEFAAOBjQAwgYkCgYEAw8xxu6TLqEdmnyXVZjiUoRHN" +
+        "6yHyobZaRK+tBEmWkD4nTlOVmTKWBCO/F4OnugaJbSTH+7Jk37l8/XYYBSIkW0+L" +
+        "2BglzQ2JCux/uoRu146QDIk9f5PIFs+Fxy7VRVUUZiOsonB/PNVqA7OVbPxzr1SK" +
+        "PSE0s9CHaDjCaEs2BnMCAwEAATANBgkqhkiG9w0BAQQFAAOBgQAuI/l80wb8K6RT" +
+        "1EKrAcfr9JAlJR4jmVnCK7j3Ulx++U98ze2G6/cluLxrbnqwXmxJNC3nt6xkQVJU" +
+        "X1UFg+zkmRrst2Nv8TTrR7S30az068BHfrZLRSUConG9jXXj+hJq+w/ojmrq8Mzv" +
+        "JSczkA2BvsEUBARYo53na7RMgk+xWg==";
+
+    /** Cert from the NIST PKI path processing test suite, certs/BasicSelfIssuedNewKeyCACert.crt. */
+    private final String cert1 =
+        "MIICgjCCAeugAwIBAgIBEzANBgkqhkiG9w0BAQUFADBAMQswCQYDVQQGEwJVUzEa" +
+        "MBgGA1UEChMRVGVzdCBDZXJ0aWZpY2F0ZXMxFTATBgNVBAMTDFRydXN0IEFuY2hv" +
+        "cjAeFw0wMTA0MTkxNDU3MjBaFw0xMTA0MTkxNDU3MjBaMFAxCzAJBgNVBAYTAlVT" +
+        "MRowGAYDVQQKExFUZXN0IENlcnRpZmljYXRlczElMCMGA1UEAxMcQmFzaWMgU2Vs" +
+        "Zi1Jc3N1ZWQgTmV3IEtleSBDQTCBnzANBgkqhkiG9w0BAQEFAAOBjQAwgYkCgYEA" +
+        "tCkygqcMEOy3i8p6ZV3685us1lOugSU4pUMRJNRH/lV2ykesk+JRcQy1s7WS12j9" +
+        "GCnSJ919/TgeKLmV3ps1fC1B8HziC0mzBAr+7f5LkJqSf0kS0kfpyLOoO8VSJCip" +
+        "/8uENkSkpvX+Lak96OKzhtyvi4KpUdQKfwpg6xUqakECAwEAAaN8MHowHwYDVR0j" +
+        "BBgwFoAU+2zULYGeyid6ng2wPOqavIf/SeowHQYDVR0OBBYEFK+5+R3CRRjMuCHi" +
+        "p0e8Sb0ZtXgoMA4GA1UdDwEB/wQEAwIBBjAXBgNVHSAEEDAOMAwGCmCGSAFlAwIB" +
+        "MAEwDwYDVR0TAQH/BAUwAwEB/zANBgkqhkiG9w0BAQUFAAOBgQCuRBfDy2gSPp2k" +
+        "ZR7OAvt+xDx4toJ9ImImUvJ94AOLd6Uxsi2dvQT5HLrIBrTYsSfQj1pA50XY2F7k" +
+        "3eM/+JhYCcyZD9XtAslpOkjwACPJnODFAY8PWC00CcOxGb6q+S/VkrCwvlBeMjev" +
+        "IH4bHvAymWsZndBZhcG8gBmDrZMwhQ==";
+
+    /**
+     * Test that a certificate is decoded once and then served from the cache.
+     *
+     * @throws CertificateException
+     */
+    public void testCaching() throws CertificateException {
+        X509CertificateCache cache = new X509CertificateCache();
+        assertEquals(0, cache.getHitRate(), 0);
+
+        byte[] encoded = Base64.decode(cert1);
+        X509Certificate cert = cache.getCertificate(encoded);
+        assertNotNull(cert);
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.size());
+
+        // a distinct array with the same content must hit, and the cache must not retain the caller's array
+        X509Certificate cached = cache.getCertificate(Base64.decode(cert1));
+        assertSame(cert, cached);
+        encoded[10] ^= 1;
+        assertSame(cert, cache.getCertificate(Base64.decode(cert1)));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3.0, cache.getHitRate(), 0.0001);
+
+        assertNotSame(cert, cache.getCertificate(Base64.decode(certNoExtensions)));
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    /**
+     * Test that the cache respects its size limits.
+     *
+     * @throws CertificateException
+     */
+    public void testLimits() throws CertificateException {
+        X509CertificateCache cache = new X509CertificateCache(1, X509CertificateCache.DEFAULT_MAX_CERTIFICATE_SIZE);
+        X509Certificate cert = cache.getCertificate(Base64.decode(cert1));
+        cache.getCertificate(Base64.decode(certNoExtensions));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        assertNotSame(cert, cache.getCertificate(Base64.decode(cert1)));
+        assertEquals(3, cache.getMisses());
+
+        byte[] encoded = Base64.decode(cert1);
+        cache = new X509CertificateCache(10, encoded.length - 1);
+        assertNotNull(cache.getCertificate(encoded));
+        assertEquals(0, cache.size());
+        assertNotNull(cache.getCertificate(Base64.decode(certNoExtensions)));
+        assertEquals(1, cache.size());
+
+        try {
+            new X509CertificateCache(0, 1);
+            fail("Created cache without entries");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test that encodings which do not hold a certificate are not cached.
+     */
+    public void testInvalidCertificate() {
+        X509CertificateCache cache = new X509CertificateCache();
+        try {
+            assertNull(cache.getCertificate(new byte[] { 0x30, 0x03, 0x02, 0x01, 0x00 }));
+        } catch (CertificateException e) {
+            // expected
+        }
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMisses());
+    }
+}
@@ -21,6 +21,11 @@ import java.io.InputStream;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.opensaml.xml.Configuration;
 import org.opensaml.xml.XMLObjectBaseTestCase;
@@ -36,6 +41,8 @@ import org.opensaml.xml.security.SecurityHelper;
 import org.opensaml.xml.security.credential.Credential;
 import org.opensaml.xml.security.keyinfo.KeyInfoHelper;
 import org.opensaml.xml.signature.impl.SignatureBuilder;
+import org.opensaml.xml.signature.impl.SignatureImpl;
+import org.opensaml.xml.util.XMLConstants;
 import org.opensaml.xml.util.XMLHelper;
 import org.opensaml.xml.validation.ValidationException;
 import org.slf4j.Logger;
@@ -115,6 +122,162 @@ public class EnvelopedSignatureTest extends XMLObjectBaseTestCase {
         }
     }
 
+    /**
+     * Tests verifying a signature with several candidate credentials when verification state is cached.
+     *
+     * @throws MarshallingException thrown if the XMLObject tree can not be marshalled
+     * @throws ValidationException
+     * @throws SignatureException
+     */
+    public void testVerificationWithCachedState() throws MarshallingException, ValidationException,
+            SignatureException {
+        SimpleXMLObject sxo = getXMLObjectWithSignature();
+        SignatureImpl signature = (SignatureImpl) sxo.getSignature();
+
+        Marshaller marshaller = Configuration.getMarshallerFactory().getMarshaller(sxo);
+        marshaller.marshall(sxo);
+        Signer.signObject(signature);
+        assertNull(signature.getReferencesValid());
+
+        SignatureValidator sigValidator = new SignatureValidator(badCredential);
+        sigValidator.setCacheVerificationState(true);
+        try {
+            sigValidator.validate(signature);
+            fail("Validated signature with improper public key");
+        } catch (ValidationException e) {
+            // expected
+        }
+        assertNull("References were validated despite bad signature value", signature.getReferencesValid());
+
+        sigValidator = new SignatureValidator(goodCredential);
+        sigValidator.setCacheVerificationState(true);
+        sigValidator.validate(signature);
+        assertEquals(Boolean.TRUE, signature.getReferencesValid());
+
+        // Validation against cached state must give the same answer again
+        sigValidator.validate(signature);
+
+        // Re-signing discards cached state
+        Signer.signObject(signature);
+        assertNull(signature.getReferencesValid());
+    }
+
+    /**
+     * Tests signing and verification with Reference digests computed by streaming.
+     * 
+     * @throws MarshallingException thrown if the XMLObject tree can not be marshalled
+     * @throws ValidationException
+     * @throws SignatureException
+     */
+    public void testStreamedDigests() throws MarshallingException, ValidationException, SignatureException {
+        SimpleXMLObject sxo = getXMLObjectWithSignature();
+        sxo.setValue("content");
+        Signature signature = sxo.getSignature();
+
+        Marshaller marshaller = Configuration.getMarshallerFactory().getMarshaller(sxo);
+        Element signedElement = marshaller.marshall(sxo);
+        assertTrue(StreamingReferenceDigester.isStreamable(signature.getDOM()));
+
+        Signer.signObject(signature);
+        String digestValue = getDigestValue(signature);
+
+        Signer.signObject(signature, true);
+        assertEquals("Streamed digest differs from library digest", digestValue, getDigestValue(signature));
+        assertSame("Signature element was not reattached", signedElement, signature.getDOM().getParentNode());
+
+        // Streamed signature must be accepted by the library's own validation
+        new SignatureValidator(goodCredential).validate(signature);
+
+        SignatureValidator sigValidator = new SignatureValidator(goodCredential);
+        sigValidator.setStreamDigests(true);
+        sigValidator.validate(signature);
+
+        try {
+            new SignatureValidator(badCredential).validate(signature);
+            fail("Validated signature with improper public key");
+        } catch (ValidationException e) {
+            // expected
+        }
+
+        signedElement.appendChild(signedElement.getOwnerDocument().createTextNode("tampered"));
+        try {
+            sigValidator.validate(signature);
+            fail("Validated signature over modified content");
+        } catch (ValidationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests batch signing of nested and independent signatures on an executor.
+     * 
+     * @throws MarshallingException thrown if the XMLObject tree can not be marshalled
+     * @throws ValidationException
+     * @throws SignatureException
+     */
+    public void testBatchSigning() throws MarshallingException, ValidationException, SignatureException {
+        SimpleXMLObject outer = getXMLObjectWithSignature("OUTER");
+        SimpleXMLObject inner = getXMLObjectWithSignature("INNER");
+        outer.getSimpleXMLObjects().add(inner);
+        SimpleXMLObject independent = getXMLObjectWithSignature("FOO");
+
+        Marshaller marshaller = Configuration.getMarshallerFactory().getMarshaller(outer);
+        marshaller.marshall(outer);
+        marshaller.marshall(independent);
+
+        // Supply the outer signature first, the batch must still sign the inner one before it
+        List<Signature> signatures = new ArrayList<Signature>();
+        signatures.add(outer.getSignature());
+        signatures.add(independent.getSignature());
+        signatures.add(inner.getSignature());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Map<Signature, SignatureException> failures = Signer.signObjects(signatures, executor);
+            assertTrue("Batch signing reported failures", failures.isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+
+        SignatureValidator sigValidator = new SignatureValidator(goodCredential);
+        sigValidator.validate(inner.getSignature());
+        sigValidator.validate(outer.getSignature());
+        sigValidator.validate(independent.getSignature());
+    }
+
+    /**
+     * Tests that a failed signature in a batch is reported along with the signatures enclosing it.
+     * 
+     * @throws MarshallingException thrown if the XMLObject tree can not be marshalled
+     * @throws SignatureException
+     */
+    public void testBatchSigningFailure() throws MarshallingException, SignatureException {
+        SimpleXMLObject outer = getXMLObjectWithSignature("OUTER");
+        SimpleXMLObject inner = getXMLObjectWithSignature("INNER");
+        outer.getSimpleXMLObjects().add(inner);
+        SimpleXMLObject independent = getXMLObjectWithSignature("FOO");
+        inner.getSignature().setSigningCredential(badCredential);
+
+        Marshaller marshaller = Configuration.getMarshallerFactory().getMarshaller(outer);
+        marshaller.marshall(outer);
+        marshaller.marshall(independent);
+
+        List<Signature> signatures = new ArrayList<Signature>();
+        signatures.add(outer.getSignature());
+        signatures.add(independent.getSignature());
+        signatures.add(inner.getSignature());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Map<Signature, SignatureException> failures = Signer.signObjects(signatures, executor);
+            assertEquals(2, failures.size());
+            assertTrue(failures.containsKey(inner.getSignature()));
+            assertTrue(failures.containsKey(outer.getSignature()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     /**
      * Tests unmarshalling an enveloped signature.
      * 
@@ -143,21 +306,42 @@ public class EnvelopedSignatureTest extends XMLObjectBaseTestCase {
         assertNotNull("KeyInfo did not contain the verification key", pubKey);
     }
 
+    /**
+     * Gets the DigestValue of the single Reference of a marshalled signature.
+     * 
+     * @param signature the signature
+     * @return the DigestValue content
+     */
+    private String getDigestValue(Signature signature) {
+        return signature.getDOM().getElementsByTagNameNS(XMLConstants.XMLSIG_NS, "DigestValue").item(0)
+                .getTextContent();
+    }
+
     /**
      * Creates a XMLObject that has a Signature child element.
      * 
      * @return a XMLObject that has a Signature child element
      */
     private SimpleXMLObject getXMLObjectWithSignature() {
+        return getXMLObjectWithSignature("FOO");
+    }
+
+    /**
+     * Creates a XMLObject with the given ID that has a Signature child element referencing it.
+     * 
+     * @param id the ID of the XMLObject
+     * @return a XMLObject that has a Signature child element
+     */
+    private SimpleXMLObject getXMLObjectWithSignature(String id) {
         SimpleXMLObject sxo = sxoBuilder.buildObject();
-        sxo.setId("FOO");
+        sxo.setId(id);
 
         Signature sig = sigBuilder.buildObject();
         sig.setSigningCredential(goodCredential);
         sig.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
         sig.setSignatureAlgorithm(algoURI);
         
-        DocumentInternalIDContentReference contentReference = new DocumentInternalIDContentReference("FOO");
+        DocumentInternalIDContentReference contentReference = new DocumentInternalIDContentReference(id);
         contentReference.getTransforms().add(SignatureConstants.TRANSFORM_ENVELOPED_SIGNATURE);
         contentReference.getTransforms().add(SignatureConstants.TRANSFORM_C14N_EXCL_OMIT_COMMENTS);
         contentReference.setDigestAlgorithm(SignatureConstants.ALGO_ID_DIGEST_SHA1);
@@ -20,6 +20,7 @@ package org.opensaml.xml.signature;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.opensaml.xml.Configuration;
@@ -32,11 +33,17 @@ import org.opensaml.xml.security.SecurityHelper;
 import org.opensaml.xml.security.SigningUtil;
 import org.opensaml.xml.security.credential.CollectionCredentialResolver;
 import org.opensaml.xml.security.credential.Credential;
+import org.opensaml.xml.security.credential.UsageType;
 import org.opensaml.xml.security.criteria.EntityIDCriteria;
+import org.opensaml.xml.security.criteria.KeyNameCriteria;
+import org.opensaml.xml.security.criteria.UsageCriteria;
 import org.opensaml.xml.security.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xml.security.trust.TrustedKeyIndex;
 import org.opensaml.xml.security.x509.BasicX509Credential;
 import org.opensaml.xml.security.x509.X509KeyInfoGeneratorFactory;
 import org.opensaml.xml.signature.impl.ExplicitKeySignatureTrustEngine;
+import org.opensaml.xml.signature.impl.SignatureImpl;
+import org.w3c.dom.Element;
 
 /**
  * Test explicit key signature trust engine.
@@ -262,6 +269,185 @@ public class ExplicitKeySignatureTrustEngineTest extends XMLObjectBaseTestCase {
                         criteriaSet, signingX509Cred));
     }
     
+    /**
+     * Test valid signature, trusted signing credential, with trust evaluated before verification.
+     * 
+     * @throws SecurityException 
+     */
+    public void testTrustFirstSuccess() throws SecurityException {
+        trustedCredentials.add(signingX509Cred);
+        engine.setEvaluateTrustFirst(true);
+        
+        SignableXMLObject signableXO = getValidSignedObject();
+        Signature signature = signableXO.getSignature();
+        assertTrue("Signature was valid and signing cred was trusted", engine.validate(signature, criteriaSet));
+        assertEquals(1, engine.getSignatureVerifications());
+        assertEquals(0, engine.getVerificationsAvoided());
+    }
+    
+    /**
+     * Test valid signature, untrusted signing credential, with trust evaluated before verification.
+     * 
+     * @throws SecurityException 
+     */
+    public void testTrustFirstUntrustedCredential() throws SecurityException {
+        engine.setEvaluateTrustFirst(true);
+        
+        SignableXMLObject signableXO = getValidSignedObject();
+        Signature signature = signableXO.getSignature();
+        assertFalse("Signature was valid, but signing cred was untrusted", engine.validate(signature, criteriaSet));
+        assertTrue("Verification with untrusted KeyInfo credential was not avoided", 
+                engine.getVerificationsAvoided() > 0);
+        assertEquals(0, engine.getSignatureVerifications());
+    }
+    
+    /**
+     * Test invalid signature, trusted signing credential, with trust evaluated before verification.
+     * 
+     * @throws SecurityException 
+     */
+    public void testTrustFirstInvalidSignature() throws SecurityException {
+        trustedCredentials.add(signingX509Cred);
+        engine.setEvaluateTrustFirst(true);
+        
+        SignableXMLObject signableXO = getInvalidSignedObject();
+        Signature signature = signableXO.getSignature();
+        assertFalse("Signature was invalid due to document modification", engine.validate(signature, criteriaSet));
+    }
+    
+    /**
+     * Test that Reference validation results cached during one evaluation are not reused by the next.
+     * 
+     * @throws SecurityException 
+     */
+    public void testCachedVerificationState() throws SecurityException {
+        trustedCredentials.add(signingX509Cred);
+        engine.setCacheVerificationState(true);
+        
+        SignableXMLObject signableXO = getValidSignedObject();
+        SignatureImpl signature = (SignatureImpl) signableXO.getSignature();
+        assertTrue("Signature was valid and signing cred was trusted", engine.validate(signature, criteriaSet));
+        assertNull("Verification state outlived the evaluation", signature.getReferencesValid());
+        
+        Element signedElement = signableXO.getDOM();
+        signedElement.appendChild(signedElement.getOwnerDocument().createTextNode("tampered"));
+        assertFalse("Signature was invalid due to document modification", engine.validate(signature, criteriaSet));
+        assertNull("Verification state outlived the evaluation", signature.getReferencesValid());
+    }
+    
+    /**
+     * Test valid signature, signing credential trusted only through the trusted key index.
+     * 
+     * @throws SecurityException 
+     */
+    public void testIndexedSuccess() throws SecurityException {
+        engine.setTrustedKeyIndex(new TrustedKeyIndex(Collections.singletonList((Credential) signingX509Cred)));
+        
+        SignableXMLObject signableXO = getValidSignedObject();
+        Signature signature = signableXO.getSignature();
+        assertTrue("Signature was valid and signing cred was indexed", engine.validate(signature, criteriaSet));
+        
+        criteriaSet.add(new EntityIDCriteria("other-1"), true);
+        assertFalse("Signature was valid, but signing cred was indexed for another entity", 
+                engine.validate(signature, criteriaSet));
+    }
+    
+    /**
+     * Test valid signature, signing credential not indexed but available from the credential resolver.
+     * 
+     * @throws SecurityException 
+     */
+    public void testIndexedMiss() throws SecurityException {
+        trustedCredentials.add(signingX509Cred);
+        engine.setTrustedKeyIndex(new TrustedKeyIndex(new ArrayList<Credential>()));
+        
+        SignableXMLObject signableXO = getValidSignedObject();
+        Signature signature = signableXO.getSignature();
+        assertFalse("Signature was valid, but signing cred was not indexed", engine.validate(signature, criteriaSet));
+        
+        assertFalse("Raw Signature was valid, but supplied candidate signing cred was not indexed", 
+                engine.validate(rawControlSignature, rawData.getBytes(), rawAlgorithmURI, 
+                        criteriaSet, signingX509Cred));
+        
+        assertTrue("Raw Signature was valid and non-supplied candidate signing cred was in trusted set", 
+                engine.validate(rawControlSignature, rawData.getBytes(), rawAlgorithmURI, 
+                        criteriaSet, null));
+    }
+    
+    /**
+     * Test that the trusted key index is not used for trust basis criteria it can not evaluate.
+     * 
+     * @throws SecurityException 
+     */
+    public void testIndexNotUsedForUnindexableCriteria() throws SecurityException {
+        engine.setTrustedKeyIndex(new TrustedKeyIndex(Collections.singletonList((Credential) signingX509Cred)));
+        
+        SignableXMLObject signableXO = getValidSignedObject();
+        Signature signature = signableXO.getSignature();
+        
+        CriteriaSet noEntityCriteria = new CriteriaSet(new UsageCriteria(UsageType.SIGNING));
+        assertFalse("Signing cred was indexed, but trust basis had no entity ID", 
+                engine.validate(signature, noEntityCriteria));
+        
+        criteriaSet.add(new KeyNameCriteria("foobar.example.org"));
+        assertFalse("Signing cred was indexed, but trust basis had criteria the index can not evaluate", 
+                engine.validate(signature, criteriaSet));
+        
+        trustedCredentials.add(signingX509Cred);
+        assertTrue("Signature was valid and signing cred was trusted", engine.validate(signature, criteriaSet));
+    }
+    
+    /**
+     * Test rebuilding the trusted key index after the resolver's trusted credentials change.
+     * 
+     * @throws SecurityException 
+     */
+    public void testRebuildTrustedKeyIndex() throws SecurityException {
+        engine.rebuildTrustedKeyIndex(new CriteriaSet());
+        assertEquals(1, engine.getTrustedKeyIndex().size());
+        
+        SignableXMLObject signableXO = getValidSignedObject();
+        Signature signature = signableXO.getSignature();
+        assertFalse("Signature was valid, but signing cred was untrusted", engine.validate(signature, criteriaSet));
+        
+        trustedCredentials.add(signingX509Cred);
+        assertFalse("Signing cred was trusted before the index was rebuilt", engine.validate(signature, criteriaSet));
+        
+        engine.rebuildTrustedKeyIndex(new CriteriaSet());
+        assertEquals(2, engine.getTrustedKeyIndex().size());
+        assertTrue("Signature was valid and signing cred was indexed", engine.validate(signature, criteriaSet));
+    }
+    
+    /**
+     * Test invalid signature, signing credential trusted through the trusted key index.
+     * 
+     * @throws SecurityException 
+     */
+    public void testIndexedInvalidSignature() throws SecurityException {
+        engine.setTrustedKeyIndex(new TrustedKeyIndex(Collections.singletonList((Credential) signingX509Cred)));
+        
+        SignableXMLObject signableXO = getInvalidSignedObject();
+        Signature signature = signableXO.getSignature();
+        assertFalse("Signature was invalid due to document modification", engine.validate(signature, criteriaSet));
+    }
+    
+    /**
+     * Test valid raw signature, supplied candidate signing credential trusted through the trusted key index.
+     * 
+     * @throws SecurityException
+     */
+    public void testRawIndexedSuccess() throws SecurityException {
+        engine.setTrustedKeyIndex(new TrustedKeyIndex(Collections.singletonList((Credential) signingX509Cred)));
+        
+        assertTrue("Raw Signature was valid and supplied candidate signing cred was indexed", 
+                engine.validate(rawControlSignature, rawData.getBytes(), rawAlgorithmURI, 
+                        criteriaSet, signingX509Cred));
+        
+        assertFalse("Raw Signature was valid, but no candidate was supplied and the signing cred was not trusted", 
+                engine.validate(rawControlSignature, rawData.getBytes(), rawAlgorithmURI, 
+                        criteriaSet, null));
+    }
+    
     /**
      * Get a signed object containing the signature to be validated.
      * 
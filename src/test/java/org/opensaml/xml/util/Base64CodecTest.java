@@ -0,0 +1,241 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link Base64Codec}.
+ */
+public class Base64CodecTest extends TestCase {
+
+    /** Test vectors from RFC 4648. */
+    private static final String[][] VECTORS = { { "", "" }, { "f", "Zg==" }, { "fo", "Zm8=" }, { "foo", "Zm9v" },
+            { "foob", "Zm9vYg==" }, { "fooba", "Zm9vYmE=" }, { "foobar", "Zm9vYmFy" }, };
+
+    /** Source of random test data. */
+    private Random random;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+        random = new Random(42);
+    }
+
+    /**
+     * Test encoding and decoding of the RFC 4648 test vectors.
+     * 
+     * @throws Exception
+     */
+    public void testVectors() throws Exception {
+        for (String[] vector : VECTORS) {
+            byte[] data = vector[0].getBytes("US-ASCII");
+
+            char[] chars = new char[Base64Codec.encodedLength(data.length, true)];
+            assertEquals(vector[1].length(), Base64Codec.encode(data, 0, data.length, chars, 0, true));
+            assertEquals(vector[1], new String(chars));
+            assertEquals(vector[1], Base64.encodeBytes(data));
+
+            byte[] decoded = new byte[Base64Codec.maxDecodedLength(vector[1].length())];
+            int length = Base64Codec.decode(vector[1], 0, vector[1].length(), decoded, 0);
+            assertEquals(vector[0], new String(decoded, 0, length, "US-ASCII"));
+            assertTrue(Arrays.equals(data, Base64.decode(vector[1])));
+        }
+    }
+
+    /**
+     * Test that line breaks follow every 76 characters which end on a complete group of input bytes.
+     */
+    public void testLineBreaks() {
+        assertEquals(0, Base64Codec.encodedLength(0, true));
+        assertEquals(77, Base64Codec.encodedLength(57, true));
+        assertEquals(76, Base64Codec.encodedLength(57, false));
+        assertEquals(81, Base64Codec.encodedLength(58, true));
+
+        byte[] data = new byte[58];
+        String encoded = Base64.encodeBytes(data);
+        assertEquals(81, encoded.length());
+        assertEquals('\n', encoded.charAt(76));
+        assertEquals(-1, Base64.encodeBytes(data, Base64.DONT_BREAK_LINES).indexOf('\n'));
+    }
+
+    /**
+     * Test that all encoding variants agree, and that all decoding variants recover the data.
+     */
+    public void testVariants() {
+        for (int length = 0; length < 300; length++) {
+            byte[] data = randomBytes(length);
+            for (boolean breakLines : new boolean[] { true, false }) {
+                int encodedLength = Base64Codec.encodedLength(length, breakLines);
+
+                char[] chars = new char[encodedLength + 2];
+                assertEquals(encodedLength, Base64Codec.encode(data, 0, length, chars, 1, breakLines));
+                String encoded = new String(chars, 1, encodedLength);
+
+                byte[] bytes = new byte[encodedLength];
+                assertEquals(encodedLength, Base64Codec.encode(data, 0, length, bytes, 0, breakLines));
+                assertEquals(encoded, new String(bytes));
+
+                ByteBuffer source = ByteBuffer.allocateDirect(length);
+                source.put(data).flip();
+                ByteBuffer destination = ByteBuffer.allocateDirect(encodedLength);
+                assertEquals(encodedLength, Base64Codec.encode(source, destination, breakLines));
+                assertFalse(source.hasRemaining());
+                destination.flip();
+                byte[] buffered = new byte[destination.remaining()];
+                destination.duplicate().get(buffered);
+                assertEquals(encoded, new String(buffered));
+
+                byte[] decoded = new byte[Base64Codec.maxDecodedLength(encodedLength)];
+                assertEquals(length, Base64Codec.decode(encoded, 0, encodedLength, decoded, 0));
+                assertEquals(length, Base64Codec.decode(chars, 1, encodedLength, decoded, 0));
+                assertTrue(Arrays.equals(data, trim(decoded, length)));
+
+                // decoding in place
+                assertEquals(length, Base64Codec.decode(bytes, 0, encodedLength, bytes, 0));
+                assertTrue(Arrays.equals(data, trim(bytes, length)));
+
+                ByteBuffer output = ByteBuffer.allocateDirect(Base64Codec.maxDecodedLength(encodedLength));
+                assertEquals(length, Base64Codec.decode(destination, output));
+                output.flip();
+                byte[] outputBytes = new byte[output.remaining()];
+                output.get(outputBytes);
+                assertTrue(Arrays.equals(data, outputBytes));
+            }
+        }
+    }
+
+    /**
+     * Test decoding of invalid and unusual input.
+     */
+    public void testDecodeInvalid() {
+        byte[] decoded = new byte[16];
+        assertEquals(-1, Base64Codec.decode("Zm9v*", 0, 5, decoded, 0));
+        assertEquals(-1, Base64Codec.decode("Zm9\u00e9", 0, 4, decoded, 0));
+        assertNull(Base64.decode("Zm9v*"));
+
+        // whitespace is skipped, a trailing partial group is ignored
+        assertEquals(3, Base64Codec.decode(" Zm\r\n9v\tZm", 0, 10, decoded, 0));
+        // input after a padded group is ignored
+        assertEquals(1, Base64Codec.decode("Zg==*", 0, 5, decoded, 0));
+    }
+
+    /**
+     * Test the streaming encoder and decoder with writes and reads of varying sizes.
+     * 
+     * @throws IOException
+     */
+    public void testStreams() throws IOException {
+        for (int length : new int[] { 0, 1, 2, 3, 56, 57, 58, 1000, 4096, 50000 }) {
+            byte[] data = randomBytes(length);
+            for (boolean breakLines : new boolean[] { true, false }) {
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                Base64Codec.EncoderOutputStream encoder = new Base64Codec.EncoderOutputStream(encoded, breakLines);
+                int position = 0;
+                while (position < length) {
+                    int chunk = Math.min(length - position, random.nextInt(300) + 1);
+                    if (chunk == 1) {
+                        encoder.write(data[position]);
+                    } else {
+                        encoder.write(data, position, chunk);
+                    }
+                    position += chunk;
+                    if (random.nextInt(8) == 0) {
+                        encoder.flush();
+                    }
+                }
+                encoder.close();
+                assertEquals(Base64.encodeBytes(data, breakLines ? Base64.NO_OPTIONS : Base64.DONT_BREAK_LINES),
+                        new String(encoded.toByteArray(), "US-ASCII"));
+
+                InputStream decoder = new Base64Codec.DecoderInputStream(new ByteArrayInputStream(encoded
+                        .toByteArray()));
+                ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+                byte[] buffer = new byte[random.nextInt(100) + 1];
+                int read;
+                while ((read = decoder.read(buffer)) > 0) {
+                    decoded.write(buffer, 0, read);
+                }
+                assertTrue(Arrays.equals(data, decoded.toByteArray()));
+            }
+        }
+    }
+
+    /**
+     * Test that the streaming decoder reports invalid and truncated input.
+     */
+    public void testDecoderStreamInvalid() {
+        try {
+            drain(new Base64Codec.DecoderInputStream(new ByteArrayInputStream("Zm9v*".getBytes())));
+            fail("Decoded invalid input");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            drain(new Base64Codec.DecoderInputStream(new ByteArrayInputStream("Zm9vYg".getBytes())));
+            fail("Decoded truncated input");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Reads a stream to its end.
+     * 
+     * @param in the stream
+     * @throws IOException if the stream can not be read
+     */
+    private void drain(InputStream in) throws IOException {
+        while (in.read() >= 0) {
+            // discard
+        }
+    }
+
+    /**
+     * Creates an array of random bytes.
+     * 
+     * @param length the length of the array
+     * @return the array
+     */
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns the first bytes of an array.
+     * 
+     * @param bytes the array
+     * @param length number of bytes to return
+     * @return the bytes
+     */
+    private byte[] trim(byte[] bytes, int length) {
+        byte[] trimmed = new byte[length];
+        System.arraycopy(bytes, 0, trimmed, 0, length);
+        return trimmed;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.util;
+
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests for {@link ElementNameIndex}.
+ */
+public class ElementNameIndexTest extends TestCase {
+
+    private ElementNameIndex<String> index;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+        index = new ElementNameIndex<String>();
+        index.put(new QName("urn:test", "Element", "foo"), "element");
+        index.put(new QName("urn:test", "Type"), "type");
+        index.put(new QName("NoNamespace"), "none");
+    }
+
+    /** Test lookups by namespace URI and local name. */
+    public void testGetByName() {
+        assertEquals("element", index.get("urn:test", "Element"));
+        assertEquals("type", index.get("urn:test", "Type"));
+        assertEquals("none", index.get(null, "NoNamespace"));
+        assertEquals("none", index.get("", "NoNamespace"));
+        assertNull(index.get("urn:other", "Element"));
+        assertNull(index.get("urn:test", null));
+
+        assertEquals("element", index.remove(new QName("urn:test", "Element")));
+        assertNull(index.get("urn:test", "Element"));
+        assertEquals("type", index.get("urn:test", "Type"));
+        assertNull(index.remove(new QName("urn:other", "Element")));
+    }
+
+    /**
+     * Test lookups by DOM element.
+     * 
+     * @throws Exception if the test document can not be parsed
+     */
+    public void testGetByElement() throws Exception {
+        assertEquals("element", index.get(parse("<t:Element xmlns:t='urn:test'/>")));
+        assertEquals("type", index.get(parse("<t:Element xmlns:t='urn:test' "
+                + "xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xsi:type='t:Type'/>")));
+        assertEquals("Element name should be used if schema type is not indexed", "element",
+                index.get(parse("<t:Element xmlns:t='urn:test' "
+                        + "xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xsi:type='t:Unknown'/>")));
+        assertEquals("type", index.get(parse("<Element xmlns='urn:test' "
+                + "xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xsi:type='Type'/>")));
+        assertEquals("none", index.get(parse("<NoNamespace/>")));
+        assertNull(index.get(parse("<Element/>")));
+    }
+
+    /**
+     * Parse a document and return its document element.
+     * 
+     * @param xml the document
+     * @return the document element
+     * @throws Exception if the document can not be parsed
+     */
+    private Element parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml))).getDocumentElement();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.util;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the LazyList, comparing it against an ArrayList as items are held in fields and then in an array.
+ */
+public class LazyListTest extends TestCase {
+
+    /** List under test. */
+    private LazyList<String> list;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+        list = new LazyList<String>();
+    }
+
+    /**
+     * Test adding, getting and removing items by index.
+     */
+    public void testIndexedOperations() {
+        list.add("b");
+        list.add(0, "a");
+        assertEquals("[a, b]", list.toString());
+        list.add(1, "c");
+        list.add(3, "d");
+        assertEquals("[a, c, b, d]", list.toString());
+        assertEquals("c", list.set(1, "e"));
+        assertEquals("e", list.remove(1));
+        assertEquals("a", list.remove(0));
+        assertEquals("[b, d]", list.toString());
+        assertEquals("d", list.get(1));
+
+        try {
+            list.get(2);
+            fail("Got item past the end of the list");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            list.add(3, "f");
+            fail("Added item past the end of the list");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test null items and equality with other lists.
+     */
+    public void testNullsAndEquality() {
+        list.add(null);
+        list.add("a");
+        list.add(null);
+        assertEquals(0, list.indexOf(null));
+        assertEquals(2, list.lastIndexOf(null));
+        assertTrue(list.remove(null));
+        assertEquals(1, list.indexOf(null));
+
+        List<String> expected = new ArrayList<String>();
+        expected.add("a");
+        expected.add(null);
+        assertEquals(expected, list);
+        assertEquals(list, expected);
+        assertEquals(expected.hashCode(), list.hashCode());
+    }
+
+    /**
+     * Test modification through iterators and detection of other modification during iteration.
+     */
+    public void testIterators() {
+        for (int i = 0; i < 6; i++) {
+            list.add(Integer.toString(i));
+        }
+
+        Iterator<String> iterator = list.iterator();
+        while (iterator.hasNext()) {
+            if (Integer.parseInt(iterator.next()) % 2 == 0) {
+                iterator.remove();
+            }
+        }
+        assertEquals("[1, 3, 5]", list.toString());
+
+        ListIterator<String> listIterator = list.listIterator(1);
+        listIterator.next();
+        listIterator.set("x");
+        listIterator.add("y");
+        assertEquals("[1, x, y, 5]", list.toString());
+
+        iterator = list.iterator();
+        iterator.next();
+        list.add("z");
+        try {
+            iterator.next();
+            fail("Iterator did not detect modification of the list");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test random operations against an ArrayList.
+     */
+    public void testAgainstArrayList() {
+        List<String> expected = new ArrayList<String>();
+        Random random = new Random(25);
+        for (int i = 0; i < 2000; i++) {
+            int operation = random.nextInt(10);
+            String item = Integer.toString(random.nextInt(12));
+            if (operation < 4) {
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, item);
+                list.add(index, item);
+            } else if (operation < 6 && !expected.isEmpty()) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            } else if (operation < 8) {
+                assertEquals(expected.remove(item), list.remove(item));
+            } else if (operation < 9 && !expected.isEmpty()) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.set(index, item), list.set(index, item));
+            } else if (random.nextInt(10) == 0) {
+                expected.clear();
+                list.clear();
+            }
+            assertEquals(expected, list);
+            assertEquals(expected.size(), list.size());
+            assertEquals(expected.indexOf(item), list.indexOf(item));
+        }
+    }
+}
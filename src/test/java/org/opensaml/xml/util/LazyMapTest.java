@@ -0,0 +1,127 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.util;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Map.Entry;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the LazyMap, comparing it against a HashMap as entries are held in fields, in an array and then hashed.
+ */
+public class LazyMapTest extends TestCase {
+
+    /** Map under test. */
+    private LazyMap<String, String> map;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+        map = new LazyMap<String, String>();
+    }
+
+    /**
+     * Test replacing values and null keys and values.
+     */
+    public void testPutAndRemove() {
+        assertNull(map.put("a", "1"));
+        assertEquals("1", map.put("a", "2"));
+        assertNull(map.put(null, null));
+        assertTrue(map.containsKey(null));
+        assertTrue(map.containsValue(null));
+        assertEquals(2, map.size());
+        assertEquals("2", map.remove("a"));
+        assertNull(map.remove("a"));
+        assertEquals(1, map.size());
+    }
+
+    /**
+     * Test modification through the entry set, key set and value views.
+     */
+    public void testViews() {
+        for (int count : new int[] { 2, 5, 20 }) {
+            map.clear();
+            for (int i = 0; i < count; i++) {
+                map.put(Integer.toString(i), Integer.toString(i * 10));
+            }
+            for (Entry<String, String> entry : map.entrySet()) {
+                entry.setValue(entry.getValue() + "!");
+            }
+            Iterator<String> keys = map.keySet().iterator();
+            while (keys.hasNext()) {
+                if (Integer.parseInt(keys.next()) % 2 == 0) {
+                    keys.remove();
+                }
+            }
+            assertEquals(count / 2, map.size());
+            assertEquals(count / 2, map.values().size());
+            for (int i = 0; i < count; i++) {
+                String value = map.get(Integer.toString(i));
+                assertEquals(i % 2 != 0 ? Integer.toString(i * 10) + "!" : null, value);
+            }
+        }
+    }
+
+    /**
+     * Test detection of modification during iteration.
+     */
+    public void testConcurrentModification() {
+        map.put("a", "1");
+        map.put("b", "2");
+        Iterator<String> iterator = map.keySet().iterator();
+        iterator.next();
+        map.put("c", "3");
+        try {
+            iterator.next();
+            fail("Iterator did not detect modification of the map");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test random operations against a HashMap.
+     */
+    public void testAgainstHashMap() {
+        Map<String, String> expected = new HashMap<String, String>();
+        Random random = new Random(25);
+        for (int i = 0; i < 2000; i++) {
+            String key = Integer.toString(random.nextInt(16));
+            String value = Integer.toString(random.nextInt(4));
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                assertEquals(expected.put(key, value), map.put(key, value));
+            } else if (operation < 9) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else if (random.nextInt(5) == 0) {
+                expected.clear();
+                map.clear();
+            }
+            assertEquals(expected, map);
+            assertEquals(map, expected);
+            assertEquals(expected.hashCode(), map.hashCode());
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsValue(value), map.containsValue(value));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.util;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the LazySet, comparing it against a HashSet as items are held in fields, in an array and then hashed.
+ */
+public class LazySetTest extends TestCase {
+
+    /** Set under test. */
+    private LazySet<String> set;
+
+    /** {@inheritDoc} */
+    protected void setUp() throws Exception {
+        super.setUp();
+        set = new LazySet<String>();
+    }
+
+    /**
+     * Test adding duplicate and null items.
+     */
+    public void testDuplicates() {
+        assertTrue(set.add("a"));
+        assertFalse(set.add("a"));
+        assertTrue(set.add(null));
+        assertFalse(set.add(null));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(null));
+        assertTrue(set.remove(null));
+        assertFalse(set.remove(null));
+        assertEquals(1, set.size());
+    }
+
+    /**
+     * Test removal through the iterator while the items are held in an array and once they are hashed.
+     */
+    public void testIteratorRemoval() {
+        for (int count : new int[] { 2, 5, 20 }) {
+            set.clear();
+            for (int i = 0; i < count; i++) {
+                set.add(Integer.toString(i));
+            }
+            Iterator<String> iterator = set.iterator();
+            while (iterator.hasNext()) {
+                if (Integer.parseInt(iterator.next()) % 2 == 0) {
+                    iterator.remove();
+                }
+            }
+            assertEquals(count / 2, set.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(i % 2 != 0, set.contains(Integer.toString(i)));
+            }
+        }
+    }
+
+    /**
+     * Test detection of modification during iteration.
+     */
+    public void testConcurrentModification() {
+        set.add("a");
+        set.add("b");
+        Iterator<String> iterator = set.iterator();
+        iterator.next();
+        set.remove("b");
+        try {
+            iterator.next();
+            fail("Iterator did not detect modification of the set");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test random operations against a HashSet.
+     */
+    public void testAgainstHashSet() {
+        Set<String> expected = new HashSet<String>();
+        Random random = new Random(25);
+        for (int i = 0; i < 2000; i++) {
+            String item = Integer.toString(random.nextInt(16));
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                assertEquals(expected.add(item), set.add(item));
+            } else if (operation < 9) {
+                assertEquals(expected.remove(item), set.remove(item));
+            } else if (random.nextInt(5) == 0) {
+                expected.clear();
+                set.clear();
+            }
+            assertEquals(expected, set);
+            assertEquals(set, expected);
+            assertEquals(expected.hashCode(), set.hashCode());
+            assertEquals(expected.contains(item), set.contains(item));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development, 
+ * Inc. (UCAID) under one or more contributor license agreements.  See the 
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache 
+ * License, Version 2.0 (the "License"); you may not use this file except in 
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xml.util;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.opensaml.xml.parse.XMLParserException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests for {@link XMLHelper}.
+ */
+public class XMLHelperTest extends TestCase {
+
+    /**
+     * Test that namespaces used within a fragment but declared outside of it are declared within it.
+     * 
+     * @throws Exception if the test document can not be parsed
+     */
+    public void testRootNamespaces() throws Exception {
+        Document document = parse("<a:Root xmlns:a='urn:a' xmlns:b='urn:b' xmlns:c='urn:c'>"
+                + "<a:Fragment><b:Child c:attr='foo'/><b:Child/></a:Fragment></a:Root>");
+        Element fragment = XMLHelper.getFirstChildElement(document.getDocumentElement());
+
+        XMLHelper.rootNamespaces(fragment);
+
+        assertEquals("urn:a", fragment.getAttributeNS(XMLConstants.XMLNS_NS, "a"));
+        assertFalse(fragment.hasAttributeNS(XMLConstants.XMLNS_NS, "b"));
+
+        Element child1 = XMLHelper.getFirstChildElement(fragment);
+        assertEquals("urn:b", child1.getAttributeNS(XMLConstants.XMLNS_NS, "b"));
+        assertEquals("urn:c", child1.getAttributeNS(XMLConstants.XMLNS_NS, "c"));
+
+        Element child2 = XMLHelper.getNextSiblingElement(child1);
+        assertEquals("Declaration on sibling should not be in scope", "urn:b",
+                child2.getAttributeNS(XMLConstants.XMLNS_NS, "b"));
+        assertFalse(child2.hasAttributeNS(XMLConstants.XMLNS_NS, "c"));
+    }
+
+    /**
+     * Test that namespaces declared within a fragment are not redeclared.
+     * 
+     * @throws Exception if the test document can not be parsed
+     */
+    public void testRootNamespacesDeclaredWithin() throws Exception {
+        Document document = parse("<Root xmlns='urn:default' xmlns:b='urn:outer'>"
+                + "<Fragment xmlns:b='urn:inner'><b:Child><Default/></b:Child></Fragment></Root>");
+        Element fragment = XMLHelper.getFirstChildElement(document.getDocumentElement());
+
+        XMLHelper.rootNamespaces(fragment);
+
+        assertEquals("urn:default", fragment.getAttributeNS(XMLConstants.XMLNS_NS, XMLConstants.XMLNS_PREFIX));
+        assertEquals("urn:inner", fragment.getAttributeNS(XMLConstants.XMLNS_NS, "b"));
+        Element child = XMLHelper.getFirstChildElement(fragment);
+        assertFalse(child.hasAttributes());
+        assertFalse(XMLHelper.getFirstChildElement(child).hasAttributes());
+    }
+
+    /**
+     * Test that an undeclared prefix is reported.
+     * 
+     * @throws Exception if the test document can not be parsed
+     */
+    public void testRootNamespacesUndeclaredPrefix() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().newDocument();
+        Element root = document.createElementNS("urn:a", "a:Root");
+        document.appendChild(root);
+
+        try {
+            XMLHelper.rootNamespaces(root);
+            fail("Undeclared namespace prefix was not reported");
+        } catch (XMLParserException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Parse a document.
+     * 
+     * @param xml the document
+     * @return the parsed document
+     * @throws Exception if the document can not be parsed
+     */
+    private Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+}
@@ -17,12 +17,18 @@
 
 package org.opensaml.xml.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
 import org.opensaml.xml.Configuration;
 import org.opensaml.xml.XMLObjectBaseTestCase;
 import org.opensaml.xml.io.MarshallingException;
 import org.opensaml.xml.io.UnmarshallingException;
 import org.opensaml.xml.mock.SimpleXMLObject;
 import org.opensaml.xml.mock.SimpleXMLObjectBuilder;
+import org.opensaml.xml.signature.Signature;
+import org.opensaml.xml.signature.SignatureConstants;
+import org.w3c.dom.Element;
 
 /**
  * Tests of XMLObjectHelper utility methods.
@@ -103,5 +109,80 @@ public class XMLObjectHelperTest extends XMLObjectBaseTestCase {
                 clonedParentObj.getDOM().getOwnerDocument().getDocumentElement().isSameNode(clonedParentObj.getDOM()));
     }
     
+    /**
+     * Tests marshalling an XMLObject to an output stream, which leaves the marshalled DOM cached.
+     * 
+     * @throws Exception
+     */
+    public void testMarshallToOutputStream() throws Exception {
+        SimpleXMLObject parentObj = buildParentObject();
+        
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XMLObjectHelper.marshallToOutputStream(parentObj, output);
+        assertNotNull("Marshalled DOM was not cached", parentObj.getDOM());
+        assertXMLEqual(parentObj.getDOM().getOwnerDocument(), parserPool.parse(new ByteArrayInputStream(output
+                .toByteArray())));
+    }
+    
+    /**
+     * Tests writing an XMLObject to an output stream, both with and without a cached DOM.
+     * 
+     * @throws Exception
+     */
+    public void testStreamToOutputStream() throws Exception {
+        SimpleXMLObject parentObj = buildParentObject();
+        
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XMLObjectHelper.streamToOutputStream(parentObj, output);
+        assertNull("Object without a cached DOM was marshalled to a DOM", parentObj.getDOM());
+        Element streamed = parserPool.parse(new ByteArrayInputStream(output.toByteArray())).getDocumentElement();
+        assertEquals("ID attribute was not written", "Foo", streamed.getAttributeNS(null, "Id"));
+        assertEquals("Child content was not written", "FooBarBaz", streamed.getFirstChild().getTextContent());
+        
+        Element marshalled = XMLObjectHelper.marshall(parentObj);
+        output = new ByteArrayOutputStream();
+        XMLObjectHelper.streamToOutputStream(parentObj, output);
+        assertSame("Cached DOM was replaced", marshalled, parentObj.getDOM());
+        assertXMLEqual(marshalled.getOwnerDocument(), parserPool.parse(new ByteArrayInputStream(output
+                .toByteArray())));
+        assertXMLEqual(streamed.getOwnerDocument(), marshalled.getOwnerDocument());
+    }
+    
+    /**
+     * Tests that an XMLObject containing a Signature which has not been marshalled is written through a DOM.
+     * 
+     * @throws Exception
+     */
+    public void testStreamToOutputStreamWithSignature() throws Exception {
+        SimpleXMLObject parentObj = buildParentObject();
+        Signature signature = (Signature) buildXMLObject(Signature.DEFAULT_ELEMENT_NAME);
+        signature.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        signature.setSignatureAlgorithm(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA1);
+        parentObj.setSignature(signature);
+        
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XMLObjectHelper.streamToOutputStream(parentObj, output);
+        assertNotNull("Object containing a Signature was not marshalled to a DOM", parentObj.getDOM());
+        assertXMLEqual(parentObj.getDOM().getOwnerDocument(), parserPool.parse(new ByteArrayInputStream(output
+                .toByteArray())));
+    }
+    
+    /**
+     * Builds a SimpleXMLObject with an ID and a child holding text content.
+     * 
+     * @return the XMLObject
+     */
+    private SimpleXMLObject buildParentObject() {
+        SimpleXMLObjectBuilder sxoBuilder = (SimpleXMLObjectBuilder) Configuration.getBuilderFactory()
+            .getBuilder(SimpleXMLObject.ELEMENT_NAME);
+        
+        SimpleXMLObject childObj = sxoBuilder.buildObject();
+        childObj.setValue("FooBarBaz");
+        SimpleXMLObject parentObj = sxoBuilder.buildObject();
+        parentObj.setId("Foo");
+        parentObj.getSimpleXMLObjects().add(childObj);
+        return parentObj;
+    }
+    
 
 }